@@ -0,0 +1,55 @@
+package com.nvisia.sourcegraph.bench;
+
+import com.nvisia.sourcegraph.AntlrImport;
+import com.nvisia.sourcegraph.CorpusGenerator;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+
+import java.util.List;
+
+/* In-memory source tree for the benchmarks: a generated corpus of 5 packages (a root and 4 subpackages) with
+ * classesPerPackage classes each. The seed is fixed, so every run and every fork sees the same sources. */
+public final class Corpus {
+    public static final long SEED = 20200601L;
+
+    private final List<CorpusGenerator.SourceFile> files;
+
+    private Corpus(List<CorpusGenerator.SourceFile> files) {
+        this.files = files;
+    }
+
+    public static Corpus of(int classesPerPackage) {
+        return new Corpus(new CorpusGenerator()
+                .seed(SEED)
+                .packageFanOut(4)
+                .packageDepth(1)
+                .classesPerPackage(classesPerPackage)
+                .generate());
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+    public int lines() {
+        var lines = 0;
+        for (var file : files) {
+            lines += (int) file.getText().lines().count();
+        }
+        return lines;
+    }
+
+    public CharStream stream(int i) {
+        var file = files.get(i);
+        return CharStreams.fromString(file.getText(), file.getPath());
+    }
+
+    /* imports every file in order on the calling thread; references are left unresolved */
+    public AntlrImport importAll() {
+        var imp = new AntlrImport();
+        for (int i=0;i<size();i++) {
+            imp.importSource(stream(i));
+        }
+        return imp;
+    }
+}
@@ -0,0 +1,40 @@
+package com.nvisia.sourcegraph.bench;
+
+import com.nvisia.sourcegraph.AntlrImport;
+import com.nvisia.sourcegraph.graph.EdgeType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/* toDOT over a resolved corpus, everything shown and with the usual noisy edge types hidden */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+    @Param({"1", "8", "32"})
+    public int classesPerPackage;
+
+    private AntlrImport imp;
+    private final Set<EdgeType> hideExecution = EnumSet.of(EdgeType.Executes, EdgeType.References);
+
+    @Setup(Level.Trial)
+    public void load() {
+        imp = Corpus.of(classesPerPackage).importAll();
+        imp.postProcess();
+    }
+
+    @Benchmark
+    public String toDOT() {
+        return imp.toDOT(Set.of());
+    }
+
+    @Benchmark
+    public String toDOTHidingExecution() {
+        return imp.toDOT(hideExecution);
+    }
+}
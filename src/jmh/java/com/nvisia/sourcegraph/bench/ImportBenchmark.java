@@ -0,0 +1,44 @@
+package com.nvisia.sourcegraph.bench;
+
+import com.nvisia.sourcegraph.AntlrImport;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/* importSource throughput: lex, parse, translate and merge, one file per operation */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImportBenchmark {
+    @Param({"1", "8", "32"})
+    public int classesPerPackage;
+
+    private Corpus corpus;
+    private AntlrImport imp;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void load() {
+        corpus = Corpus.of(classesPerPackage);
+    }
+
+    //a fresh graph per round through the corpus, so the merge cost matches a real import of this size
+    @Setup(Level.Iteration)
+    public void reset() {
+        imp = new AntlrImport();
+        next = 0;
+    }
+
+    @Benchmark
+    public int importSource() {
+        if (next == corpus.size()) {
+            imp = new AntlrImport();
+            next = 0;
+        }
+        imp.importSource(corpus.stream(next++));
+        return imp.getFilesParsed();
+    }
+}
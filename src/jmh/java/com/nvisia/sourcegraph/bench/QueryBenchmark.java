@@ -0,0 +1,104 @@
+package com.nvisia.sourcegraph.bench;
+
+import com.nvisia.sourcegraph.graph.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/* GraphQuery on a frozen graph of about nodes nodes. Parsing a million node corpus takes far too long for a
+ * benchmark setup, so the graph is built directly: packages of types of methods of statements, where every
+ * statement executes a random method and every type references two random types. Random edges make the
+ * dependents of almost any type almost the whole graph, which is the worst case for impactOf. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class QueryBenchmark {
+    private static final int TYPES_PER_PACKAGE = 100;
+    private static final int METHODS_PER_TYPE = 10;
+    private static final int STATEMENTS_PER_METHOD = 8;
+
+    @Param({"100000", "1000000"})
+    public int nodes;
+
+    private FrozenGraph graph;
+    private GraphQuery query;
+    private int type;
+    private int method;
+    private int otherMethod;
+
+    @Setup(Level.Trial)
+    public void build() {
+        var random = new Random(Corpus.SEED);
+        var nodesPerType = 1 + METHODS_PER_TYPE * (1 + STATEMENTS_PER_METHOD);
+        var typeCount = Math.max(2, nodes / nodesPerType);
+        var roots = new ArrayList<Node>();
+        var types = new ArrayList<Node>(typeCount);
+        var methods = new ArrayList<Node>(typeCount * METHODS_PER_TYPE);
+        var statements = new ArrayList<Node>(typeCount * METHODS_PER_TYPE * STATEMENTS_PER_METHOD);
+        Node pkg = null;
+        for (int t=0;t<typeCount;t++) {
+            if (t % TYPES_PER_PACKAGE == 0) {
+                pkg = new Node("p" + roots.size(), "bench.p" + roots.size(), NodeType.Package);
+                roots.add(pkg);
+            }
+            var typeNode = pkg.addContained(new Node("T" + t, pkg.getPath() + ".T" + t, NodeType.Type));
+            types.add(typeNode);
+            for (int m=0;m<METHODS_PER_TYPE;m++) {
+                var methodNode = typeNode.addContained(new Node("m" + m, typeNode.getPath() + ".m" + m, NodeType.Method));
+                methods.add(methodNode);
+                for (int s=0;s<STATEMENTS_PER_METHOD;s++) {
+                    var statement = methodNode.addContained(new Node("s" + s, methodNode.getPath() + ".s" + s, NodeType.Statement));
+                    methodNode.createOutboundEdge(NodeRef.of(statement), EdgeType.Executes);
+                    statements.add(statement);
+                }
+            }
+        }
+        for (var statement : statements) {
+            statement.createOutboundEdge(NodeRef.of(methods.get(random.nextInt(methods.size()))), EdgeType.Executes);
+        }
+        for (var typeNode : types) {
+            typeNode.createOutboundEdge(NodeRef.of(types.get(random.nextInt(types.size()))), EdgeType.References);
+            typeNode.createOutboundEdge(NodeRef.of(types.get(random.nextInt(types.size()))), EdgeType.References);
+        }
+        graph = FrozenGraph.freeze(roots);
+        query = new GraphQuery(graph).following(GraphQuery.DEPENDENCIES);
+        type = graph.idOf(types.get(typeCount / 2));
+        method = graph.idOf(methods.get(0));
+        otherMethod = graph.idOf(methods.get(methods.size() - 1));
+        System.out.println();
+        System.out.println(graph.nodeCount() + " nodes, " + graph.edgeCount() + " edges");
+    }
+
+    @Benchmark
+    public long impactOfType() {
+        return query.impactOf(type, NodeType.Type).count();
+    }
+
+    @Benchmark
+    public long dependentsOfType() {
+        return query.dependents(type).count();
+    }
+
+    @Benchmark
+    public long twoHopsOut() {
+        return query.outbound(type, 2).count();
+    }
+
+    @Benchmark
+    public int[] shortestPath() {
+        return query.shortestPath(method, otherMethod);
+    }
+
+    @Benchmark
+    public List<Integer> firstTenImpacted() {
+        var first = new ArrayList<Integer>(10);
+        query.impactOf(type, NodeType.Type).limit(10).forEach(first::add);
+        return first;
+    }
+}
@@ -0,0 +1,38 @@
+package com.nvisia.sourcegraph.bench;
+
+import com.nvisia.sourcegraph.AntlrImport;
+import com.nvisia.sourcegraph.graph.ReferenceResolver;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/* postProcess over a freshly imported corpus. Resolution rewrites the graph, so every invocation needs its own
+ * unresolved import; that setup isn't part of the measurement */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResolveBenchmark {
+    @Param({"1", "8", "32"})
+    public int classesPerPackage;
+
+    private Corpus corpus;
+    private AntlrImport imp;
+
+    @Setup(Level.Trial)
+    public void load() {
+        corpus = Corpus.of(classesPerPackage);
+    }
+
+    @Setup(Level.Invocation)
+    public void importCorpus() {
+        imp = corpus.importAll();
+    }
+
+    @Benchmark
+    public ReferenceResolver.Stats postProcess() {
+        return imp.postProcess();
+    }
+}
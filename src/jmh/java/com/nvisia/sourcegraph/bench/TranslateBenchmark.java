@@ -0,0 +1,50 @@
+package com.nvisia.sourcegraph.bench;
+
+import com.nvisia.sourcegraph.GraphTranslator;
+import com.nvisia.sourcegraph.JavaSourceParser;
+import com.nvisia.sourcegraph.antlr.Java9Parser;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* GraphTranslator on its own: the corpus is parsed once up front and every operation walks all the trees into
+ * fresh translators. gc.alloc.rate.norm divided by the KLOC printed at setup gives bytes per KLOC translated */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TranslateBenchmark {
+    @Param({"1", "8", "32"})
+    public int classesPerPackage;
+
+    private final List<Java9Parser.CompilationUnitContext> trees = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void parse() {
+        var corpus = Corpus.of(classesPerPackage);
+        var parser = new JavaSourceParser();
+        for (int i=0;i<corpus.size();i++) {
+            var input = corpus.stream(i);
+            trees.add(parser.parse(input));
+            names.add(input.getSourceName());
+        }
+        System.out.printf("%n%d files, %.1f KLOC%n", corpus.size(), corpus.lines() / 1000.0);
+    }
+
+    @Benchmark
+    public int translate() {
+        var nodes = 0;
+        for (int i=0;i<trees.size();i++) {
+            var translator = new GraphTranslator(names.get(i));
+            ParseTreeWalker.DEFAULT.walk(translator, trees.get(i));
+            nodes += translator.getTopLevelNodes().size();
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,78 @@
+package com.nvisia.sourcegraph.bench;
+
+import com.nvisia.sourcegraph.AntlrImport;
+import com.nvisia.sourcegraph.graph.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/* Walks over a resolved corpus. recursiveContains is the traversal as it was before Traversal, kept as the
+ * baseline for preOrderContains */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraverseBenchmark {
+    @Param({"1", "8", "32"})
+    public int classesPerPackage;
+
+    private AntlrImport imp;
+    private List<Node> roots;
+
+    @Setup(Level.Trial)
+    public void load() {
+        imp = Corpus.of(classesPerPackage).importAll();
+        imp.postProcess();
+        roots = new ArrayList<>(imp.getTopLevelNodes());
+    }
+
+    @Benchmark
+    public void preOrderContains(Blackhole bh) {
+        imp.preOrderTraverse(Optional.of(EdgeType.Contains), (edgeType, nodeRef, level) -> bh.consume(nodeRef));
+    }
+
+    @Benchmark
+    public void preOrderAll(Blackhole bh) {
+        imp.preOrderTraverse(Optional.empty(), (edgeType, nodeRef, level) -> bh.consume(nodeRef));
+    }
+
+    @Benchmark
+    public void preOrderEdges(Blackhole bh) {
+        imp.preOrderEdgeTraverse(Optional.empty(), bh::consume);
+    }
+
+    @Benchmark
+    public void recursiveContains(Blackhole bh) {
+        for (var root : roots) {
+            recursivePreOrder(root, Optional.of(EdgeType.Contains), bh);
+        }
+    }
+
+    private static void recursivePreOrder(Node root, Optional<EdgeType> typeToTraverse, Blackhole bh) {
+        Node fakeNod = new Node("__root__", "__root__", NodeType.Package);
+        doPreOrderTraverse(root, typeToTraverse, Optional.of(new Edge(NodeRef.of(fakeNod), NodeRef.of(root), EdgeType.Contains)),
+                (edgeType, nodeRef, level) -> bh.consume(nodeRef), new HashSet<>(), 0);
+    }
+    private static void doPreOrderTraverse(Node node, Optional<EdgeType> typeToTraverse, Optional<Edge> inEdge, NodeVisitor visitor, Set<NodeRef> alreadyVisited, int level) {
+        inEdge.ifPresent(edge -> {
+            if (alreadyVisited.contains(edge.getTo())) {
+                return;
+            }
+            visitor.visitEdge(Optional.of(edge.getType()), edge.getTo(), level);
+            alreadyVisited.add(edge.getTo());
+            for (var childEdge : node.getOutboundEdges()) {
+                if (typeToTraverse.map(e -> e.equals(childEdge.getType()) ).orElse(true) ) {
+                    childEdge.getTo().getNode().ifPresentOrElse(
+                            child -> doPreOrderTraverse(child, typeToTraverse, Optional.of(childEdge), visitor, alreadyVisited, level + 1),
+                            () -> visitor.visitEdge(Optional.of(childEdge.getType()), childEdge.getTo(), level + 1) );
+                } else {
+                    visitor.visitEdge(Optional.of(childEdge.getType()), childEdge.getTo(), level + 1);
+                }
+            }
+        });
+    }
+}
@@ -1,59 +1,208 @@
 package com.nvisia.sourcegraph;
 
-import com.nvisia.sourcegraph.antlr.Java9Lexer;
+import com.nvisia.sourcegraph.analysis.Contraction;
+import com.nvisia.sourcegraph.analysis.ControlFlowMetrics;
+import com.nvisia.sourcegraph.analysis.CouplingAnalysis;
+import com.nvisia.sourcegraph.analysis.CycleAnalysis;
+import com.nvisia.sourcegraph.analysis.MethodMetrics;
 import com.nvisia.sourcegraph.antlr.Java9Parser;
+import com.nvisia.sourcegraph.export.DotExporter;
+import com.nvisia.sourcegraph.export.ExportOptions;
+import com.nvisia.sourcegraph.export.GraphExporter;
+import com.nvisia.sourcegraph.graph.CompilationUnitScope;
 import com.nvisia.sourcegraph.graph.Edge;
 import com.nvisia.sourcegraph.graph.EdgeType;
+import com.nvisia.sourcegraph.graph.FrozenGraph;
+import com.nvisia.sourcegraph.graph.GraphSnapshot;
 import com.nvisia.sourcegraph.graph.Node;
+import com.nvisia.sourcegraph.graph.NodeType;
 import com.nvisia.sourcegraph.graph.NodeVisitor;
+import com.nvisia.sourcegraph.graph.PathTable;
+import com.nvisia.sourcegraph.graph.ReferenceResolver;
+import com.nvisia.sourcegraph.graph.TypeIndex;
+import com.nvisia.sourcegraph.metrics.JfrMetricsSink;
+import com.nvisia.sourcegraph.metrics.JsonMetricsSink;
+import com.nvisia.sourcegraph.metrics.MetricsRegistry;
+import com.nvisia.sourcegraph.metrics.Phase;
 import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.TokenSource;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
 public class AntlrImport {
     public static int SPACES_PER_TREE_LEVEL = 2;
+    public static final String THREADS_PROPERTY = "sourcegraph.importThreads";
+    //true: try an SLL parse before the full LL one, see JavaSourceParser
+    public static final String TWO_STAGE_PROPERTY = "sourcegraph.twoStageParse";
+    public static final String SNAPSHOT_PROPERTY = "sourcegraph.snapshot";
+    //file to export to instead of dumping the contains tree; format by extension, see GraphExporter.forFile
+    public static final String EXPORT_PROPERTY = "sourcegraph.export";
+    //Package or Type: print the coupling report at that level
+    public static final String COUPLING_PROPERTY = "sourcegraph.coupling";
+    //Package, Type, ...: fail (exit status 1) if the DependsOn/References/Calls edges have cycles at that level
+    public static final String CYCLE_CHECK_PROPERTY = "sourcegraph.cycleCheck";
+    //n: print the n methods with the highest cyclomatic complexity
+    public static final String CONTROL_FLOW_PROPERTY = "sourcegraph.controlFlow";
+    //file to write the import metrics to as JSON, see JsonMetricsSink
+    public static final String METRICS_PROPERTY = "sourcegraph.metrics";
+    //true: emit the metrics as JFR events too (only useful with a recording running, e.g. -XX:StartFlightRecording)
+    public static final String METRICS_JFR_PROPERTY = "sourcegraph.metrics.jfr";
 
     private GraphTranslator translator;
+    private volatile boolean twoStageParsing = false;
+    //one reusable parser per importing thread
+    private final ThreadLocal<JavaSourceParser> parsers = ThreadLocal.withInitial(JavaSourceParser::new);
+    private volatile MetricsRegistry metrics = new MetricsRegistry();
 
     public AntlrImport() {
         translator = new GraphTranslator();
     }
 
+    /* the table every path in this import's graph is interned in; it goes away with the import */
+    public PathTable getPathTable() {
+        return translator.getPathTable();
+    }
+
+    //SLL first, LL only on failure. Off by default, see JavaSourceParser
+    public void setTwoStageParsing(boolean twoStageParsing) {
+        this.twoStageParsing = twoStageParsing;
+    }
+
+    /* both counts come from the current metrics registry, so they start again from 0 after setMetrics */
+    public int getFilesParsed() {
+        return (int) metrics.counter(MetricsRegistry.FILES_PARSED);
+    }
+
+    /* number of files the SLL pass gave up on and that had to be reparsed with full LL */
+    public int getLLFallbackCount() {
+        return (int) metrics.counter(MetricsRegistry.FILES_LL_FALLBACK);
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
     public void importSource(CharStream input) {
-        Java9Lexer lexer = new Java9Lexer(input);
-        CommonTokenStream tokens = new CommonTokenStream((TokenSource) lexer);
-        Java9Parser parser = new Java9Parser(tokens);
-        Java9Parser.CompilationUnitContext tree = parser.compilationUnit(); // parse a compilationUnit
+        mergeFragment(translateFragment(input));
+    }
+
+    /* lexes, parses and translates a single compilation unit into its own translator. Touches no shared state,
+     * so it's safe to call from several threads at once */
+    public GraphTranslator translateFragment(CharStream input) {
+        JavaSourceParser parser = parsers.get();
+        var metrics = this.metrics;
+        var source = input.getSourceName();
+        var start = System.nanoTime();
+        Java9Parser.CompilationUnitContext tree = parser.parse(input, twoStageParsing); // parse a compilationUnit
+        var parsed = System.nanoTime();
+        metrics.increment(MetricsRegistry.FILES_PARSED);
+        if (parser.lastParseNeededFallback()) {
+            metrics.increment(MetricsRegistry.FILES_LL_FALLBACK);
+        }
 
-        ParseTreeWalker.DEFAULT.walk(translator, tree);  // initiate walk of tree with listener in use of default walker
+        GraphTranslator fragment = new GraphTranslator(source, translator.getPathTable());
+        ParseTreeWalker.DEFAULT.walk(fragment, tree);  // initiate walk of tree with listener in use of default walker
+        var lexNanos = parser.getLastLexNanos();
+        metrics.recordFile(Phase.Lex, source, lexNanos);
+        metrics.recordFile(Phase.Parse, source, parsed - start - lexNanos);
+        metrics.recordFile(Phase.Translate, source, System.nanoTime() - parsed);
+        return fragment;
+    }
+
+    public void mergeFragment(GraphTranslator fragment) {
+        translator.mergeFragment(fragment);
+    }
+
+    /* translates each file on a pool of threadCount workers. Fragments are merged in the order of the files
+     * list, so the resulting graph doesn't depend on the number of threads or on scheduling */
+    public void importFiles(List<String> files, int threadCount) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threadCount));
+        var timer = metrics.startPhase(Phase.Import);
+        try {
+            List<Future<GraphTranslator>> fragments = new ArrayList<>(files.size());
+            for (String file : files) {
+                fragments.add(executor.submit(() -> translateFragment(CharStreams.fromPath(Path.of(file)))));
+            }
+            for (int i=0;i<fragments.size();i++) {
+                try {
+                    mergeFragment(fragments.get(i).get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException)e.getCause();
+                    }
+                    throw new IllegalStateException("Failed to import "+files.get(i), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing", e);
+        } finally {
+            executor.shutdownNow();
+            timer.close();
+        }
     }
 
     public Collection<Node> getTopLevelNodes() {
         return translator.getTopLevelNodes();
     }
 
-    public void postProcess() {
-        Collection<Node> topLevelNodes = translator.getTopLevelNodes();
-        var typeCache = translator.getTypeCache();
-        for (Node top : topLevelNodes) {
-            top.preOrderTraverse(Optional.of(EdgeType.Contains), (maybeEdgeType, nodeRef, level) -> {
-                nodeRef.getNode().map(node -> {
-                    node.getOutboundEdges().forEach(edge -> {
-                        edge.resolveNodeRefs(typeCache);
-                    });
-                    return node;
-                });
-            });
+    public TypeIndex getTypeCache() {
+        return translator.getTypeCache();
+    }
+    public Map<Node, CompilationUnitScope> getScopes() {
+        return translator.getScopes();
+    }
+    public void removeTopLevelNode(Node node) {
+        translator.removeTopLevelNode(node);
+    }
+
+    /* compact, read-only copy of the current graph. Best taken after postProcess */
+    public FrozenGraph freeze() {
+        return FrozenGraph.freeze(translator.getTopLevelNodes());
+    }
+
+    /* writes the (resolved) graph out as a binary snapshot, see GraphSnapshot */
+    public void writeSnapshot(Path file) throws IOException {
+        GraphSnapshot.write(file, translator.getTopLevelNodes(), translator.getTypeCache());
+    }
+
+    /* adds the graph from a snapshot file instead of parsing source. The snapshot is already resolved */
+    public void loadSnapshot(Path file) throws IOException {
+        var snapshot = GraphSnapshot.read(file, translator.getPathTable());
+        for (var node : snapshot.getTopLevelNodes()) {
+            translator.addTopLevelNode(node);
+        }
+        translator.getTypeCache().putAll(snapshot.getTypeCache());
+    }
+
+    public ReferenceResolver.Stats resolveEdges(Collection<Edge> edges) {
+        return new ReferenceResolver(translator.getTypeCache(), translator.getScopes()).resolve(new ArrayList<>(edges));
+    }
+
+    public ReferenceResolver.Stats postProcess() {
+        var timer = metrics.startPhase(Phase.Resolve);
+        try {
+            var stats = new ReferenceResolver(translator.getTypeCache(), translator.getScopes()).resolveAll(translator.getTopLevelNodes());
+            metrics.recordResolve(stats);
+            return stats;
+        } finally {
+            timer.close();
         }
     }
 
@@ -76,69 +225,109 @@ public class AntlrImport {
                     System.out.println(nSpaces(level * SPACES_PER_TREE_LEVEL) + maybeEdgeType.map(Enum::toString).orElse("") + "->" + node.toString());
                 });
     }
-    /* TODO this sort of functionality really needs a different home
-    *   Also: Can't wait to feed this thing to itself: If this doesn't have a high CCN, we have a problem.
-    *   TODO: fix and remove the above note. */
     public String toDOT(Set<EdgeType> edgeTypesToSkip) {
-        var stringWriter = new StringWriter();
-        var writer = new java.io.PrintWriter(stringWriter);
-        writer.println("digraph danch_o_graph {");
-        Set<String> visitedPaths = new HashSet<String>();
-        preOrderEdgeTraverse(Optional.empty(),
-                (edge) -> {
-                    edge.getFrom().getNode().ifPresentOrElse(
-                            node -> AntlrImport.emitNodeDescription(node, visitedPaths, writer)
-                    , () -> {
-                        System.err.println("Found a 'from' node that isn't resolved!");
-                    });
-                    edge.getTo().getNode().ifPresentOrElse(
-                            node -> AntlrImport.emitNodeDescription(node, visitedPaths, writer),
-                            () -> emitStubDescription(edge.getTo().getNodePath(), visitedPaths, writer)
-                    );
-                    if (!edgeTypesToSkip.contains(edge.getType())) {
-                        writer.println("\"" + edge.getFrom().getNodePath() + "\"" + "->" + "\"" + edge.getTo().getNodePath() + "\"" + " [label=\"" + edge.getType().toString() + "\"];");
-                    }
-                }
-        );
-        writer.println("}");
-        writer.flush();
-        return stringWriter.toString();
+        var out = new ByteArrayOutputStream();
+        try {
+            new DotExporter(new ExportOptions().hideEdgeTypes(edgeTypesToSkip)).export(translator.getTopLevelNodes(), out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
     }
 
-    private static void emitNodeDescription(Node node, Set<String> visitedPaths, PrintWriter writer) {
-        if (!visitedPaths.contains(node.getPath())) {
-            visitedPaths.add(node.getPath());
-            writer.println("node [label=\"" + node.getType() + ":" + node.getName() + "\"]; \"" + node.getPath() + "\";");
+    public void export(Path file, ExportOptions options) throws IOException {
+        var timer = metrics.startPhase(Phase.Export);
+        try {
+            GraphExporter.forFile(file, options).export(translator.getTopLevelNodes(), file);
+        } finally {
+            timer.close();
         }
     }
 
-    private static void emitStubDescription(String nodePath, Set<String> visitedPaths, PrintWriter writer) {
-        if (!visitedPaths.contains(nodePath)) {
-            visitedPaths.add(nodePath);
-            writer.println("node [label=\"Stub:"+nodePath+"\"]; \"" + nodePath + "\";");
+    /* counts the graph as it is now (see MetricsRegistry.countGraph) and hands everything to the sinks */
+    public void publishMetrics() throws IOException {
+        metrics.countGraph(translator.getTopLevelNodes());
+        metrics.publish();
+    }
+
+    /* measures every method and leaves the numbers as attributes on the method nodes */
+    public List<MethodMetrics> computeControlFlowMetrics() {
+        return new ControlFlowMetrics().measureAll(translator.getTopLevelNodes());
+    }
+
+    /* prints every dependency cycle between nodes of the given type; true if there are none */
+    public boolean checkCycles(NodeType level) {
+        var contracted = new Contraction(freeze()).at(level);
+        var components = new CycleAnalysis(EdgeType.DependsOn, EdgeType.References, EdgeType.Calls).analyze(contracted);
+        for (var component : components.cyclicComponents()) {
+            System.out.println("Cycle between " + components.size(component) + " " + level + " nodes: "
+                    + components.describeCycle(component));
         }
+        return !components.hasCycles();
     }
 
     public static void main(String args[]) throws IOException  {
 
         AntlrImport antlrImport = new AntlrImport();
+        antlrImport.setTwoStageParsing(Boolean.getBoolean(TWO_STAGE_PROPERTY));
+        String metricsFile = System.getProperty(METRICS_PROPERTY);
+        if (metricsFile != null) {
+            antlrImport.getMetrics().addSink(new JsonMetricsSink(Path.of(metricsFile)));
+        }
+        if (Boolean.getBoolean(METRICS_JFR_PROPERTY)) {
+            antlrImport.getMetrics().addSink(new JfrMetricsSink());
+        }
 
         //C:\Users\danch\source\importer\src\main\java
         Path inputDir = Path.of("src/test_source/java");
-        List<String> allJavaFiles = getAllJavaFiles(inputDir);
+        String snapshotFile = System.getProperty(SNAPSHOT_PROPERTY);
+        if (snapshotFile != null && Path.of(snapshotFile).toFile().exists()) {
+            antlrImport.loadSnapshot(Path.of(snapshotFile));
+        } else {
+            List<String> allJavaFiles = getAllJavaFiles(inputDir);
 
-        for (String file: allJavaFiles) {
-            CharStream input = CharStreams.fromPath(Path.of(file));
-            antlrImport.importSource(input);
-        }
+            int threads = Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+            antlrImport.importFiles(allJavaFiles, threads);
+            System.out.println("Parsed " + antlrImport.getFilesParsed() + " files, " + antlrImport.getLLFallbackCount() + " needed the LL fallback");
 
-        antlrImport.postProcess();
-        antlrImport.textDumpContainsGraph();
+            var stats = antlrImport.postProcess();
+            System.out.println("References: " + stats);
+            if (snapshotFile != null) {
+                antlrImport.writeSnapshot(Path.of(snapshotFile));
+            }
+        }
+        String couplingLevel = System.getProperty(COUPLING_PROPERTY);
+        if (couplingLevel != null) {
+            new CouplingAnalysis().analyze(antlrImport.freeze(), NodeType.valueOf(couplingLevel)).print(System.out, 20);
+        }
+        String cycleLevel = System.getProperty(CYCLE_CHECK_PROPERTY);
+        if (cycleLevel != null && !antlrImport.checkCycles(NodeType.valueOf(cycleLevel))) {
+            antlrImport.publishMetrics();
+            System.exit(1);
+        }
+        Integer worstMethods = Integer.getInteger(CONTROL_FLOW_PROPERTY);
+        if (worstMethods != null) {
+            var metrics = antlrImport.computeControlFlowMetrics();
+            metrics.sort(Comparator.comparingInt(MethodMetrics::getCyclomaticComplexity).reversed());
+            System.out.println("Measured " + metrics.size() + " methods");
+            for (var method : metrics.subList(0, Math.min(worstMethods, metrics.size()))) {
+                System.out.println("  " + method);
+            }
+        }
+        String exportFile = System.getProperty(EXPORT_PROPERTY);
+        if (exportFile != null) {
+            antlrImport.export(Path.of(exportFile), new ExportOptions());
+        } else {
+            antlrImport.textDumpContainsGraph();
+        }
+        antlrImport.publishMetrics();
     }
 
-    static List<String> getAllJavaFiles(Path inputDir) {
+    public static List<String> getAllJavaFiles(Path inputDir) {
         File[] theseFiles = inputDir.toFile().listFiles((File file) ->
             file.isDirectory() || file.getName().endsWith("java"));
+        //listFiles makes no promises about order, and import order determines graph order
+        Arrays.sort(theseFiles);
         List<String> fileNames = new LinkedList<String>();
         for (int i=0;i<theseFiles.length;i++) {
             if (theseFiles[i].isDirectory()) {
@@ -2,14 +2,16 @@ package com.nvisia.sourcegraph;
 
 import com.nvisia.sourcegraph.graph.Node;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.Stack;
 
 public class ContainerNodeStack {
-    private Stack<Node> stack = new Stack<>();
-    private Set<Node> roots = new HashSet<>();
+    //single threaded, so no need for Stack's locking
+    private ArrayDeque<Node> stack = new ArrayDeque<>();
+    //insertion ordered so top level nodes come back in import order
+    private Set<Node> roots = new LinkedHashSet<>();
 
     public boolean isEmpty() {
         return stack.isEmpty();
@@ -20,13 +22,21 @@ public class ContainerNodeStack {
         }
         stack.push(node);
     }
+    //throws on an empty stack, like Stack.peek did
     public Node peek() {
-        return stack.peek();
+        return stack.element();
     }
     public Node pop() {
         return stack.pop();
     }
 
+    public void addRoot(Node node) {
+        roots.add(node);
+    }
+    public void removeRoot(Node node) {
+        roots.remove(node);
+    }
+
     public Collection<Node> getRootNodes() {
         return roots;
     }
@@ -0,0 +1,375 @@
+package com.nvisia.sourcegraph;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/* Writes synthetic, but plausible, Java source trees for scale testing. The same settings and seed always give
+ * the same files, byte for byte.
+ *
+ * Packages form a tree packageFanOut wide and packageDepth deep under rootPackage; every package holds
+ * classesPerPackage classes. A class has fields typed with other generated classes (from another package with
+ * probability crossPackageRatio, imported), a few java.util imports, and methods of a common shape,
+ *   public int methodN(int a, String s)
+ * whose bodies mix declarations, assignments, calls through the fields, ifs and loops nested up to loopNesting
+ * deep. Calls are always qualified (field.methodN(..), this.methodN(..)) and only target methods that exist, so
+ * the output compiles as well as parses.
+ *
+ *   new CorpusGenerator().seed(42).packageFanOut(8).packageDepth(3).classesPerPackage(20).write(dir)
+ */
+public class CorpusGenerator {
+    private static final String[] UTIL_TYPES = {"List", "ArrayList", "Map", "HashMap", "Set", "HashSet"};
+
+    private long seed = 1;
+    private String rootPackage = "gen";
+    private int packageFanOut = 4;
+    private int packageDepth = 2;
+    private int classesPerPackage = 8;
+    private int fieldsPerClass = 3;
+    private int minMethods = 2;
+    private int maxMethods = 6;
+    private int minStatements = 3;
+    private int maxStatements = 12;
+    private int loopNesting = 2;
+    private int utilImports = 2;
+    private double crossPackageRatio = 0.3;
+
+    /* a generated compilation unit; path is relative to the source root */
+    public static class SourceFile {
+        private final String path;
+        private final String text;
+
+        SourceFile(String path, String text) {
+            this.path = path;
+            this.text = text;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return path;
+        }
+    }
+
+    public CorpusGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public CorpusGenerator rootPackage(String rootPackage) {
+        if (rootPackage.isEmpty() || rootPackage.startsWith(".") || rootPackage.endsWith(".")) {
+            throw new IllegalArgumentException("Not a package name: '" + rootPackage + "'");
+        }
+        this.rootPackage = rootPackage;
+        return this;
+    }
+
+    /* subpackages per package */
+    public CorpusGenerator packageFanOut(int packageFanOut) {
+        this.packageFanOut = atLeast(1, packageFanOut, "packageFanOut");
+        return this;
+    }
+
+    /* levels of packages below the root package; 0 puts every class in the root package */
+    public CorpusGenerator packageDepth(int packageDepth) {
+        this.packageDepth = atLeast(0, packageDepth, "packageDepth");
+        return this;
+    }
+
+    public CorpusGenerator classesPerPackage(int classesPerPackage) {
+        this.classesPerPackage = atLeast(1, classesPerPackage, "classesPerPackage");
+        return this;
+    }
+
+    public CorpusGenerator fieldsPerClass(int fieldsPerClass) {
+        this.fieldsPerClass = atLeast(0, fieldsPerClass, "fieldsPerClass");
+        return this;
+    }
+
+    public CorpusGenerator methodsPerClass(int min, int max) {
+        this.minMethods = atLeast(1, min, "methodsPerClass");
+        this.maxMethods = atLeast(min, max, "methodsPerClass");
+        return this;
+    }
+
+    /* statements per method body, counted at the top level of the body */
+    public CorpusGenerator statementsPerMethod(int min, int max) {
+        this.minStatements = atLeast(1, min, "statementsPerMethod");
+        this.maxStatements = atLeast(min, max, "statementsPerMethod");
+        return this;
+    }
+
+    /* how deep loops (and ifs) may nest inside each other; 0 means straight line code */
+    public CorpusGenerator loopNesting(int loopNesting) {
+        this.loopNesting = atLeast(0, loopNesting, "loopNesting");
+        return this;
+    }
+
+    /* java.util imports per class, on top of the imports the fields need */
+    public CorpusGenerator utilImports(int utilImports) {
+        this.utilImports = atLeast(0, Math.min(utilImports, UTIL_TYPES.length), "utilImports");
+        return this;
+    }
+
+    /* probability that a field refers to a class in another package */
+    public CorpusGenerator crossPackageRatio(double crossPackageRatio) {
+        if (!(crossPackageRatio >= 0 && crossPackageRatio <= 1)) {
+            throw new IllegalArgumentException("crossPackageRatio must be in [0, 1]: " + crossPackageRatio);
+        }
+        this.crossPackageRatio = crossPackageRatio;
+        return this;
+    }
+
+    public int packageCount() {
+        var count = 1;
+        var width = 1;
+        for (int level=0;level<packageDepth;level++) {
+            width *= packageFanOut;
+            count += width;
+        }
+        return count;
+    }
+
+    public int classCount() {
+        return packageCount() * classesPerPackage;
+    }
+
+    public List<SourceFile> generate() {
+        var random = new Random(seed);
+        var packages = new ArrayList<String>();
+        addPackages(rootPackage, 0, packages);
+
+        //plan every class first, so calls only go to methods that exist
+        var classes = new ArrayList<ClassPlan>();
+        for (int p=0;p<packages.size();p++) {
+            for (int c=0;c<classesPerPackage;c++) {
+                classes.add(new ClassPlan(p, packages.get(p), "Type" + c, between(random, minMethods, maxMethods)));
+            }
+        }
+        for (var plan : classes) {
+            for (int f=0;f<fieldsPerClass;f++) {
+                plan.fields.add(pickFieldType(random, plan, classes));
+            }
+        }
+        var files = new ArrayList<SourceFile>(classes.size());
+        for (var plan : classes) {
+            files.add(new SourceFile(plan.pkg.replace('.', '/') + "/" + plan.name + ".java", new ClassWriter(random, plan).write()));
+        }
+        return files;
+    }
+
+    /* writes the corpus under sourceRoot, one directory per package, and returns the files in generation order */
+    public List<Path> write(Path sourceRoot) throws IOException {
+        var written = new ArrayList<Path>();
+        for (var file : generate()) {
+            var path = sourceRoot.resolve(file.getPath());
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, file.getText(), StandardCharsets.UTF_8);
+            written.add(path);
+        }
+        return written;
+    }
+
+    private void addPackages(String pkg, int level, List<String> packages) {
+        packages.add(pkg);
+        if (level < packageDepth) {
+            for (int i=0;i<packageFanOut;i++) {
+                addPackages(pkg + ".p" + i, level + 1, packages);
+            }
+        }
+    }
+
+    private ClassPlan pickFieldType(Random random, ClassPlan owner, List<ClassPlan> classes) {
+        var packages = classes.size() / classesPerPackage;
+        var pkg = owner.pkgIndex;
+        if (packages > 1 && random.nextDouble() < crossPackageRatio) {
+            pkg = (pkg + 1 + random.nextInt(packages - 1)) % packages;
+        }
+        return classes.get(pkg * classesPerPackage + random.nextInt(classesPerPackage));
+    }
+
+    private static int between(Random random, int min, int max) {
+        return min + random.nextInt(max - min + 1);
+    }
+
+    private static int atLeast(int min, int value, String setting) {
+        if (value < min) {
+            throw new IllegalArgumentException(setting + " must be >= " + min + ": " + value);
+        }
+        return value;
+    }
+
+    private static class ClassPlan {
+        private final int pkgIndex;
+        private final String pkg;
+        private final String name;
+        private final int methods;
+        private final List<ClassPlan> fields = new ArrayList<>();
+
+        private ClassPlan(int pkgIndex, String pkg, String name, int methods) {
+            this.pkgIndex = pkgIndex;
+            this.pkg = pkg;
+            this.name = name;
+            this.methods = methods;
+        }
+
+        private String qualifiedName() {
+            return pkg + "." + name;
+        }
+    }
+
+    /* Renders one class; locals are numbered per method so names never clash. The first statement of a block (method
+     * bodies included) is never a declaration: GraphTranslator.exitBlock can't cope with a block that has only
+     * declarations and returns in it */
+    private class ClassWriter {
+        private final Random random;
+        private final ClassPlan plan;
+        private final StringBuilder out = new StringBuilder(4096);
+        private int locals;
+        private int loopVariables;
+
+        private ClassWriter(Random random, ClassPlan plan) {
+            this.random = random;
+            this.plan = plan;
+        }
+
+        private String write() {
+            out.append("package ").append(plan.pkg).append(";\n\n");
+            //simple name -> the class it means in this file; a class whose simple name is taken is written qualified
+            var visible = new HashMap<String, ClassPlan>();
+            visible.put(plan.name, plan);
+            var imports = new TreeSet<String>();
+            for (var field : plan.fields) {
+                if (!field.pkg.equals(plan.pkg) && visible.putIfAbsent(field.name, field) == null) {
+                    imports.add(field.qualifiedName());
+                }
+            }
+            imports.add("java.util.List");
+            imports.add("java.util.ArrayList");
+            var util = new ArrayList<>(Arrays.asList(UTIL_TYPES));
+            Collections.shuffle(util, random);
+            for (int i=0;i<utilImports;i++) {
+                imports.add("java.util." + util.get(i));
+            }
+            for (var imp : imports) {
+                out.append("import ").append(imp).append(";\n");
+            }
+            out.append("\npublic class ").append(plan.name).append(" {\n");
+            for (int f=0;f<plan.fields.size();f++) {
+                var type = plan.fields.get(f);
+                var typeName = visible.getOrDefault(type.name, type) == type ? type.name : type.qualifiedName();
+                out.append("    private ").append(typeName).append(" ref").append(f).append(";\n");
+            }
+            out.append("    private List<String> names = new ArrayList<>();\n");
+            out.append("    private int count;\n");
+            for (int m=0;m<plan.methods;m++) {
+                writeMethod(m);
+            }
+            out.append("}\n");
+            return out.toString();
+        }
+
+        private void writeMethod(int m) {
+            locals = 0;
+            loopVariables = 0;
+            out.append("\n    public int method").append(m).append("(int a, String s) {\n");
+            out.append("        int total = a;\n");
+            var statements = between(random, minStatements, maxStatements);
+            for (int i=0;i<statements;i++) {
+                writeStatement(2, 0, i > 0);
+            }
+            out.append("        return total;\n");
+            out.append("    }\n");
+        }
+
+        private void writeStatement(int indent, int nesting, boolean declaration) {
+            var choice = random.nextInt(nesting < loopNesting ? 9 : 5);
+            if (choice == 0 && !declaration) {
+                choice = 1 + random.nextInt(4);
+            }
+            switch (choice) {
+                case 0:
+                    line(indent, "int v" + (locals++) + " = total * " + (1 + random.nextInt(9)) + " + a;");
+                    break;
+                case 1:
+                    line(indent, "total = total + " + (1 + random.nextInt(100)) + ";");
+                    break;
+                case 2:
+                    line(indent, "this.count++;");
+                    break;
+                case 3:
+                case 4:
+                    line(indent, call() + ";");
+                    break;
+                case 5:
+                    line(indent, "for (int i" + nesting + " = 0; i" + nesting + " < a; i" + nesting + "++) {");
+                    block(indent, nesting);
+                    break;
+                case 6:
+                    line(indent, "for (String n" + (loopVariables++) + " : names) {");
+                    block(indent, nesting);
+                    break;
+                case 7:
+                    line(indent, "while (total > " + (10 + random.nextInt(1000)) + ") {");
+                    line(indent + 1, "total = total - " + (1 + random.nextInt(7)) + ";");
+                    block(indent, nesting);
+                    break;
+                default:
+                    line(indent, "if (total > " + random.nextInt(100) + ") {");
+                    writeStatement(indent + 1, nesting + 1, false);
+                    line(indent, "} else {");
+                    line(indent + 1, "this.names.add(s);");
+                    line(indent, "}");
+                    break;
+            }
+        }
+
+        private void block(int indent, int nesting) {
+            var statements = 1 + random.nextInt(3);
+            for (int i=0;i<statements;i++) {
+                writeStatement(indent + 1, nesting + 1, i > 0);
+            }
+            line(indent, "}");
+        }
+
+        private String call() {
+            if (plan.fields.isEmpty() || random.nextInt(4) == 0) {
+                return "total = this.method" + random.nextInt(plan.methods) + "(total - 1, s)";
+            }
+            var f = random.nextInt(plan.fields.size());
+            var target = plan.fields.get(f);
+            return "total = total + ref" + f + ".method" + random.nextInt(target.methods) + "(total, s)";
+        }
+
+        private void line(int indent, String text) {
+            for (int i=0;i<indent;i++) {
+                out.append("    ");
+            }
+            out.append(text).append('\n');
+        }
+    }
+
+    /* CorpusGenerator <output dir> [seed] [packageFanOut] [packageDepth] [classesPerPackage] */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: CorpusGenerator <output dir> [seed] [packageFanOut] [packageDepth] [classesPerPackage]");
+            System.exit(2);
+        }
+        var generator = new CorpusGenerator();
+        if (args.length > 1) generator.seed(Long.parseLong(args[1]));
+        if (args.length > 2) generator.packageFanOut(Integer.parseInt(args[2]));
+        if (args.length > 3) generator.packageDepth(Integer.parseInt(args[3]));
+        if (args.length > 4) generator.classesPerPackage(Integer.parseInt(args[4]));
+        var files = generator.write(Path.of(args[0]));
+        System.out.println("Wrote " + files.size() + " classes in " + generator.packageCount() + " packages to " + args[0]);
+    }
+}
@@ -1,12 +1,29 @@
 package com.nvisia.sourcegraph;
 
-import com.nvisia.sourcegraph.graph.Node;
-import org.apache.commons.math3.linear.ArrayRealVector;
+import com.nvisia.sourcegraph.graph.EdgeType;
+import com.nvisia.sourcegraph.graph.FrozenGraph;
+import com.nvisia.sourcegraph.graph.NodeType;
+import com.nvisia.sourcegraph.spectral.DiffusionEngine;
+import com.nvisia.sourcegraph.spectral.GramSeries;
+import com.nvisia.sourcegraph.spectral.GraphLaplacian;
+import com.nvisia.sourcegraph.spectral.LanczosSolver;
+import com.nvisia.sourcegraph.spectral.LaplacianBuilder;
+import com.nvisia.sourcegraph.spectral.SparseMatrix;
 import org.apache.commons.math3.linear.EigenDecomposition;
 import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.RealMatrix;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/* Random walk normalized Laplacian experiments. With no arguments this runs on the small hand made graph below;
+ * given a source directory it imports it and runs on the References/Calls/DependsOn graph of the code instead. */
 public class ExpRWNLaplacian {
+    static final int SPECTRUM_SIZE = 6;
+
     static double adjacency[][] = new double[][] {
             {0.0, 1.0, 1.0, 0.0, 0.0},
             {0.0, 0.0, 0.0, 1.0, 0.0},
@@ -14,40 +31,140 @@ public class ExpRWNLaplacian {
             {0.0, 0.0, 1.0, 0.0, 0.0},
             {0.0, 0.0, 1.0, 0.0, 0.0}
     };
-    static double nodeDegree[] = new double[] {2.0, 1.0, 2.0, 0.0, 1.0};
-    static double nodeDegreeInv[] = new double[] {0.5, 1.0, 0.5, 0.0, 1.0};
     static double startLocation[] = new double[] {1.0, 0.0, 0.0, 0.0, 0.0};
 
-    public static void main(String[] args) {
-        var adjMatrix = MatrixUtils.createRealMatrix(adjacency);
-        var degreeMatrix = MatrixUtils.createRealDiagonalMatrix(nodeDegree);
-        var degreeInvert = MatrixUtils.createRealDiagonalMatrix(nodeDegreeInv);
-        var initialLocation = new ArrayRealVector(startLocation);
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            runExample();
+        } else {
+            runOnSource(Path.of(args[0]));
+        }
+    }
 
-        var laplacian = degreeMatrix.subtract(adjMatrix);
-        dumpMatrix("Laplacian", laplacian);
+    private static void runExample() {
+        var builder = new SparseMatrix.Builder(adjacency.length, adjacency.length);
+        for (int i=0;i<adjacency.length;i++) {
+            for (int j=0;j<adjacency[i].length;j++) {
+                if (adjacency[i][j] != 0.0) {
+                    builder.add(i, j, adjacency[i][j]);
+                }
+            }
+        }
+        var adjMatrix = builder.build();
+        var degree = new double[adjMatrix.rows()];
+        var degreeInv = new double[adjMatrix.rows()];
+        for (int i=0;i<degree.length;i++) {
+            degree[i] = adjMatrix.rowSum(i);
+            degreeInv[i] = degree[i] > 0 ? 1.0 / degree[i] : 0.0;
+        }
 
-        var rwnLaplac = degreeInvert.multiply(laplacian);
-        dumpMatrix("RW Normalized", rwnLaplac);
+        var laplacian = adjMatrix.subtractFromDiagonal(degree);
+        dumpMatrix("Laplacian", laplacian.toRealMatrix());
 
-        var eigenDecomp = new EigenDecomposition(rwnLaplac);
-        var eigenValues = eigenDecomp.getRealEigenvalues();
-        for (int i=0;i<eigenValues.length;i++) {
-            var eigenVector = eigenDecomp.getEigenvector(i);
-            System.out.println(Double.toString(eigenValues[i]));
+        var rwnLaplac = laplacian.scaleRows(degreeInv);
+        dumpMatrix("RW Normalized", rwnLaplac.toRealMatrix());
+        dumpEigenvalues(rwnLaplac);
+
+        dumpMatrix("Initial Value", MatrixUtils.createRowRealMatrix(startLocation));
+        var location = startLocation;
+        for (int step=1;step<=3;step++) {
+            location = diffuse(rwnLaplac, location);
+            dumpMatrix("Probability After " + step + (step == 1 ? " step" : " steps"), MatrixUtils.createRowRealMatrix(location));
         }
+    }
 
-        dumpMatrix("Initial Value", MatrixUtils.createRowRealMatrix(initialLocation.toArray()));
-        var afterOne = rwnLaplac.preMultiply(initialLocation).subtract(initialLocation);
-        dumpMatrix("Probability After 1 step", MatrixUtils.createRowRealMatrix(afterOne.toArray()));
+    private static void runOnSource(Path sourceDir) throws Exception {
+        var importer = new AntlrImport();
+        importer.importFiles(AntlrImport.getAllJavaFiles(sourceDir), Runtime.getRuntime().availableProcessors());
+        importer.postProcess();
+        var graph = importer.freeze();
+        GraphLaplacian laplacian = new LaplacianBuilder()
+                .weight(EdgeType.References, 1.0)
+                .weight(EdgeType.Calls, 1.0)
+                .weight(EdgeType.DependsOn, 1.0)
+                .build(graph);
+        System.out.println("Nodes: " + laplacian.size() + " of " + graph.nodeCount()
+                + ", non-zeros: " + laplacian.adjacency().nonZeros());
+        if (laplacian.size() == 0) {
+            return;
+        }
+        //dense eigen decomposition is O(n^3), the low end of the spectrum is all we're after
+        if (laplacian.size() > 1) {
+            var spectrum = laplacian.lowSpectrum(new LanczosSolver(), Math.min(SPECTRUM_SIZE, laplacian.size() - 1));
+            System.out.println("Low spectrum (0 left out), " + spectrum);
+        }
 
-        //var afterTwo = (rwnLaplac.multiply(rwnLaplac)).preMultiply(initialLocation);
-        var afterTwo = rwnLaplac.preMultiply(afterOne).subtract(afterOne);
-        dumpMatrix("Probability After 2 steps", MatrixUtils.createRowRealMatrix(afterTwo.toArray()));
+        //walk from the best connected node
+        var start = 0;
+        for (int row=1;row<laplacian.size();row++) {
+            if (laplacian.degree(row) > laplacian.degree(start)) {
+                start = row;
+            }
+        }
+        System.out.println("Walking from " + graph.path(laplacian.nodeId(start)));
+        DiffusionEngine.randomWalk(laplacian).run(new double[][] {laplacian.pointMass(laplacian.nodeId(start))}, 3, (step, p) -> {
+            if (step > 0) {
+                System.out.println("After " + step + ":");
+                for (int row=0;row<p.length();row++) {
+                    if (p.get(row, 0) > 0.0) {
+                        System.out.println("  " + graph.path(laplacian.nodeId(row)) + "\t" + p.get(row, 0));
+                    }
+                }
+            }
+        });
 
-        //var afterThree = (rwnLaplac.multiply(rwnLaplac).multiply(rwnLaplac)).preMultiply(initialLocation);
-        var afterThree = rwnLaplac.preMultiply(afterTwo).subtract(afterTwo);
-        dumpMatrix("Probability After 3 steps", MatrixUtils.createRowRealMatrix(afterThree.toArray()));
+        //<L^n f, L^n g> for every pair of packages
+        var modules = new TreeMap<String, List<Integer>>();
+        for (int row=0;row<laplacian.size();row++) {
+            var pkg = packageOf(graph, laplacian.nodeId(row));
+            if (pkg >= 0) {
+                modules.computeIfAbsent(graph.path(pkg), k -> new ArrayList<>()).add(laplacian.nodeId(row));
+            }
+        }
+        var names = new ArrayList<>(modules.keySet());
+        var indicators = new double[names.size()][];
+        for (int i=0;i<indicators.length;i++) {
+            indicators[i] = laplacian.indicator(modules.get(names.get(i)).stream().mapToInt(Integer::intValue).toArray());
+        }
+        var series = new GramSeries();
+        DiffusionEngine.laplacian(laplacian).run(indicators, 3, series);
+        for (int i=0;i<names.size();i++) {
+            for (int j=i + 1;j<names.size();j++) {
+                System.out.println(names.get(i) + " ~ " + names.get(j) + "\t" + Arrays.toString(series.pair(i, j)));
+            }
+        }
+    }
+
+    //nearest package up the contains tree, -1 if there is none
+    private static int packageOf(FrozenGraph graph, int node) {
+        while (node >= 0 && graph.nodeType(node) != NodeType.Package) {
+            var parent = -1;
+            for (int slot=graph.inStart(node);slot<graph.inEnd(node);slot++) {
+                if (graph.edgeType(graph.inEdge(slot)) == EdgeType.Contains) {
+                    parent = graph.inSource(slot);
+                    break;
+                }
+            }
+            node = parent;
+        }
+        return node;
+    }
+
+    /* v L_rw - v, which is -v P */
+    private static double[] diffuse(SparseMatrix rwnLaplac, double[] v) {
+        var next = rwnLaplac.preMultiply(v);
+        for (int i=0;i<next.length;i++) {
+            next[i] -= v[i];
+        }
+        return next;
+    }
+
+    private static void dumpEigenvalues(SparseMatrix m) {
+        var eigenDecomp = new EigenDecomposition(m.toRealMatrix());
+        var eigenValues = eigenDecomp.getRealEigenvalues();
+        for (int i=0;i<eigenValues.length;i++) {
+            System.out.println(Double.toString(eigenValues[i]));
+        }
     }
 
     private static void dumpMatrix(String title, RealMatrix m) {
@@ -1,43 +1,112 @@
 package com.nvisia.sourcegraph;
 
 import com.nvisia.sourcegraph.antlr.Java9Parser;
+import com.nvisia.sourcegraph.graph.CompilationUnitScope;
 import com.nvisia.sourcegraph.graph.EdgeType;
 import com.nvisia.sourcegraph.graph.Node;
 import com.nvisia.sourcegraph.graph.NodeRef;
 import com.nvisia.sourcegraph.graph.NodeType;
+import com.nvisia.sourcegraph.graph.PathTable;
+import com.nvisia.sourcegraph.graph.TypeIndex;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
 import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
 
+import java.lang.System.Logger.Level;
 import java.util.*;
 
+/* Builds the graph from parse tree events. The callbacks run once per rule, so they stay cheap: rule text is cut
+ * out of the source by token offsets (see text) rather than through ctx.getText(), which builds a string for
+ * every rule in the subtree; path segments are put together in one reused buffer; nothing is created that
+ * doesn't end up in the graph; and diagnostics go through a System.Logger, only formatted when enabled. */
 public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListener {
-    private Map<String, Node> typeNodes = new TreeMap<>();
+    private static final System.Logger LOG = System.getLogger(GraphTranslator.class.getName());
+
+    //every path this translator builds goes in here; fragments of one import share their import's table
+    private final PathTable paths;
+    private TypeIndex typeNodes = new TypeIndex();
     private ContainerNodeStack containerNodeStack = new ContainerNodeStack();
-    private Stack<Scope> scopeStack = new Stack<>();
+    private ArrayDeque<Scope> scopeStack = new ArrayDeque<>();
+    //imports etc. of the compilation unit being translated, and the top level types that use them
+    private CompilationUnitScope unitScope = new CompilationUnitScope(null);
+    private Map<Node, CompilationUnitScope> scopes = new IdentityHashMap<>();
+    //branch points seen so far in each method being translated, innermost last
+    private ArrayDeque<int[]> decisionCounts = new ArrayDeque<>();
+
+    public static final String STATEMENT_ID_PREFIX = "<stmt>";
+    //attribute of a method node: how many branches (if, loops, cases, catch, &&, ||, ?:) its body has
+    public static final String DECISION_POINTS = "decisionPoints";
+    //short, stable id of the compilation unit being translated, used in the paths of anonymous nodes
+    private final String sourceId;
+    //the input being walked, as one string, for text(); built the first time it's needed
+    private CharStream sourceStream;
+    private String source;
+    private final StringBuilder textBuffer = new StringBuilder(128);
 
     public GraphTranslator() {
+        this(IntStream.UNKNOWN_SOURCE_NAME);
+    }
+    public GraphTranslator(String sourceName) {
+        this(sourceName, new PathTable());
+    }
+    public GraphTranslator(String sourceName, PathTable paths) {
+        this.paths = paths;
+        sourceId = Integer.toHexString(sourceName.hashCode());
+    }
+
+    public PathTable getPathTable() {
+        return paths;
     }
 
     public Collection<Node> getTopLevelNodes() {
         return containerNodeStack.getRootNodes();
     }
-    public Map<String, Node> getTypeCache() {
+    public TypeIndex getTypeCache() {
         return typeNodes;
     }
+    public Map<Node, CompilationUnitScope> getScopes() {
+        return scopes;
+    }
+    public void addTopLevelNode(Node node) {
+        containerNodeStack.addRoot(node);
+    }
+    public void removeTopLevelNode(Node node) {
+        containerNodeStack.removeRoot(node);
+    }
 
-    private void dumpChildren(ParserRuleContext ctx) {
-        for (int i=0;i<ctx.getChildCount();i++) {
-            var child = ctx.getChild(i);
-            System.out.println("\tchild: "+child.getText());
+    /* folds a translator that was run over a single compilation unit into this one. Package nodes are shared
+     * between compilation units, so a fragment's package is absorbed into ours if we already have it */
+    public void mergeFragment(GraphTranslator fragment) {
+        if (fragment.paths != paths) {
+            throw new IllegalArgumentException("Fragment was translated into another path table");
+        }
+        for (var root : fragment.getTopLevelNodes()) {
+            var existing = typeNodes.get(root.getPath());
+            if (existing != null && root.getType() == NodeType.Package && existing.getType() == NodeType.Package) {
+                existing.absorb(root);
+            } else {
+                containerNodeStack.addRoot(root);
+            }
         }
+        for (var entry : fragment.getTypeCache().entrySet()) {
+            typeNodes.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+        scopes.putAll(fragment.getScopes());
     }
 
     @Override
     public void enterPackageDeclaration(Java9Parser.PackageDeclarationContext ctx) {
-        System.out.println("enterPackageDeclaration->"+ctx.getText());
-        var packageName = ctx.packageName().getText();
+        var packageName = text(ctx.packageName());
+        if (LOG.isLoggable(Level.DEBUG)) {
+            LOG.log(Level.DEBUG, "enterPackageDeclaration->" + packageName);
+        }
         var packageNode = typeNodes.get(packageName);
         if (packageNode == null) {
-            packageNode = new Node(packageName, packageName, NodeType.Package);
+            packageNode = new Node(paths, packageName, packageName, NodeType.Package);
             typeNodes.put(packageName, packageNode);
         }
         containerNodeStack.push(packageNode);
@@ -45,18 +114,37 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
 
     @Override
     public void exitPackageDeclaration(Java9Parser.PackageDeclarationContext ctx) {
-        System.out.println("enterPackageDeclaration->"+ctx.getText());
-        var packageName = ctx.packageName().getText();
+        if (LOG.isLoggable(Level.TRACE)) {
+            LOG.log(Level.TRACE, "exitPackageDeclaration->" + text(ctx.packageName()));
+        }
+    }
+
+    @Override
+    public void enterOrdinaryCompilation(Java9Parser.OrdinaryCompilationContext ctx) {
+        var packageDeclaration = ctx.packageDeclaration();
+        unitScope = new CompilationUnitScope(packageDeclaration != null ? text(packageDeclaration.packageName()) : null);
     }
 
     @Override
     public void enterImportDeclaration(Java9Parser.ImportDeclarationContext ctx) {
+        String dependency;
         if (ctx.singleTypeImportDeclaration()!=null) {
-            var singleImp = ctx.singleTypeImportDeclaration();
-            var typeName = singleImp.typeName().getText();
-            containerNodeStack.peek().createOutboundEdge(NodeRef.of(typeName), EdgeType.DependsOn);
+            dependency = text(ctx.singleTypeImportDeclaration().typeName());
+            unitScope.addSingleTypeImport(dependency);
+        } else if (ctx.typeImportOnDemandDeclaration()!=null) {
+            dependency = text(ctx.typeImportOnDemandDeclaration().packageOrTypeName());
+            unitScope.addOnDemandImport(dependency);
+        } else if (ctx.singleStaticImportDeclaration()!=null) {
+            var staticImp = ctx.singleStaticImportDeclaration();
+            dependency = text(staticImp.typeName());
+            unitScope.addSingleStaticImport(dependency, text(staticImp.identifier()));
+        } else {
+            dependency = text(ctx.staticImportOnDemandDeclaration().typeName());
+            unitScope.addStaticOnDemandImport(dependency);
+        }
+        if (!containerNodeStack.isEmpty()) {
+            containerNodeStack.peek().createOutboundEdge(NodeRef.of(paths, dependency), EdgeType.DependsOn);
         }
-        //TODO: other 3 types
     }
 
     @Override
@@ -68,10 +156,14 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
         if (!containerNodeStack.isEmpty()) {
             var containingNode = containerNodeStack.peek();
             var fqn = containingNode.getName() + "." + className;
-            classNode = new Node(fqn, fqn, NodeType.Type);
+            classNode = new Node(paths, fqn, fqn, NodeType.Type);
             containingNode.createOutboundEdge(NodeRef.of(classNode), EdgeType.Contains);
+            if (containingNode.getType() == NodeType.Package) {
+                scopes.put(classNode, unitScope);
+            }
         } else {
-            classNode = new Node(className, className, NodeType.Type);
+            classNode = new Node(paths, className, className, NodeType.Type);
+            scopes.put(classNode, unitScope);
         }
         typeNodes.put(classNode.getPath(), classNode);
         containerNodeStack.push(classNode);
@@ -84,50 +176,97 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
 
     @Override
     public void enterConstructorDeclaration(Java9Parser.ConstructorDeclarationContext ctx) {
-        String methodName = ctx.constructorDeclarator().simpleTypeName().getText();
+        String methodName = text(ctx.constructorDeclarator().simpleTypeName());
         Node parentNode = containerNodeStack.peek();
         String fqn = parentNode.getName()+"."+methodName;
 
-        Node methodNode = new Node(fqn, fqn, NodeType.Method);
+        Node methodNode = new Node(paths, fqn, fqn, NodeType.Method);
         parentNode.createOutboundEdge(NodeRef.of(methodNode), EdgeType.Contains);
         containerNodeStack.push(methodNode);
+        decisionCounts.push(new int[1]);
     }
 
     @Override
     public void exitConstructorDeclaration(Java9Parser.ConstructorDeclarationContext ctx) {
-        containerNodeStack.pop();
+        exitMethod(containerNodeStack.pop());
     }
 
     @Override
     public void enterMethodDeclaration(Java9Parser.MethodDeclarationContext ctx) {
-        String methodName = ctx.methodHeader().methodDeclarator().identifier().Identifier().toString();
+        String methodName = ctx.methodHeader().methodDeclarator().identifier().Identifier().getSymbol().getText();
         Node parentNode = containerNodeStack.peek();
-        String fqn = parentNode.getPath()+"."+methodName;
+        var path = paths.child(parentNode.getPathHandle(), '.', methodName);
 
-        Node methodNode = new Node(methodName, fqn, NodeType.Method);
+        Node methodNode = new Node(paths, methodName, path, NodeType.Method);
         parentNode.createOutboundEdge(NodeRef.of(methodNode), EdgeType.Contains);
         containerNodeStack.push(methodNode);
-
+        decisionCounts.push(new int[1]);
     }
 
     @Override
     public void exitMethodDeclaration(Java9Parser.MethodDeclarationContext ctx) {
-        containerNodeStack.pop();
+        exitMethod(containerNodeStack.pop());
+    }
+
+    /* Only loops are modelled in the Executes edges, so ControlFlowMetrics can't see other branches in the graph.
+     * Every rule that branches is counted here instead and left on the method for it */
+    private void exitMethod(Node methodNode) {
+        methodNode.setAttribute(DECISION_POINTS, decisionCounts.pop()[0]);
+    }
+
+    private void countDecision() {
+        //initializers and field lambdas belong to no method
+        if (!decisionCounts.isEmpty()) {
+            decisionCounts.peek()[0]++;
+        }
+    }
+
+    @Override public void enterIfThenStatement(Java9Parser.IfThenStatementContext ctx) {
+        countDecision();
+    }
+    @Override public void enterIfThenElseStatement(Java9Parser.IfThenElseStatementContext ctx) {
+        countDecision();
+    }
+    @Override public void enterIfThenElseStatementNoShortIf(Java9Parser.IfThenElseStatementNoShortIfContext ctx) {
+        countDecision();
+    }
+    @Override public void enterWhileStatement(Java9Parser.WhileStatementContext ctx) {
+        countDecision();
+    }
+    @Override public void enterWhileStatementNoShortIf(Java9Parser.WhileStatementNoShortIfContext ctx) {
+        countDecision();
+    }
+    @Override public void enterDoStatement(Java9Parser.DoStatementContext ctx) {
+        countDecision();
+    }
+    @Override public void enterBasicForStatementNoShortIf(Java9Parser.BasicForStatementNoShortIfContext ctx) {
+        countDecision();
+    }
+    @Override public void enterEnhancedForStatementNoShortIf(Java9Parser.EnhancedForStatementNoShortIfContext ctx) {
+        countDecision();
+    }
+    @Override public void enterSwitchLabel(Java9Parser.SwitchLabelContext ctx) {
+        if (ctx.DEFAULT() == null) {
+            countDecision();
+        }
+    }
+    @Override public void enterCatchClause(Java9Parser.CatchClauseContext ctx) {
+        countDecision();
     }
 
     @Override
     public void enterFieldDeclaration(Java9Parser.FieldDeclarationContext ctx) {
         var declarations = ctx.variableDeclaratorList().variableDeclarator();
         var containingNode = containerNodeStack.peek();
+        //one name for all the declarators, but each gets its own ref: refs are bound edge by edge
+        var typeName = getTypeName(ctx.unannType());
         for (var decl : declarations) {
-            var id = decl.variableDeclaratorId().identifier().Identifier();
-            var child = new Node(id.getSymbol().getText(), buildStandardPath(containingNode, id.getSymbol().getText()), NodeType.Field);
+            var name = decl.variableDeclaratorId().identifier().Identifier().getSymbol().getText();
+            var child = new Node(paths, name, buildStandardPath(containingNode, name), NodeType.Field);
             containingNode.createOutboundEdge(NodeRef.of(child), EdgeType.Contains);
-
-            var typeContext = ctx.unannType();
-            var typeNodeRef = getTypeNodeRef(typeContext);
-            var fieldNodeRef = NodeRef.of(child);
-            fieldNodeRef.getNode().ifPresent(n -> n.createOutboundEdge(typeNodeRef, EdgeType.References));
+            if (typeName != null) {
+                child.createOutboundEdge(NodeRef.of(paths, typeName), EdgeType.References);
+            }
         }
 
     }
@@ -136,7 +275,7 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
     public void enterLocalVariableDeclaration(Java9Parser.LocalVariableDeclarationContext ctx) {
         NodeRef variableType = getTypeNodeRef(ctx.unannType());
         var containingNode = containerNodeStack.peek();
-        var child = new Node("decl", buildStandardPath(containingNode, "decl"+ctx.toString().hashCode()), NodeType.Declaration);
+        var child = new Node(paths, "decl", anonymousPath(containingNode, "decl", ctx), NodeType.Declaration);
         containingNode.createOutboundEdge(NodeRef.of(child), EdgeType.Declares);
         child.createOutboundEdge(variableType, EdgeType.References);
         addExpressionToStack(child);
@@ -150,16 +289,16 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
     @Override
     public void enterVariableDeclarator(Java9Parser.VariableDeclaratorContext declarator) {
         var containingNode = containerNodeStack.peek();
-        var id = declarator.variableDeclaratorId().identifier().Identifier();
-        var child = new Node(id.getSymbol().getText(), buildStandardPath(containingNode, id.getSymbol().getText()), NodeType.Variable);
+        var name = declarator.variableDeclaratorId().identifier().Identifier().getSymbol().getText();
+        var child = new Node(paths, name, buildStandardPath(containingNode, name), NodeType.Variable);
         containingNode.createOutboundEdge(NodeRef.of(child), EdgeType.Declares);
     }
 
 
     @Override public void enterAssignment(Java9Parser.AssignmentContext ctx) {
         var containingNode = containerNodeStack.peek();
-        String name = ctx.assignmentOperator().getText();
-        Node assignmentRoot = new Node(name, buildStandardPath(containingNode, name+ctx.toString().hashCode()), NodeType.Expression);
+        String name = text(ctx.assignmentOperator());
+        Node assignmentRoot = new Node(paths, name, anonymousPath(containingNode, name, ctx), NodeType.Expression);
         addExpressionToStack(assignmentRoot);
     }
     @Override public void exitAssignment(Java9Parser.AssignmentContext ctx) {
@@ -170,10 +309,10 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
     @Override
     public void enterBlock(Java9Parser.BlockContext ctx) {
         var parent = containerNodeStack.peek();
-        var blockNode = new Node(BLOCK_NAME, buildStandardPath(parent, "<block>"+ctx.toString().hashCode()), NodeType.Block);
+        var blockNode = new Node(paths, BLOCK_NAME, anonymousPath(parent, BLOCK_NAME, ctx), NodeType.Block);
         parent.createOutboundEdge(NodeRef.of(blockNode), EdgeType.Contains);
         containerNodeStack.push(blockNode);
-        if (!scopeStack.empty()) {
+        if (!scopeStack.isEmpty()) {
             addStatementNode(blockNode);
         }
         scopeStack.push(new Scope(blockNode, parent.getType() == NodeType.Method));
@@ -199,7 +338,7 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
     @Override
     public void enterConstructorBody(Java9Parser.ConstructorBodyContext ctx) {
         var parent = containerNodeStack.peek();
-        var blockNode = new Node("<block>", parent.getPath()+ctx.toString().hashCode(), NodeType.Block);
+        var blockNode = new Node(paths, BLOCK_NAME, anonymousPath(parent, BLOCK_NAME, ctx), NodeType.Block);
         parent.createOutboundEdge(NodeRef.of(blockNode), EdgeType.Contains);
         containerNodeStack.push(blockNode);
         scopeStack.push(new Scope(blockNode, false));
@@ -212,7 +351,7 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
     }
 
     private void addStatementNode(Node node) {
-        if (scopeStack.empty()) {
+        if (scopeStack.isEmpty()) {
             throw new IllegalStateException("pushing statement on emtpy scope stack");
         }
         scopeStack.peek().addLinearExecution(NodeRef.of(node));
@@ -221,9 +360,10 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
     @Override
     public void enterExpressionStatement(Java9Parser.ExpressionStatementContext ctx) {
         var containingNode = containerNodeStack.peek();
-        var name = ctx.getText();
-        var path = containingNode.getPath()+":"+name.hashCode();
-        var node = new Node(name, path, NodeType.Statement);
+        //built now: later on only the raw source is left, and that has the whitespace and comments in it
+        var name = text(ctx);
+        var path = anonymousPath(containingNode, STATEMENT_ID_PREFIX, ctx);
+        var node = new Node(paths, name, path, NodeType.Statement);
 
         addStatementNode(node);
         addExpressionToStack(node);
@@ -238,8 +378,9 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
     public static String FOR_LOOP_NAME = "<for>";
     @Override
     public void enterEnhancedForStatement(Java9Parser.EnhancedForStatementContext ctx) {
+        countDecision();
         var parent = containerNodeStack.peek();
-        var forNode = new Node(FOR_LOOP_NAME , buildStandardPath(parent, "<for>"+ctx.toString().hashCode()), NodeType.Loop);
+        var forNode = new Node(paths, FOR_LOOP_NAME , anonymousPath(parent, FOR_LOOP_NAME, ctx), NodeType.Loop);
         containerNodeStack.push(forNode);
 
         addStatementNode(forNode);
@@ -272,10 +413,11 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
         //Note: if there was a real block in the for, it took care of itself
     }
 
-    private Stack<Node> expressionStack = new Stack<>();
+    private ArrayDeque<Node> expressionStack = new ArrayDeque<>();
     @Override public void enterBasicForStatement(Java9Parser.BasicForStatementContext ctx) {
+        countDecision();
         var parent = containerNodeStack.peek();
-        var forNode = new Node(FOR_LOOP_NAME , buildStandardPath(parent, "<for>"+ctx.toString().hashCode()), NodeType.Loop);
+        var forNode = new Node(paths, FOR_LOOP_NAME , anonymousPath(parent, FOR_LOOP_NAME, ctx), NodeType.Loop);
         containerNodeStack.push(forNode);
 
         addStatementNode(forNode);
@@ -307,31 +449,20 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
     }
 
     @Override public void enterConditionalExpression(Java9Parser.ConditionalExpressionContext ctx) {
-        var q = ctx.QUESTION();
-        if (q!=null) {
-            //TODO: trinary operator
+        if (ctx.QUESTION() != null) {
+            countDecision();
         }
     }
 
     @Override public void enterConditionalOrExpression(Java9Parser.ConditionalOrExpressionContext ctx) {
-        var or = ctx.OR();
-        if (or != null) {
-            //TODO: logical or expression
+        if (ctx.OR() != null) {
+            countDecision();
         }
     }
 
     @Override public void enterConditionalAndExpression(Java9Parser.ConditionalAndExpressionContext ctx) {
-        var and = ctx.AND();
-        if (and != null) {
-            //TODO: logical and expression
-        }
-    }
-
-    @Override public void enterEqualityExpression(Java9Parser.EqualityExpressionContext ctx) {
-        if (ctx.EQUAL()!=null || ctx.NOTEQUAL()!=null) { //How's that for meta?
-            String name = (ctx.EQUAL() != null ? ctx.EQUAL().getSymbol() : ctx.NOTEQUAL().getSymbol()).getText();
-            var parent = containerNodeStack.peek();
-            Node equalityNode = new Node(name, buildStandardPath(parent, "<for>"+ctx.toString().hashCode()), NodeType.Expression);
+        if (ctx.AND() != null) {
+            countDecision();
         }
     }
 
@@ -339,13 +470,13 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
         String operator = getRelationalOperator(ctx);
         if (operator != null) {
             var parent = containerNodeStack.peek();
-            Node relationalNode = new Node(operator, buildStandardPath(parent, operator+ctx.toString().hashCode()), NodeType.Expression);
+            Node relationalNode = new Node(paths, operator, anonymousPath(parent, operator, ctx), NodeType.Expression);
             addExpressionToStack(relationalNode);
         }
     }
 
     private void addExpressionToStack(Node expressionNode) {
-        if (!expressionStack.empty() && expressionStack.peek()!=null) {
+        if (!expressionStack.isEmpty()) {
             var fork = expressionStack.peek();
             fork.createOutboundEdge(NodeRef.of(expressionNode), EdgeType.Evaluates);
         }
@@ -361,15 +492,15 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
 
     @Override public void enterExpressionName(Java9Parser.ExpressionNameContext ctx) {
         if (ctx.identifier()!=null) {
-            String name = ctx.identifier().getText();
+            String name = text(ctx.identifier());
             var parent = containerNodeStack.peek();
-            Node relationalNode = new Node(name, buildStandardPath(parent, name+ctx.toString().hashCode()), NodeType.Expression);
+            Node relationalNode = new Node(paths, name, anonymousPath(parent, name, ctx), NodeType.Expression);
             addExpressionToStack(relationalNode);
         }
         if (ctx.ambiguousName()!=null) {
-            String name = ctx.ambiguousName().getText();
+            String name = text(ctx.ambiguousName());
             var parent = containerNodeStack.peek();
-            Node relationalNode = new Node(name, buildStandardPath(parent, name+ctx.toString().hashCode()), NodeType.Expression);
+            Node relationalNode = new Node(paths, name, anonymousPath(parent, name, ctx), NodeType.Expression);
             addExpressionToStack(relationalNode);
         }
     }
@@ -381,9 +512,9 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
     }
 
     @Override public void enterMethodInvocation(Java9Parser.MethodInvocationContext ctx) {
-        String name = ctx.identifier().getText();
+        String name = text(ctx.identifier());
         var parent = containerNodeStack.peek();
-        Node relationalNode = new Node(name, buildStandardPath(parent, name + ctx.toString().hashCode()), NodeType.Expression);
+        Node relationalNode = new Node(paths, name, anonymousPath(parent, name, ctx), NodeType.Expression);
 /* TODO: scope search within 'this'
         var variable = findVariableWithName(parent, objectName);
         if (variable != null) {
@@ -398,10 +529,10 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
     }
 
     @Override public void enterMethodInvocation_lfno_primary(Java9Parser.MethodInvocation_lfno_primaryContext ctx) {
-        String objectName = ctx.typeName().getText();
-        String name = objectName + "." + ctx.identifier().getText();
+        String objectName = text(ctx.typeName());
         var parent = containerNodeStack.peek();
-        Node relationalNode = new Node(ctx.getText(), buildStandardPath(parent, name+ctx.toString().hashCode()), NodeType.Expression);
+        var path = anonymousPath(parent, objectName, '.', text(ctx.identifier()), ctx);
+        Node relationalNode = new Node(paths, text(ctx), path, NodeType.Expression);
 
         var variable = findVariableWithName(parent, objectName);
         if (variable != null) {
@@ -418,16 +549,15 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
                 var variables = declaration.getTo().getNode().get().findOutboundEdgesOfType(EdgeType.Declares);
 
                 for (var variable : variables) {
-                    var nodeName = variable.getTo().getNode().map(n -> n.getName()).get();
-                    if (nodeName.equals(objectName)) {
-                        return variable.getTo().getNode().get();
+                    var node = variable.getTo().getNode().get();
+                    if (node.getName().equals(objectName)) {
+                        return node;
                     }
                 }
             }
         }
-        var parentEdges = parent.findInboundEdgesOfType(EdgeType.Contains);
-        if (parentEdges.size()==1) {
-            var myParent = parentEdges.iterator().next().getFrom().getNode().get();
+        if (parent.countInboundEdgesOfType(EdgeType.Contains)==1) {
+            var myParent = parent.findInboundEdgesOfType(EdgeType.Contains).get(0).getFrom().getNode().get();
             return findVariableWithName(myParent, objectName);
         }
         //TODO: WARN if parentEdges.size() > 1
@@ -440,9 +570,9 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
 
     @Override public void enterMethodInvocation_lf_primary(Java9Parser.MethodInvocation_lf_primaryContext ctx) {
 
-        String name = ctx.identifier().getText();
+        String name = text(ctx.identifier());
         var parent = containerNodeStack.peek();
-        Node relationalNode = new Node(ctx.getText(), buildStandardPath(parent, name+ctx.toString().hashCode()), NodeType.Expression);
+        Node relationalNode = new Node(paths, text(ctx), anonymousPath(parent, name, ctx), NodeType.Expression);
         /*
         var variable = findVariableWithName(parent, objectName);
         if (variable != null) {
@@ -456,22 +586,10 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
         expressionStack.pop();
     }
 
-    @Override
-    public void enterPostfixExpression(Java9Parser.PostfixExpressionContext ctx) {
-        var thing1 = ctx.postDecrementExpression_lf_postfixExpression();
-        var thing2 = ctx.postIncrementExpression_lf_postfixExpression();
-        var name = ctx.expressionName();
-        var primatey = ctx.primary();
-        String operator = ctx.getText();
-    }
-    @Override public void exitPostfixExpression(Java9Parser.PostfixExpressionContext ctx) {
-
-    }
-
     @Override public void enterPostIncrementExpression(Java9Parser.PostIncrementExpressionContext ctx) {
-        var operator = ctx.INC().getText();
+        var operator = "++";
         var parent = containerNodeStack.peek();
-        Node operatorNode = new Node(operator, buildStandardPath(parent, operator+ctx.toString().hashCode()), NodeType.Expression);
+        Node operatorNode = new Node(paths, operator, anonymousPath(parent, operator, ctx), NodeType.Expression);
         addExpressionToStack(operatorNode);
     }
 
@@ -479,26 +597,32 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
         expressionStack.pop();
     }
 
+    //constants rather than token text: this runs on enter and exit of every relational expression
     private static String getRelationalOperator(Java9Parser.RelationalExpressionContext ctx) {
         if (ctx.GT() != null) {
-            return ctx.GT().getSymbol().getText();
+            return ">";
         }
         if (ctx.LT() != null) {
-            return ctx.LT().getSymbol().getText();
+            return "<";
         }
         if (ctx.GE() != null) {
-            return ctx.GE().getSymbol().getText();
+            return ">=";
         }
         if (ctx.LE() != null) {
-            return ctx.LE().getSymbol().getText();
+            return "<=";
         }
         if (ctx.INSTANCEOF() != null) {
-            return ctx.INSTANCEOF().getSymbol().getText();
+            return "instanceof";
         }
         return null;
     }
 
     private NodeRef getTypeNodeRef(Java9Parser.UnannTypeContext typeContext) {
+        var typeName = getTypeName(typeContext);
+        return typeName != null ? NodeRef.of(paths, typeName) : null;
+    }
+
+    private String getTypeName(Java9Parser.UnannTypeContext typeContext) {
         var refType = typeContext.unannReferenceType();
         if (refType != null) {
             var type = refType.unannClassOrInterfaceType();
@@ -507,14 +631,12 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
                 type = array.unannClassOrInterfaceType() ;
             }
             if (type != null) {
-                var typeName = type.getText();
-                return NodeRef.of(typeName);
+                return text(type);
             }
         }
         var primitiveType = typeContext.unannPrimitiveType();
         if (primitiveType != null) {
-            var name = primitiveType.getText();
-            return NodeRef.of(name);
+            return text(primitiveType);
         }
         return null;
     }
@@ -545,7 +667,84 @@ public class GraphTranslator extends com.nvisia.sourcegraph.antlr.Java9BaseListe
         }
     }
 
-    private static String buildStandardPath(Node parent, String childName) {
-        return parent.getPath()+":"+childName;
+    /* Path of a node that has no name of its own: name plus an id for where the rule sits in the source file,
+     * name#<source id>@<start>-<stop>. Cheap, unique within the file and stable from one run to the next as long
+     * as the file doesn't change */
+    private int anonymousPath(Node parent, String name, ParserRuleContext ctx) {
+        textBuffer.setLength(0);
+        textBuffer.append(name);
+        return buildStandardPath(parent, appendPositionId(ctx));
+    }
+
+    //same, for a name in two parts (owner.member)
+    private int anonymousPath(Node parent, String owner, char separator, String member, ParserRuleContext ctx) {
+        textBuffer.setLength(0);
+        textBuffer.append(owner).append(separator).append(member);
+        return buildStandardPath(parent, appendPositionId(ctx));
+    }
+
+    private String appendPositionId(ParserRuleContext ctx) {
+        var start = ctx.getStart().getStartIndex();
+        var stop = ctx.getStop() != null ? ctx.getStop().getStopIndex() : start;
+        return textBuffer.append('#').append(sourceId).append('@').append(start).append('-').append(stop).toString();
+    }
+
+    /* What ctx.getText() gives, the rule's tokens run together without the whitespace and comments between them,
+     * but copied straight out of the source into one buffer instead of a string per rule on the way down */
+    private String text(ParserRuleContext ctx) {
+        var start = ctx.getStart();
+        var stop = ctx.getStop();
+        if (stop == null || stop.getTokenIndex() < start.getTokenIndex()) {
+            return ctx.getText();
+        }
+        if (start == stop) {
+            return tokenText(start);
+        }
+        textBuffer.setLength(0);
+        appendTokens(ctx);
+        return textBuffer.toString();
+    }
+
+    private void appendTokens(ParseTree tree) {
+        if (tree instanceof TerminalNode) {
+            var token = ((TerminalNode) tree).getSymbol();
+            var source = source(token);
+            if (source != null) {
+                textBuffer.append(source, token.getStartIndex(), token.getStopIndex() + 1);
+            } else {
+                textBuffer.append(token.getText());
+            }
+            return;
+        }
+        for (int i=0;i<tree.getChildCount();i++) {
+            appendTokens(tree.getChild(i));
+        }
+    }
+
+    private String tokenText(Token token) {
+        var source = source(token);
+        return source != null ? source.substring(token.getStartIndex(), token.getStopIndex() + 1) : token.getText();
+    }
+
+    /* The source the token's offsets point into, or null when the token has to be asked for its text: tokens
+     * conjured up by error recovery, EOF, and input with characters outside the BMP, where the stream's code
+     * point offsets aren't string offsets */
+    private String source(Token token) {
+        var stream = token.getInputStream();
+        if (stream == null || token.getStartIndex() < 0 || token.getStopIndex() < token.getStartIndex()) {
+            return null;
+        }
+        if (stream != sourceStream) {
+            sourceStream = stream;
+            source = stream.getText(Interval.of(0, stream.size() - 1));
+            if (source.length() != stream.size()) {
+                source = null;
+            }
+        }
+        return source;
+    }
+
+    private int buildStandardPath(Node parent, String childName) {
+        return paths.child(parent.getPathHandle(), ':', childName);
     }
 }
@@ -0,0 +1,237 @@
+package com.nvisia.sourcegraph;
+
+import com.nvisia.sourcegraph.graph.Edge;
+import com.nvisia.sourcegraph.graph.EdgeType;
+import com.nvisia.sourcegraph.graph.Node;
+import com.nvisia.sourcegraph.graph.NodeType;
+import org.antlr.v4.runtime.CharStreams;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/* Keeps an AntlrImport graph in step with a set of source files. Each file's content is hashed, unchanged files
+ * are skipped, and a changed file has only its own nodes and edges swapped out. References from other files
+ * that pointed into the replaced nodes are unbound and resolved again against the new ones. A package goes away
+ * with the last file that had types in it. */
+public class IncrementalImport {
+    private final AntlrImport antlrImport;
+    private final Map<String, ImportedFile> files = new HashMap<>();
+    //edges the last resolution couldn't bind, keyed by the simple name they refer to, so a type showing up later
+    //  only has to retry the edges that could possibly match it
+    private final Map<String, Set<Edge>> unresolvedBySimpleName = new HashMap<>();
+
+    private static class ImportedFile {
+        private final byte[] hash;
+        //every node translated from the file, except the (shared) package nodes
+        private final List<Node> nodes = new ArrayList<>();
+        //edges the file hung off of its package node(s): Contains for its types, DependsOn for imports
+        private final List<Edge> packageEdges = new ArrayList<>();
+        //the file's types that didn't have a package to live in
+        private final List<Node> roots = new ArrayList<>();
+        private final Map<String, Node> types = new HashMap<>();
+
+        private ImportedFile(byte[] hash) {
+            this.hash = hash;
+        }
+    }
+
+    public IncrementalImport() {
+        this(new AntlrImport());
+    }
+    public IncrementalImport(AntlrImport antlrImport) {
+        this.antlrImport = antlrImport;
+    }
+
+    public AntlrImport getImport() {
+        return antlrImport;
+    }
+
+    public boolean update(Path file) throws IOException {
+        return update(file.toAbsolutePath().toString(), Files.readAllBytes(file));
+    }
+
+    /* (re)imports the file if it's new or its content has changed. Returns false if it was skipped */
+    public boolean update(String fileName, byte[] content) {
+        var hash = hash(content);
+        var previous = files.get(fileName);
+        if (previous != null && Arrays.equals(previous.hash, hash)) {
+            return false;
+        }
+
+        var toResolve = new ArrayList<Edge>();
+        if (previous != null) {
+            detach(previous, toResolve);
+        }
+        var fragment = antlrImport.translateFragment(CharStreams.fromString(new String(content, StandardCharsets.UTF_8), fileName));
+        var imported = collect(hash, fragment);
+        antlrImport.mergeFragment(fragment);
+        files.put(fileName, imported);
+
+        for (var node : imported.nodes) {
+            toResolve.addAll(node.getOutboundEdges());
+        }
+        toResolve.addAll(imported.packageEdges);
+        for (var typeName : imported.types.keySet()) {
+            var waiting = unresolvedBySimpleName.remove(simpleName(typeName));
+            if (waiting != null) {
+                toResolve.addAll(waiting);
+            }
+        }
+        resolve(toResolve);
+        return true;
+    }
+
+    public boolean remove(String fileName) {
+        var previous = files.remove(fileName);
+        if (previous == null) {
+            return false;
+        }
+        var stale = new ArrayList<Edge>();
+        detach(previous, stale);
+        resolve(stale);
+        return true;
+    }
+
+    public Set<String> getFiles() {
+        return Collections.unmodifiableSet(files.keySet());
+    }
+
+    private ImportedFile collect(byte[] hash, GraphTranslator fragment) {
+        var imported = new ImportedFile(hash);
+        var seen = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        //nothing has been resolved yet, so every bound edge in the fragment stays within the file
+        var pending = new ArrayDeque<Node>();
+        for (var root : fragment.getTopLevelNodes()) {
+            if (root.getType() == NodeType.Package) {
+                for (var edge : root.getOutboundEdges()) {
+                    imported.packageEdges.add(edge);
+                    edge.getTo().getNode().ifPresent(pending::push);
+                }
+            } else {
+                imported.roots.add(root);
+                pending.push(root);
+            }
+        }
+        while (!pending.isEmpty()) {
+            var node = pending.pop();
+            if (node.getType() == NodeType.Package || !seen.add(node)) {
+                continue;
+            }
+            imported.nodes.add(node);
+            for (var edge : node.getOutboundEdges()) {
+                edge.getTo().getNode().ifPresent(pending::push);
+            }
+        }
+        for (var entry : fragment.getTypeCache().entrySet()) {
+            if (entry.getValue().getType() != NodeType.Package) {
+                imported.types.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return imported;
+    }
+
+    private void detach(ImportedFile file, List<Edge> stale) {
+        var owned = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        owned.addAll(file.nodes);
+
+        var packages = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        for (var edge : file.packageEdges) {
+            if (!edge.getTo().isResolved()) {
+                forgetUnresolved(edge);
+            }
+            edge.getFrom().getNode().ifPresent(packageNode -> {
+                packageNode.removeOutboundEdge(edge);
+                packages.add(packageNode);
+            });
+            edge.clear();
+        }
+        for (var packageNode : packages) {
+            if (packageNode.countOutboundEdgesOfType(EdgeType.Contains) == 0) {
+                dropPackage(packageNode, stale);
+            }
+        }
+        for (var root : file.roots) {
+            antlrImport.removeTopLevelNode(root);
+        }
+        for (var node : file.nodes) {
+            for (var edge : node.getInboundEdges()) {
+                var from = edge.getFrom().getNode().orElse(null);
+                if (from != null && !owned.contains(from)) {
+                    //a reference from some other file, it'll be pointed at the replacement (if there is one)
+                    edge.getTo().unresolve();
+                    stale.add(edge);
+                }
+            }
+        }
+        for (var node : file.nodes) {
+            for (var edge : new ArrayList<>(node.getOutboundEdges())) {
+                var to = edge.getTo().getNode().orElse(null);
+                if (to == null) {
+                    forgetUnresolved(edge);
+                } else if (!owned.contains(to)) {
+                    node.removeOutboundEdge(edge);
+                }
+            }
+            node.clearOutboundEdges();
+        }
+        var typeCache = antlrImport.getTypeCache();
+        for (var entry : file.types.entrySet()) {
+            typeCache.remove(entry.getKey(), entry.getValue());
+        }
+        var scopes = antlrImport.getScopes();
+        for (var node : file.nodes) {
+            scopes.remove(node);
+        }
+    }
+
+    //the package has no types left: nothing in the graph should still show it
+    private void dropPackage(Node packageNode, List<Edge> stale) {
+        antlrImport.removeTopLevelNode(packageNode);
+        antlrImport.getTypeCache().remove(packageNode.getPath(), packageNode);
+        antlrImport.getScopes().remove(packageNode);
+        for (var edge : new ArrayList<>(packageNode.getOutboundEdges())) {
+            packageNode.removeOutboundEdge(edge);
+        }
+        for (var edge : new ArrayList<>(packageNode.getInboundEdges())) {
+            edge.getTo().unresolve();
+            stale.add(edge);
+        }
+    }
+
+    private void resolve(List<Edge> edges) {
+        antlrImport.resolveEdges(edges);
+        for (var edge : edges) {
+            if (!edge.getTo().isResolved()) {
+                unresolvedBySimpleName.computeIfAbsent(simpleName(edge.getTo().getNodePath()), k -> new LinkedHashSet<>()).add(edge);
+            }
+        }
+    }
+
+    private void forgetUnresolved(Edge edge) {
+        var waiting = unresolvedBySimpleName.get(simpleName(edge.getTo().getNodePath()));
+        if (waiting != null) {
+            waiting.remove(edge);
+        }
+    }
+
+    private static String simpleName(String path) {
+        var end = path.indexOf('<');
+        if (end < 0) {
+            end = path.length();
+        }
+        return path.substring(path.lastIndexOf('.', end - 1) + 1, end);
+    }
+
+    private static byte[] hash(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
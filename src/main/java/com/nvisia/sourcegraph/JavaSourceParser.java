@@ -0,0 +1,73 @@
+package com.nvisia.sourcegraph;
+
+import com.nvisia.sourcegraph.antlr.Java9Lexer;
+import com.nvisia.sourcegraph.antlr.Java9Parser;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+/* A lexer/parser pair that is reused from one compilation unit to the next. Not thread safe: keep one per worker.
+ * The generated lexer and parser keep their DFA caches in statics, so every instance shares (and warms) the same
+ * cache no matter which thread it lives on.
+ * In two stage mode each file is first parsed with SLL prediction and a bail-out error strategy, which is much
+ * cheaper than full LL. Only if that fails do we rewind and reparse with LL and normal error reporting.
+ * Two stage mode is off by default: with this grammar SLL gives up on qualified method invocations
+ * (System.out.println(...)) and statement level i++, so nearly every real file ends up parsed twice. */
+public class JavaSourceParser {
+    private final Java9Lexer lexer = new Java9Lexer(null);
+    private final CommonTokenStream tokens = new CommonTokenStream((TokenSource) lexer);
+    private final Java9Parser parser = new Java9Parser(tokens);
+    private final DefaultErrorStrategy defaultErrorStrategy = new DefaultErrorStrategy();
+    private final BailErrorStrategy bailErrorStrategy = new BailErrorStrategy();
+
+    private boolean lastParseNeededFallback;
+    private long lastLexNanos;
+
+    public Java9Parser.CompilationUnitContext parse(CharStream input) {
+        return parse(input, false);
+    }
+
+    public Java9Parser.CompilationUnitContext parse(CharStream input, boolean twoStage) {
+        lexer.setInputStream(input);
+        tokens.setTokenSource(lexer);
+        parser.setTokenStream(tokens);
+        lastParseNeededFallback = false;
+        //lex up front rather than on demand, so lexing and parsing can be timed apart
+        var lexStart = System.nanoTime();
+        tokens.fill();
+        lastLexNanos = System.nanoTime() - lexStart;
+
+        if (twoStage) {
+            parser.removeErrorListeners();
+            parser.setErrorHandler(bailErrorStrategy);
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            try {
+                return parser.compilationUnit();
+            } catch (ParseCancellationException e) {
+                //SLL couldn't handle it (or the input really is broken): rewind and let LL have a go
+                lastParseNeededFallback = true;
+                tokens.seek(0);
+                parser.reset();
+            }
+        }
+        parser.removeErrorListeners();
+        parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+        parser.setErrorHandler(defaultErrorStrategy);
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        return parser.compilationUnit();
+    }
+
+    public boolean lastParseNeededFallback() {
+        return lastParseNeededFallback;
+    }
+
+    /* time spent lexing the last input; it's part of what parse() took */
+    public long getLastLexNanos() {
+        return lastLexNanos;
+    }
+}
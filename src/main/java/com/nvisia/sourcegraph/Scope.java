@@ -4,14 +4,17 @@ import com.nvisia.sourcegraph.graph.EdgeType;
 import com.nvisia.sourcegraph.graph.Node;
 import com.nvisia.sourcegraph.graph.NodeRef;
 
+import java.lang.System.Logger.Level;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
 public class Scope {
+    private static final System.Logger LOG = System.getLogger(Scope.class.getName());
+
     private boolean isMethod;
     private Node blockNode;
-    private LinkedList<NodeRef> linearExecution = new LinkedList<>();
+    private ArrayDeque<NodeRef> linearExecution = new ArrayDeque<>();
     //noderefs that need to be tied to the exit of the scope as an execute (return paths)
     private List<NodeRef> pendingLoopExits = new ArrayList<>();
     //noderefs that need to be passed to the forward returns of the enclosing scope for fix up of loo;
@@ -42,21 +45,28 @@ public class Scope {
     public void addLinearExecution(NodeRef executed) {
         if (!linearExecution.isEmpty()) {
             var lastNode = linearExecution.getLast();
-            lastNode.getNode().ifPresentOrElse(n -> n.createOutboundEdge(executed, EdgeType.Executes),
-                    ()->System.err.println("Error building executin graph: node not bound for "+lastNode.getNodePath()));
+            if (lastNode.isResolved()) {
+                lastNode.getNode().get().createOutboundEdge(executed, EdgeType.Executes);
+            } else {
+                LOG.log(Level.WARNING, () -> "Error building execution graph: node not bound for " + lastNode.getNodePath());
+            }
         }
         blockNode.createOutboundEdge(executed, EdgeType.Contains);
         linearExecution.addLast(executed);
 
         //check for pending returns from conditional/looping blocks
-        for (var nodeRef : pendingLoopExits) {
-            nodeRef.getNode().ifPresentOrElse(node -> node.createOutboundEdge(executed, EdgeType.Executes),
-                    () -> {throw new IllegalStateException("resolved for node is required to fixup dangling loops/conditionals");});
-            pendingLoopExits = new ArrayList<>();
+        if (!pendingLoopExits.isEmpty()) {
+            for (var nodeRef : pendingLoopExits) {
+                if (!nodeRef.isResolved()) {
+                    throw new IllegalStateException("resolved for node is required to fixup dangling loops/conditionals");
+                }
+                nodeRef.getNode().get().createOutboundEdge(executed, EdgeType.Executes);
+            }
+            pendingLoopExits.clear();
         }
     }
 
-    public LinkedList<NodeRef> getLinearExecution() {
+    public ArrayDeque<NodeRef> getLinearExecution() {
         return linearExecution;
     }
 
@@ -0,0 +1,265 @@
+package com.nvisia.sourcegraph.analysis;
+
+import com.nvisia.sourcegraph.graph.EdgeType;
+import com.nvisia.sourcegraph.graph.FrozenGraph;
+import com.nvisia.sourcegraph.graph.IntGraph;
+import com.nvisia.sourcegraph.graph.NodeType;
+
+import java.util.Arrays;
+
+/* Quotient of a frozen graph at one NodeType: every node of that type swallows its Contains subtree and becomes
+ * one block, every node outside such a subtree (a package, at Type level) stays a block of its own. Edges between
+ * blocks are aggregated per (from, to, EdgeType), their weight being how many base edges went into them. Edges
+ * inside a block stay as self loops, except Contains which only says the block is a block. Unresolved targets
+ * are dropped.
+ *
+ * Blocks are numbered modules first (the nodes of the level's type, in node id order), then the singletons, also
+ * in node id order; edges of a block are sorted by target, then EdgeType.
+ *
+ * Build these through Contraction, which caches them and derives coarse levels from finer ones. */
+public class ContractedGraph implements IntGraph {
+    private static final EdgeType[] EDGE_TYPES = EdgeType.values();
+    private static final int CONTAINS = EdgeType.Contains.ordinal();
+
+    private final FrozenGraph graph;
+    private final NodeType level;
+    private final int[] blockOf;
+    private final int[] representatives;
+    private final int moduleCount;
+    private final int[] offsets;
+    private final int[] targets;
+    private final byte[] types;
+    private final double[] weights;
+
+    private ContractedGraph(FrozenGraph graph, NodeType level, int[] blockOf, int[] representatives, int moduleCount,
+                            WeightMap edges) {
+        this.graph = graph;
+        this.level = level;
+        this.blockOf = blockOf;
+        this.representatives = representatives;
+        this.moduleCount = moduleCount;
+        var blocks = representatives.length;
+        var keys = edges.sortedKeys();
+        offsets = new int[blocks + 1];
+        targets = new int[keys.length];
+        types = new byte[keys.length];
+        weights = new double[keys.length];
+        for (int e=0;e<keys.length;e++) {
+            var from = (int) (keys[e] >>> 32);
+            var packed = keys[e] & 0xffffffffL;
+            offsets[from + 1]++;
+            targets[e] = (int) (packed / EDGE_TYPES.length);
+            types[e] = (byte) (packed % EDGE_TYPES.length);
+            weights[e] = edges.get(keys[e]);
+        }
+        for (int b=0;b<blocks;b++) {
+            offsets[b + 1] += offsets[b];
+        }
+    }
+
+    /* straight from the base graph: one pass over every edge */
+    static ContractedGraph contract(FrozenGraph graph, NodeType level) {
+        var modules = ModuleMap.of(graph, level);
+        var nodeCount = graph.nodeCount();
+        var moduleCount = modules.moduleCount();
+        var blockOf = new int[nodeCount];
+        var blocks = moduleCount;
+        for (int node=0;node<nodeCount;node++) {
+            var module = modules.moduleOf(node);
+            blockOf[node] = module >= 0 ? module : blocks++;
+        }
+        var representatives = new int[blocks];
+        for (int node=0;node<nodeCount;node++) {
+            if (modules.moduleOf(node) < 0 || modules.moduleNode(modules.moduleOf(node)) == node) {
+                representatives[blockOf[node]] = node;
+            }
+        }
+        checkSize(blocks);
+        var edges = new WeightMap();
+        for (int from=0;from<nodeCount;from++) {
+            for (int e=graph.outStart(from);e<graph.outEnd(from);e++) {
+                var to = graph.edgeTarget(e);
+                if (!FrozenGraph.isStub(to)) {
+                    aggregate(edges, blockOf[from], blockOf[to], graph.edgeTypeOrdinal(e), 1.0);
+                }
+            }
+        }
+        return new ContractedGraph(graph, level, blockOf, representatives, moduleCount, edges);
+    }
+
+    /* this graph again at a coarser level, from the aggregated edges only. Returns null when this contraction
+     * doesn't refine the other one: a node of the coarser type inside one of our blocks (a class inside a
+     * method), or a block of ours that the coarser level wouldn't keep together */
+    ContractedGraph coarsen(NodeType coarser) {
+        var nodeCount = graph.nodeCount();
+        var blocks = representatives.length;
+        //coarse modules, numbered in node id order like contract() does
+        var moduleIndex = new int[nodeCount];
+        var moduleCount = 0;
+        for (int node=0;node<nodeCount;node++) {
+            if (graph.nodeType(node) == coarser) {
+                if (representatives[blockOf[node]] != node) {
+                    return null;
+                }
+                moduleIndex[node] = moduleCount++;
+            } else {
+                moduleIndex[node] = -1;
+            }
+        }
+        var coarseOf = new int[blocks];
+        var singletons = moduleCount;
+        for (int b=0;b<blocks;b++) {
+            //nearest coarse node up from the block's root; blocks are whole Contains subtrees so that's the
+            //coarse module of everything in them
+            var node = representatives[b];
+            var steps = 0;
+            while (node >= 0 && moduleIndex[node] < 0) {
+                node = ModuleMap.containerOf(graph, node);
+                if (++steps > nodeCount) {
+                    throw new IllegalStateException("Contains cycle at " + graph.path(representatives[b]));
+                }
+            }
+            if (node >= 0) {
+                coarseOf[b] = moduleIndex[node];
+            } else if (isModule(b)) {
+                return null;
+            } else {
+                coarseOf[b] = singletons++;
+            }
+        }
+        var representativesOut = new int[singletons];
+        for (int b=0;b<blocks;b++) {
+            var node = representatives[b];
+            if (coarseOf[b] >= moduleCount || moduleIndex[node] >= 0) {
+                representativesOut[coarseOf[b]] = node;
+            }
+        }
+        var blockOfOut = new int[nodeCount];
+        for (int node=0;node<nodeCount;node++) {
+            blockOfOut[node] = coarseOf[blockOf[node]];
+        }
+        checkSize(singletons);
+        var edges = new WeightMap();
+        for (int from=0;from<blocks;from++) {
+            for (int e=offsets[from];e<offsets[from + 1];e++) {
+                aggregate(edges, coarseOf[from], coarseOf[targets[e]], types[e], weights[e]);
+            }
+        }
+        return new ContractedGraph(graph, coarser, blockOfOut, representativesOut, moduleCount, edges);
+    }
+
+    private static void aggregate(WeightMap edges, int from, int to, int type, double weight) {
+        if (from != to || type != CONTAINS) {
+            edges.add(((long) from << 32) | ((long) to * EDGE_TYPES.length + type), weight);
+        }
+    }
+
+    private static void checkSize(int blocks) {
+        if ((long) blocks * EDGE_TYPES.length > 0xffffffffL) {
+            throw new IllegalStateException("Too many blocks to contract: " + blocks);
+        }
+    }
+
+    public FrozenGraph getGraph() {
+        return graph;
+    }
+
+    public NodeType getLevel() {
+        return level;
+    }
+
+    @Override
+    public int nodeCount() {
+        return representatives.length;
+    }
+
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /* blocks 0..moduleCount()-1 are nodes of the level's type with their subtrees */
+    public int moduleCount() {
+        return moduleCount;
+    }
+
+    public boolean isModule(int block) {
+        return block < moduleCount;
+    }
+
+    /* base graph node the block is named after */
+    public int representative(int block) {
+        return representatives[block];
+    }
+
+    /* the modules of this contraction as a ModuleMap over the base graph */
+    public ModuleMap moduleMap() {
+        var moduleOf = new int[blockOf.length];
+        for (int node=0;node<moduleOf.length;node++) {
+            moduleOf[node] = isModule(blockOf[node]) ? blockOf[node] : -1;
+        }
+        return new ModuleMap(graph, level, moduleOf, Arrays.copyOf(representatives, moduleCount));
+    }
+
+    public int blockOf(int baseNode) {
+        return blockOf[baseNode];
+    }
+
+    public String name(int block) {
+        return graph.name(representatives[block]);
+    }
+
+    @Override
+    public String path(int block) {
+        return graph.path(representatives[block]);
+    }
+
+    @Override
+    public int outStart(int block) {
+        return offsets[block];
+    }
+
+    @Override
+    public int outEnd(int block) {
+        return offsets[block + 1];
+    }
+
+    @Override
+    public int edgeTarget(int edge) {
+        return targets[edge];
+    }
+
+    public EdgeType edgeType(int edge) {
+        return EDGE_TYPES[types[edge]];
+    }
+
+    @Override
+    public int edgeTypeOrdinal(int edge) {
+        return types[edge];
+    }
+
+    public double weight(int edge) {
+        return weights[edge];
+    }
+
+    /* aggregated weight of from -> to edges of a type, 0 if there are none */
+    public double weight(int from, int to, EdgeType type) {
+        var start = offsets[from];
+        var end = offsets[from + 1];
+        var key = (long) to * EDGE_TYPES.length + type.ordinal();
+        //rows are sorted by target, then type
+        var low = start;
+        var high = end - 1;
+        while (low <= high) {
+            var mid = (low + high) >>> 1;
+            var midKey = (long) targets[mid] * EDGE_TYPES.length + types[mid];
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return weights[mid];
+            }
+        }
+        return 0.0;
+    }
+}
@@ -0,0 +1,54 @@
+package com.nvisia.sourcegraph.analysis;
+
+import com.nvisia.sourcegraph.graph.FrozenGraph;
+import com.nvisia.sourcegraph.graph.NodeType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+
+/* Cache of contractions of one frozen graph. The first request for a level that a cached finer level refines
+ * (Package after Type, Type after Method) is built from that level's aggregated edges instead of the base graph,
+ * so only the first contraction pays for a pass over every statement and expression edge. */
+public class Contraction {
+    private final FrozenGraph graph;
+    private final Map<NodeType, ContractedGraph> levels = new EnumMap<>(NodeType.class);
+    private int baseContractions;
+
+    public Contraction(FrozenGraph graph) {
+        this.graph = graph;
+    }
+
+    public FrozenGraph getGraph() {
+        return graph;
+    }
+
+    public synchronized ContractedGraph at(NodeType level) {
+        var cached = levels.get(level);
+        if (cached != null) {
+            return cached;
+        }
+        //the smallest cached graph that can be coarsened to this level
+        var candidates = new ArrayList<>(levels.values());
+        candidates.sort(Comparator.comparingInt(ContractedGraph::edgeCount));
+        ContractedGraph result = null;
+        for (var finer : candidates) {
+            result = finer.coarsen(level);
+            if (result != null) {
+                break;
+            }
+        }
+        if (result == null) {
+            result = ContractedGraph.contract(graph, level);
+            baseContractions++;
+        }
+        levels.put(level, result);
+        return result;
+    }
+
+    /* how many contractions had to go over the whole base graph */
+    public synchronized int getBaseContractions() {
+        return baseContractions;
+    }
+}
@@ -0,0 +1,236 @@
+package com.nvisia.sourcegraph.analysis;
+
+import com.nvisia.sourcegraph.GraphTranslator;
+import com.nvisia.sourcegraph.graph.EdgeType;
+import com.nvisia.sourcegraph.graph.Node;
+import com.nvisia.sourcegraph.graph.NodeType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/* Per method control flow graphs, from the Executes edges GraphTranslator threads through a method body: the
+ * method executes its body block, a block its first statement, each statement the next, loops their body and
+ * whatever follows them, and loop exits at the end of the body go back to the method. Here an Executes edge back
+ * to the method, or a node with nowhere to go, leads to one synthetic exit node. Only the branching the
+ * translator models shows up, so far that's loops.
+ *
+ * Ifs, switches, catches and the like aren't in that graph, so the translator counts every decision point of a
+ * method (if, loop, case label, catch, &&, ||, ?:) and leaves the count in its DECISION_POINTS attribute. Snapshots
+ * keep it, so a graph loaded from one measures the same as the import it was written from.
+ *
+ * For each method:
+ *   cyclomatic complexity  decision points + 1, or E - N + 2 of the graph for methods without the count
+ *   max nesting            loops and blocks inside loops or blocks (the body block and a loop's own block are free)
+ *   longest path           longest entry to exit path, back edges left out
+ *
+ * Methods are measured in parallel and the results are also stored as attributes on the method nodes. */
+public class ControlFlowMetrics {
+    public static final String CYCLOMATIC_COMPLEXITY = "cyclomaticComplexity";
+    public static final String MAX_NESTING = "maxNesting";
+    public static final String LONGEST_PATH = "longestPath";
+
+    /* every method under the given nodes, along Contains */
+    public List<MethodMetrics> measureAll(Collection<Node> topLevelNodes) {
+        var methods = new ArrayList<Node>();
+        for (var root : topLevelNodes) {
+            root.preOrderTraverse(EdgeType.Contains, (edgeType, nodeRef, level) -> {
+                if (edgeType == EdgeType.Contains) {
+                    nodeRef.getNode().filter(n -> n.getType() == NodeType.Method).ifPresent(methods::add);
+                }
+            });
+        }
+        return methods.parallelStream().map(this::measure).collect(Collectors.toList());
+    }
+
+    public MethodMetrics measure(Node method) {
+        var cfg = new Cfg(method);
+        var complexity = method.getAttribute(GraphTranslator.DECISION_POINTS)
+                .map(decisions -> (Integer) decisions + 1)
+                .orElse(cfg.edgeCount - cfg.size + 2);
+        var metrics = new MethodMetrics(method, cfg.size, cfg.edgeCount, complexity, maxNesting(method), cfg.longestPath());
+        method.setAttribute(CYCLOMATIC_COMPLEXITY, metrics.getCyclomaticComplexity());
+        method.setAttribute(MAX_NESTING, metrics.getMaxNesting());
+        method.setAttribute(LONGEST_PATH, metrics.getLongestPath());
+        return metrics;
+    }
+
+    private static int maxNesting(Node method) {
+        //explicit stack of (node, depth)
+        var nodes = new ArrayList<Node>();
+        var depths = new ArrayList<Integer>();
+        nodes.add(method);
+        depths.add(0);
+        var max = 0;
+        while (!nodes.isEmpty()) {
+            var node = nodes.remove(nodes.size() - 1);
+            var depth = depths.remove(depths.size() - 1);
+            max = Math.max(max, depth);
+            for (var edge : node.findOutboundEdgesOfType(EdgeType.Contains)) {
+                var child = edge.getTo().getNode().orElse(null);
+                if (child == null || child.getType() == NodeType.Method || child.getType() == NodeType.Type) {
+                    continue;
+                }
+                var nests = child.getType() == NodeType.Loop
+                        || (child.getType() == NodeType.Block && node.getType() != NodeType.Loop && node != method);
+                nodes.add(child);
+                depths.add(nests ? depth + 1 : depth);
+            }
+        }
+        return max;
+    }
+
+    /* the graph with int ids: 0 is the method (entry), 1 the exit */
+    private static class Cfg {
+        private static final int ENTRY = 0, EXIT = 1;
+
+        private int size = 2;
+        private int edgeCount;
+        private int[][] successors = new int[16][];
+        private int[] successorCounts = new int[16];
+
+        private Cfg(Node method) {
+            var ids = new IdentityHashMap<Node, Integer>();
+            var nodes = new ArrayList<Node>();
+            ids.put(method, ENTRY);
+            nodes.add(method);
+            nodes.add(null);
+            for (int i=0;i<nodes.size();i++) {
+                var node = nodes.get(i);
+                if (node == null) {
+                    continue;
+                }
+                //a nested block sits in its enclosing block's linear execution, so besides its first statement it
+                //also 'executes' whatever follows it. Its last statement already does that; don't count it twice
+                var entersBody = node.getType() == NodeType.Block && executesChild(node);
+                for (var edge : node.findOutboundEdgesOfType(EdgeType.Executes)) {
+                    var target = edge.getTo().getNode().orElse(null);
+                    if (target == null || (target.getType() == NodeType.Method && target != method)
+                            || (entersBody && !isChild(node, target))) {
+                        continue;
+                    }
+                    int to;
+                    if (target == method) {
+                        to = EXIT;
+                    } else {
+                        var id = ids.get(target);
+                        if (id == null) {
+                            id = size++;
+                            ids.put(target, id);
+                            nodes.add(target);
+                        }
+                        to = id;
+                    }
+                    addEdge(i, to);
+                }
+            }
+            //falling off the end of the body. A loop always branches (run the body or don't), but the translator
+            //loses the exit of a loop nested in another one; send that to the exit too
+            for (int n=0;n<size;n++) {
+                var loop = n != ENTRY && nodes.get(n) != null && nodes.get(n).getType() == NodeType.Loop;
+                if (n != EXIT && (count(n) == 0 || (loop && count(n) == 1))) {
+                    addEdge(n, EXIT);
+                }
+            }
+        }
+
+        private static boolean executesChild(Node block) {
+            for (var edge : block.findOutboundEdgesOfType(EdgeType.Executes)) {
+                var target = edge.getTo().getNode();
+                if (target.isPresent() && isChild(block, target.get())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isChild(Node parent, Node child) {
+            for (var edge : child.findInboundEdgesOfType(EdgeType.Contains)) {
+                if (edge.getFrom().getNode().orElse(null) == parent) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int count(int node) {
+            return node < successorCounts.length ? successorCounts[node] : 0;
+        }
+
+        private void addEdge(int from, int to) {
+            if (from >= successors.length) {
+                var length = Math.max(from + 1, successors.length * 2);
+                successors = Arrays.copyOf(successors, length);
+                successorCounts = Arrays.copyOf(successorCounts, length);
+            }
+            var list = successors[from];
+            var count = successorCounts[from];
+            for (int i=0;i<count;i++) {
+                if (list[i] == to) {
+                    return;
+                }
+            }
+            if (list == null) {
+                list = successors[from] = new int[2];
+            } else if (count == list.length) {
+                list = successors[from] = Arrays.copyOf(list, count * 2);
+            }
+            list[count] = to;
+            successorCounts[from]++;
+            edgeCount++;
+        }
+
+        /* depth first from the entry, iteratively: an edge to a node still on the stack is a back edge and is
+         * left out; then longest distances in reverse post order */
+        private int longestPath() {
+            var state = new byte[size]; //0 new, 1 on stack, 2 done
+            var postOrder = new int[size];
+            var postCount = 0;
+            var stack = new int[size];
+            var next = new int[size];
+            var back = new boolean[size][];
+            var depth = 0;
+            stack[depth++] = ENTRY;
+            state[ENTRY] = 1;
+            while (depth > 0) {
+                var node = stack[depth - 1];
+                if (next[node] < count(node)) {
+                    var i = next[node]++;
+                    var target = successors[node][i];
+                    if (state[target] == 0) {
+                        state[target] = 1;
+                        stack[depth++] = target;
+                    } else if (state[target] == 1) {
+                        if (back[node] == null) {
+                            back[node] = new boolean[count(node)];
+                        }
+                        back[node][i] = true;
+                    }
+                } else {
+                    state[node] = 2;
+                    postOrder[postCount++] = node;
+                    depth--;
+                }
+            }
+            var distance = new int[size];
+            Arrays.fill(distance, -1);
+            distance[ENTRY] = 0;
+            for (int p=postCount - 1;p>=0;p--) {
+                var node = postOrder[p];
+                if (distance[node] < 0) {
+                    continue;
+                }
+                for (int i=0;i<count(node);i++) {
+                    if (back[node] == null || !back[node][i]) {
+                        var target = successors[node][i];
+                        distance[target] = Math.max(distance[target], distance[node] + 1);
+                    }
+                }
+            }
+            return Math.max(distance[EXIT], 0);
+        }
+    }
+}
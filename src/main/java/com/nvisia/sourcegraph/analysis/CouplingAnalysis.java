@@ -0,0 +1,119 @@
+package com.nvisia.sourcegraph.analysis;
+
+import com.nvisia.sourcegraph.graph.EdgeType;
+import com.nvisia.sourcegraph.graph.FrozenGraph;
+import com.nvisia.sourcegraph.graph.NodeType;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/* The module coupling numbers from Nodes.md, for every pair of modules at once.
+ *
+ * Every selected edge between two nodes in modules m1 != m2 adds its weight to the cross section of (m1, m2) and
+ * to the surface of both; an edge inside a module adds to its volume. Then
+ *
+ *   covariance index (m1, m2) = cross section / (volume m1 + volume m2)
+ *   surface/volume ratio (m)  = surface / volume
+ *
+ * Both are infinite for modules without internal edges. Edge direction doesn't matter and unresolved targets are
+ * left out. The edges are aggregated in parallel, one accumulator per chunk of nodes, merged at the end. */
+public class CouplingAnalysis {
+    private static final EdgeType[] EDGE_TYPES = EdgeType.values();
+
+    private final double[] weights = new double[EDGE_TYPES.length];
+
+    /* DependsOn, References and Calls, all weighted 1 */
+    public CouplingAnalysis() {
+        weights[EdgeType.DependsOn.ordinal()] = 1.0;
+        weights[EdgeType.References.ordinal()] = 1.0;
+        weights[EdgeType.Calls.ordinal()] = 1.0;
+    }
+
+    /* 0 leaves the type out */
+    public CouplingAnalysis weight(EdgeType type, double weight) {
+        if (weight < 0 || Double.isNaN(weight)) {
+            throw new IllegalArgumentException("Edge weights must be >= 0: " + type + "=" + weight);
+        }
+        weights[type.ordinal()] = weight;
+        return this;
+    }
+
+    public CouplingReport analyze(FrozenGraph graph, NodeType level) {
+        return analyze(ModuleMap.of(graph, level));
+    }
+
+    public CouplingReport analyze(ModuleMap modules) {
+        var graph = modules.getGraph();
+        var moduleCount = modules.moduleCount();
+        //one accumulator per chunk of nodes rather than per stream split: at type level each can hold
+        //millions of pairs, and merging them is what costs
+        var nodeCount = graph.nodeCount();
+        var chunks = Math.max(1, Math.min(nodeCount / 1024, ForkJoinPool.getCommonPoolParallelism()));
+        var partials = IntStream.range(0, chunks).parallel().mapToObj(chunk -> {
+            var acc = new Accumulator(moduleCount);
+            for (int from=(int) ((long) nodeCount * chunk / chunks);from<(long) nodeCount * (chunk + 1) / chunks;from++) {
+                var fromModule = modules.moduleOf(from);
+                for (int e=graph.outStart(from);e<graph.outEnd(from);e++) {
+                    var weight = weights[graph.edgeTypeOrdinal(e)];
+                    var to = graph.edgeTarget(e);
+                    if (weight > 0 && !FrozenGraph.isStub(to)) {
+                        acc.add(fromModule, modules.moduleOf(to), weight);
+                    }
+                }
+            }
+            return acc;
+        }).toArray(Accumulator[]::new);
+        var totals = partials[0];
+        for (int i=1;i<partials.length;i++) {
+            totals.merge(partials[i]);
+        }
+        return new CouplingReport(modules, totals.volume, totals.surface, totals.cross);
+    }
+
+    /* same numbers from a contraction, without going back to the base graph */
+    public CouplingReport analyze(ContractedGraph contracted) {
+        var totals = new Accumulator(contracted.moduleCount());
+        for (int from=0;from<contracted.moduleCount();from++) {
+            for (int e=contracted.outStart(from);e<contracted.outEnd(from);e++) {
+                var weight = weights[contracted.edgeTypeOrdinal(e)] * contracted.weight(e);
+                var to = contracted.edgeTarget(e);
+                if (weight > 0 && contracted.isModule(to)) {
+                    totals.add(from, to, weight);
+                }
+            }
+        }
+        return new CouplingReport(contracted.moduleMap(), totals.volume, totals.surface, totals.cross);
+    }
+
+    private static class Accumulator {
+        private final double[] volume;
+        private final double[] surface;
+        private final WeightMap cross = new WeightMap();
+
+        private Accumulator(int moduleCount) {
+            volume = new double[moduleCount];
+            surface = new double[moduleCount];
+        }
+
+        private void add(int a, int b, double weight) {
+            if (a < 0 || b < 0) {
+                return;
+            }
+            if (a == b) {
+                volume[a] += weight;
+                return;
+            }
+            surface[a] += weight;
+            surface[b] += weight;
+            cross.add(WeightMap.pairKey(Math.min(a, b), Math.max(a, b)), weight);
+        }
+
+        private void merge(Accumulator other) {
+            for (int m=0;m<volume.length;m++) {
+                volume[m] += other.volume[m];
+                surface[m] += other.surface[m];
+            }
+            cross.addAll(other.cross);
+        }
+    }
+}
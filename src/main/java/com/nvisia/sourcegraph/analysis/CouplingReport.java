@@ -0,0 +1,129 @@
+package com.nvisia.sourcegraph.analysis;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/* Result of a CouplingAnalysis. Pairs are ranked by covariance index, modules by surface/volume ratio, both
+ * highest (most coupled, leakiest) first. Only pairs with at least one edge between them are listed. */
+public class CouplingReport {
+    private final ModuleMap modules;
+    private final double[] volume;
+    private final double[] surface;
+    private final List<Pair> pairs;
+    private final List<Module> ranked;
+
+    CouplingReport(ModuleMap modules, double[] volume, double[] surface, WeightMap cross) {
+        this.modules = modules;
+        this.volume = volume;
+        this.surface = surface;
+        var pairs = new ArrayList<Pair>(cross.size());
+        cross.forEachPair((a, b, weight) -> pairs.add(new Pair(a, b, weight)));
+        //ties broken by module number (node id order) so the report is stable
+        pairs.sort(Comparator.comparingDouble(Pair::getCovarianceIndex).reversed()
+                .thenComparingInt(Pair::getFirst).thenComparingInt(Pair::getSecond));
+        this.pairs = Collections.unmodifiableList(pairs);
+        var ranked = new ArrayList<Module>();
+        for (int m=0;m<volume.length;m++) {
+            if (volume[m] > 0 || surface[m] > 0) {
+                ranked.add(new Module(m));
+            }
+        }
+        ranked.sort(Comparator.comparingDouble(Module::getSurfaceToVolume).reversed().thenComparingInt(Module::getModule));
+        this.ranked = Collections.unmodifiableList(ranked);
+    }
+
+    public ModuleMap getModules() {
+        return modules;
+    }
+
+    public List<Pair> getPairs() {
+        return pairs;
+    }
+
+    public List<Module> getModuleRanking() {
+        return ranked;
+    }
+
+    public double volume(int module) {
+        return volume[module];
+    }
+
+    public double surface(int module) {
+        return surface[module];
+    }
+
+    /* the top entries of both rankings */
+    public void print(PrintStream out, int top) {
+        out.println("Covariance index (" + modules.getLevel() + " pairs, " + pairs.size() + " coupled):");
+        for (var pair : pairs.subList(0, Math.min(top, pairs.size()))) {
+            out.println(String.format("  %10.4f  %s ~ %s (cross %.1f)", pair.getCovarianceIndex(),
+                    pair.getFirstName(), pair.getSecondName(), pair.getCrossSection()));
+        }
+        out.println("Surface/volume (" + ranked.size() + " " + modules.getLevel() + " modules):");
+        for (var module : ranked.subList(0, Math.min(top, ranked.size()))) {
+            out.println(String.format("  %10.4f  %s (surface %.1f, volume %.1f)", module.getSurfaceToVolume(),
+                    module.getName(), module.getSurface(), module.getVolume()));
+        }
+    }
+
+    public class Pair {
+        private final int first;
+        private final int second;
+        private final double crossSection;
+        private final double covarianceIndex;
+
+        private Pair(int first, int second, double crossSection) {
+            this.first = first;
+            this.second = second;
+            this.crossSection = crossSection;
+            var volumes = volume[first] + volume[second];
+            this.covarianceIndex = volumes == 0.0 ? Double.POSITIVE_INFINITY : crossSection / volumes;
+        }
+
+        public int getFirst() {
+            return first;
+        }
+        public int getSecond() {
+            return second;
+        }
+        public String getFirstName() {
+            return modules.moduleName(first);
+        }
+        public String getSecondName() {
+            return modules.moduleName(second);
+        }
+        public double getCrossSection() {
+            return crossSection;
+        }
+        public double getCovarianceIndex() {
+            return covarianceIndex;
+        }
+    }
+
+    public class Module {
+        private final int module;
+
+        private Module(int module) {
+            this.module = module;
+        }
+
+        public int getModule() {
+            return module;
+        }
+        public String getName() {
+            return modules.moduleName(module);
+        }
+        public double getVolume() {
+            return volume[module];
+        }
+        public double getSurface() {
+            return surface[module];
+        }
+        public double getSurfaceToVolume() {
+            return volume[module] == 0.0 ? Double.POSITIVE_INFINITY : surface[module] / volume[module];
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.nvisia.sourcegraph.analysis;
+
+import com.nvisia.sourcegraph.graph.EdgeType;
+import com.nvisia.sourcegraph.graph.IntGraph;
+import com.nvisia.sourcegraph.graph.Traversal;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/* Strongly connected components over a chosen set of edge types, with Tarjan's algorithm run on an explicit
+ * stack: linear in nodes + edges and no recursion, so a million node Executes chain is fine. Works on the full
+ * frozen graph or on a contraction, e.g. for a package cycle check:
+ *
+ *   new CycleAnalysis(EdgeType.DependsOn, EdgeType.References, EdgeType.Calls).analyze(contraction.at(NodeType.Package))
+ *
+ * A node with an edge to itself only counts as a cycle if selfLoops(true) was set; on a contraction every
+ * module with internal dependencies has one. */
+public class CycleAnalysis {
+    private final int edgeTypeMask;
+    private boolean selfLoops = false;
+
+    public CycleAnalysis(EdgeType... edgeTypes) {
+        this.edgeTypeMask = edgeTypes.length == 0 ? Traversal.ALL : Traversal.maskOf(edgeTypes);
+    }
+
+    public CycleAnalysis selfLoops(boolean selfLoops) {
+        this.selfLoops = selfLoops;
+        return this;
+    }
+
+    public StronglyConnectedComponents analyze(IntGraph graph) {
+        var nodeCount = graph.nodeCount();
+        var index = new int[nodeCount];
+        var low = new int[nodeCount];
+        Arrays.fill(index, -1);
+        var onStack = new BitSet(nodeCount);
+        var stack = new int[nodeCount];
+        var stackSize = 0;
+        var callNodes = new int[64];
+        var callEdges = new int[64];
+        var componentOf = new int[nodeCount];
+        var components = 0;
+        var counter = 0;
+
+        for (int root=0;root<nodeCount;root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            var depth = 0;
+            callNodes[0] = root;
+            callEdges[0] = graph.outStart(root);
+            depth++;
+            index[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            onStack.set(root);
+            while (depth > 0) {
+                var top = depth - 1;
+                var v = callNodes[top];
+                var e = callEdges[top];
+                if (e < graph.outEnd(v)) {
+                    callEdges[top]++;
+                    var w = graph.edgeTarget(e);
+                    if (w < 0 || !follows(graph, e)) {
+                        continue;
+                    }
+                    if (index[w] < 0) {
+                        if (depth == callNodes.length) {
+                            callNodes = Arrays.copyOf(callNodes, depth * 2);
+                            callEdges = Arrays.copyOf(callEdges, depth * 2);
+                        }
+                        callNodes[depth] = w;
+                        callEdges[depth] = graph.outStart(w);
+                        depth++;
+                        index[w] = low[w] = counter++;
+                        stack[stackSize++] = w;
+                        onStack.set(w);
+                    } else if (onStack.get(w)) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                } else {
+                    depth--;
+                    if (depth > 0) {
+                        var parent = callNodes[depth - 1];
+                        low[parent] = Math.min(low[parent], low[v]);
+                    }
+                    if (low[v] == index[v]) {
+                        int w;
+                        do {
+                            w = stack[--stackSize];
+                            onStack.clear(w);
+                            componentOf[w] = components;
+                        } while (w != v);
+                        components++;
+                    }
+                }
+            }
+        }
+        //Tarjan finishes a component after everything it reaches, so reversing gives topological order
+        for (int node=0;node<nodeCount;node++) {
+            componentOf[node] = components - 1 - componentOf[node];
+        }
+        return new StronglyConnectedComponents(this, graph, componentOf, components);
+    }
+
+    boolean follows(IntGraph graph, int edge) {
+        return (edgeTypeMask & (1 << graph.edgeTypeOrdinal(edge))) != 0;
+    }
+
+    boolean countsSelfLoops() {
+        return selfLoops;
+    }
+}
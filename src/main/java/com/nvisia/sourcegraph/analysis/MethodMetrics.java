@@ -0,0 +1,54 @@
+package com.nvisia.sourcegraph.analysis;
+
+import com.nvisia.sourcegraph.graph.Node;
+
+/* Control flow numbers of one method, see ControlFlowMetrics */
+public class MethodMetrics {
+    private final Node method;
+    private final int cfgNodes;
+    private final int cfgEdges;
+    private final int cyclomaticComplexity;
+    private final int maxNesting;
+    private final int longestPath;
+
+    MethodMetrics(Node method, int cfgNodes, int cfgEdges, int cyclomaticComplexity, int maxNesting, int longestPath) {
+        this.method = method;
+        this.cfgNodes = cfgNodes;
+        this.cfgEdges = cfgEdges;
+        this.cyclomaticComplexity = cyclomaticComplexity;
+        this.maxNesting = maxNesting;
+        this.longestPath = longestPath;
+    }
+
+    public Node getMethod() {
+        return method;
+    }
+
+    /* nodes of the control flow graph, counting the method itself as entry and a synthetic exit */
+    public int getCfgNodes() {
+        return cfgNodes;
+    }
+
+    public int getCfgEdges() {
+        return cfgEdges;
+    }
+
+    /* decision points + 1 */
+    public int getCyclomaticComplexity() {
+        return cyclomaticComplexity;
+    }
+
+    public int getMaxNesting() {
+        return maxNesting;
+    }
+
+    /* edges on the longest entry to exit path that doesn't go round a loop */
+    public int getLongestPath() {
+        return longestPath;
+    }
+
+    @Override
+    public String toString() {
+        return method.getPath() + " ccn=" + getCyclomaticComplexity() + " nesting=" + maxNesting + " longestPath=" + longestPath;
+    }
+}
@@ -0,0 +1,108 @@
+package com.nvisia.sourcegraph.analysis;
+
+import com.nvisia.sourcegraph.graph.EdgeType;
+import com.nvisia.sourcegraph.graph.FrozenGraph;
+import com.nvisia.sourcegraph.graph.NodeType;
+
+import java.util.Arrays;
+
+/* Assigns every node of a frozen graph to its module: the nearest node of the given type up the Contains tree
+ * (the node itself if it has that type). Nested types are modules of their own at Type level. Modules are
+ * numbered 0..moduleCount()-1 in node id order. */
+public class ModuleMap {
+    private static final int UNKNOWN = -2;
+
+    private final FrozenGraph graph;
+    private final NodeType level;
+    private final int[] moduleOf;
+    private final int[] moduleNodes;
+
+    ModuleMap(FrozenGraph graph, NodeType level, int[] moduleOf, int[] moduleNodes) {
+        this.graph = graph;
+        this.level = level;
+        this.moduleOf = moduleOf;
+        this.moduleNodes = moduleNodes;
+    }
+
+    public static ModuleMap of(FrozenGraph graph, NodeType level) {
+        var nodeCount = graph.nodeCount();
+        var index = new int[nodeCount];
+        var modules = 0;
+        for (int node=0;node<nodeCount;node++) {
+            index[node] = graph.nodeType(node) == level ? modules++ : -1;
+        }
+        var moduleNodes = new int[modules];
+        for (int node=0;node<nodeCount;node++) {
+            if (index[node] >= 0) {
+                moduleNodes[index[node]] = node;
+            }
+        }
+
+        var moduleOf = new int[nodeCount];
+        Arrays.fill(moduleOf, UNKNOWN);
+        var chain = new int[16];
+        for (int node=0;node<nodeCount;node++) {
+            //walk up to a module or a node we've already placed, then place the whole chain
+            var length = 0;
+            var current = node;
+            while (current >= 0 && moduleOf[current] == UNKNOWN && index[current] < 0) {
+                if (length == nodeCount) {
+                    throw new IllegalStateException("Contains cycle at " + graph.path(node));
+                }
+                if (length == chain.length) {
+                    chain = Arrays.copyOf(chain, length * 2);
+                }
+                chain[length++] = current;
+                current = containerOf(graph, current);
+            }
+            int module;
+            if (current < 0) {
+                module = -1;
+            } else if (index[current] >= 0) {
+                module = index[current];
+                moduleOf[current] = module;
+            } else {
+                module = moduleOf[current];
+            }
+            for (int i=0;i<length;i++) {
+                moduleOf[chain[i]] = module;
+            }
+        }
+        return new ModuleMap(graph, level, moduleOf, moduleNodes);
+    }
+
+    static int containerOf(FrozenGraph graph, int node) {
+        for (int slot=graph.inStart(node);slot<graph.inEnd(node);slot++) {
+            if (graph.edgeType(graph.inEdge(slot)) == EdgeType.Contains) {
+                return graph.inSource(slot);
+            }
+        }
+        return -1;
+    }
+
+    public FrozenGraph getGraph() {
+        return graph;
+    }
+
+    public NodeType getLevel() {
+        return level;
+    }
+
+    public int moduleCount() {
+        return moduleNodes.length;
+    }
+
+    /* module number of a node, -1 if it isn't inside any module (e.g. a package at Type level) */
+    public int moduleOf(int node) {
+        return moduleOf[node];
+    }
+
+    /* node id of a module */
+    public int moduleNode(int module) {
+        return moduleNodes[module];
+    }
+
+    public String moduleName(int module) {
+        return graph.path(moduleNodes[module]);
+    }
+}
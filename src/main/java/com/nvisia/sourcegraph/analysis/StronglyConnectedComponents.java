@@ -0,0 +1,237 @@
+package com.nvisia.sourcegraph.analysis;
+
+import com.nvisia.sourcegraph.graph.IntGraph;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/* Result of a CycleAnalysis. Components are numbered in topological order of the condensation: an edge between
+ * two components always goes from a lower number to a higher one. Members of a component are in node id order.
+ *
+ * The condensation (one node per component, an edge wherever some member edge crosses, weighted by how many do)
+ * and the cycle witnesses are built on first use. */
+public class StronglyConnectedComponents {
+    private final CycleAnalysis analysis;
+    private final IntGraph graph;
+    private final int[] componentOf;
+    private final int[] memberOffsets;
+    private final int[] members;
+    private final boolean[] cyclic;
+    private final int[][] cycles;
+    private int[] condensedOffsets;
+    private int[] condensedTargets;
+    private double[] condensedWeights;
+
+    StronglyConnectedComponents(CycleAnalysis analysis, IntGraph graph, int[] componentOf, int componentCount) {
+        this.analysis = analysis;
+        this.graph = graph;
+        this.componentOf = componentOf;
+        memberOffsets = new int[componentCount + 1];
+        for (var component : componentOf) {
+            memberOffsets[component + 1]++;
+        }
+        for (int c=0;c<componentCount;c++) {
+            memberOffsets[c + 1] += memberOffsets[c];
+        }
+        members = new int[componentOf.length];
+        var cursor = Arrays.copyOf(memberOffsets, componentCount);
+        for (int node=0;node<componentOf.length;node++) {
+            members[cursor[componentOf[node]]++] = node;
+        }
+        cyclic = new boolean[componentCount];
+        for (int c=0;c<componentCount;c++) {
+            cyclic[c] = size(c) > 1 || (analysis.countsSelfLoops() && hasSelfLoop(members[memberOffsets[c]]));
+        }
+        cycles = new int[componentCount][];
+    }
+
+    private boolean hasSelfLoop(int node) {
+        for (int e=graph.outStart(node);e<graph.outEnd(node);e++) {
+            if (graph.edgeTarget(e) == node && analysis.follows(graph, e)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public IntGraph getGraph() {
+        return graph;
+    }
+
+    public int componentCount() {
+        return cyclic.length;
+    }
+
+    public int componentOf(int node) {
+        return componentOf[node];
+    }
+
+    public int size(int component) {
+        return memberOffsets[component + 1] - memberOffsets[component];
+    }
+
+    public int[] members(int component) {
+        return Arrays.copyOfRange(members, memberOffsets[component], memberOffsets[component + 1]);
+    }
+
+    public boolean isCyclic(int component) {
+        return cyclic[component];
+    }
+
+    /* components that contain a cycle, in component order */
+    public int[] cyclicComponents() {
+        var count = 0;
+        for (var c : cyclic) {
+            if (c) {
+                count++;
+            }
+        }
+        var result = new int[count];
+        var i = 0;
+        for (int c=0;c<cyclic.length;c++) {
+            if (cyclic[c]) {
+                result[i++] = c;
+            }
+        }
+        return result;
+    }
+
+    public boolean hasCycles() {
+        for (var c : cyclic) {
+            if (c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* a shortest cycle through the component's first member, as the nodes along it (the edge back to the first
+     * one is implied); empty for an acyclic component. Breadth first inside the component, so linear in its size */
+    public synchronized int[] cycle(int component) {
+        if (!cyclic[component]) {
+            return new int[0];
+        }
+        if (cycles[component] == null) {
+            cycles[component] = findCycle(component);
+        }
+        return cycles[component].clone();
+    }
+
+    private int[] findCycle(int component) {
+        var start = memberOffsets[component];
+        var size = size(component);
+        var source = members[start];
+        //parent per position in the component, -1 while unvisited
+        var parent = new int[size];
+        Arrays.fill(parent, -1);
+        var queue = new int[size];
+        var head = 0;
+        var tail = 0;
+        queue[tail++] = source;
+        parent[0] = 0;
+        while (head < tail) {
+            var node = queue[head++];
+            for (int e=graph.outStart(node);e<graph.outEnd(node);e++) {
+                var target = graph.edgeTarget(e);
+                if (target < 0 || componentOf[target] != component || !analysis.follows(graph, e)) {
+                    continue;
+                }
+                if (target == source) {
+                    if (node == source && !analysis.countsSelfLoops()) {
+                        continue;
+                    }
+                    return pathTo(node, source, parent, start);
+                }
+                var position = position(target, start, size);
+                if (parent[position] < 0) {
+                    parent[position] = node;
+                    queue[tail++] = target;
+                }
+            }
+        }
+        throw new IllegalStateException("No cycle through " + graph.path(source) + " in its component");
+    }
+
+    private int[] pathTo(int node, int source, int[] parent, int start) {
+        var length = 1;
+        for (var n = node; n != source; n = parent[position(n, start, parent.length)]) {
+            length++;
+        }
+        var path = new int[length];
+        for (var n = node; n != source; n = parent[position(n, start, parent.length)]) {
+            path[--length] = n;
+        }
+        path[0] = source;
+        return path;
+    }
+
+    //members are sorted, so a node's position in its component is a binary search away
+    private int position(int node, int start, int size) {
+        return Arrays.binarySearch(members, start, start + size, node) - start;
+    }
+
+    /* the cycle as "a -> b -> c -> a" */
+    public String describeCycle(int component) {
+        var cycle = cycle(component);
+        var joiner = new StringJoiner(" -> ");
+        for (var node : cycle) {
+            joiner.add(graph.path(node));
+        }
+        if (cycle.length > 0) {
+            joiner.add(graph.path(cycle[0]));
+        }
+        return joiner.toString();
+    }
+
+    /* condensation edges of a component are condensedStart(c) until condensedEnd(c), targets ascending */
+    public int condensedStart(int component) {
+        return condensation()[component];
+    }
+
+    public int condensedEnd(int component) {
+        return condensation()[component + 1];
+    }
+
+    public int condensedTarget(int edge) {
+        condensation();
+        return condensedTargets[edge];
+    }
+
+    /* number of member edges behind a condensation edge */
+    public double condensedWeight(int edge) {
+        condensation();
+        return condensedWeights[edge];
+    }
+
+    public int condensedEdgeCount() {
+        return condensation()[componentCount()];
+    }
+
+    private synchronized int[] condensation() {
+        if (condensedOffsets == null) {
+            var edges = new WeightMap();
+            for (int from=0;from<graph.nodeCount();from++) {
+                for (int e=graph.outStart(from);e<graph.outEnd(from);e++) {
+                    var to = graph.edgeTarget(e);
+                    if (to >= 0 && componentOf[to] != componentOf[from] && analysis.follows(graph, e)) {
+                        edges.add(WeightMap.pairKey(componentOf[from], componentOf[to]), 1.0);
+                    }
+                }
+            }
+            var keys = edges.sortedKeys();
+            var offsets = new int[componentCount() + 1];
+            condensedTargets = new int[keys.length];
+            condensedWeights = new double[keys.length];
+            for (int e=0;e<keys.length;e++) {
+                offsets[(int) (keys[e] >>> 32) + 1]++;
+                condensedTargets[e] = (int) keys[e];
+                condensedWeights[e] = edges.get(keys[e]);
+            }
+            for (int c=0;c<componentCount();c++) {
+                offsets[c + 1] += offsets[c];
+            }
+            condensedOffsets = offsets;
+        }
+        return condensedOffsets;
+    }
+}
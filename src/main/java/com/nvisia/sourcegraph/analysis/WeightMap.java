@@ -0,0 +1,112 @@
+package com.nvisia.sourcegraph.analysis;
+
+import java.util.Arrays;
+
+/* Open addressing map of long key -> summed weight. A HashMap<Long, double[]> boxes every lookup, and
+ * aggregating edges means millions of them. Keys must not be negative */
+class WeightMap {
+    private static final long EMPTY = -1L;
+
+    private long[] keys = new long[1 << 8];
+    private double[] weights = new double[1 << 8];
+    private int size;
+
+    WeightMap() {
+        Arrays.fill(keys, EMPTY);
+    }
+
+    static long pairKey(int low, int high) {
+        return ((long) low << 32) | high;
+    }
+
+    void add(long key, double weight) {
+        var mask = keys.length - 1;
+        var slot = mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                weights[slot] += weight;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        weights[slot] = weight;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    void addAll(WeightMap other) {
+        for (int slot=0;slot<other.keys.length;slot++) {
+            if (other.keys[slot] != EMPTY) {
+                add(other.keys[slot], other.weights[slot]);
+            }
+        }
+    }
+
+    double get(long key) {
+        var mask = keys.length - 1;
+        var slot = mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return weights[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0.0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /* all keys, ascending */
+    long[] sortedKeys() {
+        var sorted = new long[size];
+        var i = 0;
+        for (var key : keys) {
+            if (key != EMPTY) {
+                sorted[i++] = key;
+            }
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /* calls back for each key made with pairKey, in no particular order */
+    void forEachPair(PairConsumer consumer) {
+        for (int slot=0;slot<keys.length;slot++) {
+            if (keys[slot] != EMPTY) {
+                consumer.accept((int) (keys[slot] >>> 32), (int) keys[slot], weights[slot]);
+            }
+        }
+    }
+
+    interface PairConsumer {
+        void accept(int low, int high, double weight);
+    }
+
+    private void grow() {
+        var oldKeys = keys;
+        var oldWeights = weights;
+        keys = new long[oldKeys.length * 2];
+        weights = new double[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        var mask = keys.length - 1;
+        for (int i=0;i<oldKeys.length;i++) {
+            if (oldKeys[i] != EMPTY) {
+                var slot = mix(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                weights[slot] = oldWeights[i];
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+}
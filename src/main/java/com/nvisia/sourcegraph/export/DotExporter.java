@@ -0,0 +1,61 @@
+package com.nvisia.sourcegraph.export;
+
+import com.nvisia.sourcegraph.graph.Edge;
+import com.nvisia.sourcegraph.graph.Node;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+
+/* GraphViz output, line for line what AntlrImport.toDOT always produced */
+public class DotExporter extends GraphExporter {
+
+    public DotExporter(ExportOptions options) {
+        super(options);
+    }
+
+    @Override
+    protected void writeHeader(BufferedWriter writer) throws IOException {
+        writer.write("digraph danch_o_graph {");
+        writer.newLine();
+    }
+
+    @Override
+    protected void writeNode(BufferedWriter writer, Node node) throws IOException {
+        writer.write("node [label=\"");
+        writer.write(node.getType().toString());
+        writer.write(':');
+        writer.write(node.getName());
+        writer.write("\"]; \"");
+        writer.write(node.getPath());
+        writer.write("\";");
+        writer.newLine();
+    }
+
+    @Override
+    protected void writeStub(BufferedWriter writer, String path) throws IOException {
+        writer.write("node [label=\"Stub:");
+        writer.write(path);
+        writer.write("\"]; \"");
+        writer.write(path);
+        writer.write("\";");
+        writer.newLine();
+    }
+
+    @Override
+    protected void writeEdge(BufferedWriter writer, Edge edge) throws IOException {
+        writer.write('"');
+        writer.write(edge.getFrom().getNodePath());
+        writer.write("\"->\"");
+        writer.write(edge.getTo().getNodePath());
+        writer.write("\" [label=\"");
+        writer.write(edge.getType().toString());
+        writer.write("\"];");
+        writer.newLine();
+    }
+
+    @Override
+    protected void writeFooter(BufferedWriter writer) throws IOException {
+        writer.write('}');
+        writer.newLine();
+    }
+}
@@ -0,0 +1,57 @@
+package com.nvisia.sourcegraph.export;
+
+import com.nvisia.sourcegraph.graph.EdgeType;
+import com.nvisia.sourcegraph.graph.NodeType;
+import com.nvisia.sourcegraph.graph.Traversal;
+
+import java.util.Set;
+
+/* What an exporter writes. Edge and node type filters are handed to the traversal, so filtered out parts of the
+ * graph are never walked: an edge is followed only if its type is included and it leads to an included node type
+ * (unresolved targets count as NodeType.Unknown). Hidden edge types are still followed, just not written, which
+ * is what the old toDOT skip set did. */
+public class ExportOptions {
+    private int edgeTypeMask = Traversal.ALL;
+    private int nodeTypeMask = Traversal.ALL;
+    private int hiddenEdgeMask = 0;
+    private boolean gzip;
+
+    public ExportOptions followEdgeTypes(Set<EdgeType> edgeTypes) {
+        edgeTypeMask = Traversal.maskOf(edgeTypes);
+        return this;
+    }
+    public ExportOptions includeNodeTypes(Set<NodeType> nodeTypes) {
+        nodeTypeMask = Traversal.maskOf(nodeTypes);
+        return this;
+    }
+    public ExportOptions hideEdgeTypes(Set<EdgeType> edgeTypes) {
+        hiddenEdgeMask = Traversal.maskOf(edgeTypes);
+        return this;
+    }
+    public ExportOptions gzip(boolean gzip) {
+        this.gzip = gzip;
+        return this;
+    }
+
+    public ExportOptions copy() {
+        var copy = new ExportOptions();
+        copy.edgeTypeMask = edgeTypeMask;
+        copy.nodeTypeMask = nodeTypeMask;
+        copy.hiddenEdgeMask = hiddenEdgeMask;
+        copy.gzip = gzip;
+        return copy;
+    }
+
+    public int getEdgeTypeMask() {
+        return edgeTypeMask;
+    }
+    public int getNodeTypeMask() {
+        return nodeTypeMask;
+    }
+    public boolean isHidden(EdgeType type) {
+        return Traversal.includes(hiddenEdgeMask, type);
+    }
+    public boolean isGzip() {
+        return gzip;
+    }
+}
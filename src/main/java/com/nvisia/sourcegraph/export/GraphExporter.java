@@ -0,0 +1,122 @@
+package com.nvisia.sourcegraph.export;
+
+import com.nvisia.sourcegraph.graph.Edge;
+import com.nvisia.sourcegraph.graph.Node;
+import com.nvisia.sourcegraph.graph.NodeRef;
+import com.nvisia.sourcegraph.graph.Traversal;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.zip.GZIPOutputStream;
+
+/* Base for the exporters. Walks the graph edge by edge (Traversal.preOrderEdges from every top level node) and
+ * writes each node the first time it shows up as either end of an edge, then the edge. Output goes straight
+ * through a fixed size buffer; the only other state is a bitset of the paths already written, so memory doesn't
+ * grow with the size of the output. Nodes are identified by path, same as the old toDOT. */
+public abstract class GraphExporter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    protected final ExportOptions options;
+
+    protected GraphExporter(ExportOptions options) {
+        this.options = options;
+    }
+
+    /* picks the format from the file name: .dot, .graphml or .jsonl, with an optional .gz on the end. A .gz
+     * applies to this export only, the caller's options are left as they are */
+    public static GraphExporter forFile(Path file, ExportOptions options) {
+        var name = file.getFileName().toString();
+        if (name.endsWith(".gz")) {
+            options = options.copy().gzip(true);
+            name = name.substring(0, name.length() - 3);
+        }
+        if (name.endsWith(".dot")) {
+            return new DotExporter(options);
+        } else if (name.endsWith(".graphml")) {
+            return new GraphMLExporter(options);
+        } else if (name.endsWith(".jsonl")) {
+            return new JsonLinesExporter(options);
+        }
+        throw new IllegalArgumentException("No exporter for " + file);
+    }
+
+    public void export(Collection<Node> topLevelNodes, Path file) throws IOException {
+        try (var out = Files.newOutputStream(file)) {
+            export(topLevelNodes, out);
+        }
+    }
+
+    /* doesn't close the channel */
+    public void export(Collection<Node> topLevelNodes, WritableByteChannel channel) throws IOException {
+        export(topLevelNodes, Channels.newOutputStream(channel));
+    }
+
+    /* doesn't close the stream */
+    public void export(Collection<Node> topLevelNodes, OutputStream out) throws IOException {
+        //finished rather than closed at the end, so the caller's stream stays open
+        var gzip = options.isGzip() ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        var writer = new BufferedWriter(new OutputStreamWriter(gzip != null ? gzip : out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        var written = new BitSet();
+        writeHeader(writer);
+        try {
+            for (var top : topLevelNodes) {
+                Traversal.forCurrentThread().preOrderEdges(top, options.getEdgeTypeMask(), options.getNodeTypeMask(),
+                        edge -> writeEdgeAndEnds(writer, edge, written));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writeFooter(writer);
+        writer.flush();
+        if (gzip != null) {
+            gzip.finish();
+        }
+        out.flush();
+    }
+
+    private void writeEdgeAndEnds(BufferedWriter writer, Edge edge, BitSet written) {
+        try {
+            var from = edge.getFrom().getNode().get();
+            if (!written.get(from.getPathHandle())) {
+                written.set(from.getPathHandle());
+                writeNode(writer, from);
+            }
+            //a resolved ref may still carry the name the source used, so go by the node's own path
+            var to = edge.getTo();
+            var toPath = to.isResolved() ? to.getNode().get().getPathHandle() : to.getPathHandle();
+            if (!written.get(toPath)) {
+                written.set(toPath);
+                if (to.isResolved()) {
+                    writeNode(writer, to.getNode().get());
+                } else {
+                    writeStub(writer, to.getNodePath());
+                }
+            }
+            if (!options.isHidden(edge.getType())) {
+                writeEdge(writer, edge);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /* the id an end of an edge goes by in the output: the node's path once resolved (a resolved ref may still
+     * carry the name the source used), the ref's own path for a stub */
+    protected static String endPath(NodeRef end) {
+        var node = end.getNode();
+        return node.isPresent() ? node.get().getPath() : end.getNodePath();
+    }
+
+    protected abstract void writeHeader(BufferedWriter writer) throws IOException;
+    protected abstract void writeNode(BufferedWriter writer, Node node) throws IOException;
+    /* a path some edge points at that never resolved to a node */
+    protected abstract void writeStub(BufferedWriter writer, String path) throws IOException;
+    protected abstract void writeEdge(BufferedWriter writer, Edge edge) throws IOException;
+    protected abstract void writeFooter(BufferedWriter writer) throws IOException;
+}
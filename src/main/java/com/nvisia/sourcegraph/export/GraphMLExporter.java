@@ -0,0 +1,86 @@
+package com.nvisia.sourcegraph.export;
+
+import com.nvisia.sourcegraph.graph.Edge;
+import com.nvisia.sourcegraph.graph.Node;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+
+/* GraphML (http://graphml.graphdrawing.org/), for yEd, Gephi and friends. Node ids are paths; stubs get the
+ * node type "Stub" */
+public class GraphMLExporter extends GraphExporter {
+
+    public GraphMLExporter(ExportOptions options) {
+        super(options);
+    }
+
+    @Override
+    protected void writeHeader(BufferedWriter writer) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        writer.newLine();
+        writer.write("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">");
+        writer.newLine();
+        writer.write("  <key id=\"name\" for=\"node\" attr.name=\"name\" attr.type=\"string\"/>");
+        writer.newLine();
+        writer.write("  <key id=\"type\" for=\"node\" attr.name=\"type\" attr.type=\"string\"/>");
+        writer.newLine();
+        writer.write("  <key id=\"edgeType\" for=\"edge\" attr.name=\"type\" attr.type=\"string\"/>");
+        writer.newLine();
+        writer.write("  <graph id=\"sourcegraph\" edgedefault=\"directed\">");
+        writer.newLine();
+    }
+
+    @Override
+    protected void writeNode(BufferedWriter writer, Node node) throws IOException {
+        writeNode(writer, node.getPath(), node.getName(), node.getType().toString());
+    }
+
+    @Override
+    protected void writeStub(BufferedWriter writer, String path) throws IOException {
+        writeNode(writer, path, path, "Stub");
+    }
+
+    private static void writeNode(BufferedWriter writer, String id, String name, String type) throws IOException {
+        writer.write("    <node id=\"");
+        escape(writer, id);
+        writer.write("\"><data key=\"name\">");
+        escape(writer, name);
+        writer.write("</data><data key=\"type\">");
+        writer.write(type);
+        writer.write("</data></node>");
+        writer.newLine();
+    }
+
+    @Override
+    protected void writeEdge(BufferedWriter writer, Edge edge) throws IOException {
+        writer.write("    <edge source=\"");
+        escape(writer, endPath(edge.getFrom()));
+        writer.write("\" target=\"");
+        escape(writer, endPath(edge.getTo()));
+        writer.write("\"><data key=\"edgeType\">");
+        writer.write(edge.getType().toString());
+        writer.write("</data></edge>");
+        writer.newLine();
+    }
+
+    @Override
+    protected void writeFooter(BufferedWriter writer) throws IOException {
+        writer.write("  </graph>");
+        writer.newLine();
+        writer.write("</graphml>");
+        writer.newLine();
+    }
+
+    private static void escape(BufferedWriter writer, String text) throws IOException {
+        for (int i=0;i<text.length();i++) {
+            var c = text.charAt(i);
+            switch (c) {
+                case '<': writer.write("&lt;"); break;
+                case '>': writer.write("&gt;"); break;
+                case '&': writer.write("&amp;"); break;
+                case '"': writer.write("&quot;"); break;
+                default: writer.write(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.nvisia.sourcegraph.export;
+
+import com.nvisia.sourcegraph.graph.Edge;
+import com.nvisia.sourcegraph.graph.Node;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+
+/* One JSON object per line:
+ *   {"kind":"node","path":...,"name":...,"type":...}
+ *   {"kind":"stub","path":...}
+ *   {"kind":"edge","from":...,"to":...,"type":...}
+ * A node line always comes before the first edge that mentions it. */
+public class JsonLinesExporter extends GraphExporter {
+
+    public JsonLinesExporter(ExportOptions options) {
+        super(options);
+    }
+
+    @Override
+    protected void writeHeader(BufferedWriter writer) {
+    }
+
+    @Override
+    protected void writeNode(BufferedWriter writer, Node node) throws IOException {
+        writer.write("{\"kind\":\"node\",\"path\":");
+        quote(writer, node.getPath());
+        writer.write(",\"name\":");
+        quote(writer, node.getName());
+        writer.write(",\"type\":\"");
+        writer.write(node.getType().toString());
+        writer.write("\"}");
+        writer.newLine();
+    }
+
+    @Override
+    protected void writeStub(BufferedWriter writer, String path) throws IOException {
+        writer.write("{\"kind\":\"stub\",\"path\":");
+        quote(writer, path);
+        writer.write('}');
+        writer.newLine();
+    }
+
+    @Override
+    protected void writeEdge(BufferedWriter writer, Edge edge) throws IOException {
+        writer.write("{\"kind\":\"edge\",\"from\":");
+        quote(writer, endPath(edge.getFrom()));
+        writer.write(",\"to\":");
+        quote(writer, endPath(edge.getTo()));
+        writer.write(",\"type\":\"");
+        writer.write(edge.getType().toString());
+        writer.write("\"}");
+        writer.newLine();
+    }
+
+    @Override
+    protected void writeFooter(BufferedWriter writer) {
+    }
+
+    static void quote(BufferedWriter writer, String text) throws IOException {
+        writer.write('"');
+        for (int i=0;i<text.length();i++) {
+            var c = text.charAt(i);
+            switch (c) {
+                case '"': writer.write("\\\""); break;
+                case '\\': writer.write("\\\\"); break;
+                case '\n': writer.write("\\n"); break;
+                case '\r': writer.write("\\r"); break;
+                case '\t': writer.write("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+}
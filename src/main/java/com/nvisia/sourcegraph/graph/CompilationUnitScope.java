@@ -0,0 +1,56 @@
+package com.nvisia.sourcegraph.graph;
+
+import java.util.*;
+
+/* The names a compilation unit can use without qualifying them: its package and its imports, in the four JLS
+ * flavours. Built once per file by the translator; ReferenceResolver probes it in JLS order (single type and
+ * single static imports, then the file's own package, then on-demand imports, then java.lang). */
+public class CompilationUnitScope {
+    private static final String DEFAULT_PACKAGE = "";
+
+    private final String packageName;
+    //simple name -> qualified name, for 'import a.b.C;' and 'import static a.b.C.member;'
+    private final Map<String, String> singleImports = new HashMap<>();
+    private final Map<String, String> singleStaticImports = new HashMap<>();
+    //'import a.b.*;' (a package or a type) and 'import static a.b.C.*;' (a type), in source order
+    private final List<String> onDemandImports = new ArrayList<>();
+    private final List<String> staticOnDemandImports = new ArrayList<>();
+
+    public CompilationUnitScope(String packageName) {
+        this.packageName = packageName != null ? packageName : DEFAULT_PACKAGE;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public void addSingleTypeImport(String qualifiedName) {
+        singleImports.put(simpleName(qualifiedName), qualifiedName);
+    }
+    /* import static typeName.member; the member may be a nested type */
+    public void addSingleStaticImport(String typeName, String member) {
+        singleStaticImports.put(member, typeName + "." + member);
+    }
+    public void addOnDemandImport(String packageOrTypeName) {
+        onDemandImports.add(packageOrTypeName);
+    }
+    public void addStaticOnDemandImport(String typeName) {
+        staticOnDemandImports.add(typeName);
+    }
+
+    /* qualified name a single type import (or single static import) binds the simple name to, or null */
+    public String singleImport(String simpleName) {
+        var name = singleImports.get(simpleName);
+        return name != null ? name : singleStaticImports.get(simpleName);
+    }
+    public List<String> getOnDemandImports() {
+        return onDemandImports;
+    }
+    public List<String> getStaticOnDemandImports() {
+        return staticOnDemandImports;
+    }
+
+    static String simpleName(String qualifiedName) {
+        return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+    }
+}
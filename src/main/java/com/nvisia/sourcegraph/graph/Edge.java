@@ -31,39 +31,52 @@ public class Edge {
 
     public void resolveNodeRefs(Map<String, Node> typeCache) {
         if (!to.isResolved() && from.isResolved()) {
-            var actualNode = typeCache.get(to.getNodePath());
-            if (actualNode == null && !to.getNodePath().contains(".")) {
+            var targetPath = to.getNodePath();
+            var actualNode = typeCache.get(targetPath);
+            if (actualNode == null && !targetPath.contains(".")) {
                 //not fully qualified, look in current package
                 Node packageNode = findNearestPackage(from.getNode().get());
                 if (packageNode != null) {
                     var packageName = packageNode.getName();
-                    var fqn = packageName + "." + to.getNodePath();
+                    var fqn = packageName + "." + targetPath;
                     actualNode = typeCache.get(fqn);
                 } else {
-                    actualNode = typeCache.get(to.getNodePath());
+                    actualNode = typeCache.get(targetPath);
                 }
-                //TODO imports
+                //imports are only looked at by ReferenceResolver
+            }
+            if (actualNode != null) {
+                bindTo(actualNode);
             }
-            to.resolveWith(actualNode);
         }
     }
 
+    void bindTo(Node node) {
+        to.resolveWith(node);
+        node.addResolvedInboundEdge(this);
+    }
+
     private Node findNearestPackage(Node actualNode) {
-        for (var e: actualNode.getInboundEdges()) {
-            if (e.getType()==EdgeType.Contains) {
-                if (!e.getFrom().isResolved()) {
-                    throw new IllegalStateException("Containing node not resolved");
-                }
-                if (e.getFrom().getNode().map(n -> n.getType()).orElse(NodeType.Unknown) == NodeType.Package) {
-                    return e.getFrom().getNode().get();
-                } else {
-                    return findNearestPackage(e.getFrom().getNode().get());
-                }
+        for (var e: actualNode.findInboundEdgesOfType(EdgeType.Contains)) {
+            if (!e.getFrom().isResolved()) {
+                throw new IllegalStateException("Containing node not resolved");
+            }
+            if (e.getFrom().getNode().map(n -> n.getType()).orElse(NodeType.Unknown) == NodeType.Package) {
+                return e.getFrom().getNode().get();
+            } else {
+                return findNearestPackage(e.getFrom().getNode().get());
             }
         }
         return null;//actually an invalid state
     }
 
+    void rehomeFrom(Node node) {
+        from = NodeRef.of(node);
+    }
+    void rehomeTo(Node node) {
+        to = NodeRef.of(node);
+    }
+
     public void clear() {
         to = null;
         from = null;
@@ -0,0 +1,94 @@
+package com.nvisia.sourcegraph.graph;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/* A node's edges bucketed by EdgeType, next to the insertion ordered list Node keeps for traversals.
+ * Node only makes one of these once it gets an edge on that side, and a bucket is only made the first time its
+ * type shows up. A bucket is its own read-only view, so asking for a type returns the same list every time rather
+ * than a fresh copy, and that list follows later changes. Until the bucket exists Node hands out a view that
+ * looks it up on every access (see Node.EdgesOfType). */
+class EdgeIndex {
+    private static final int TYPE_COUNT = EdgeType.values().length;
+
+    private final Bucket[] buckets = new Bucket[TYPE_COUNT];
+
+    /* the edges of one type; read-only to everyone but EdgeIndex */
+    private static final class Bucket extends AbstractList<Edge> implements RandomAccess {
+        private Edge[] edges = new Edge[2];
+        private int size;
+
+        @Override
+        public Edge get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+            }
+            return edges[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        private void append(Edge e) {
+            if (size == edges.length) {
+                edges = Arrays.copyOf(edges, size * 2);
+            }
+            edges[size++] = e;
+            modCount++;
+        }
+
+        private void delete(Edge e) {
+            for (int i=0;i<size;i++) {
+                if (edges[i] == e) {
+                    System.arraycopy(edges, i + 1, edges, i, size - i - 1);
+                    edges[--size] = null;
+                    modCount++;
+                    return;
+                }
+            }
+        }
+
+        private void reset() {
+            Arrays.fill(edges, 0, size, null);
+            size = 0;
+            modCount++;
+        }
+    }
+
+    void add(Edge e) {
+        var type = e.getType().ordinal();
+        if (buckets[type] == null) {
+            buckets[type] = new Bucket();
+        }
+        buckets[type].append(e);
+    }
+
+    void remove(Edge e) {
+        var bucket = buckets[e.getType().ordinal()];
+        if (bucket != null) {
+            bucket.delete(e);
+        }
+    }
+
+    void clear() {
+        for (var bucket : buckets) {
+            if (bucket != null) {
+                bucket.reset();
+            }
+        }
+    }
+
+    /* the live bucket, or null if no edge of the type was ever added */
+    List<Edge> of(EdgeType type) {
+        return buckets[type.ordinal()];
+    }
+
+    int count(EdgeType type) {
+        var bucket = buckets[type.ordinal()];
+        return bucket != null ? bucket.size : 0;
+    }
+}
@@ -0,0 +1,494 @@
+package com.nvisia.sourcegraph.graph;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/* Read-only, compact copy of a graph. Nodes are dense int ids, node and edge types are bytes, and adjacency is
+ * kept as compressed sparse rows (offsets + targets) in both directions, so an edge costs a few array slots
+ * instead of an Edge, two NodeRefs and their Optionals.
+ *
+ * Edge targets are node ids, or -(stub+1) for references that never resolved, with the referenced path kept in
+ * a (deduplicated) stub table. A resolved edge keeps only its target, not the name the source used for it.
+ *
+ * Node attributes are copied as they are at freeze time, only for the nodes that have any.
+ *
+ * node(id) hands out lightweight Node views, so the usual Node queries (findOutboundEdgesOfType etc.) work
+ * against the frozen data. Views and the Edges they return are created on demand and hold no state of their own;
+ * like the edges, their attributes can be read but not written. */
+public class FrozenGraph implements IntGraph {
+    private static final NodeType[] NODE_TYPES = NodeType.values();
+    private static final EdgeType[] EDGE_TYPES = EdgeType.values();
+    private static final int UNKNOWN = -2;
+
+    private final String[] names;
+    //handles into pathTable, the table of the graph that was frozen
+    private final PathTable pathTable;
+    private final int[] paths;
+    private final byte[] nodeTypes;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final byte[] outTypes;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    //index of the edge in the outbound arrays, which is where its type lives
+    private final int[] inEdges;
+    //copy of the type at inEdges, so inbound walks don't have to jump back into the outbound arrays
+    private final byte[] inTypes;
+    private final String[] stubPaths;
+    private final int[] roots;
+    //by node id, only for nodes that have attributes
+    private final Map<Integer, Map<String, Object>> attributes;
+    private volatile Map<Integer, Integer> idsByPath;
+    private volatile int[] containers;
+    private final AtomicReferenceArray<int[]> enclosingByType = new AtomicReferenceArray<>(NODE_TYPES.length);
+
+    FrozenGraph(PathTable pathTable, String[] names, int[] paths, byte[] nodeTypes, int[] outOffsets, int[] outTargets,
+                byte[] outTypes, String[] stubPaths, int[] roots, Map<Integer, Map<String, Object>> attributes) {
+        this.pathTable = pathTable;
+        this.names = names;
+        this.paths = paths;
+        this.nodeTypes = nodeTypes;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.outTypes = outTypes;
+        this.stubPaths = stubPaths;
+        this.roots = roots;
+        this.attributes = attributes;
+
+        var nodeCount = names.length;
+        inOffsets = new int[nodeCount + 1];
+        for (var target : outTargets) {
+            if (target >= 0) {
+                inOffsets[target + 1]++;
+            }
+        }
+        for (int i=0;i<nodeCount;i++) {
+            inOffsets[i + 1] += inOffsets[i];
+        }
+        var inCount = inOffsets[nodeCount];
+        inSources = new int[inCount];
+        inEdges = new int[inCount];
+        inTypes = new byte[inCount];
+        var cursor = Arrays.copyOf(inOffsets, nodeCount);
+        for (int from=0;from<nodeCount;from++) {
+            for (int e=outOffsets[from];e<outOffsets[from + 1];e++) {
+                var target = outTargets[e];
+                if (target >= 0) {
+                    var slot = cursor[target]++;
+                    inSources[slot] = from;
+                    inEdges[slot] = e;
+                    inTypes[slot] = outTypes[e];
+                }
+            }
+        }
+    }
+
+    /* copies everything reachable from the given top level nodes, which all have to be from the same graph */
+    public static FrozenGraph freeze(Collection<Node> topLevelNodes) {
+        var pathTable = topLevelNodes.isEmpty() ? PathTable.shared() : topLevelNodes.iterator().next().getPathTable();
+        var ids = new IdentityHashMap<Node, Integer>();
+        var nodes = new ArrayList<Node>();
+        var pending = new ArrayDeque<Node>(topLevelNodes);
+        while (!pending.isEmpty()) {
+            var node = pending.removeFirst();
+            if (ids.containsKey(node)) {
+                continue;
+            }
+            ids.put(node, nodes.size());
+            nodes.add(node);
+            for (var edge : node.getOutboundEdges()) {
+                edge.getTo().getNode().ifPresent(pending::addLast);
+            }
+        }
+
+        var nodeCount = nodes.size();
+        var names = new String[nodeCount];
+        var paths = new int[nodeCount];
+        var nodeTypes = new byte[nodeCount];
+        var outOffsets = new int[nodeCount + 1];
+        var attributes = new HashMap<Integer, Map<String, Object>>();
+        for (int i=0;i<nodeCount;i++) {
+            var node = nodes.get(i);
+            if (node.getPathTable() != pathTable) {
+                throw new IllegalArgumentException("Node from another graph: " + node.getPath());
+            }
+            names[i] = node.getName();
+            paths[i] = node.getPathHandle();
+            nodeTypes[i] = (byte) node.getType().ordinal();
+            outOffsets[i + 1] = outOffsets[i] + node.getOutboundEdges().size();
+            var nodeAttributes = node.getAttributes();
+            if (!nodeAttributes.isEmpty()) {
+                attributes.put(i, nodeAttributes);
+            }
+        }
+        var outTargets = new int[outOffsets[nodeCount]];
+        var outTypes = new byte[outTargets.length];
+        var stubs = new LinkedHashMap<String, Integer>();
+        var e = 0;
+        for (var node : nodes) {
+            for (var edge : node.getOutboundEdges()) {
+                var target = edge.getTo().getNode().orElse(null);
+                outTargets[e] = target != null ? ids.get(target) : stubTarget(stubs, edge.getTo().getNodePath());
+                outTypes[e] = (byte) edge.getType().ordinal();
+                e++;
+            }
+        }
+        var roots = new int[topLevelNodes.size()];
+        var r = 0;
+        for (var root : topLevelNodes) {
+            roots[r++] = ids.get(root);
+        }
+        return new FrozenGraph(pathTable, names, paths, nodeTypes, outOffsets, outTargets, outTypes,
+                stubs.keySet().toArray(new String[0]), roots, attributes);
+    }
+
+    static int stubTarget(Map<String, Integer> stubs, String path) {
+        var stub = stubs.get(path);
+        if (stub == null) {
+            stub = stubs.size();
+            stubs.put(path, stub);
+        }
+        return -(stub + 1);
+    }
+
+    @Override
+    public int nodeCount() {
+        return names.length;
+    }
+    public int edgeCount() {
+        return outTargets.length;
+    }
+
+    public String name(int node) {
+        return names[node];
+    }
+    @Override
+    public String path(int node) {
+        return pathTable.toPath(paths[node]);
+    }
+    public int pathHandle(int node) {
+        return paths[node];
+    }
+    public PathTable getPathTable() {
+        return pathTable;
+    }
+    public NodeType nodeType(int node) {
+        return NODE_TYPES[nodeTypes[node]];
+    }
+    /* the node's attributes as they were when frozen, read-only */
+    public Map<String, Object> attributes(int node) {
+        return attributes.getOrDefault(node, Collections.emptyMap());
+    }
+
+    /* outbound edges of a node are the edge indexes outStart(node) until outEnd(node) */
+    @Override
+    public int outStart(int node) {
+        return outOffsets[node];
+    }
+    @Override
+    public int outEnd(int node) {
+        return outOffsets[node + 1];
+    }
+    public int outDegree(int node) {
+        return outOffsets[node + 1] - outOffsets[node];
+    }
+    /* node id, or a negative stub id if the edge never resolved */
+    @Override
+    public int edgeTarget(int edge) {
+        return outTargets[edge];
+    }
+    public EdgeType edgeType(int edge) {
+        return EDGE_TYPES[outTypes[edge]];
+    }
+    @Override
+    public int edgeTypeOrdinal(int edge) {
+        return outTypes[edge];
+    }
+
+    /* inbound slots of a node are inStart(node) until inEnd(node) */
+    public int inStart(int node) {
+        return inOffsets[node];
+    }
+    public int inEnd(int node) {
+        return inOffsets[node + 1];
+    }
+    public int inDegree(int node) {
+        return inOffsets[node + 1] - inOffsets[node];
+    }
+    public int inSource(int slot) {
+        return inSources[slot];
+    }
+    /* the outbound edge index behind an inbound slot */
+    public int inEdge(int slot) {
+        return inEdges[slot];
+    }
+    public int inEdgeTypeOrdinal(int slot) {
+        return inTypes[slot];
+    }
+
+    public static boolean isStub(int target) {
+        return target < 0;
+    }
+    public String stubPath(int target) {
+        return stubPaths[-target - 1];
+    }
+    public String targetPath(int target) {
+        return target >= 0 ? path(target) : stubPath(target);
+    }
+
+    /* the node with a Contains edge to node (the first one, should there be more), -1 for none */
+    public int container(int node) {
+        var index = containers;
+        if (index == null) {
+            index = new int[nodeCount()];
+            Arrays.fill(index, -1);
+            //backwards, so the lowest id wins, like the order of the inbound slots
+            for (int from=nodeCount() - 1;from>=0;from--) {
+                for (int e=outOffsets[from + 1] - 1;e>=outOffsets[from];e--) {
+                    if (outTypes[e] == EdgeType.Contains.ordinal() && outTargets[e] >= 0) {
+                        index[outTargets[e]] = from;
+                    }
+                }
+            }
+            containers = index;
+        }
+        return index[node];
+    }
+
+    /* node itself if it is of the given type, else its closest container (over Contains) that is; -1 for none.
+     * The answers for a type are worked out for every node on first use, since queries ask for a lot of them */
+    public int enclosing(int node, NodeType type) {
+        var index = enclosingByType.get(type.ordinal());
+        if (index == null) {
+            index = new int[nodeCount()];
+            Arrays.fill(index, UNKNOWN);
+            var chain = new int[64];
+            for (int start=0;start<index.length;start++) {
+                var length = 0;
+                var n = start;
+                //climb until there's an answer, then hand it down to every node on the way
+                while (n >= 0 && index[n] == UNKNOWN && nodeType(n) != type && length <= index.length) {
+                    if (length == chain.length) {
+                        chain = Arrays.copyOf(chain, length * 2);
+                    }
+                    chain[length++] = n;
+                    n = container(n);
+                }
+                int answer;
+                if (n < 0 || length > index.length) {
+                    answer = -1;
+                } else if (index[n] != UNKNOWN) {
+                    answer = index[n];
+                } else {
+                    answer = index[n] = n;
+                }
+                for (int i=0;i<length;i++) {
+                    index[chain[i]] = answer;
+                }
+            }
+            enclosingByType.compareAndSet(type.ordinal(), null, index);
+        }
+        return index[node];
+    }
+
+    public int[] rootIds() {
+        return roots.clone();
+    }
+    public List<Node> getTopLevelNodes() {
+        var list = new ArrayList<Node>(roots.length);
+        for (var root : roots) {
+            list.add(node(root));
+        }
+        return list;
+    }
+
+    public Node node(int id) {
+        return new FrozenNode(this, id);
+    }
+
+    /* id of a view from this graph, or lookup by path for any other node. -1 if there's no such node */
+    public int idOf(Node node) {
+        if (node instanceof FrozenNode && ((FrozenNode) node).graph == this) {
+            return ((FrozenNode) node).id;
+        }
+        return node.getPathTable() == pathTable ? idOfHandle(node.getPathHandle()) : idOf(node.getPath());
+    }
+    public int idOf(String path) {
+        var handle = pathTable.lookup(path);
+        return handle == PathTable.NO_PARENT ? -1 : idOfHandle(handle);
+    }
+    public int idOfHandle(int pathHandle) {
+        var index = idsByPath;
+        if (index == null) {
+            index = new HashMap<>(paths.length * 2);
+            for (int i=paths.length - 1;i>=0;i--) {
+                index.put(paths[i], i);
+            }
+            idsByPath = index;
+        }
+        return index.getOrDefault(pathHandle, -1);
+    }
+
+    NodeRef targetRef(int edge) {
+        var target = outTargets[edge];
+        return target >= 0 ? NodeRef.of(node(target)) : NodeRef.of(pathTable, stubPath(target));
+    }
+
+    private static class FrozenNode extends Node {
+        private final FrozenGraph graph;
+        private final int id;
+
+        private FrozenNode(FrozenGraph graph, int id) {
+            super(graph.pathTable, graph.names[id], graph.paths[id], NODE_TYPES[graph.nodeTypes[id]]);
+            this.graph = graph;
+            this.id = id;
+        }
+
+        private Edge outboundEdge(int e) {
+            return new Edge(NodeRef.of(this), graph.targetRef(e), EDGE_TYPES[graph.outTypes[e]]);
+        }
+        private Edge inboundEdge(int slot) {
+            var e = graph.inEdges[slot];
+            return new Edge(NodeRef.of(graph.node(graph.inSources[slot])), NodeRef.of(this), EDGE_TYPES[graph.outTypes[e]]);
+        }
+
+        @Override
+        public List<Edge> getOutboundEdges() {
+            var list = new ArrayList<Edge>(graph.outDegree(id));
+            for (int e=graph.outOffsets[id];e<graph.outOffsets[id + 1];e++) {
+                list.add(outboundEdge(e));
+            }
+            return Collections.unmodifiableList(list);
+        }
+        @Override
+        List<Edge> outboundEdgeList() {
+            return getOutboundEdges();
+        }
+        @Override
+        public List<Edge> findOutboundEdgesOfType(EdgeType type) {
+            var list = new ArrayList<Edge>();
+            for (int e=graph.outOffsets[id];e<graph.outOffsets[id + 1];e++) {
+                if (graph.outTypes[e] == type.ordinal()) {
+                    list.add(outboundEdge(e));
+                }
+            }
+            return Collections.unmodifiableList(list);
+        }
+        @Override
+        public int countOutboundEdgesOfType(EdgeType type) {
+            var count = 0;
+            for (int e=graph.outOffsets[id];e<graph.outOffsets[id + 1];e++) {
+                if (graph.outTypes[e] == type.ordinal()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        @Override
+        public List<Edge> findOutboundEdgesToNodeType(NodeType type) {
+            var list = new ArrayList<Edge>();
+            for (int e=graph.outOffsets[id];e<graph.outOffsets[id + 1];e++) {
+                if (targetType(e) == type) {
+                    list.add(outboundEdge(e));
+                }
+            }
+            return list;
+        }
+        @Override
+        public int countOutboundEdgesToNodeType(NodeType type) {
+            var count = 0;
+            for (int e=graph.outOffsets[id];e<graph.outOffsets[id + 1];e++) {
+                if (targetType(e) == type) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        private NodeType targetType(int e) {
+            var target = graph.outTargets[e];
+            return target >= 0 ? NODE_TYPES[graph.nodeTypes[target]] : NodeType.Unknown;
+        }
+        @Override
+        public List<Edge> getInboundEdges() {
+            var list = new ArrayList<Edge>(graph.inDegree(id));
+            for (int slot=graph.inOffsets[id];slot<graph.inOffsets[id + 1];slot++) {
+                list.add(inboundEdge(slot));
+            }
+            return Collections.unmodifiableList(list);
+        }
+        @Override
+        public List<Edge> findInboundEdgesOfType(EdgeType type) {
+            var list = new ArrayList<Edge>();
+            for (int slot=graph.inOffsets[id];slot<graph.inOffsets[id + 1];slot++) {
+                if (graph.outTypes[graph.inEdges[slot]] == type.ordinal()) {
+                    list.add(inboundEdge(slot));
+                }
+            }
+            return Collections.unmodifiableList(list);
+        }
+        @Override
+        public int countInboundEdgesOfType(EdgeType type) {
+            var count = 0;
+            for (int slot=graph.inOffsets[id];slot<graph.inOffsets[id + 1];slot++) {
+                if (graph.outTypes[graph.inEdges[slot]] == type.ordinal()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        @Override
+        public boolean isLeaf() {
+            return graph.outDegree(id) == 0;
+        }
+        @Override
+        public Optional<Object> getAttribute(String key) {
+            return Optional.ofNullable(graph.attributes(id).get(key));
+        }
+        @Override
+        public Map<String, Object> getAttributes() {
+            return graph.attributes(id);
+        }
+
+        @Override
+        void addOutboundEdge(Edge e) {
+            throw new UnsupportedOperationException("frozen graph");
+        }
+        @Override
+        public Edge createOutboundEdge(NodeRef to, EdgeType type) {
+            throw new UnsupportedOperationException("frozen graph");
+        }
+        @Override
+        public void absorb(Node other) {
+            throw new UnsupportedOperationException("frozen graph");
+        }
+        @Override
+        public void removeOutboundEdge(Edge e) {
+            throw new UnsupportedOperationException("frozen graph");
+        }
+        @Override
+        public void removeInboundEdge(Edge e) {
+            throw new UnsupportedOperationException("frozen graph");
+        }
+        @Override
+        public void clearOutboundEdges() {
+            throw new UnsupportedOperationException("frozen graph");
+        }
+        @Override
+        public void setAttribute(String key, Object value) {
+            throw new UnsupportedOperationException("frozen graph");
+        }
+
+        //views are made on demand, so two views of the same node have to be equal
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FrozenNode)) return false;
+            var other = (FrozenNode) o;
+            return graph == other.graph && id == other.id;
+        }
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.nvisia.sourcegraph.graph;
+
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/* Neighborhood, reachability and shortest path queries over a FrozenGraph, e.g. the types that a change to T can
+ * affect:
+ *
+ *   var query = new GraphQuery(graph).following(GraphQuery.DEPENDENCIES);
+ *   query.impactOf(graph.idOf("com.acme.T"), NodeType.Type).mapToObj(graph::path).forEach(System.out::println);
+ *
+ * Every query is a breadth first search over the frozen CSR arrays, with the queue in an int array and visited
+ * nodes in a BitSet. Results are lazy IntStreams of node ids in BFS order (so nearer nodes come first): the search
+ * only runs as far as the stream is consumed, and findFirst() or limit() stop it early. Start nodes are never part
+ * of a result.
+ *
+ * The filters restrict the search itself: only edges of a selected type are followed, and only into nodes of a
+ * selected type. Unresolved edges lead nowhere. A GraphQuery is immutable and can be shared between threads; each
+ * stream has its own search state and isn't meant for parallel(). */
+public class GraphQuery {
+    //everything but Contains: what a node uses, as opposed to what it's made of
+    public static final Set<EdgeType> DEPENDENCIES =
+            Collections.unmodifiableSet(EnumSet.complementOf(EnumSet.of(EdgeType.Contains)));
+    private static final int CONTAINS = EdgeType.Contains.ordinal();
+    private static final int[] NO_PATH = new int[0];
+
+    private final FrozenGraph graph;
+    private final int edgeTypeMask;
+    private final int nodeTypeMask;
+
+    public GraphQuery(FrozenGraph graph) {
+        this(graph, Traversal.ALL, Traversal.ALL);
+    }
+
+    private GraphQuery(FrozenGraph graph, int edgeTypeMask, int nodeTypeMask) {
+        this.graph = graph;
+        this.edgeTypeMask = edgeTypeMask;
+        this.nodeTypeMask = nodeTypeMask;
+    }
+
+    public FrozenGraph getGraph() {
+        return graph;
+    }
+
+    /* a query that only follows edges of these types */
+    public GraphQuery following(EdgeType... edgeTypes) {
+        return new GraphQuery(graph, Traversal.maskOf(edgeTypes), nodeTypeMask);
+    }
+    public GraphQuery following(Collection<EdgeType> edgeTypes) {
+        return new GraphQuery(graph, Traversal.maskOf(edgeTypes), nodeTypeMask);
+    }
+
+    /* a query that only enters nodes of these types */
+    public GraphQuery through(NodeType... nodeTypes) {
+        return new GraphQuery(graph, edgeTypeMask, Traversal.maskOf(nodeTypes));
+    }
+
+    /* nodes at most hops outbound edges away from node */
+    public IntStream outbound(int node, int hops) {
+        return stream(new Search(this, false, checkHops(hops), false, checkNode(node)));
+    }
+
+    /* nodes with a path of at most hops edges to node */
+    public IntStream inbound(int node, int hops) {
+        return stream(new Search(this, true, checkHops(hops), false, checkNode(node)));
+    }
+
+    /* everything reachable over outbound edges from any of the nodes */
+    public IntStream reachable(int... nodes) {
+        return stream(new Search(this, false, Integer.MAX_VALUE, false, checkNodes(nodes)));
+    }
+
+    /* everything with a path to any of the nodes, i.e. their transitive dependents */
+    public IntStream dependents(int... nodes) {
+        return stream(new Search(this, true, Integer.MAX_VALUE, false, checkNodes(nodes)));
+    }
+
+    /* What a change to node can affect, as containers of the given type (usually Type or Package): every unit
+     * that depends on node or on something in it, then every unit that depends on one of those or on something
+     * in them, and so on. A dependent edge counts for the closest container of its source, so a call to a method
+     * of T makes the calling type depend on T. Neither node nor its own container is part of the result, and
+     * dependents that have no container of that type are left out. */
+    public IntStream impactOf(int node, NodeType level) {
+        checkNode(node);
+        var search = new Search(this, true, Integer.MAX_VALUE, false, node);
+        search.unitType = level;
+        var own = enclosing(node, level);
+        if (own >= 0) {
+            search.visited.set(own);
+        }
+        return stream(search);
+    }
+
+    /* the node itself if it is of the given type, else its closest container that is; -1 if there is none */
+    public int enclosing(int node, NodeType type) {
+        return graph.enclosing(checkNode(node), type);
+    }
+
+    /* a shortest path over outbound edges, both ends included; empty if to can't be reached from from */
+    public int[] shortestPath(int from, int to) {
+        checkNode(from);
+        checkNode(to);
+        if (from == to) {
+            return new int[] {from};
+        }
+        var search = new Search(this, false, Integer.MAX_VALUE, true, from);
+        while (search.hasNext()) {
+            if (search.nextInt() == to) {
+                return search.pathTo(search.reported - 1);
+            }
+        }
+        return NO_PATH;
+    }
+
+    /* number of edges on a shortest path, -1 if there is none */
+    public int distance(int from, int to) {
+        return shortestPath(from, to).length - 1;
+    }
+
+    private static IntStream stream(Search search) {
+        return StreamSupport.intStream(Spliterators.spliteratorUnknownSize(search,
+                Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.ORDERED), false);
+    }
+
+    private int checkNode(int node) {
+        if (node < 0 || node >= graph.nodeCount()) {
+            throw new IllegalArgumentException("no node " + node + " in a graph of " + graph.nodeCount());
+        }
+        return node;
+    }
+    private int[] checkNodes(int[] nodes) {
+        for (var node : nodes) {
+            checkNode(node);
+        }
+        return nodes;
+    }
+    private static int checkHops(int hops) {
+        if (hops < 0) {
+            throw new IllegalArgumentException("hops must not be negative: " + hops);
+        }
+        return hops;
+    }
+
+    /* The queue holds every node found so far in BFS order. Nodes before reported have been handed out, nodes
+     * before expanded have had their edges looked at, and nodes before levelEnd are level edges from the start
+     * nodes. A node is only expanded once everything found before it has been handed out, which is what keeps
+     * the search lazy. */
+    private static class Search implements PrimitiveIterator.OfInt {
+        private final FrozenGraph graph;
+        private final boolean inbound;
+        private final int maxHops;
+        private final int edgeTypeMask;
+        private final int nodeTypeMask;
+        private final BitSet visited;
+        //set for impactOf: the queue holds units of this type, and a unit is expanded through all its members
+        private NodeType unitType;
+        private BitSet expandedMembers;
+        private int[] members;
+        private int[] queue;
+        //queue index of the node each node was found from, for shortestPath
+        private int[] foundFrom;
+        private int tail;
+        private int reported;
+        private int expanded;
+        private int levelEnd;
+        private int level;
+
+        private Search(GraphQuery query, boolean inbound, int maxHops, boolean trackPaths, int... starts) {
+            this.graph = query.graph;
+            this.inbound = inbound;
+            this.maxHops = maxHops;
+            this.edgeTypeMask = query.edgeTypeMask;
+            this.nodeTypeMask = query.nodeTypeMask;
+            visited = new BitSet(graph.nodeCount());
+            queue = new int[Math.max(64, starts.length)];
+            foundFrom = trackPaths ? new int[queue.length] : null;
+            for (var start : starts) {
+                if (!visited.get(start)) {
+                    visited.set(start);
+                    add(start, -1);
+                }
+            }
+            reported = tail;
+            levelEnd = tail;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (reported == tail) {
+                if (expanded == tail) {
+                    return false;
+                }
+                if (expanded == levelEnd) {
+                    level++;
+                    levelEnd = tail;
+                }
+                if (level >= maxHops) {
+                    return false;
+                }
+                expand(expanded++);
+            }
+            return true;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return queue[reported++];
+        }
+
+        /* nodes found from the one at index are level + 1 edges from the start */
+        private void expand(int index) {
+            var node = queue[index];
+            if (unitType != null) {
+                expandUnit(node, index);
+            } else if (inbound) {
+                for (int slot=graph.inStart(node);slot<graph.inEnd(node);slot++) {
+                    visit(graph.inSource(slot), graph.inEdgeTypeOrdinal(slot), index);
+                }
+            } else {
+                for (int e=graph.outStart(node);e<graph.outEnd(node);e++) {
+                    visit(graph.edgeTarget(e), graph.edgeTypeOrdinal(e), index);
+                }
+            }
+        }
+
+        private void expandUnit(int unit, int index) {
+            if (expandedMembers == null) {
+                expandedMembers = new BitSet(graph.nodeCount());
+                members = new int[64];
+            }
+            var count = 0;
+            members[count++] = unit;
+            expandedMembers.set(unit);
+            while (count > 0) {
+                var node = members[--count];
+                for (int slot=graph.inStart(node);slot<graph.inEnd(node);slot++) {
+                    var source = graph.inSource(slot);
+                    var edgeType = graph.inEdgeTypeOrdinal(slot);
+                    if (edgeType != CONTAINS && (edgeTypeMask & (1 << edgeType)) != 0
+                            && enters(source)) {
+                        visit(graph.enclosing(source, unitType), edgeType, index);
+                    }
+                }
+                for (int e=graph.outStart(node);e<graph.outEnd(node);e++) {
+                    var member = graph.edgeTarget(e);
+                    if (member >= 0 && graph.edgeTypeOrdinal(e) == CONTAINS && !expandedMembers.get(member)) {
+                        expandedMembers.set(member);
+                        if (count == members.length) {
+                            members = Arrays.copyOf(members, count * 2);
+                        }
+                        members[count++] = member;
+                    }
+                }
+            }
+        }
+
+        private void visit(int node, int edgeType, int index) {
+            if (node < 0 || (edgeTypeMask & (1 << edgeType)) == 0 || visited.get(node)
+                    || (unitType == null && !enters(node))) {
+                return;
+            }
+            visited.set(node);
+            add(node, index);
+        }
+
+        //for units the filter was applied to the node the edge came from
+        private boolean enters(int node) {
+            return nodeTypeMask == Traversal.ALL || Traversal.includes(nodeTypeMask, graph.nodeType(node));
+        }
+
+        private void add(int node, int index) {
+            if (tail == queue.length) {
+                var size = (int) Math.min((long) tail * 2, Math.max(graph.nodeCount(), tail + 1));
+                queue = Arrays.copyOf(queue, size);
+                if (foundFrom != null) {
+                    foundFrom = Arrays.copyOf(foundFrom, size);
+                }
+            }
+            if (foundFrom != null) {
+                foundFrom[tail] = index;
+            }
+            queue[tail++] = node;
+        }
+
+        private int[] pathTo(int index) {
+            var length = 0;
+            for (int i=index;i>=0;i=foundFrom[i]) {
+                length++;
+            }
+            var path = new int[length];
+            for (int i=index;i>=0;i=foundFrom[i]) {
+                path[--length] = queue[i];
+            }
+            return path;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package com.nvisia.sourcegraph.graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/* Binary image of a resolved graph, so a warm start doesn't have to reparse the source tree.
+ *
+ * Layout (big endian):
+ *   header:   int magic, int version, int stringCount, int nodeCount, int edgeCount, int rootCount, int typeCount,
+ *             int attributeCount
+ *   strings:  stringCount x (int byteLength, UTF-8 bytes)
+ *   nodes:    int[nodeCount] name, int[nodeCount] path (string ids), byte[nodeCount] NodeType ordinal
+ *   edges:    int[nodeCount+1] outbound offsets, then per edge int[edgeCount] target node id (-1 when
+ *             unresolved), int[edgeCount] target path (string id), byte[edgeCount] EdgeType ordinal
+ *   roots:    int[rootCount] node ids
+ *   types:    typeCount x (int name string id, int node id)
+ *   attrs:    attributeCount x (int node id, int key string id, byte kind, value), kind and value being
+ *             0 int, 1 long, 2 double, 3 int string id, 4 byte boolean
+ *   trailer:  long CRC32 of everything before it
+ *
+ * Reading maps the file rather than streaming it, so loading costs a page-in plus building the objects. */
+public class GraphSnapshot {
+    public static final int MAGIC = 0x53475246; //"SGRF"
+    //2: node attributes
+    public static final int VERSION = 2;
+    private static final int HEADER_BYTES = 8 * Integer.BYTES;
+    private static final byte INT = 0, LONG = 1, DOUBLE = 2, STRING = 3, BOOLEAN = 4;
+    private static final NodeType[] NODE_TYPES = NodeType.values();
+    private static final EdgeType[] EDGE_TYPES = EdgeType.values();
+
+    private final List<Node> topLevelNodes;
+    private final TypeIndex typeCache;
+
+    private GraphSnapshot(List<Node> topLevelNodes, TypeIndex typeCache) {
+        this.topLevelNodes = topLevelNodes;
+        this.typeCache = typeCache;
+    }
+
+    public List<Node> getTopLevelNodes() {
+        return topLevelNodes;
+    }
+
+    public TypeIndex getTypeCache() {
+        return typeCache;
+    }
+
+    public static void write(Path file, Collection<Node> topLevelNodes, Map<String, Node> typeCache) throws IOException {
+        //number every node reachable from the roots, in discovery order so the output is stable
+        var ids = new IdentityHashMap<Node, Integer>();
+        var nodes = new ArrayList<Node>();
+        var pending = new ArrayDeque<Node>();
+        for (var root : topLevelNodes) {
+            pending.addLast(root);
+        }
+        while (!pending.isEmpty()) {
+            var node = pending.removeFirst();
+            if (ids.containsKey(node)) {
+                continue;
+            }
+            ids.put(node, nodes.size());
+            nodes.add(node);
+            for (var edge : node.getOutboundEdges()) {
+                edge.getTo().getNode().ifPresent(pending::addLast);
+            }
+        }
+
+        var strings = new LinkedHashMap<String, Integer>();
+        var names = new int[nodes.size()];
+        var paths = new int[nodes.size()];
+        var offsets = new int[nodes.size() + 1];
+        for (int i=0;i<nodes.size();i++) {
+            var node = nodes.get(i);
+            names[i] = intern(strings, node.getName());
+            paths[i] = intern(strings, node.getPath());
+            offsets[i + 1] = offsets[i] + node.getOutboundEdges().size();
+        }
+        var edgeCount = offsets[nodes.size()];
+        var targets = new int[edgeCount];
+        var targetPaths = new int[edgeCount];
+        var edgeTypes = new byte[edgeCount];
+        var e = 0;
+        for (var node : nodes) {
+            for (var edge : node.getOutboundEdges()) {
+                targets[e] = edge.getTo().getNode().map(ids::get).orElse(-1);
+                targetPaths[e] = intern(strings, edge.getTo().getNodePath());
+                edgeTypes[e] = (byte) edge.getType().ordinal();
+                e++;
+            }
+        }
+        var types = new ArrayList<Map.Entry<String, Node>>();
+        for (var entry : typeCache.entrySet()) {
+            if (ids.containsKey(entry.getValue())) {
+                intern(strings, entry.getKey());
+                types.add(entry);
+            }
+        }
+        var attributeNodes = new ArrayList<Integer>();
+        var attributes = new ArrayList<Map.Entry<String, Object>>();
+        for (int i=0;i<nodes.size();i++) {
+            for (var attribute : nodes.get(i).getAttributes().entrySet()) {
+                var value = attribute.getValue();
+                if (!(value instanceof Integer || value instanceof Long || value instanceof Double
+                        || value instanceof String || value instanceof Boolean)) {
+                    throw new IllegalArgumentException("Can't write attribute " + attribute.getKey() + " of "
+                            + nodes.get(i).getPath() + ": " + value.getClass().getName());
+                }
+                intern(strings, attribute.getKey());
+                if (value instanceof String) {
+                    intern(strings, (String) value);
+                }
+                attributeNodes.add(i);
+                attributes.add(attribute);
+            }
+        }
+
+        var crc = new CRC32();
+        try (var out = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Files.newOutputStream(file), crc), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(strings.size());
+            out.writeInt(nodes.size());
+            out.writeInt(edgeCount);
+            out.writeInt(topLevelNodes.size());
+            out.writeInt(types.size());
+            out.writeInt(attributes.size());
+            for (var s : strings.keySet()) {
+                var bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            writeInts(out, names);
+            writeInts(out, paths);
+            for (var node : nodes) {
+                out.writeByte(node.getType().ordinal());
+            }
+            writeInts(out, offsets);
+            writeInts(out, targets);
+            writeInts(out, targetPaths);
+            out.write(edgeTypes);
+            for (var root : topLevelNodes) {
+                out.writeInt(ids.get(root));
+            }
+            for (var entry : types) {
+                out.writeInt(strings.get(entry.getKey()));
+                out.writeInt(ids.get(entry.getValue()));
+            }
+            for (int a=0;a<attributes.size();a++) {
+                out.writeInt(attributeNodes.get(a));
+                out.writeInt(strings.get(attributes.get(a).getKey()));
+                writeValue(out, strings, attributes.get(a).getValue());
+            }
+            //the trailer itself isn't covered by the checksum
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+    }
+
+    /* reads the snapshot as a graph of its own */
+    public static GraphSnapshot read(Path file) throws IOException {
+        return read(file, new PathTable());
+    }
+
+    /* reads the snapshot with its paths interned into the given table, e.g. to add it to an import's graph */
+    public static GraphSnapshot read(Path file, PathTable pathTable) throws IOException {
+        var image = Image.map(file);
+        var nodeCount = image.nodeTypes.length;
+        var nodes = new Node[nodeCount];
+        for (int i=0;i<nodeCount;i++) {
+            nodes[i] = new Node(pathTable, image.strings[image.names[i]], image.strings[image.paths[i]], NODE_TYPES[image.nodeTypes[i]]);
+        }
+        for (int i=0;i<nodeCount;i++) {
+            var from = nodes[i];
+            for (int e=image.offsets[i];e<image.offsets[i + 1];e++) {
+                var target = image.targets[e];
+                var to = NodeRef.of(pathTable, image.strings[image.targetPaths[e]]);
+                if (target >= 0) {
+                    to.resolveWith(nodes[target]);
+                }
+                var edge = new Edge(NodeRef.of(from), to, EDGE_TYPES[image.edgeTypes[e]]);
+                from.addOutboundEdge(edge);
+                if (target >= 0) {
+                    nodes[target].addResolvedInboundEdge(edge);
+                }
+            }
+        }
+        var roots = new ArrayList<Node>(image.roots.length);
+        for (var root : image.roots) {
+            roots.add(nodes[root]);
+        }
+        var typeCache = new TypeIndex();
+        for (int i=0;i<image.typeNames.length;i++) {
+            typeCache.put(image.strings[image.typeNames[i]], nodes[image.typeNodes[i]]);
+        }
+        for (int a=0;a<image.attributeNodes.length;a++) {
+            nodes[image.attributeNodes[a]].setAttribute(image.strings[image.attributeKeys[a]], image.attributeValues[a]);
+        }
+        return new GraphSnapshot(roots, typeCache);
+    }
+
+    /* loads the snapshot straight into the compact representation; the adjacency arrays are used as they are */
+    public static FrozenGraph readFrozen(Path file) throws IOException {
+        var image = Image.map(file);
+        var pathTable = new PathTable();
+        var nodeCount = image.nodeTypes.length;
+        var names = new String[nodeCount];
+        var paths = new int[nodeCount];
+        //intern each distinct string once rather than once per node
+        var handles = new int[image.strings.length];
+        Arrays.fill(handles, PathTable.NO_PARENT);
+        for (int i=0;i<nodeCount;i++) {
+            names[i] = image.strings[image.names[i]];
+            var path = image.paths[i];
+            if (handles[path] == PathTable.NO_PARENT) {
+                handles[path] = pathTable.intern(image.strings[path]);
+            }
+            paths[i] = handles[path];
+        }
+        var stubs = new LinkedHashMap<String, Integer>();
+        var targets = image.targets;
+        for (int e=0;e<targets.length;e++) {
+            if (targets[e] < 0) {
+                targets[e] = FrozenGraph.stubTarget(stubs, image.strings[image.targetPaths[e]]);
+            }
+        }
+        return new FrozenGraph(pathTable, names, paths, image.nodeTypes, image.offsets, targets, image.edgeTypes,
+                stubs.keySet().toArray(new String[0]), image.roots, image.attributesByNode());
+    }
+
+    /* the decoded arrays of a snapshot file */
+    private static class Image {
+        private String[] strings;
+        private int[] names;
+        private int[] paths;
+        private byte[] nodeTypes;
+        private int[] offsets;
+        private int[] targets;
+        private int[] targetPaths;
+        private byte[] edgeTypes;
+        private int[] roots;
+        private int[] typeNames;
+        private int[] typeNodes;
+        private int[] attributeNodes;
+        private int[] attributeKeys;
+        private Object[] attributeValues;
+
+        private static Image map(Path file) throws IOException {
+            try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                var size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Snapshot too large to map: " + size + " bytes");
+                }
+                if (size < HEADER_BYTES + Long.BYTES) {
+                    throw new IOException("Not a graph snapshot: " + file);
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                return decode(buffer, file);
+            }
+        }
+
+        private static Image decode(ByteBuffer buffer, Path file) throws IOException {
+            var limit = buffer.limit() - Long.BYTES;
+            var crc = new CRC32();
+            crc.update(buffer.duplicate().limit(limit));
+            if (crc.getValue() != buffer.getLong(limit)) {
+                throw new IOException("Checksum mismatch in graph snapshot " + file);
+            }
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a graph snapshot: " + file);
+            }
+            var version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported graph snapshot version " + version + " in " + file);
+            }
+            var stringCount = buffer.getInt();
+            var nodeCount = buffer.getInt();
+            var edgeCount = buffer.getInt();
+            var rootCount = buffer.getInt();
+            var typeCount = buffer.getInt();
+            var attributeCount = buffer.getInt();
+
+            var image = new Image();
+            image.strings = new String[stringCount];
+            for (int i=0;i<stringCount;i++) {
+                var length = buffer.getInt();
+                image.strings[i] = StandardCharsets.UTF_8.decode(buffer.slice().limit(length)).toString();
+                buffer.position(buffer.position() + length);
+            }
+            image.names = readInts(buffer, nodeCount);
+            image.paths = readInts(buffer, nodeCount);
+            image.nodeTypes = readBytes(buffer, nodeCount);
+            image.offsets = readInts(buffer, nodeCount + 1);
+            image.targets = readInts(buffer, edgeCount);
+            image.targetPaths = readInts(buffer, edgeCount);
+            image.edgeTypes = readBytes(buffer, edgeCount);
+            image.roots = readInts(buffer, rootCount);
+            image.typeNames = new int[typeCount];
+            image.typeNodes = new int[typeCount];
+            for (int i=0;i<typeCount;i++) {
+                image.typeNames[i] = buffer.getInt();
+                image.typeNodes[i] = buffer.getInt();
+            }
+            image.attributeNodes = new int[attributeCount];
+            image.attributeKeys = new int[attributeCount];
+            image.attributeValues = new Object[attributeCount];
+            for (int a=0;a<attributeCount;a++) {
+                image.attributeNodes[a] = buffer.getInt();
+                image.attributeKeys[a] = buffer.getInt();
+                image.attributeValues[a] = readValue(buffer, image.strings, file);
+            }
+            return image;
+        }
+
+        //per node, in the shape FrozenGraph keeps them
+        private Map<Integer, Map<String, Object>> attributesByNode() {
+            var byNode = new HashMap<Integer, Map<String, Object>>();
+            for (int a=0;a<attributeNodes.length;a++) {
+                byNode.computeIfAbsent(attributeNodes[a], node -> new HashMap<>())
+                        .put(strings[attributeKeys[a]], attributeValues[a]);
+            }
+            byNode.replaceAll((node, attributes) -> Map.copyOf(attributes));
+            return byNode;
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Map<String, Integer> strings, Object value) throws IOException {
+        if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeInt(strings.get(value));
+        } else {
+            out.writeByte(BOOLEAN);
+            out.writeByte((Boolean) value ? 1 : 0);
+        }
+    }
+
+    private static Object readValue(ByteBuffer buffer, String[] strings, Path file) throws IOException {
+        var kind = buffer.get();
+        switch (kind) {
+            case INT: return buffer.getInt();
+            case LONG: return buffer.getLong();
+            case DOUBLE: return buffer.getDouble();
+            case STRING: return strings[buffer.getInt()];
+            case BOOLEAN: return buffer.get() != 0;
+            default: throw new IOException("Unknown attribute kind " + kind + " in graph snapshot " + file);
+        }
+    }
+
+    private static int intern(Map<String, Integer> strings, String s) {
+        var id = strings.get(s);
+        if (id == null) {
+            id = strings.size();
+            strings.put(s, id);
+        }
+        return id;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (var value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer, int count) {
+        var values = new byte[count];
+        buffer.get(values);
+        return values;
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        var values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+}
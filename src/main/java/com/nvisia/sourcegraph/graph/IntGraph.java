@@ -0,0 +1,17 @@
+package com.nvisia.sourcegraph.graph;
+
+/* What graph algorithms need of a graph with dense int node ids and edges kept as compressed rows: the outbound
+ * edges of node n are the edge indexes outStart(n) until outEnd(n). Targets below 0 are unresolved. */
+public interface IntGraph {
+    int nodeCount();
+
+    int outStart(int node);
+
+    int outEnd(int node);
+
+    int edgeTarget(int edge);
+
+    int edgeTypeOrdinal(int edge);
+
+    String path(int node);
+}
@@ -1,71 +1,57 @@
 package com.nvisia.sourcegraph.graph;
 
 import java.util.*;
-import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 public class Node implements Comparable<Node> {
     private String name;
-    private String path;
+    //the graph's path table, and the handle into it; the string is only built when asked for
+    private final PathTable paths;
+    private final int path;
     private NodeType type;
     private List<Edge> outboundEdges = new ArrayList<>();
     private List<Edge> inboundEdges = new ArrayList<>();
+    //by type lookups, made with the first edge on that side; plenty of nodes only ever have edges one way
+    private EdgeIndex outboundByType;
+    private EdgeIndex inboundByType;
+    //computed results hung on the node (metrics etc.), created on first write since most nodes never get any
+    private Map<String, Object> attributes;
 
+    /* a node outside of any import's graph, its path goes into PathTable.shared() */
     public Node(String name, String path, NodeType type) {
+        this(PathTable.shared(), name, path, type);
+    }
+    public Node(PathTable paths, String name, String path, NodeType type) {
+        this(paths, name, paths.intern(path), type);
+    }
+    public Node(PathTable paths, String name, int pathHandle, NodeType type) {
         this.name = name;
-        this.path = path;
+        this.paths = paths;
+        this.path = pathHandle;
         this.type = type;
     }
     public Node(String name, String path, NodeType type, List<Edge> outboundEdges) {
         this(name, path, type);
         this.outboundEdges = outboundEdges;
+        for (var edge : outboundEdges) {
+            outboundIndex().add(edge);
+        }
     }
     public String toString() {
         return type.toString()+":"+name;
     }
 
     public void preOrderTraverse(Optional<EdgeType> typeToTraverse, NodeVisitor visitor) {
-        var nodeSet = new HashSet<NodeRef>();
-        Node fakeNod = new Node("__root__", "__root__", NodeType.Package);
-        doPreOrderTraverse(typeToTraverse, Optional.of(new Edge(NodeRef.of(fakeNod), NodeRef.of(this), EdgeType.Contains)), visitor, nodeSet, 0);
-    }
-    private void doPreOrderTraverse(Optional<EdgeType> typeToTraverse, Optional<Edge> inEdge, NodeVisitor visitor, Set<NodeRef> alreadyVisited, int level) {
-        inEdge.ifPresent(edge -> {
-            if (alreadyVisited.contains(edge.getTo())) {
-                return;
-            }
-            visitor.visitEdge(Optional.of(edge.getType()), edge.getTo(), level);
-            alreadyVisited.add(edge.getTo());
-            for (var childEdge : outboundEdges) {
-                //Hack/workaround for the fact that the post-processing resolution of types (from local to fully qualified) leaves
-                //  edges to nowhere in the case of types outside the system (like java.lang.*)
-                if (typeToTraverse.map(e -> e.equals(childEdge.getType()) ).orElse(true) ) {
-                    childEdge.getTo().getNode().ifPresentOrElse(
-                            node -> node.doPreOrderTraverse(typeToTraverse, Optional.of(childEdge), visitor, alreadyVisited, level + 1),
-                            () -> visitor.visitEdge(Optional.of(childEdge.getType()), childEdge.getTo(), level + 1) );
-                } else {
-                    visitor.visitEdge(Optional.of(childEdge.getType()), childEdge.getTo(), level + 1);
-                }
-            }
-        });
+        Traversal.forCurrentThread().preOrder(this, typeToTraverse.orElse(null),
+                (edgeType, nodeRef, level) -> visitor.visitEdge(Traversal.optionalOf(edgeType), nodeRef, level));
+    }
+    /* typeToTraverse null means follow every edge type */
+    public void preOrderTraverse(EdgeType typeToTraverse, TraversalVisitor visitor) {
+        Traversal.forCurrentThread().preOrder(this, typeToTraverse, visitor);
     }
 
     public void preOrderEdgeTraverse(Optional<EdgeType> typeToTraverse, Consumer<Edge> visitor) {
-        var nodeSet = new HashSet<Node>();
-        Node fakeNod = new Node("__root__", "__root__", NodeType.Package);
-        doPreOrderEdgeTraverse(typeToTraverse, visitor, nodeSet);
-    }
-    private void doPreOrderEdgeTraverse(Optional<EdgeType> typeToTraverse, Consumer<Edge> visitor, Set<Node> alreadyVisited) {
-        if (alreadyVisited.contains(this)) {
-            return;
-        }
-        alreadyVisited.add(this);
-        for (var edge : outboundEdges) {
-            if (typeToTraverse.map(e -> e.equals(edge.getType()) ).orElse(true) ) {
-                visitor.accept(edge);
-                edge.getTo().getNode().ifPresent(child -> child.doPreOrderEdgeTraverse(typeToTraverse, visitor, alreadyVisited));
-            }
-        };
+        Traversal.forCurrentThread().preOrderEdges(this, typeToTraverse.orElse(null), visitor);
     }
 
     public String getName() {
@@ -73,21 +59,45 @@ public class Node implements Comparable<Node> {
     }
 
     public String getPath() {
+        return paths.toPath(path);
+    }
+    public int getPathHandle() {
         return path;
     }
+    public PathTable getPathTable() {
+        return paths;
+    }
 
     public NodeType getType() {
         return type;
     }
 
+    public synchronized void setAttribute(String key, Object value) {
+        if (attributes == null) {
+            attributes = new HashMap<>(4);
+        }
+        attributes.put(key, value);
+    }
+    public synchronized Optional<Object> getAttribute(String key) {
+        return attributes == null ? Optional.empty() : Optional.ofNullable(attributes.get(key));
+    }
+    public synchronized Map<String, Object> getAttributes() {
+        return attributes == null ? Collections.emptyMap() : Map.copyOf(attributes);
+    }
+
     public List<Edge> getOutboundEdges() {
         return Collections.unmodifiableList(outboundEdges);
     }
+    //the backing list, for traversals that shouldn't allocate a view per node
+    List<Edge> outboundEdgeList() {
+        return outboundEdges;
+    }
     void addOutboundEdge(Edge e) {
-        if (!e.getFrom().equals(NodeRef.of(this))) {
+        if (e.getFrom().getPathHandle() != path) {
             throw new IllegalStateException("add of outbound edge to wrong node");
         }
         outboundEdges.add(e);
+        outboundIndex().add(e);
     }
     public Edge createOutboundEdge(NodeRef to, EdgeType type) {
         var edge = new Edge(NodeRef.of(this), to, type);
@@ -95,48 +105,119 @@ public class Node implements Comparable<Node> {
         to.getNode().ifPresent(n -> n.addInboundEdge(edge));
         return edge;
     }
-    public Collection<Edge> findOutboundEdgesOfType(EdgeType type) {
+    /* puts child under this node (a Contains edge) and returns it, for graphs built by hand */
+    public Node addContained(Node child) {
+        createOutboundEdge(NodeRef.of(child), EdgeType.Contains);
+        return child;
+    }
+    /* read-only view, in insertion order; it follows later changes to the node */
+    public List<Edge> findOutboundEdgesOfType(EdgeType type) {
+        var bucket = outboundByType != null ? outboundByType.of(type) : null;
+        return bucket != null ? bucket : new EdgesOfType(this, true, type);
+    }
+    public int countOutboundEdgesOfType(EdgeType type) {
+        return outboundByType != null ? outboundByType.count(type) : 0;
+    }
+    //the target's type can change when a ref gets resolved, so this one can't be bucketed up front
+    public List<Edge> findOutboundEdgesToNodeType(NodeType type) {
         var list = new ArrayList<Edge>();
-        for (var edge : outboundEdges) {
-            if (edge.getType()==type) {
+        for (var edge : getOutboundEdges()) {
+            if (targetType(edge) == type) {
                 list.add(edge);
             }
         }
         return list;
     }
-    public Collection<Edge> findOutboundEdgesToNodeType(NodeType type) {
-        var list = new ArrayList<Edge>();
-        for (var edge : outboundEdges) {
-            if (edge.getTo().getNode().map(node -> node.getType())
-                                           .or(() -> Optional.of(NodeType.Unknown)).get() == type) {
-                list.add(edge);
+    public int countOutboundEdgesToNodeType(NodeType type) {
+        var count = 0;
+        for (var edge : getOutboundEdges()) {
+            if (targetType(edge) == type) {
+                count++;
             }
         }
-        return list;
+        return count;
+    }
+    private static NodeType targetType(Edge edge) {
+        var target = edge.getTo().getNode();
+        return target.isPresent() ? target.get().getType() : NodeType.Unknown;
     }
 
     public List<Edge> getInboundEdges() {
         return Collections.unmodifiableList(inboundEdges);
     }
     void addInboundEdge(Edge e) {
-        if (!e.getTo().equals(NodeRef.of(this))) {
+        if (e.getTo().getPathHandle() != path) {
             throw new IllegalStateException("add of outbound edge to wrong node");
         }
         inboundEdges.add(e);
+        inboundIndex().add(e);
     }
-    public Collection<Edge> findInboundEdgesOfType(EdgeType type) {
-        var list = new ArrayList<Edge>();
-        for (var edge : inboundEdges) {
-            if (edge.getType()==type) {
-                list.add(edge);
-            }
+    //for edges resolved after the fact, where the 'to' path is whatever name the source used
+    void addResolvedInboundEdge(Edge e) {
+        if (e.getTo().getNode().orElse(null) != this) {
+            throw new IllegalStateException("add of inbound edge to wrong node");
         }
-        return list;
+        inboundEdges.add(e);
+        inboundIndex().add(e);
+    }
+    /* read-only view, in insertion order; it follows later changes to the node */
+    public List<Edge> findInboundEdgesOfType(EdgeType type) {
+        var bucket = inboundByType != null ? inboundByType.of(type) : null;
+        return bucket != null ? bucket : new EdgesOfType(this, false, type);
+    }
+    public int countInboundEdgesOfType(EdgeType type) {
+        return inboundByType != null ? inboundByType.count(type) : 0;
     }
 
     @Override
     public int compareTo(Node o) {
-        return this.getPath().compareTo(o.getPath());
+        return path == o.path ? 0 : this.getPath().compareTo(o.getPath());
+    }
+
+    /* moves all of other's edges onto this node. Used to fold together package nodes that were built
+     * independently (one per source file) */
+    public void absorb(Node other) {
+        if (other == this) {
+            return;
+        }
+        for (var edge : other.outboundEdges) {
+            edge.rehomeFrom(this);
+            outboundEdges.add(edge);
+            outboundIndex().add(edge);
+        }
+        other.outboundEdges = new ArrayList<>();
+        if (other.outboundByType != null) {
+            other.outboundByType.clear();
+        }
+        for (var edge : other.inboundEdges) {
+            edge.rehomeTo(this);
+            inboundEdges.add(edge);
+            inboundIndex().add(edge);
+        }
+        other.inboundEdges = new ArrayList<>();
+        if (other.inboundByType != null) {
+            other.inboundByType.clear();
+        }
+    }
+
+    /* detaches the edge from both of its ends */
+    public void removeOutboundEdge(Edge e) {
+        dropOutbound(e);
+        e.getTo().getNode().ifPresent(n -> n.dropInbound(e));
+    }
+    public void removeInboundEdge(Edge e) {
+        dropInbound(e);
+        e.getFrom().getNode().ifPresent(n -> n.dropOutbound(e));
+    }
+    private void dropOutbound(Edge e) {
+        if (outboundEdges.remove(e)) {
+            outboundByType.remove(e);
+        }
+    }
+    private void dropInbound(Edge e) {
+        if (inboundEdges.remove(e)) {
+            inboundByType.remove(e);
+        }
     }
 
     public void clearOutboundEdges() {
@@ -144,9 +225,58 @@ public class Node implements Comparable<Node> {
             edge.clear();
         }
         outboundEdges = new ArrayList<>();
+        if (outboundByType != null) {
+            outboundByType.clear();
+        }
+    }
+
+    private EdgeIndex outboundIndex() {
+        if (outboundByType == null) {
+            outboundByType = new EdgeIndex();
+        }
+        return outboundByType;
+    }
+    private EdgeIndex inboundIndex() {
+        if (inboundByType == null) {
+            inboundByType = new EdgeIndex();
+        }
+        return inboundByType;
     }
 
     public boolean isLeaf() {
         return outboundEdges.isEmpty();
     }
+
+    /* edges of a type the node has no bucket for yet. Looks the bucket up on every access, so it still follows
+     * edges added later without making the node allocate a bucket up front */
+    private static final class EdgesOfType extends AbstractList<Edge> implements RandomAccess {
+        private final Node node;
+        private final boolean outbound;
+        private final EdgeType type;
+
+        private EdgesOfType(Node node, boolean outbound, EdgeType type) {
+            this.node = node;
+            this.outbound = outbound;
+            this.type = type;
+        }
+
+        private List<Edge> current() {
+            var index = outbound ? node.outboundByType : node.inboundByType;
+            var bucket = index != null ? index.of(type) : null;
+            return bucket != null ? bucket : Collections.emptyList();
+        }
+
+        @Override
+        public Edge get(int index) {
+            return current().get(index);
+        }
+        @Override
+        public int size() {
+            return current().size();
+        }
+        @Override
+        public Iterator<Edge> iterator() {
+            return current().iterator();
+        }
+    }
 }
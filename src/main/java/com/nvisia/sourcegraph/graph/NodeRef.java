@@ -1,30 +1,40 @@
 package com.nvisia.sourcegraph.graph;
 
-import java.util.Objects;
 import java.util.Optional;
 
 public class NodeRef {
-    private String nodePath;
+    //PathTable handle, so comparing refs doesn't compare strings
+    private final PathTable paths;
+    private final int nodePath;
     private Optional<Node> node = Optional.empty();
 
     /* syntax saccharin */
     public static NodeRef of(Node node) {
-        return new NodeRef(node, node.getPath());
+        return new NodeRef(node, node.getPathTable(), node.getPathHandle());
     }
+    /* a ref outside of any import's graph, see Node(String, String, NodeType) */
     public static NodeRef of(String path) {
-        return new NodeRef(path);
+        return of(PathTable.shared(), path);
+    }
+    public static NodeRef of(PathTable paths, String path) {
+        return new NodeRef(paths, paths.intern(path));
+    }
+    public static NodeRef ofHandle(PathTable paths, int pathHandle) {
+        return new NodeRef(paths, pathHandle);
     }
 
     public String toString() {
-        return node.map(Node::toString).orElse(nodePath);
+        return node.map(Node::toString).orElseGet(this::getNodePath);
     }
 
-    private NodeRef(Node node, String nodePath) {
+    private NodeRef(Node node, PathTable paths, int nodePath) {
         this.node = Optional.of(node);
+        this.paths = paths;
         this.nodePath = nodePath;
     }
 
-    private NodeRef(String nodePath) {
+    private NodeRef(PathTable paths, int nodePath) {
+        this.paths = paths;
         this.nodePath = nodePath;
     }
 
@@ -37,7 +47,15 @@ public class NodeRef {
         }
     }
 
+    /* drops the binding, e.g. when the node it pointed to has been removed from the graph */
+    public void unresolve() {
+        node = Optional.empty();
+    }
+
     public String getNodePath() {
+        return paths.toPath(nodePath);
+    }
+    public int getPathHandle() {
         return nodePath;
     }
 
@@ -50,11 +68,11 @@ public class NodeRef {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         NodeRef nodeRef = (NodeRef) o;
-        return Objects.equals(nodePath, nodeRef.nodePath);
+        return nodePath == nodeRef.nodePath && paths == nodeRef.paths;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(nodePath);
+        return nodePath;
     }
 }
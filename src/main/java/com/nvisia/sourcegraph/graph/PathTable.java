@@ -0,0 +1,272 @@
+package com.nvisia.sourcegraph.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Symbol table for node paths. Paths are split into segments at '.' and ':' and stored once as a parent-pointer
+ * trie: a handle is (parent handle, separator, segment), segments are interned, and the full string is only put
+ * together when someone asks for it. Splitting is done the same way no matter how a path was built, so equal path
+ * strings always get the same handle and handles can be compared instead of strings.
+ *
+ * A table belongs to a graph: AntlrImport makes one per import, every node and ref built for that graph interns
+ * into it, and handles only mean something within their own table. The table grows with its graph and is dropped
+ * along with it. Nodes built without a table (tests, hand made graphs) share the one from shared(), which lives
+ * as long as the JVM does.
+ *
+ * Writers only lock the stripe of the child map their key falls in, so import threads interning paths under
+ * different parents don't wait for each other. Reads don't lock: entries live in fixed size pages that are never
+ * moved once written, and a handle can't be seen by another thread before the entry behind it exists. */
+public final class PathTable {
+    public static final int NO_PARENT = -1;
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int SEP_NONE = 0, SEP_DOT = 1, SEP_COLON = 2;
+    private static final int STRIPE_BITS = 6;
+
+    private static final PathTable SHARED = new PathTable();
+
+    //per handle: parent handle, and segment id * 4 + separator
+    private static final class Page {
+        private final int[] parents = new int[PAGE_SIZE];
+        private final int[] segments = new int[PAGE_SIZE];
+    }
+
+    //open addressing map of (parent, separator, segment) -> child handle, for the keys that hash to one stripe
+    private static final class Stripe {
+        private long[] keys = new long[1 << 6];
+        private int[] handles = new int[1 << 6];
+        private int size;
+
+        private Stripe() {
+            Arrays.fill(keys, -1L);
+        }
+    }
+
+    private volatile Page[] pages = new Page[1];
+    private volatile String[][] segmentTextPages = new String[1][];
+    private final AtomicInteger handleCount = new AtomicInteger();
+    private final AtomicInteger segmentCount = new AtomicInteger();
+    private final ConcurrentHashMap<String, Integer> segmentIds = new ConcurrentHashMap<>();
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+    //page allocation and directory growth, both rare
+    private final Object directoryLock = new Object();
+
+    public PathTable() {
+        pages[0] = new Page();
+        segmentTextPages[0] = new String[PAGE_SIZE];
+        for (int i=0;i<stripes.length;i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /* the table for nodes that aren't built into any particular graph */
+    public static PathTable shared() {
+        return SHARED;
+    }
+
+    public int intern(String path) {
+        return doChild(NO_PARENT, SEP_NONE, path, true);
+    }
+
+    /* handle of parent + separator + segment, where segment may itself contain separators */
+    public int child(int parent, char separator, String segment) {
+        return doChild(parent, separatorCode(separator), segment, true);
+    }
+
+    /* handle for the path if it has been interned, NO_PARENT (-1) if not. Never adds anything */
+    public int lookup(String path) {
+        return doChild(NO_PARENT, SEP_NONE, path, false);
+    }
+
+    public String toPath(int handle) {
+        return materialize(handle);
+    }
+
+    /* the handle one segment up, or NO_PARENT */
+    public int parent(int handle) {
+        return pages[handle >>> PAGE_BITS].parents[handle & PAGE_MASK];
+    }
+
+    /* the last segment of the path, without its separator */
+    public String lastSegment(int handle) {
+        return segmentText(pages[handle >>> PAGE_BITS].segments[handle & PAGE_MASK] >>> 2);
+    }
+
+    /* upper bound (exclusive) on handles handed out so far, e.g. for sizing a bitset */
+    public int size() {
+        return handleCount.get();
+    }
+
+    private static int separatorCode(char separator) {
+        switch (separator) {
+            case '.': return SEP_DOT;
+            case ':': return SEP_COLON;
+            default: throw new IllegalArgumentException("Not a path separator: " + separator);
+        }
+    }
+
+    private int doChild(int parent, int separator, String text, boolean insert) {
+        var handle = parent;
+        var start = 0;
+        for (int i=0;i<=text.length();i++) {
+            if (i == text.length() || text.charAt(i) == '.' || text.charAt(i) == ':') {
+                var segment = text.substring(start, i);
+                handle = childOf(handle, separator, segment, insert);
+                if (handle == NO_PARENT) {
+                    return NO_PARENT;
+                }
+                if (i < text.length()) {
+                    separator = text.charAt(i) == '.' ? SEP_DOT : SEP_COLON;
+                }
+                start = i + 1;
+            }
+        }
+        return handle;
+    }
+
+    private int childOf(int parent, int separator, String segment, boolean insert) {
+        var segmentId = segmentId(segment, insert);
+        if (segmentId == NO_PARENT) {
+            return NO_PARENT;
+        }
+        var packedSegment = (segmentId << 2) | separator;
+        long key = ((long) (parent + 1) << 32) | (packedSegment & 0xffffffffL);
+        var hash = mix(key);
+        var stripe = stripes[hash >>> (32 - STRIPE_BITS)];
+        synchronized (stripe) {
+            var keys = stripe.keys;
+            var mask = keys.length - 1;
+            var slot = hash & mask;
+            while (keys[slot] != -1L) {
+                if (keys[slot] == key) {
+                    return stripe.handles[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (!insert) {
+                return NO_PARENT;
+            }
+            var handle = handleCount.getAndIncrement();
+            var page = page(handle);
+            page.parents[handle & PAGE_MASK] = parent;
+            page.segments[handle & PAGE_MASK] = packedSegment;
+            //the entry is written before the handle can be found, so readers of the handle see it
+            keys[slot] = key;
+            stripe.handles[slot] = handle;
+            if (++stripe.size * 2 > keys.length) {
+                grow(stripe);
+            }
+            return handle;
+        }
+    }
+
+    private int segmentId(String segment, boolean insert) {
+        var id = segmentIds.get(segment);
+        if (id != null) {
+            return id;
+        }
+        if (!insert) {
+            return NO_PARENT;
+        }
+        return segmentIds.computeIfAbsent(segment, text -> {
+            var newId = segmentCount.getAndIncrement();
+            segmentTextPage(newId)[newId & PAGE_MASK] = text;
+            return newId;
+        });
+    }
+
+    private Page page(int handle) {
+        var index = handle >>> PAGE_BITS;
+        var directory = pages;
+        if (index < directory.length && directory[index] != null) {
+            return directory[index];
+        }
+        synchronized (directoryLock) {
+            directory = pages;
+            if (index >= directory.length) {
+                //fill in the new directory before publishing it
+                directory = Arrays.copyOf(directory, Math.max(index + 1, directory.length * 2));
+                pages = directory;
+            }
+            if (directory[index] == null) {
+                directory[index] = new Page();
+            }
+            return directory[index];
+        }
+    }
+
+    private String[] segmentTextPage(int segmentId) {
+        var index = segmentId >>> PAGE_BITS;
+        var directory = segmentTextPages;
+        if (index < directory.length && directory[index] != null) {
+            return directory[index];
+        }
+        synchronized (directoryLock) {
+            directory = segmentTextPages;
+            if (index >= directory.length) {
+                directory = Arrays.copyOf(directory, Math.max(index + 1, directory.length * 2));
+                segmentTextPages = directory;
+            }
+            if (directory[index] == null) {
+                directory[index] = new String[PAGE_SIZE];
+            }
+            return directory[index];
+        }
+    }
+
+    //caller holds the stripe's lock
+    private static void grow(Stripe stripe) {
+        var oldKeys = stripe.keys;
+        var oldHandles = stripe.handles;
+        var keys = new long[oldKeys.length * 2];
+        var handles = new int[oldKeys.length * 2];
+        Arrays.fill(keys, -1L);
+        var mask = keys.length - 1;
+        for (int i=0;i<oldKeys.length;i++) {
+            if (oldKeys[i] != -1L) {
+                var slot = mix(oldKeys[i]) & mask;
+                while (keys[slot] != -1L) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                handles[slot] = oldHandles[i];
+            }
+        }
+        stripe.keys = keys;
+        stripe.handles = handles;
+    }
+
+    private static int mix(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    private String segmentText(int segmentId) {
+        return segmentTextPages[segmentId >>> PAGE_BITS][segmentId & PAGE_MASK];
+    }
+
+    private String materialize(int handle) {
+        var directory = pages;
+        var length = 0;
+        for (var h = handle; h != NO_PARENT; h = directory[h >>> PAGE_BITS].parents[h & PAGE_MASK]) {
+            var packed = directory[h >>> PAGE_BITS].segments[h & PAGE_MASK];
+            length += segmentText(packed >>> 2).length() + ((packed & 3) == SEP_NONE ? 0 : 1);
+        }
+        var chars = new char[length];
+        var end = length;
+        for (var h = handle; h != NO_PARENT; h = directory[h >>> PAGE_BITS].parents[h & PAGE_MASK]) {
+            var packed = directory[h >>> PAGE_BITS].segments[h & PAGE_MASK];
+            var text = segmentText(packed >>> 2);
+            end -= text.length();
+            text.getChars(0, text.length(), chars, end);
+            var separator = packed & 3;
+            if (separator != SEP_NONE) {
+                chars[--end] = separator == SEP_DOT ? '.' : ':';
+            }
+        }
+        return new String(chars);
+    }
+}
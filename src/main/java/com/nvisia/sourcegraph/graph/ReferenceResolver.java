@@ -0,0 +1,261 @@
+package com.nvisia.sourcegraph.graph;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/* Binds unresolved edges to type nodes, as one pass over a flat list:
+ *  - the scope (CompilationUnitScope) of each referring node is found once, while collecting, instead of walking
+ *    inbound Contains edges per edge. Nodes without a known scope (e.g. loaded from a snapshot) get one with
+ *    just their package
+ *  - a name is looked up exactly first, then a simple name goes through the scope in JLS order: single type
+ *    imports, the file's package, on-demand imports, static on-demand imports. For a qualified name whose
+ *    first part is a simple type name (Map.Entry), the first part is looked up that way
+ *  - every probe is a hash lookup in the TypeIndex (exact, or package -> simple name), no "package.Name" strings
+ *    are built
+ *  - lookups run in parallel; binding (which appends to the target's inbound edges) happens afterwards on the
+ *    calling thread, in list order, so the graph comes out the same no matter how the lookups were scheduled
+ *
+ * Whatever doesn't resolve is counted as external when it can't be in the graph (primitives, java.lang, names
+ * imported from packages we don't have) and as unresolved otherwise.
+ *
+ * A TypeIndex is used as is (other maps are copied into one), so it mustn't change while resolve is running. */
+public class ReferenceResolver {
+    private static final Set<String> PRIMITIVES = Set.of("boolean", "byte", "char", "short", "int", "long", "float", "double", "void");
+    private static final Map<String, Boolean> JAVA_LANG = new ConcurrentHashMap<>();
+    private static final byte UNRESOLVED = 0, RESOLVED = 1, EXTERNAL = 2;
+
+    private final TypeIndex types;
+    private final Map<Node, CompilationUnitScope> scopes;
+    private final Map<String, CompilationUnitScope> packageScopes = new HashMap<>();
+    //memo for scopeOf, when edges come in on their own
+    private final Map<Node, CompilationUnitScope> scopeCache = new IdentityHashMap<>();
+
+    public ReferenceResolver(Map<String, Node> typeCache) {
+        this(typeCache, Map.of());
+    }
+
+    /* scopes: the compilation unit scope of each top level type (nested types and members inherit it) */
+    public ReferenceResolver(Map<String, Node> typeCache, Map<Node, CompilationUnitScope> scopes) {
+        this.scopes = scopes;
+        types = typeCache instanceof TypeIndex ? (TypeIndex) typeCache : new TypeIndex(typeCache);
+    }
+
+    /* resolves every outbound edge of every node under the top level nodes, over Contains and Declares (local
+     * declarations and their variables hang off blocks and loops by Declares, not Contains) */
+    public Stats resolveAll(Collection<Node> topLevelNodes) {
+        var edges = new ArrayList<Edge>();
+        var edgeScopes = new ArrayList<CompilationUnitScope>();
+        //scope of every node collected so far. Pre-order, so an edge's from node has always been collected
+        var nodeScopes = new IdentityHashMap<Node, CompilationUnitScope>();
+        var followed = Traversal.maskOf(EdgeType.Contains, EdgeType.Declares);
+        for (var top : topLevelNodes) {
+            if (!nodeScopes.containsKey(top)) {
+                collect(top, ownScope(top), nodeScopes, edges, edgeScopes);
+            }
+            Traversal.forCurrentThread().preOrderEdges(top, followed, Traversal.ALL, edge -> {
+                var node = edge.getTo().getNode().orElse(null);
+                if (node == null || nodeScopes.containsKey(node)) {
+                    return;
+                }
+                var scope = ownScope(node);
+                if (scope == null) {
+                    scope = nodeScopes.get(edge.getFrom().getNode().get());
+                }
+                collect(node, scope, nodeScopes, edges, edgeScopes);
+            });
+        }
+        return resolve(edges, edgeScopes);
+    }
+
+    private static void collect(Node node, CompilationUnitScope scope, Map<Node, CompilationUnitScope> nodeScopes,
+                                List<Edge> edges, List<CompilationUnitScope> edgeScopes) {
+        nodeScopes.put(node, scope);
+        for (var edge : node.getOutboundEdges()) {
+            if (!edge.getTo().isResolved()) {
+                edges.add(edge);
+                edgeScopes.add(scope);
+            }
+        }
+    }
+
+    /* resolves the given edges, finding each referring node's scope through its Contains (or Declares) parents */
+    public Stats resolve(List<Edge> edges) {
+        var edgeScopes = new ArrayList<CompilationUnitScope>(edges.size());
+        for (var edge : edges) {
+            edgeScopes.add(edge.getFrom().getNode().map(this::scopeOf).orElse(null));
+        }
+        return resolve(edges, edgeScopes);
+    }
+
+    private Stats resolve(List<Edge> edges, List<CompilationUnitScope> edgeScopes) {
+        var targets = new Node[edges.size()];
+        var outcomes = new byte[edges.size()];
+        IntStream.range(0, targets.length).parallel().forEach(i -> {
+            var edge = edges.get(i);
+            if (!edge.getTo().isResolved() && edge.getFrom().isResolved()) {
+                var name = stripTypeArguments(edge.getTo().getNodePath());
+                var scope = edgeScopes.get(i);
+                targets[i] = lookup(name, scope);
+                outcomes[i] = targets[i] != null ? RESOLVED : (isExternal(name, scope) ? EXTERNAL : UNRESOLVED);
+            } else {
+                outcomes[i] = edge.getTo().isResolved() ? RESOLVED : UNRESOLVED;
+            }
+        });
+        var stats = new Stats();
+        for (int i=0;i<targets.length;i++) {
+            if (targets[i] != null) {
+                edges.get(i).bindTo(targets[i]);
+                stats.resolved++;
+            } else if (outcomes[i] == EXTERNAL) {
+                stats.external++;
+            } else if (outcomes[i] == UNRESOLVED) {
+                stats.unresolved++;
+            }
+        }
+        return stats;
+    }
+
+    private Node lookup(String name, CompilationUnitScope scope) {
+        var node = types.get(name);
+        if (node != null || scope == null) {
+            return node;
+        }
+        var dot = name.indexOf('.');
+        if (dot < 0) {
+            return lookupSimple(name, scope);
+        }
+        //Outer.Inner, where Outer is visible by its simple name
+        var outer = lookupSimple(name.substring(0, dot), scope);
+        if (outer != null) {
+            var rest = name.substring(dot + 1);
+            return rest.indexOf('.') < 0 ? types.member(outer.getPath(), rest) : types.get(outer.getPath() + "." + rest);
+        }
+        return null;
+    }
+
+    private Node lookupSimple(String name, CompilationUnitScope scope) {
+        var imported = scope.singleImport(name);
+        if (imported != null) {
+            //an explicit import shadows everything else, even if it's of something we don't have
+            return types.get(imported);
+        }
+        var node = types.member(scope.getPackageName(), name);
+        if (node != null) {
+            return node;
+        }
+        for (var onDemand : scope.getOnDemandImports()) {
+            node = types.member(onDemand, name);
+            if (node != null) {
+                return node;
+            }
+        }
+        for (var onDemand : scope.getStaticOnDemandImports()) {
+            node = types.member(onDemand, name);
+            if (node != null) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private boolean isExternal(String name, CompilationUnitScope scope) {
+        if (PRIMITIVES.contains(name)) {
+            return true;
+        }
+        var dot = name.indexOf('.');
+        var first = dot < 0 ? name : name.substring(0, dot);
+        if (scope != null && lookupSimple(first, scope) == null) {
+            if (scope.singleImport(first) != null || isJavaLang(first)) {
+                return true;
+            }
+            //a simple name that may well come from an on-demand import of a package we don't have
+            if (dot < 0) {
+                for (var onDemand : scope.getOnDemandImports()) {
+                    if (!isKnown(onDemand)) {
+                        return true;
+                    }
+                }
+                for (var onDemand : scope.getStaticOnDemandImports()) {
+                    if (!isKnown(onDemand)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        //qualified, from a package we don't have
+        var lastDot = name.lastIndexOf('.');
+        return lastDot > 0 && !isKnown(name.substring(0, lastDot));
+    }
+
+    private boolean isKnown(String packageOrType) {
+        return types.hasMembers(packageOrType) || types.containsKey(packageOrType);
+    }
+
+    static boolean isJavaLang(String simpleName) {
+        return JAVA_LANG.computeIfAbsent(simpleName, name -> {
+            try {
+                Class.forName("java.lang." + name, false, ClassLoader.getPlatformClassLoader());
+                return true;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        });
+    }
+
+    /* List<String> -> List, Map.Entry<K, V>[] -> Map.Entry */
+    static String stripTypeArguments(String name) {
+        var end = name.indexOf('<');
+        if (end < 0) {
+            end = name.indexOf('[');
+        }
+        return end < 0 ? name : name.substring(0, end);
+    }
+
+    private CompilationUnitScope ownScope(Node node) {
+        var scope = scopes.get(node);
+        if (scope == null && node.getType() == NodeType.Package) {
+            scope = packageScopes.computeIfAbsent(node.getName(), CompilationUnitScope::new);
+        }
+        return scope;
+    }
+
+    private CompilationUnitScope scopeOf(Node node) {
+        if (scopeCache.containsKey(node)) {
+            return scopeCache.get(node);
+        }
+        CompilationUnitScope scope = null;
+        for (var current = node; current != null && scope == null; ) {
+            scope = ownScope(current);
+            var parents = current.findInboundEdgesOfType(EdgeType.Contains);
+            if (parents.isEmpty()) {
+                parents = current.findInboundEdgesOfType(EdgeType.Declares);
+            }
+            current = parents.isEmpty() ? null : parents.get(0).getFrom().getNode().orElse(null);
+        }
+        scopeCache.put(node, scope);
+        return scope;
+    }
+
+    public static class Stats {
+        private int resolved;
+        private int unresolved;
+        private int external;
+
+        public int getResolved() {
+            return resolved;
+        }
+        /* references that look like they should be in the graph but aren't */
+        public int getUnresolved() {
+            return unresolved;
+        }
+        /* references to things outside the graph (primitives, java.lang, other libraries) */
+        public int getExternal() {
+            return external;
+        }
+
+        public String toString() {
+            return "resolved " + resolved + ", unresolved " + unresolved + ", external " + external;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.nvisia.sourcegraph.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/* Pre-order traversals over Nodes with an explicit stack, so deep Executes chains don't run out of thread stack.
+ * Visit order is the same as the old recursive versions: a node's edges in insertion order, depth first.
+ *
+ * Visited nodes are bits in a BitSet over PathTable handles. The bits that were set are remembered and cleared
+ * afterwards, so an instance can be reused without paying for the whole set on every run. An instance is
+ * single threaded and not reentrant; forCurrentThread() hands out a per-thread one, or a fresh one if the
+ * per-thread instance is already busy (a visitor that starts another traversal). */
+public final class Traversal {
+    //filter mask that lets every type through
+    public static final int ALL = -1;
+    private static final NodeType[] NODE_TYPES = NodeType.values();
+    private static final ThreadLocal<Traversal> PER_THREAD = ThreadLocal.withInitial(Traversal::new);
+    private static final List<Optional<EdgeType>> OPTIONAL_TYPES = optionalTypes();
+
+    private final BitSet visited = new BitSet();
+    //keys past the int range a BitSet can index, which only very large path tables get to
+    private final Set<Long> visitedOverflow = new HashSet<>();
+    private int[] touched = new int[64];
+    private int touchedCount;
+    private Node[] stackNodes = new Node[64];
+    private int[] stackNext = new int[64];
+    private int depth;
+    private boolean busy;
+
+    public static Traversal forCurrentThread() {
+        var traversal = PER_THREAD.get();
+        return traversal.busy ? new Traversal() : traversal;
+    }
+
+    /* the Optional NodeVisitor expects, without making a new one per edge */
+    public static Optional<EdgeType> optionalOf(EdgeType type) {
+        return OPTIONAL_TYPES.get(type.ordinal());
+    }
+
+    private static List<Optional<EdgeType>> optionalTypes() {
+        var optionals = new ArrayList<Optional<EdgeType>>();
+        for (var type : EdgeType.values()) {
+            optionals.add(Optional.of(type));
+        }
+        return List.copyOf(optionals);
+    }
+
+    /* Visits root (as the end of a Contains edge, level 0), then every outbound edge of each visited node.
+     * Edges of typeToTraverse (any type when null) are followed when resolved; a node reached a second time isn't
+     * visited again. Other edges are visited, but not followed. */
+    public void preOrder(Node root, EdgeType typeToTraverse, TraversalVisitor visitor) {
+        begin();
+        try {
+            var rootRef = NodeRef.of(root);
+            if (!mark(root.getPathHandle())) {
+                return;
+            }
+            visitor.visitEdge(EdgeType.Contains, rootRef, 0);
+            push(root);
+            while (depth > 0) {
+                var top = depth - 1;
+                var edges = stackNodes[top].outboundEdgeList();
+                var i = stackNext[top];
+                if (i >= edges.size()) {
+                    pop();
+                    continue;
+                }
+                stackNext[top] = i + 1;
+                var edge = edges.get(i);
+                var type = edge.getType();
+                var to = edge.getTo();
+                //Hack/workaround for the fact that the post-processing resolution of types (from local to fully qualified) leaves
+                //  edges to nowhere in the case of types outside the system (like java.lang.*)
+                if ((typeToTraverse == null || typeToTraverse == type) && to.isResolved()) {
+                    if (mark(to.getPathHandle())) {
+                        visitor.visitEdge(type, to, depth);
+                        push(to.getNode().get());
+                    }
+                } else {
+                    visitor.visitEdge(type, to, depth);
+                }
+            }
+        } finally {
+            end();
+        }
+    }
+
+    /* Hands every edge of typeToTraverse (any type when null) reachable from root over those edges to visitor,
+     * each node's edges in order, depth first. A node is expanded once; nodes count as the same when they share
+     * a path and a NodeType (e.g. a field's Field and Variable nodes are different nodes) */
+    public void preOrderEdges(Node root, EdgeType typeToTraverse, Consumer<Edge> visitor) {
+        preOrderEdges(root, typeToTraverse == null ? ALL : maskOf(typeToTraverse), ALL, visitor);
+    }
+
+    /* Same, with filters as bitmasks of EdgeType / NodeType ordinals (see maskOf): only edges of a type in
+     * edgeTypeMask that lead to a node of a type in nodeTypeMask are visited and followed. An unresolved target
+     * counts as NodeType.Unknown. Nothing is visited when root itself is filtered out */
+    public void preOrderEdges(Node root, int edgeTypeMask, int nodeTypeMask, Consumer<Edge> visitor) {
+        begin();
+        try {
+            if (!includes(nodeTypeMask, root.getType()) || !mark(nodeKey(root))) {
+                return;
+            }
+            push(root);
+            while (depth > 0) {
+                var top = depth - 1;
+                var edges = stackNodes[top].outboundEdgeList();
+                var i = stackNext[top];
+                if (i >= edges.size()) {
+                    pop();
+                    continue;
+                }
+                stackNext[top] = i + 1;
+                var edge = edges.get(i);
+                if (includes(edgeTypeMask, edge.getType())) {
+                    var to = edge.getTo();
+                    var child = to.isResolved() ? to.getNode().get() : null;
+                    if (includes(nodeTypeMask, child != null ? child.getType() : NodeType.Unknown)) {
+                        visitor.accept(edge);
+                        if (child != null && mark(nodeKey(child))) {
+                            push(child);
+                        }
+                    }
+                }
+            }
+        } finally {
+            end();
+        }
+    }
+
+    public static int maskOf(Enum<?>... types) {
+        var mask = 0;
+        for (var type : types) {
+            mask |= 1 << type.ordinal();
+        }
+        return mask;
+    }
+    public static int maskOf(Iterable<? extends Enum<?>> types) {
+        var mask = 0;
+        for (var type : types) {
+            mask |= 1 << type.ordinal();
+        }
+        return mask;
+    }
+    public static boolean includes(int mask, Enum<?> type) {
+        return (mask & (1 << type.ordinal())) != 0;
+    }
+
+    static long nodeKey(Node node) {
+        return (long) node.getPathHandle() * NODE_TYPES.length + node.getType().ordinal();
+    }
+
+    private void begin() {
+        if (busy) {
+            throw new IllegalStateException("traversal already running on this instance");
+        }
+        busy = true;
+    }
+
+    private void end() {
+        for (int i=0;i<touchedCount;i++) {
+            visited.clear(touched[i]);
+        }
+        touchedCount = 0;
+        if (!visitedOverflow.isEmpty()) {
+            visitedOverflow.clear();
+        }
+        Arrays.fill(stackNodes, 0, depth, null);
+        depth = 0;
+        busy = false;
+    }
+
+    //true if the key wasn't visited yet
+    private boolean mark(long key) {
+        if (key > Integer.MAX_VALUE) {
+            return visitedOverflow.add(key);
+        }
+        var bit = (int) key;
+        if (visited.get(bit)) {
+            return false;
+        }
+        visited.set(bit);
+        if (touchedCount == touched.length) {
+            touched = Arrays.copyOf(touched, touchedCount * 2);
+        }
+        touched[touchedCount++] = bit;
+        return true;
+    }
+
+    private void push(Node node) {
+        if (depth == stackNodes.length) {
+            stackNodes = Arrays.copyOf(stackNodes, depth * 2);
+            stackNext = Arrays.copyOf(stackNext, depth * 2);
+        }
+        stackNodes[depth] = node;
+        stackNext[depth] = 0;
+        depth++;
+    }
+
+    private void pop() {
+        stackNodes[--depth] = null;
+    }
+}
@@ -0,0 +1,7 @@
+package com.nvisia.sourcegraph.graph;
+
+/* NodeVisitor without the Optional: the edge type is always there */
+@FunctionalInterface
+public interface TraversalVisitor {
+    void visitEdge(EdgeType edgeType, NodeRef nodeRef, int level);
+}
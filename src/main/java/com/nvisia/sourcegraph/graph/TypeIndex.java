@@ -0,0 +1,150 @@
+package com.nvisia.sourcegraph.graph;
+
+import java.util.*;
+
+/* Type cache: qualified name -> node, hashed, plus two secondary indexes kept in step with it:
+ *  - by enclosing name (package, or the outer type for a nested type) -> simple name -> node
+ *  - by simple name -> nodes
+ * Package nodes live in the cache too (the translator keys them by name) but only show up in exact lookups,
+ * not in the secondary indexes.
+ *
+ * Iteration is in insertion order. Entries handed out by entrySet() are read-only; use put. */
+public class TypeIndex extends AbstractMap<String, Node> {
+    private final Map<String, Node> byName = new LinkedHashMap<>();
+    private final Map<String, Map<String, Node>> byEnclosingName = new HashMap<>();
+    private final Map<String, List<Node>> bySimpleName = new HashMap<>();
+    private final Set<Entry<String, Node>> entries = new EntrySet();
+
+    public TypeIndex() {
+    }
+    public TypeIndex(Map<String, Node> types) {
+        putAll(types);
+    }
+
+    /* types declared directly in a package, or nested directly in a type */
+    public Collection<Node> typesIn(String packageOrTypeName) {
+        var members = byEnclosingName.get(packageOrTypeName);
+        return members != null ? Collections.unmodifiableCollection(members.values()) : Collections.emptyList();
+    }
+    /* the type called simpleName in a package (or nested in a type), or null */
+    public Node member(String packageOrTypeName, String simpleName) {
+        var members = byEnclosingName.get(packageOrTypeName);
+        return members != null ? members.get(simpleName) : null;
+    }
+    public boolean hasMembers(String packageOrTypeName) {
+        return byEnclosingName.containsKey(packageOrTypeName);
+    }
+    /* every type with the given simple name, in whatever package */
+    public List<Node> typesNamed(String simpleName) {
+        var nodes = bySimpleName.get(simpleName);
+        return nodes != null ? Collections.unmodifiableList(nodes) : Collections.emptyList();
+    }
+
+    @Override
+    public Node get(Object name) {
+        return byName.get(name);
+    }
+    @Override
+    public boolean containsKey(Object name) {
+        return byName.containsKey(name);
+    }
+    @Override
+    public int size() {
+        return byName.size();
+    }
+
+    @Override
+    public Node put(String name, Node node) {
+        var previous = byName.put(name, node);
+        if (previous != null) {
+            unindex(name, previous);
+        }
+        index(name, node);
+        return previous;
+    }
+
+    @Override
+    public Node remove(Object name) {
+        var previous = byName.remove(name);
+        if (previous != null) {
+            unindex((String) name, previous);
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        byName.clear();
+        byEnclosingName.clear();
+        bySimpleName.clear();
+    }
+
+    @Override
+    public Set<Entry<String, Node>> entrySet() {
+        return entries;
+    }
+
+    private void index(String name, Node node) {
+        if (node.getType() == NodeType.Package) {
+            return;
+        }
+        var dot = name.lastIndexOf('.');
+        var simpleName = name.substring(dot + 1);
+        if (dot > 0) {
+            byEnclosingName.computeIfAbsent(name.substring(0, dot), k -> new LinkedHashMap<>()).put(simpleName, node);
+        }
+        bySimpleName.computeIfAbsent(simpleName, k -> new ArrayList<>(1)).add(node);
+    }
+
+    private void unindex(String name, Node node) {
+        if (node.getType() == NodeType.Package) {
+            return;
+        }
+        var dot = name.lastIndexOf('.');
+        var simpleName = name.substring(dot + 1);
+        if (dot > 0) {
+            var enclosing = name.substring(0, dot);
+            var members = byEnclosingName.get(enclosing);
+            if (members != null && members.remove(simpleName, node) && members.isEmpty()) {
+                byEnclosingName.remove(enclosing);
+            }
+        }
+        var named = bySimpleName.get(simpleName);
+        if (named != null) {
+            named.remove(node);
+            if (named.isEmpty()) {
+                bySimpleName.remove(simpleName);
+            }
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Entry<String, Node>> {
+        @Override
+        public int size() {
+            return byName.size();
+        }
+
+        @Override
+        public Iterator<Entry<String, Node>> iterator() {
+            var backing = byName.entrySet().iterator();
+            return new Iterator<>() {
+                private Entry<String, Node> last;
+
+                @Override
+                public boolean hasNext() {
+                    return backing.hasNext();
+                }
+                @Override
+                public Entry<String, Node> next() {
+                    last = backing.next();
+                    return new SimpleImmutableEntry<>(last);
+                }
+                @Override
+                public void remove() {
+                    backing.remove();
+                    unindex(last.getKey(), last.getValue());
+                }
+            };
+        }
+    }
+}
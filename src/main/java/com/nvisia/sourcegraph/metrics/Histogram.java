@@ -0,0 +1,56 @@
+package com.nvisia.sourcegraph.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Counts non-negative values (nanoseconds, bytes) in power of two buckets: bucket 0 is 0, bucket i holds
+ * [2^(i-1), 2^i). Recording is a handful of atomic adds and never allocates, so it's fine on the per-file path
+ * from any number of threads. Quantiles come out as the upper bound of their bucket, i.e. within a factor of 2 */
+public class Histogram {
+    static final int BUCKETS = 65;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    Histogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(name + ": negative value " + value);
+        }
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        min.accumulateAndGet(value, Math::min);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    static int bucketOf(long value) {
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    /* largest value that lands in the bucket */
+    static long upperBound(int bucket) {
+        return bucket == 0 ? 0 : bucket == 64 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    public HistogramSnapshot snapshot() {
+        var counts = new long[BUCKETS];
+        for (int i=0;i<BUCKETS;i++) {
+            counts[i] = buckets.get(i);
+        }
+        var n = count.sum();
+        return new HistogramSnapshot(name, n, sum.sum(), n == 0 ? 0 : min.get(), n == 0 ? 0 : max.get(), counts);
+    }
+}
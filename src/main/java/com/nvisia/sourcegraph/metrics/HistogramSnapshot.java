@@ -0,0 +1,82 @@
+package com.nvisia.sourcegraph.metrics;
+
+/* a Histogram at one point in time. The fields are read separately, so a snapshot taken while values are being
+ * recorded can be off by the few values that came in meanwhile */
+public class HistogramSnapshot {
+    private final String name;
+    private final long count;
+    private final long sum;
+    private final long min;
+    private final long max;
+    private final long[] buckets;
+
+    HistogramSnapshot(String name, long count, long sum, long min, long max, long[] buckets) {
+        this.name = name;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.buckets = buckets;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /* upper bound of the bucket holding the q-th quantile, capped at the largest value seen */
+    public long quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("quantile must be in [0, 1]: " + q);
+        }
+        var total = 0L;
+        for (var c : buckets) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        var rank = Math.max(1, (long) Math.ceil(q * total));
+        var seen = 0L;
+        for (int i=0;i<buckets.length;i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(Histogram.upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long bucketCount(int bucket) {
+        return buckets[bucket];
+    }
+
+    public int bucketCount() {
+        return buckets.length;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": n=" + count + " mean=" + Math.round(getMean()) + " p50=" + quantile(0.5)
+                + " p99=" + quantile(0.99) + " max=" + max;
+    }
+}
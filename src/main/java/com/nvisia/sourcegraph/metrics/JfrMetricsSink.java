@@ -0,0 +1,89 @@
+package com.nvisia.sourcegraph.metrics;
+
+import jdk.jfr.*;
+
+/* Emits JFR events, so an import shows up in a flight recording next to GC and allocation data:
+ * sourcegraph.Phase for every file and pipeline phase as it completes (with the source file and its duration),
+ * and on publish a sourcegraph.Counter per counter and a sourcegraph.Histogram per histogram. Phase events are
+ * only built when a recording has them enabled */
+public class JfrMetricsSink implements MetricsSink {
+    private static final String CATEGORY = "Source Graph";
+
+    @Name("sourcegraph.Phase")
+    @Label("Import Phase")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Source")
+        String source;
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    @Name("sourcegraph.Counter")
+    @Label("Import Counter")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class CounterEvent extends Event {
+        @Label("Name")
+        String name;
+        @Label("Value")
+        long value;
+    }
+
+    @Name("sourcegraph.Histogram")
+    @Label("Import Histogram")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class HistogramEvent extends Event {
+        @Label("Name")
+        String name;
+        @Label("Count")
+        long count;
+        @Label("Mean")
+        double mean;
+        @Label("50th Percentile")
+        long p50;
+        @Label("99th Percentile")
+        long p99;
+        @Label("Max")
+        long max;
+    }
+
+    private static final EventType PHASE_TYPE = EventType.getEventType(PhaseEvent.class);
+
+    @Override
+    public void phaseCompleted(Phase phase, String source, long nanos) {
+        if (!PHASE_TYPE.isEnabled()) {
+            return;
+        }
+        var event = new PhaseEvent();
+        event.phase = phase.toString();
+        event.source = source;
+        event.elapsed = nanos;
+        event.commit();
+    }
+
+    @Override
+    public void publish(MetricsSnapshot snapshot) {
+        for (var counter : snapshot.getCounters().entrySet()) {
+            var event = new CounterEvent();
+            event.name = counter.getKey();
+            event.value = counter.getValue();
+            event.commit();
+        }
+        for (var histogram : snapshot.getHistograms().values()) {
+            var event = new HistogramEvent();
+            event.name = histogram.getName();
+            event.count = histogram.getCount();
+            event.mean = histogram.getMean();
+            event.p50 = histogram.quantile(0.5);
+            event.p99 = histogram.quantile(0.99);
+            event.max = histogram.getMax();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.nvisia.sourcegraph.metrics;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/* Writes each published snapshot as one JSON document:
+ *   {"counters": {name: value, ...},
+ *    "histograms": {name: {"count", "sum", "min", "max", "mean", "p50", "p90", "p99", "buckets": {upper bound: count}}},
+ *    "peakHeap": {phase: bytes}}
+ * Only non-empty buckets are written. With a file, every publish replaces the file's contents; with a stream the
+ * documents follow each other, one per line, and the stream is left open */
+public class JsonMetricsSink implements MetricsSink {
+    private final Path file;
+    private final OutputStream out;
+
+    public JsonMetricsSink(Path file) {
+        this.file = file;
+        this.out = null;
+    }
+
+    public JsonMetricsSink(OutputStream out) {
+        this.file = null;
+        this.out = out;
+    }
+
+    @Override
+    public void publish(MetricsSnapshot snapshot) throws IOException {
+        if (file != null) {
+            try (var writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                write(snapshot, writer);
+            }
+        } else {
+            var writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            write(snapshot, writer);
+            writer.flush();
+        }
+    }
+
+    public static String toJson(MetricsSnapshot snapshot) {
+        var writer = new StringWriter();
+        try {
+            write(snapshot, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    private static void write(MetricsSnapshot snapshot, Writer writer) throws IOException {
+        writer.write("{\"counters\":{");
+        var first = true;
+        for (var counter : snapshot.getCounters().entrySet()) {
+            first = separate(writer, first);
+            quote(writer, counter.getKey());
+            writer.write(":" + counter.getValue());
+        }
+        writer.write("},\"histograms\":{");
+        first = true;
+        for (var histogram : snapshot.getHistograms().values()) {
+            first = separate(writer, first);
+            quote(writer, histogram.getName());
+            writer.write(":{\"count\":" + histogram.getCount()
+                    + ",\"sum\":" + histogram.getSum()
+                    + ",\"min\":" + histogram.getMin()
+                    + ",\"max\":" + histogram.getMax()
+                    + ",\"mean\":" + histogram.getMean()
+                    + ",\"p50\":" + histogram.quantile(0.5)
+                    + ",\"p90\":" + histogram.quantile(0.9)
+                    + ",\"p99\":" + histogram.quantile(0.99)
+                    + ",\"buckets\":{");
+            var firstBucket = true;
+            for (int i=0;i<histogram.bucketCount();i++) {
+                if (histogram.bucketCount(i) > 0) {
+                    firstBucket = separate(writer, firstBucket);
+                    writer.write("\"" + Histogram.upperBound(i) + "\":" + histogram.bucketCount(i));
+                }
+            }
+            writer.write("}}");
+        }
+        writer.write("},\"peakHeap\":{");
+        first = true;
+        for (Map.Entry<Phase, Long> peak : snapshot.getPeakHeap().entrySet()) {
+            first = separate(writer, first);
+            quote(writer, peak.getKey().toString());
+            writer.write(":" + peak.getValue());
+        }
+        writer.write("}}\n");
+    }
+
+    private static boolean separate(Writer writer, boolean first) throws IOException {
+        if (!first) {
+            writer.write(',');
+        }
+        return false;
+    }
+
+    private static void quote(Writer writer, String text) throws IOException {
+        writer.write('"');
+        for (int i=0;i<text.length();i++) {
+            var c = text.charAt(i);
+            switch (c) {
+                case '"': writer.write("\\\""); break;
+                case '\\': writer.write("\\\\"); break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+}
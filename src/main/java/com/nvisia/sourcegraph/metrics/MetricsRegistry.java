@@ -0,0 +1,171 @@
+package com.nvisia.sourcegraph.metrics;
+
+import com.nvisia.sourcegraph.graph.Edge;
+import com.nvisia.sourcegraph.graph.EdgeType;
+import com.nvisia.sourcegraph.graph.Node;
+import com.nvisia.sourcegraph.graph.NodeType;
+import com.nvisia.sourcegraph.graph.ReferenceResolver;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Counters and histograms for an import run, by name, plus the per-phase timings and peak heap. Everything
+ * can be updated from any thread. Sinks see each timed phase as it completes and get the whole lot on publish().
+ *
+ * Names in use: phase.<Phase> (histogram, nanoseconds; one sample per file for the per-file phases),
+ * files.parsed, files.llFallback, nodes.<NodeType>, edges.<EdgeType>, edges.unresolved (targets not bound after
+ * resolution, see countGraph) and references.resolved / .unresolved / .external (from ReferenceResolver) */
+public class MetricsRegistry {
+    public static final String PHASE_PREFIX = "phase.";
+    public static final String FILES_PARSED = "files.parsed";
+    public static final String FILES_LL_FALLBACK = "files.llFallback";
+    private static final List<MemoryPoolMXBean> HEAP_POOLS = heapPools();
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<Phase, Long> peakHeap = new ConcurrentHashMap<>();
+    private final Histogram[] phases = new Histogram[Phase.values().length];
+    private final List<MetricsSink> sinks = new CopyOnWriteArrayList<>();
+
+    public MetricsRegistry() {
+        for (var phase : Phase.values()) {
+            phases[phase.ordinal()] = histogram(PHASE_PREFIX + phase);
+        }
+    }
+
+    public MetricsRegistry addSink(MetricsSink sink) {
+        sinks.add(sink);
+        return this;
+    }
+
+    public void increment(String counter) {
+        add(counter, 1);
+    }
+
+    public void add(String counter, long delta) {
+        counters.computeIfAbsent(counter, name -> new LongAdder()).add(delta);
+    }
+
+    public long counter(String counter) {
+        var adder = counters.get(counter);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, Histogram::new);
+    }
+
+    /* one file's worth of a per-file phase */
+    public void recordFile(Phase phase, String source, long nanos) {
+        phases[phase.ordinal()].record(nanos);
+        for (var sink : sinks) {
+            sink.phaseCompleted(phase, source, nanos);
+        }
+    }
+
+    /* Times a pipeline phase and tracks the heap high water mark while it runs:
+     *   var timer = metrics.startPhase(Phase.Resolve);
+     *   try { ... } finally { timer.close(); }
+     * The peak comes from the JVM's per-pool peak usage, which is reset when the phase starts, so pipeline phases
+     * shouldn't overlap (per-file phases don't touch it) */
+    public PhaseTimer startPhase(Phase phase) {
+        if (phase.isPerFile()) {
+            throw new IllegalArgumentException(phase + " is timed per file, use recordFile");
+        }
+        for (var pool : HEAP_POOLS) {
+            pool.resetPeakUsage();
+        }
+        return new PhaseTimer(this, phase, System.nanoTime());
+    }
+
+    void endPhase(Phase phase, long nanos) {
+        var peak = 0L;
+        for (var pool : HEAP_POOLS) {
+            var usage = pool.getPeakUsage();
+            if (usage != null) {
+                peak += usage.getUsed();
+            }
+        }
+        peakHeap.merge(phase, peak, Math::max);
+        phases[phase.ordinal()].record(nanos);
+        for (var sink : sinks) {
+            sink.phaseCompleted(phase, null, nanos);
+        }
+    }
+
+    public void recordResolve(ReferenceResolver.Stats stats) {
+        add("references.resolved", stats.getResolved());
+        add("references.unresolved", stats.getUnresolved());
+        add("references.external", stats.getExternal());
+    }
+
+    /* Sets nodes.<NodeType>, edges.<EdgeType> and edges.unresolved from the graph under the top level nodes (every
+     * edge type is followed, each node counted once). Replaces what was counted before, so it can be called again
+     * after the graph changes */
+    public void countGraph(Collection<Node> topLevelNodes) {
+        var nodes = new long[NodeType.values().length];
+        var edges = new long[EdgeType.values().length];
+        var unresolved = 0L;
+        var seen = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        var pending = new ArrayDeque<Node>(topLevelNodes);
+        seen.addAll(topLevelNodes);
+        while (!pending.isEmpty()) {
+            var node = pending.removeLast();
+            nodes[node.getType().ordinal()]++;
+            for (Edge edge : node.getOutboundEdges()) {
+                edges[edge.getType().ordinal()]++;
+                var to = edge.getTo();
+                if (!to.isResolved()) {
+                    unresolved++;
+                } else if (seen.add(to.getNode().get())) {
+                    pending.addLast(to.getNode().get());
+                }
+            }
+        }
+        for (var type : NodeType.values()) {
+            set("nodes." + type, nodes[type.ordinal()]);
+        }
+        for (var type : EdgeType.values()) {
+            set("edges." + type, edges[type.ordinal()]);
+        }
+        set("edges.unresolved", unresolved);
+    }
+
+    private void set(String counter, long value) {
+        var adder = new LongAdder();
+        adder.add(value);
+        counters.put(counter, adder);
+    }
+
+    public MetricsSnapshot snapshot() {
+        var counterValues = new TreeMap<String, Long>();
+        counters.forEach((name, adder) -> counterValues.put(name, adder.sum()));
+        var histogramValues = new TreeMap<String, HistogramSnapshot>();
+        histograms.forEach((name, histogram) -> histogramValues.put(name, histogram.snapshot()));
+        return new MetricsSnapshot(counterValues, histogramValues, new EnumMap<>(peakHeap));
+    }
+
+    /* hands a snapshot to every sink */
+    public void publish() throws IOException {
+        var snapshot = snapshot();
+        for (var sink : sinks) {
+            sink.publish(snapshot);
+        }
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        var pools = new ArrayList<MemoryPoolMXBean>();
+        for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+}
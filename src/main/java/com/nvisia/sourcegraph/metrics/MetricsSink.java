@@ -0,0 +1,12 @@
+package com.nvisia.sourcegraph.metrics;
+
+import java.io.IOException;
+
+/* Where metrics go. phaseCompleted is called on the thread that did the work, possibly many at once, as each
+ * file (source is its name) or pipeline phase (source is null) finishes; publish gets the totals */
+public interface MetricsSink {
+    default void phaseCompleted(Phase phase, String source, long nanos) {
+    }
+
+    void publish(MetricsSnapshot snapshot) throws IOException;
+}
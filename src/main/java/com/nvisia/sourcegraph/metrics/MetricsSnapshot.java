@@ -0,0 +1,39 @@
+package com.nvisia.sourcegraph.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+
+/* what a MetricsRegistry held at one point; counters and histograms sorted by name */
+public class MetricsSnapshot {
+    private final SortedMap<String, Long> counters;
+    private final SortedMap<String, HistogramSnapshot> histograms;
+    private final Map<Phase, Long> peakHeap;
+
+    MetricsSnapshot(SortedMap<String, Long> counters, SortedMap<String, HistogramSnapshot> histograms, Map<Phase, Long> peakHeap) {
+        this.counters = Collections.unmodifiableSortedMap(counters);
+        this.histograms = Collections.unmodifiableSortedMap(histograms);
+        this.peakHeap = Collections.unmodifiableMap(peakHeap);
+    }
+
+    public SortedMap<String, Long> getCounters() {
+        return counters;
+    }
+
+    public long getCounter(String name) {
+        return counters.getOrDefault(name, 0L);
+    }
+
+    public SortedMap<String, HistogramSnapshot> getHistograms() {
+        return histograms;
+    }
+
+    public HistogramSnapshot getPhase(Phase phase) {
+        return histograms.get(MetricsRegistry.PHASE_PREFIX + phase);
+    }
+
+    /* bytes; only for the pipeline phases that have run */
+    public Map<Phase, Long> getPeakHeap() {
+        return peakHeap;
+    }
+}
@@ -0,0 +1,17 @@
+package com.nvisia.sourcegraph.metrics;
+
+/* Steps of the import pipeline. Lex, Parse and Translate are timed per file and run concurrently on the import
+ * threads; Import (all of them plus merging), Resolve and Export are timed once per run and get a peak heap figure */
+public enum Phase {
+    Lex(true), Parse(true), Translate(true), Import(false), Resolve(false), Export(false);
+
+    private final boolean perFile;
+
+    Phase(boolean perFile) {
+        this.perFile = perFile;
+    }
+
+    public boolean isPerFile() {
+        return perFile;
+    }
+}
@@ -0,0 +1,27 @@
+package com.nvisia.sourcegraph.metrics;
+
+/* a running pipeline phase, see MetricsRegistry.startPhase. Closing it twice records it once */
+public final class PhaseTimer implements AutoCloseable {
+    private final MetricsRegistry registry;
+    private final Phase phase;
+    private final long start;
+    private boolean closed;
+
+    PhaseTimer(MetricsRegistry registry, Phase phase, long start) {
+        this.registry = registry;
+        this.phase = phase;
+        this.start = start;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            registry.endPhase(phase, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.nvisia.sourcegraph.spectral;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/* Applies a sparse operator to a block of vectors over and over: X(n+1) = M X(n). With M = P^T (the transposed
+ * transition matrix) the vectors are random walk distributions after n steps; with M = L the listener sees L^n f
+ * for every start vector f, which is what GramSeries needs.
+ *
+ * Two buffers are allocated once and swapped between steps. Rows are split into chunks of about equal non zero
+ * count up front, and the chunks of each step run in parallel; small problems aren't split. A run gets its own
+ * ForkJoinPool of parallelism threads, and the listener is called from inside it too, so a listener's parallel
+ * streams (GramSeries) stay within the same bound rather than spreading over the common pool. */
+public class DiffusionEngine {
+    //below this many multiply-adds per step it isn't worth splitting
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private final SparseMatrix operator;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    public DiffusionEngine(SparseMatrix operator) {
+        operator.dimension(); //throws unless square
+        this.operator = operator;
+    }
+
+    /* random walk distributions: p(n+1) = p(n) P */
+    public static DiffusionEngine randomWalk(GraphLaplacian laplacian) {
+        return new DiffusionEngine(laplacian.transition().transpose());
+    }
+
+    /* f -> L f, for the <L^n f, L^n g> series */
+    public static DiffusionEngine laplacian(GraphLaplacian laplacian) {
+        return new DiffusionEngine(laplacian.laplacian());
+    }
+
+    /* most threads a run uses, listener included; 1 runs every step on a single thread */
+    public DiffusionEngine parallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        return this;
+    }
+
+    public VectorBlock run(VectorBlock start, int steps, DiffusionListener listener) {
+        if (start.length() != operator.rows()) {
+            throw new IllegalArgumentException("Start vectors of length " + start.length() + " for an operator of size " + operator.rows());
+        }
+        var pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> iterate(start, steps, listener)).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public VectorBlock run(double[][] start, int steps, DiffusionListener listener) {
+        return run(VectorBlock.of(start), steps, listener);
+    }
+
+    //a parallel stream started from a pool's thread runs in that pool
+    private VectorBlock iterate(VectorBlock start, int steps, DiffusionListener listener) {
+        var current = start.copy();
+        var next = new VectorBlock(start.length(), start.width());
+        var chunks = chunks(start.width());
+        listener.step(0, current);
+        for (int step=1;step<=steps;step++) {
+            var x = current;
+            var y = next;
+            if (chunks.length == 2) {
+                multiply(x, y, 0, operator.rows());
+            } else {
+                IntStream.range(0, chunks.length - 1).parallel().forEach(c -> multiply(x, y, chunks[c], chunks[c + 1]));
+            }
+            listener.step(step, y);
+            next = current;
+            current = y;
+        }
+        return current;
+    }
+
+    /* Y = M X for rows [from, to) */
+    private void multiply(VectorBlock x, VectorBlock y, int from, int to) {
+        var width = x.width();
+        var in = x.data;
+        var out = y.data;
+        Arrays.fill(out, from * width, to * width, 0.0);
+        for (int row=from;row<to;row++) {
+            var base = row * width;
+            for (int e=operator.rowStart(row);e<operator.rowEnd(row);e++) {
+                var value = operator.value(e);
+                var source = operator.column(e) * width;
+                for (int v=0;v<width;v++) {
+                    out[base + v] += value * in[source + v];
+                }
+            }
+        }
+    }
+
+    /* row boundaries, first 0 and last rows, splitting the non zeros evenly */
+    private int[] chunks(int width) {
+        var rows = operator.rows();
+        var work = (long) operator.nonZeros() * width;
+        if (parallelism == 1 || work < PARALLEL_THRESHOLD) {
+            return new int[] {0, rows};
+        }
+        var count = (int) Math.min(rows, Math.min(parallelism * 4L, work / (PARALLEL_THRESHOLD / 4)));
+        var bounds = new int[count + 1];
+        var perChunk = (operator.nonZeros() + count - 1) / count;
+        var chunk = 1;
+        for (int row=0;row<rows && chunk<count;row++) {
+            if (operator.rowEnd(row) >= (long) perChunk * chunk) {
+                bounds[chunk++] = row + 1;
+            }
+        }
+        //chunks that came out empty (heavy rows) are harmless, just make the last boundary right
+        for (int c=chunk;c<=count;c++) {
+            bounds[c] = rows;
+        }
+        return bounds;
+    }
+}
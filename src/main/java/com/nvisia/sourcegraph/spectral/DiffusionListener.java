@@ -0,0 +1,7 @@
+package com.nvisia.sourcegraph.spectral;
+
+/* Called after every step of a DiffusionEngine run, and once for the start vectors as step 0. The block is the
+ * engine's working buffer: read it during the call, copy it to keep it. */
+public interface DiffusionListener {
+    void step(int step, VectorBlock vectors);
+}
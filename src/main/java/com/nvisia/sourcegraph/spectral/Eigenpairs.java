@@ -0,0 +1,60 @@
+package com.nvisia.sourcegraph.spectral;
+
+/* Result of an iterative eigen solve: pairs are ordered as asked for (smallest first, or largest first), vectors
+ * have unit length. When the solver ran out of iterations the pairs are the best approximations it had; see
+ * isConverged() and residual(). */
+public class Eigenpairs {
+    private final double[] values;
+    private final double[][] vectors;
+    private final double[] residuals;
+    private final int iterations;
+    private final boolean converged;
+
+    Eigenpairs(double[] values, double[][] vectors, double[] residuals, int iterations, boolean converged) {
+        this.values = values;
+        this.vectors = vectors;
+        this.residuals = residuals;
+        this.iterations = iterations;
+        this.converged = converged;
+    }
+
+    public int count() {
+        return values.length;
+    }
+
+    public double value(int i) {
+        return values[i];
+    }
+
+    public double[] values() {
+        return values.clone();
+    }
+
+    public double[] vector(int i) {
+        return vectors[i];
+    }
+
+    /* estimate of ||A v - lambda v|| */
+    public double residual(int i) {
+        return residuals[i];
+    }
+
+    /* number of operator applications it took */
+    public int getIterations() {
+        return iterations;
+    }
+
+    public boolean isConverged() {
+        return converged;
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder();
+        sb.append(converged ? "converged" : "NOT converged").append(" after ").append(iterations).append(" iterations:");
+        for (int i=0;i<values.length;i++) {
+            sb.append(' ').append(values[i]);
+        }
+        return sb.toString();
+    }
+}
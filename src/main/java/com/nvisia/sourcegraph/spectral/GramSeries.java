@@ -0,0 +1,83 @@
+package com.nvisia.sourcegraph.spectral;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/* Records the Gram matrix <x_i, x_j> of the block at every step. Run under DiffusionEngine.laplacian() with one
+ * indicator vector per module this is the <L^n f, L^n g> coupling series from Nodes.md, for every module pair at
+ * once. Only the upper triangle is computed. */
+public class GramSeries implements DiffusionListener {
+    private static final int ROWS_PER_CHUNK = 4096;
+
+    private final List<double[][]> series = new ArrayList<>();
+
+    @Override
+    public void step(int step, VectorBlock vectors) {
+        //one pass over the rows per chunk, summing the upper triangle, then add the chunks up
+        var width = vectors.width();
+        var length = vectors.length();
+        var data = vectors.data;
+        var chunks = (length + ROWS_PER_CHUNK - 1) / ROWS_PER_CHUNK;
+        var upper = IntStream.range(0, chunks).parallel().mapToObj(c -> {
+            var sums = new double[width * width];
+            for (int row=c * ROWS_PER_CHUNK;row<Math.min(length, (c + 1) * ROWS_PER_CHUNK);row++) {
+                var base = row * width;
+                for (int i=0;i<width;i++) {
+                    var xi = data[base + i];
+                    if (xi != 0.0) {
+                        for (int j=i;j<width;j++) {
+                            sums[i * width + j] += xi * data[base + j];
+                        }
+                    }
+                }
+            }
+            return sums;
+        }).reduce(new double[width * width], GramSeries::add);
+        var gram = new double[width][width];
+        for (int i=0;i<width;i++) {
+            for (int j=i;j<width;j++) {
+                gram[i][j] = upper[i * width + j];
+                gram[j][i] = upper[i * width + j];
+            }
+        }
+        series.add(gram);
+    }
+
+    private static double[] add(double[] a, double[] b) {
+        var sum = new double[a.length];
+        for (int i=0;i<a.length;i++) {
+            sum[i] = a[i] + b[i];
+        }
+        return sum;
+    }
+
+    /* number of steps recorded, including step 0 */
+    public int size() {
+        return series.size();
+    }
+
+    public double get(int step, int i, int j) {
+        return series.get(step)[i][j];
+    }
+
+    public double[][] gram(int step) {
+        return series.get(step);
+    }
+
+    /* <x_i, x_j> over all steps */
+    public double[] pair(int i, int j) {
+        var values = new double[series.size()];
+        for (int step=0;step<values.length;step++) {
+            values[step] = series.get(step)[i][j];
+        }
+        return values;
+    }
+
+    /* cosine of the angle between x_i and x_j at a step: 1 for fully coupled, 0 for orthogonal */
+    public double cosine(int step, int i, int j) {
+        var gram = series.get(step);
+        var norms = Math.sqrt(gram[i][i] * gram[j][j]);
+        return norms == 0.0 ? 0.0 : gram[i][j] / norms;
+    }
+}
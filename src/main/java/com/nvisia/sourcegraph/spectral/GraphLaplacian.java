@@ -0,0 +1,191 @@
+package com.nvisia.sourcegraph.spectral;
+
+import com.nvisia.sourcegraph.graph.FrozenGraph;
+
+/* The matrices LaplacianBuilder derives from a graph. Row i stands for graph node nodeId(i).
+ *
+ *   A      weighted adjacency
+ *   D      degree, the row sums of A (out-degree when not symmetric)
+ *   L      D - A
+ *   L_rw   D^-1 L = I - D^-1 A, random walk normalized; rows of isolated nodes are zero
+ *   P      D^-1 A, the random walk transition matrix
+ *   L_sym  D^-1/2 L D^-1/2, symmetric and with the same eigenvalues as L_rw; if L_sym u = l u then
+ *          L_rw D^-1/2 u = l D^-1/2 u
+ *          Only defined for symmetric adjacency; asking for it (or anything solved from it) otherwise throws
+ *
+ * Everything but the degree vector is built on first use and kept. */
+public class GraphLaplacian {
+    private final FrozenGraph graph;
+    private final SparseMatrix adjacency;
+    private final int[] nodeIds;
+    private final int[] rowOf;
+    private final boolean symmetric;
+    private final double[] degree;
+    private final double[] inverseDegree;
+    private SparseMatrix laplacian;
+    private SparseMatrix randomWalkLaplacian;
+    private SparseMatrix transition;
+    private SparseMatrix normalizedLaplacian;
+
+    GraphLaplacian(FrozenGraph graph, SparseMatrix adjacency, int[] nodeIds, int[] rowOf, boolean symmetric) {
+        this.graph = graph;
+        this.adjacency = adjacency;
+        this.nodeIds = nodeIds;
+        this.rowOf = rowOf;
+        this.symmetric = symmetric;
+        this.degree = new double[adjacency.rows()];
+        this.inverseDegree = new double[adjacency.rows()];
+        for (int row=0;row<degree.length;row++) {
+            degree[row] = adjacency.rowSum(row);
+            inverseDegree[row] = degree[row] > 0 ? 1.0 / degree[row] : 0.0;
+        }
+    }
+
+    public FrozenGraph getGraph() {
+        return graph;
+    }
+
+    public int size() {
+        return nodeIds.length;
+    }
+
+    /* graph node id of a row */
+    public int nodeId(int row) {
+        return nodeIds[row];
+    }
+
+    /* row of a graph node id, -1 if no selected edge touches it */
+    public int rowOf(int nodeId) {
+        return rowOf[nodeId];
+    }
+
+    public SparseMatrix adjacency() {
+        return adjacency;
+    }
+
+    /* whether the builder made A symmetric, see LaplacianBuilder.symmetric */
+    public boolean isSymmetric() {
+        return symmetric;
+    }
+
+    public double[] degree() {
+        return degree.clone();
+    }
+
+    public double degree(int row) {
+        return degree[row];
+    }
+
+    public double volume() {
+        var volume = 0.0;
+        for (var d : degree) {
+            volume += d;
+        }
+        return volume;
+    }
+
+    public synchronized SparseMatrix laplacian() {
+        if (laplacian == null) {
+            laplacian = adjacency.subtractFromDiagonal(degree);
+        }
+        return laplacian;
+    }
+
+    public synchronized SparseMatrix randomWalkLaplacian() {
+        if (randomWalkLaplacian == null) {
+            randomWalkLaplacian = laplacian().scaleRows(inverseDegree);
+        }
+        return randomWalkLaplacian;
+    }
+
+    public synchronized SparseMatrix transition() {
+        if (transition == null) {
+            transition = adjacency.scaleRows(inverseDegree);
+        }
+        return transition;
+    }
+
+    public synchronized SparseMatrix normalizedLaplacian() {
+        requireSymmetric();
+        if (normalizedLaplacian == null) {
+            var scale = new double[degree.length];
+            for (int row=0;row<degree.length;row++) {
+                scale[row] = Math.sqrt(inverseDegree[row]);
+            }
+            //D^-1/2 A D^-1/2 = (D^-1/2 (D^-1/2 A)^T)^T, and A is symmetric
+            var normalizedAdjacency = adjacency.scaleRows(scale).transpose().scaleRows(scale);
+            var ones = new double[degree.length];
+            for (int row=0;row<degree.length;row++) {
+                ones[row] = degree[row] > 0 ? 1.0 : 0.0;
+            }
+            normalizedLaplacian = normalizedAdjacency.subtractFromDiagonal(ones);
+        }
+        return normalizedLaplacian;
+    }
+
+    /* D^1/2 1 scaled to unit length: L_sym's eigenvector for 0 on a connected graph */
+    public double[] normalizedNullVector() {
+        var v = new double[degree.length];
+        for (int row=0;row<v.length;row++) {
+            v[row] = Math.sqrt(degree[row]);
+        }
+        return LanczosSolver.scale(v, 1.0 / Math.sqrt(volume()));
+    }
+
+    /* eigenvector of L_rw from one of L_sym */
+    public double[] toRandomWalkVector(double[] u) {
+        var v = new double[u.length];
+        for (int row=0;row<v.length;row++) {
+            v[row] = u[row] * Math.sqrt(inverseDegree[row]);
+        }
+        return v;
+    }
+
+    /* the k smallest eigenpairs of L_sym, leaving out the trivial D^1/2 1 one */
+    public Eigenpairs lowSpectrum(LanczosSolver solver, int k) {
+        requireSymmetric();
+        return solver.smallest(normalizedLaplacian(), k, normalizedNullVector());
+    }
+
+    /* eigenvector of L_rw for the smallest non trivial eigenvalue, per row. Its sign pattern splits the graph
+     * into two loosely coupled halves. On a disconnected graph the eigenvalue is 0 and the vector separates
+     * components instead */
+    public double[] fiedlerVector(LanczosSolver solver) {
+        requireSymmetric();
+        return toRandomWalkVector(lowSpectrum(solver, 1).vector(0));
+    }
+
+    //the solver needs a symmetric operator, and D^-1/2 A^T D^-1/2 isn't L_sym unless A is symmetric
+    private void requireSymmetric() {
+        if (!symmetric) {
+            throw new IllegalStateException("L_sym needs symmetric adjacency, build with symmetric(true)");
+        }
+    }
+
+    /* one step of the walk, distribution p (as a row vector) times P */
+    public double[] walk(double[] p) {
+        return transition().preMultiply(p);
+    }
+
+    /* 1 on the rows of the given nodes (those that have a row), e.g. to select a module */
+    public double[] indicator(int... nodeIds) {
+        var f = new double[size()];
+        for (var nodeId : nodeIds) {
+            if (rowOf[nodeId] >= 0) {
+                f[rowOf[nodeId]] = 1.0;
+            }
+        }
+        return f;
+    }
+
+    /* indicator of one node, as a start distribution for walk() */
+    public double[] pointMass(int nodeId) {
+        var row = rowOf[nodeId];
+        if (row < 0) {
+            throw new IllegalArgumentException("Node " + graph.path(nodeId) + " has no selected edges");
+        }
+        var p = new double[size()];
+        p[row] = 1.0;
+        return p;
+    }
+}
@@ -0,0 +1,212 @@
+package com.nvisia.sourcegraph.spectral;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.EigenDecomposition;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/* Thick restart Lanczos for a few eigenpairs at one end of the spectrum of a symmetric operator. Only needs
+ * A x products, and keeps basisSize + 1 vectors of length n around, so it works on graphs far too big for a dense
+ * decomposition.
+ *
+ * Every new vector is orthogonalized against the whole basis (twice), which costs more per step than plain
+ * three-term Lanczos but avoids ghost eigenvalues. When the basis is full the best Ritz vectors are kept and the
+ * rest thrown away, and the projected matrix starts out as their Ritz values plus a coupling row to the next
+ * vector. The projected matrix is small, so commons-math decomposes it.
+ *
+ * The operator must be symmetric: use GraphLaplacian.normalizedLaplacian() rather than the random walk one, they
+ * have the same eigenvalues. */
+public class LanczosSolver {
+    private double tolerance = 1e-8;
+    private int maxIterations = 10_000;
+    private int basisSize = 0;
+    private long seed = 42;
+
+    /* a pair is converged when ||A v - lambda v|| <= tolerance * max(1, |lambda|) */
+    public LanczosSolver tolerance(double tolerance) {
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    /* upper bound on operator applications */
+    public LanczosSolver maxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+        return this;
+    }
+
+    /* vectors kept between restarts; 0 picks max(2k + 10, 30) */
+    public LanczosSolver basisSize(int basisSize) {
+        this.basisSize = basisSize;
+        return this;
+    }
+
+    /* seed of the start vector, so runs are repeatable */
+    public LanczosSolver seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /* deflate: orthonormal directions to leave out, e.g. a known null vector */
+    public Eigenpairs smallest(LinearOperator operator, int k, double[]... deflate) {
+        return solve(operator, k, false, deflate);
+    }
+
+    public Eigenpairs largest(LinearOperator operator, int k, double[]... deflate) {
+        return solve(operator, k, true, deflate);
+    }
+
+    private Eigenpairs solve(LinearOperator operator, int k, boolean largest, double[][] deflate) {
+        var n = operator.dimension();
+        var room = n - deflate.length;
+        if (k < 1 || k > room) {
+            throw new IllegalArgumentException("Can't get " + k + " eigenpairs out of a space of dimension " + room);
+        }
+        var m = Math.min(room, basisSize > 0 ? Math.max(basisSize, k + 1) : Math.max(2 * k + 10, 30));
+        var basis = new double[m + 1][];
+        var h = new double[m][m];
+        var random = new SplittableRandom(seed);
+        basis[0] = startVector(n, random, deflate, basis, 0);
+
+        var w = new double[n];
+        var kept = 0;
+        var iterations = 0;
+        while (true) {
+            var beta = 0.0;
+            var size = m;
+            for (int j=kept;j<m;j++) {
+                operator.apply(basis[j], w);
+                iterations++;
+                orthogonalize(w, deflate, basis, j + 1, h, j);
+                beta = norm(w);
+                if (beta <= 1e-12 * Math.max(1.0, Math.abs(h[j][j]))) {
+                    //invariant subspace: what we have is exact, carry on with a fresh direction if there is room
+                    beta = 0.0;
+                    var next = j + 1 < m ? startVector(n, random, deflate, basis, j + 1) : null;
+                    if (next == null) {
+                        size = j + 1;
+                        break;
+                    }
+                    basis[j + 1] = next;
+                } else {
+                    basis[j + 1] = scale(w.clone(), 1.0 / beta);
+                }
+            }
+
+            //Ritz pairs of the projected matrix, wanted end first
+            var projected = new double[size][size];
+            for (int i=0;i<size;i++) {
+                System.arraycopy(h[i], 0, projected[i], 0, size);
+            }
+            var eigen = new EigenDecomposition(new Array2DRowRealMatrix(projected, false));
+            var theta = eigen.getRealEigenvalues();
+            var order = IntStream.range(0, size).boxed()
+                    .sorted(largest ? Comparator.comparingDouble((Integer i) -> -theta[i]) : Comparator.comparingDouble((Integer i) -> theta[i]))
+                    .mapToInt(Integer::intValue).toArray();
+            var v = eigen.getV();
+            var residuals = new double[size];
+            var converged = true;
+            for (int i=0;i<size;i++) {
+                residuals[i] = Math.abs(beta * v.getEntry(size - 1, order[i]));
+                if (i < k && residuals[i] > tolerance * Math.max(1.0, Math.abs(theta[order[i]]))) {
+                    converged = false;
+                }
+            }
+            var finished = converged || size < m || iterations >= maxIterations || size == room;
+            var keep = finished ? k : Math.min(Math.max(k + (m - k) / 2, k), m - 1);
+
+            var ritz = new double[keep][];
+            var values = new double[keep];
+            for (int i=0;i<keep;i++) {
+                var y = new double[n];
+                for (int j=0;j<size;j++) {
+                    axpy(v.getEntry(j, order[i]), basis[j], y);
+                }
+                ritz[i] = scale(y, 1.0 / norm(y));
+                values[i] = theta[order[i]];
+            }
+            if (finished) {
+                return new Eigenpairs(values, ritz, Arrays.copyOf(residuals, k), iterations, converged || size < m || size == room);
+            }
+
+            //restart from the kept Ritz vectors plus the last Lanczos vector
+            var next = basis[m];
+            Arrays.fill(basis, null);
+            System.arraycopy(ritz, 0, basis, 0, keep);
+            basis[keep] = next;
+            for (var row : h) {
+                Arrays.fill(row, 0.0);
+            }
+            for (int i=0;i<keep;i++) {
+                h[i][i] = values[i];
+            }
+            kept = keep;
+        }
+    }
+
+    /* random unit vector orthogonal to the deflated directions and the first count basis vectors, or null if
+     * there's nothing left */
+    private static double[] startVector(int n, SplittableRandom random, double[][] deflate, double[][] basis, int count) {
+        for (int attempt=0;attempt<3;attempt++) {
+            var v = new double[n];
+            for (int i=0;i<n;i++) {
+                v[i] = random.nextDouble() - 0.5;
+            }
+            orthogonalize(v, deflate, basis, count, null, 0);
+            var length = norm(v);
+            if (length > 1e-8) {
+                return scale(v, 1.0 / length);
+            }
+        }
+        return null;
+    }
+
+    /* classical Gram-Schmidt, twice; the coefficients are added to column column of h (and mirrored) */
+    private static void orthogonalize(double[] w, double[][] deflate, double[][] basis, int count, double[][] h, int column) {
+        for (int pass=0;pass<2;pass++) {
+            for (var d : deflate) {
+                axpy(-dot(d, w), d, w);
+            }
+            for (int i=0;i<count;i++) {
+                var coefficient = dot(basis[i], w);
+                axpy(-coefficient, basis[i], w);
+                if (h != null) {
+                    h[i][column] += coefficient;
+                }
+            }
+        }
+        if (h != null) {
+            for (int i=0;i<column;i++) {
+                h[column][i] = h[i][column];
+            }
+        }
+    }
+
+    static double dot(double[] a, double[] b) {
+        var sum = 0.0;
+        for (int i=0;i<a.length;i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    static double norm(double[] a) {
+        return Math.sqrt(dot(a, a));
+    }
+
+    //y += alpha x
+    static void axpy(double alpha, double[] x, double[] y) {
+        for (int i=0;i<x.length;i++) {
+            y[i] += alpha * x[i];
+        }
+    }
+
+    static double[] scale(double[] a, double factor) {
+        for (int i=0;i<a.length;i++) {
+            a[i] *= factor;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,99 @@
+package com.nvisia.sourcegraph.spectral;
+
+import com.nvisia.sourcegraph.graph.EdgeType;
+import com.nvisia.sourcegraph.graph.FrozenGraph;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/* Turns a resolved (frozen) graph into sparse matrices. Each EdgeType gets a weight, 0 leaves it out; parallel
+ * edges between the same two nodes add up. Only nodes touched by at least one selected edge get a row, so a
+ * References-only Laplacian doesn't carry a zero row for every statement node. Unresolved targets are left out.
+ *
+ *   new LaplacianBuilder().weight(EdgeType.References, 1).weight(EdgeType.Calls, 2).symmetric(true).build(graph)
+ */
+public class LaplacianBuilder {
+    private static final EdgeType[] EDGE_TYPES = EdgeType.values();
+
+    private final double[] weights = new double[EDGE_TYPES.length];
+    private boolean symmetric = true;
+    private boolean selfLoops = false;
+
+    public LaplacianBuilder weight(EdgeType type, double weight) {
+        if (weight < 0 || Double.isNaN(weight)) {
+            throw new IllegalArgumentException("Edge weights must be >= 0: " + type + "=" + weight);
+        }
+        weights[type.ordinal()] = weight;
+        return this;
+    }
+
+    public LaplacianBuilder weights(Map<EdgeType, ? extends Number> weights) {
+        for (var entry : weights.entrySet()) {
+            weight(entry.getKey(), entry.getValue().doubleValue());
+        }
+        return this;
+    }
+
+    /* when set (the default), A + A^T is used, i.e. edge direction is ignored */
+    public LaplacianBuilder symmetric(boolean symmetric) {
+        this.symmetric = symmetric;
+        return this;
+    }
+
+    /* edges from a node to itself are dropped unless this is set; they only ever show up in the degree */
+    public LaplacianBuilder selfLoops(boolean selfLoops) {
+        this.selfLoops = selfLoops;
+        return this;
+    }
+
+    public GraphLaplacian build(FrozenGraph graph) {
+        var nodeCount = graph.nodeCount();
+        //first pass: which nodes take part, so the matrix gets compact rows
+        var rowOf = new int[nodeCount];
+        Arrays.fill(rowOf, -1);
+        var selected = 0;
+        for (int from=0;from<nodeCount;from++) {
+            for (int e=graph.outStart(from);e<graph.outEnd(from);e++) {
+                var to = graph.edgeTarget(e);
+                if (isSelected(graph, from, e, to)) {
+                    selected++;
+                    rowOf[from] = 0;
+                    rowOf[to] = 0;
+                }
+            }
+        }
+        var rows = 0;
+        for (int node=0;node<nodeCount;node++) {
+            if (rowOf[node] == 0) {
+                rowOf[node] = rows++;
+            } else {
+                rowOf[node] = -1;
+            }
+        }
+        var nodeIds = new int[rows];
+        for (int node=0;node<nodeCount;node++) {
+            if (rowOf[node] >= 0) {
+                nodeIds[rowOf[node]] = node;
+            }
+        }
+
+        var adjacency = new SparseMatrix.Builder(rows, rows, symmetric ? selected * 2 : selected);
+        for (int from=0;from<nodeCount;from++) {
+            for (int e=graph.outStart(from);e<graph.outEnd(from);e++) {
+                var to = graph.edgeTarget(e);
+                if (isSelected(graph, from, e, to)) {
+                    var weight = weights[graph.edgeTypeOrdinal(e)];
+                    adjacency.add(rowOf[from], rowOf[to], weight);
+                    if (symmetric) {
+                        adjacency.add(rowOf[to], rowOf[from], weight);
+                    }
+                }
+            }
+        }
+        return new GraphLaplacian(graph, adjacency.build(), nodeIds, rowOf, symmetric);
+    }
+
+    private boolean isSelected(FrozenGraph graph, int from, int edge, int to) {
+        return weights[graph.edgeTypeOrdinal(edge)] > 0 && !FrozenGraph.isStub(to) && (selfLoops || from != to);
+    }
+}
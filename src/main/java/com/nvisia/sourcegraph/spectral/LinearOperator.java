@@ -0,0 +1,9 @@
+package com.nvisia.sourcegraph.spectral;
+
+/* A square matrix that is only known by what it does to a vector, so solvers don't need the entries */
+public interface LinearOperator {
+    int dimension();
+
+    /* y = A x; x and y are never the same array */
+    void apply(double[] x, double[] y);
+}
@@ -0,0 +1,263 @@
+package com.nvisia.sourcegraph.spectral;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+
+import java.util.Arrays;
+
+/* Immutable sparse matrix in compressed sparse row form: row i's entries are columns[rowOffsets[i]] ..
+ * columns[rowOffsets[i+1]-1], sorted by column, with no duplicates. Build one with a Builder. */
+public class SparseMatrix implements LinearOperator {
+    private final int rows;
+    private final int cols;
+    private final int[] rowOffsets;
+    private final int[] columns;
+    private final double[] values;
+
+    SparseMatrix(int rows, int cols, int[] rowOffsets, int[] columns, double[] values) {
+        this.rows = rows;
+        this.cols = cols;
+        this.rowOffsets = rowOffsets;
+        this.columns = columns;
+        this.values = values;
+    }
+
+    public int rows() {
+        return rows;
+    }
+    public int cols() {
+        return cols;
+    }
+    public int nonZeros() {
+        return rowOffsets[rows];
+    }
+
+    /* entries of a row are the indexes rowStart(row) until rowEnd(row) into column()/value() */
+    public int rowStart(int row) {
+        return rowOffsets[row];
+    }
+    public int rowEnd(int row) {
+        return rowOffsets[row + 1];
+    }
+    public int column(int entry) {
+        return columns[entry];
+    }
+    public double value(int entry) {
+        return values[entry];
+    }
+
+    public double get(int row, int col) {
+        var entry = Arrays.binarySearch(columns, rowOffsets[row], rowOffsets[row + 1], col);
+        return entry >= 0 ? values[entry] : 0.0;
+    }
+
+    public double rowSum(int row) {
+        var sum = 0.0;
+        for (int e=rowOffsets[row];e<rowOffsets[row + 1];e++) {
+            sum += values[e];
+        }
+        return sum;
+    }
+
+    @Override
+    public int dimension() {
+        if (rows != cols) {
+            throw new IllegalStateException("not square: " + rows + "x" + cols);
+        }
+        return rows;
+    }
+
+    @Override
+    public void apply(double[] x, double[] y) {
+        multiplyRows(x, y, 0, rows);
+    }
+
+    /* y = A x */
+    public void multiply(double[] x, double[] y) {
+        multiplyRows(x, y, 0, rows);
+    }
+    /* y = A x for rows from (inclusive) to to (exclusive) only, so callers can split the work up */
+    public void multiplyRows(double[] x, double[] y, int from, int to) {
+        for (int row=from;row<to;row++) {
+            var sum = 0.0;
+            for (int e=rowOffsets[row];e<rowOffsets[row + 1];e++) {
+                sum += values[e] * x[columns[e]];
+            }
+            y[row] = sum;
+        }
+    }
+    public double[] multiply(double[] x) {
+        var y = new double[rows];
+        multiply(x, y);
+        return y;
+    }
+
+    /* y = x^T A, i.e. x as a row vector times the matrix (RealMatrix.preMultiply) */
+    public double[] preMultiply(double[] x) {
+        var y = new double[cols];
+        for (int row=0;row<rows;row++) {
+            var xi = x[row];
+            if (xi != 0.0) {
+                for (int e=rowOffsets[row];e<rowOffsets[row + 1];e++) {
+                    y[columns[e]] += xi * values[e];
+                }
+            }
+        }
+        return y;
+    }
+
+    public SparseMatrix transpose() {
+        var builder = new Builder(cols, rows, nonZeros());
+        for (int row=0;row<rows;row++) {
+            for (int e=rowOffsets[row];e<rowOffsets[row + 1];e++) {
+                builder.add(columns[e], row, values[e]);
+            }
+        }
+        return builder.build();
+    }
+
+    /* D A, with D the diagonal matrix of the given scales */
+    public SparseMatrix scaleRows(double[] scales) {
+        var scaled = values.clone();
+        for (int row=0;row<rows;row++) {
+            for (int e=rowOffsets[row];e<rowOffsets[row + 1];e++) {
+                scaled[e] *= scales[row];
+            }
+        }
+        return new SparseMatrix(rows, cols, rowOffsets, columns, scaled);
+    }
+
+    /* diag(diagonal) - this (square matrices only) */
+    public SparseMatrix subtractFromDiagonal(double[] diagonal) {
+        if (rows != cols) {
+            throw new IllegalStateException("not square: " + rows + "x" + cols);
+        }
+        var builder = new Builder(rows, cols, nonZeros() + rows);
+        for (int row=0;row<rows;row++) {
+            if (diagonal[row] != 0.0) {
+                builder.add(row, row, diagonal[row]);
+            }
+            for (int e=rowOffsets[row];e<rowOffsets[row + 1];e++) {
+                builder.add(row, columns[e], -values[e]);
+            }
+        }
+        return builder.build();
+    }
+
+    /* dense copy, for handing small matrices to commons-math */
+    public RealMatrix toRealMatrix() {
+        var dense = new double[rows][cols];
+        for (int row=0;row<rows;row++) {
+            for (int e=rowOffsets[row];e<rowOffsets[row + 1];e++) {
+                dense[row][columns[e]] = values[e];
+            }
+        }
+        return new Array2DRowRealMatrix(dense, false);
+    }
+
+    /* collects (row, col, value) entries in any order; entries at the same position are summed */
+    public static class Builder {
+        private final int rows;
+        private final int cols;
+        private int[] entryRows;
+        private int[] entryCols;
+        private double[] entryValues;
+        private int count;
+
+        public Builder(int rows, int cols) {
+            this(rows, cols, 16);
+        }
+        public Builder(int rows, int cols, int expectedEntries) {
+            this.rows = rows;
+            this.cols = cols;
+            var capacity = Math.max(expectedEntries, 1);
+            entryRows = new int[capacity];
+            entryCols = new int[capacity];
+            entryValues = new double[capacity];
+        }
+
+        public Builder add(int row, int col, double value) {
+            if (row < 0 || row >= rows || col < 0 || col >= cols) {
+                throw new IndexOutOfBoundsException("(" + row + "," + col + ") outside " + rows + "x" + cols);
+            }
+            if (count == entryRows.length) {
+                var capacity = count * 2;
+                entryRows = Arrays.copyOf(entryRows, capacity);
+                entryCols = Arrays.copyOf(entryCols, capacity);
+                entryValues = Arrays.copyOf(entryValues, capacity);
+            }
+            entryRows[count] = row;
+            entryCols[count] = col;
+            entryValues[count] = value;
+            count++;
+            return this;
+        }
+
+        public SparseMatrix build() {
+            //bucket by row (counting sort), then sort and merge within each row
+            var offsets = new int[rows + 1];
+            for (int i=0;i<count;i++) {
+                offsets[entryRows[i] + 1]++;
+            }
+            for (int row=0;row<rows;row++) {
+                offsets[row + 1] += offsets[row];
+            }
+            var cursor = Arrays.copyOf(offsets, rows);
+            var columns = new int[count];
+            var values = new double[count];
+            for (int i=0;i<count;i++) {
+                var slot = cursor[entryRows[i]]++;
+                columns[slot] = entryCols[i];
+                values[slot] = entryValues[i];
+            }
+            var merged = new int[rows + 1];
+            var out = 0;
+            for (int row=0;row<rows;row++) {
+                var start = offsets[row];
+                var end = offsets[row + 1];
+                sortByColumn(columns, values, start, end);
+                for (int e=start;e<end;e++) {
+                    if (out > merged[row] && columns[out - 1] == columns[e]) {
+                        values[out - 1] += values[e];
+                    } else {
+                        columns[out] = columns[e];
+                        values[out] = values[e];
+                        out++;
+                    }
+                }
+                merged[row + 1] = out;
+            }
+            return new SparseMatrix(rows, cols, merged, Arrays.copyOf(columns, out), Arrays.copyOf(values, out));
+        }
+
+        //insertion sort, rows are short; long ones go through a sorted index array
+        private static void sortByColumn(int[] columns, double[] values, int start, int end) {
+            if (end - start > 32) {
+                var order = new long[end - start];
+                for (int e=start;e<end;e++) {
+                    order[e - start] = ((long) columns[e] << 32) | (e - start);
+                }
+                Arrays.sort(order);
+                var sortedValues = new double[end - start];
+                for (int i=0;i<order.length;i++) {
+                    columns[start + i] = (int) (order[i] >>> 32);
+                    sortedValues[i] = values[start + (int) order[i]];
+                }
+                System.arraycopy(sortedValues, 0, values, start, sortedValues.length);
+                return;
+            }
+            for (int i=start + 1;i<end;i++) {
+                var col = columns[i];
+                var value = values[i];
+                var j = i - 1;
+                while (j >= start && columns[j] > col) {
+                    columns[j + 1] = columns[j];
+                    values[j + 1] = values[j];
+                    j--;
+                }
+                columns[j + 1] = col;
+                values[j + 1] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.nvisia.sourcegraph.spectral;
+
+/* k vectors of length n stored row-interleaved: entry (row, vector) is at row * k + vector, so a sparse row
+ * touches all k vectors with one pass over its entries. The whole block is one array, so n * k has to fit in one;
+ * that's checked up front, which keeps every row * k + vector index here and in DiffusionEngine within int range. */
+public class VectorBlock {
+    //the largest array the VM will reliably hand out
+    static final int MAX_ENTRIES = Integer.MAX_VALUE - 8;
+
+    private final int length;
+    private final int width;
+    final double[] data;
+
+    public VectorBlock(int length, int width) {
+        if (length < 0 || width < 0) {
+            throw new IllegalArgumentException("Block of " + width + " vectors of length " + length);
+        }
+        if ((long) length * width > MAX_ENTRIES) {
+            throw new IllegalArgumentException("Block of " + width + " vectors of length " + length + " needs "
+                    + (long) length * width + " entries, more than one array holds; run the vectors in smaller blocks");
+        }
+        this.length = length;
+        this.width = width;
+        this.data = new double[length * width];
+    }
+
+    public static VectorBlock of(double[]... vectors) {
+        var block = new VectorBlock(vectors.length == 0 ? 0 : vectors[0].length, vectors.length);
+        for (int v=0;v<vectors.length;v++) {
+            block.setVector(v, vectors[v]);
+        }
+        return block;
+    }
+
+    /* n, the length of each vector */
+    public int length() {
+        return length;
+    }
+
+    /* k, the number of vectors */
+    public int width() {
+        return width;
+    }
+
+    public double get(int row, int vector) {
+        return data[row * width + vector];
+    }
+
+    public void set(int row, int vector, double value) {
+        data[row * width + vector] = value;
+    }
+
+    public void setVector(int vector, double[] values) {
+        if (values.length != length) {
+            throw new IllegalArgumentException("Vector of length " + values.length + " in a block of length " + length);
+        }
+        for (int row=0;row<length;row++) {
+            data[row * width + vector] = values[row];
+        }
+    }
+
+    public double[] vector(int vector) {
+        var values = new double[length];
+        for (int row=0;row<length;row++) {
+            values[row] = data[row * width + vector];
+        }
+        return values;
+    }
+
+    public double dot(int a, int b) {
+        var sum = 0.0;
+        for (int row=0;row<length;row++) {
+            sum += data[row * width + a] * data[row * width + b];
+        }
+        return sum;
+    }
+
+    public VectorBlock copy() {
+        var copy = new VectorBlock(length, width);
+        System.arraycopy(data, 0, copy.data, 0, data.length);
+        return copy;
+    }
+}
@@ -0,0 +1,131 @@
+package com.nvisia.sourcegraph.graph;
+
+import com.nvisia.sourcegraph.AntlrImport;
+import com.nvisia.sourcegraph.analysis.ContractedGraph;
+import com.nvisia.sourcegraph.analysis.Contraction;
+import com.nvisia.sourcegraph.analysis.CouplingAnalysis;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.util.List;
+
+public class ContractionTest {
+
+    @Test
+    public void testLevels() {
+        var p1 = new Node("p1", "ctr.p1", NodeType.Package);
+        var p2 = new Node("p2", "ctr.p2", NodeType.Package);
+        var a = p1.addContained(new Node("A", "ctr.p1.A", NodeType.Type));
+        var b = p1.addContained(new Node("B", "ctr.p1.B", NodeType.Type));
+        var c = p2.addContained(new Node("C", "ctr.p2.C", NodeType.Type));
+        var run = a.addContained(new Node("run", "ctr.p1.A.run", NodeType.Method));
+        var stmt = run.addContained(new Node("stmt", "ctr.p1.A.run:1", NodeType.Statement));
+        var call = stmt.addContained(new Node("call", "ctr.p1.A.run:1:1", NodeType.Expression));
+        var go = c.addContained(new Node("go", "ctr.p2.C.go", NodeType.Method));
+        call.createOutboundEdge(NodeRef.of(go), EdgeType.Calls);
+        stmt.createOutboundEdge(NodeRef.of(go), EdgeType.Calls);
+        run.createOutboundEdge(NodeRef.of(b), EdgeType.References);
+        a.createOutboundEdge(NodeRef.of(c), EdgeType.DependsOn);
+        run.createOutboundEdge(NodeRef.of(stmt), EdgeType.Executes);
+        b.createOutboundEdge(NodeRef.of("ctr.Missing"), EdgeType.DependsOn);
+        var graph = FrozenGraph.freeze(List.of(p1, p2));
+
+        var contraction = new Contraction(graph);
+        var types = contraction.at(NodeType.Type);
+        assertEquals(3, types.moduleCount());
+        //the two packages stay as they are
+        assertEquals(5, types.nodeCount());
+        var ta = types.blockOf(graph.idOf(a));
+        var tc = types.blockOf(graph.idOf(c));
+        assertEquals(ta, types.blockOf(graph.idOf(call)));
+        assertEquals("ctr.p1.A", types.path(ta));
+        assertEquals(2.0, types.weight(ta, tc, EdgeType.Calls), 0.0);
+        assertEquals(1.0, types.weight(ta, tc, EdgeType.DependsOn), 0.0);
+        assertEquals(1.0, types.weight(ta, types.blockOf(graph.idOf(b)), EdgeType.References), 0.0);
+        //internal: the Executes edge stays as a loop, Contains goes
+        assertEquals(1.0, types.weight(ta, ta, EdgeType.Executes), 0.0);
+        assertEquals(0.0, types.weight(ta, ta, EdgeType.Contains), 0.0);
+        assertEquals(1.0, types.weight(types.blockOf(graph.idOf(p1)), ta, EdgeType.Contains), 0.0);
+
+        var packages = contraction.at(NodeType.Package);
+        assertSame(packages, contraction.at(NodeType.Package));
+        assertEquals(1, contraction.getBaseContractions());
+        assertSame(graph, packages.getGraph());
+        assertSameGraph(direct(graph, NodeType.Package), packages);
+        var pp1 = packages.blockOf(graph.idOf(call));
+        var pp2 = packages.blockOf(graph.idOf(go));
+        assertEquals(3.0, packages.weight(pp1, pp2, EdgeType.Calls) + packages.weight(pp1, pp2, EdgeType.DependsOn), 0.0);
+        assertEquals(1.0, packages.weight(pp1, pp1, EdgeType.References), 0.0);
+    }
+
+    @Test
+    public void testLocalClassForcesBaseContraction() {
+        var pkg = new Node("p", "local.p", NodeType.Package);
+        var outer = pkg.addContained(new Node("Outer", "local.p.Outer", NodeType.Type));
+        var method = outer.addContained(new Node("m", "local.p.Outer.m", NodeType.Method));
+        var local = method.addContained(new Node("Local", "local.p.Outer.m:Local", NodeType.Type));
+        var inner = local.addContained(new Node("n", "local.p.Outer.m:Local.n", NodeType.Method));
+        inner.createOutboundEdge(NodeRef.of(method), EdgeType.Calls);
+        var graph = FrozenGraph.freeze(List.of(pkg));
+
+        var contraction = new Contraction(graph);
+        contraction.at(NodeType.Method);
+        var types = contraction.at(NodeType.Type);
+        assertEquals(2, contraction.getBaseContractions());
+        assertSameGraph(direct(graph, NodeType.Type), types);
+        assertEquals(1.0, types.weight(types.blockOf(graph.idOf(local)), types.blockOf(graph.idOf(outer)), EdgeType.Calls), 0.0);
+        contraction.at(NodeType.Package);
+        assertEquals(2, contraction.getBaseContractions());
+    }
+
+    @Test
+    public void testCouplingFromContraction() throws Exception {
+        var imp = new AntlrImport();
+        imp.importFiles(AntlrImport.getAllJavaFiles(Path.of("src/test_source/java")), 1);
+        imp.postProcess();
+        var graph = imp.freeze();
+        var contraction = new Contraction(graph);
+        contraction.at(NodeType.Method);
+        for (var level : List.of(NodeType.Type, NodeType.Package)) {
+            assertSameGraph(direct(graph, level), contraction.at(level));
+            var direct = new CouplingAnalysis().analyze(graph, level);
+            var contracted = new CouplingAnalysis().analyze(contraction.at(level));
+            assertEquals(direct.getPairs().size(), contracted.getPairs().size());
+            for (int i=0;i<direct.getPairs().size();i++) {
+                assertEquals(direct.getPairs().get(i).getFirstName(), contracted.getPairs().get(i).getFirstName());
+                assertEquals(direct.getPairs().get(i).getCrossSection(), contracted.getPairs().get(i).getCrossSection(), 0.0);
+            }
+            for (int m=0;m<direct.getModules().moduleCount();m++) {
+                assertEquals(direct.volume(m), contracted.volume(m), 0.0);
+                assertEquals(direct.surface(m), contracted.surface(m), 0.0);
+            }
+        }
+        assertEquals(1, contraction.getBaseContractions());
+    }
+
+    private static void assertSameGraph(ContractedGraph expected, ContractedGraph actual) {
+        assertEquals(expected.getLevel(), actual.getLevel());
+        assertEquals(expected.nodeCount(), actual.nodeCount());
+        assertEquals(expected.moduleCount(), actual.moduleCount());
+        assertEquals(expected.edgeCount(), actual.edgeCount());
+        for (int node=0;node<expected.getGraph().nodeCount();node++) {
+            assertEquals(expected.blockOf(node), actual.blockOf(node));
+        }
+        for (int block=0;block<expected.nodeCount();block++) {
+            assertEquals(expected.representative(block), actual.representative(block));
+            assertEquals(expected.outStart(block), actual.outStart(block));
+            for (int e=expected.outStart(block);e<expected.outEnd(block);e++) {
+                assertEquals(expected.edgeTarget(e), actual.edgeTarget(e));
+                assertEquals(expected.edgeType(e), actual.edgeType(e));
+                assertEquals(expected.weight(e), actual.weight(e), 0.0);
+            }
+        }
+    }
+
+    //a fresh cache has nothing to derive from, so this always comes from the base graph
+    private static ContractedGraph direct(FrozenGraph graph, NodeType level) {
+        return new Contraction(graph).at(level);
+    }
+}
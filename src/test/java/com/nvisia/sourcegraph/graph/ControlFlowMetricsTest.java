@@ -0,0 +1,113 @@
+package com.nvisia.sourcegraph.graph;
+
+import com.nvisia.sourcegraph.AntlrImport;
+import com.nvisia.sourcegraph.GraphTranslator;
+import com.nvisia.sourcegraph.analysis.ControlFlowMetrics;
+import com.nvisia.sourcegraph.analysis.MethodMetrics;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ControlFlowMetricsTest {
+    private static final String SOURCE =
+            "package cfg;" +
+            "class Flows {" +
+            "  void straight() { o.a(); o.b(); o.c(); }" +
+            "  void oneLoop(List<String> xs) { o.a(); for (String x : xs) o.b(x); o.c(); }" +
+            "  void twoLoops(List<String> xs) {" +
+            "    for (String x : xs) { o.a(x); }" +
+            "    for (int i=0;i<10;i++) { o.b(i); o.c(i); }" +
+            "  }" +
+            "  void nested(List<List<String>> xss) {" +
+            "    for (List<String> xs : xss) {" +
+            "      o.a();" +
+            "      for (String x : xs) { o.b(x); }" +
+            "    }" +
+            "  }" +
+            "  abstract void nothing();" +
+            "  void ifElse(int x) {" +
+            "    if (x > 0) { o.a(); } else { o.b(); }" +
+            "    if (x == 0) o.c();" +
+            "  }" +
+            "  void elseIfChain(int x) { if (x > 0) o.a(); else if (x < 0) o.b(); else o.c(); }" +
+            "  void whileLoop() { while (o.more()) { o.a(); } }" +
+            "  void doLoop() { do { o.a(); } while (o.more()); }" +
+            "  void threeWaySwitch(int x) {" +
+            "    switch (x) { case 1: o.a(); break; case 2: o.b(); break; default: o.c(); }" +
+            "  }" +
+            "  void conditions(int x) {" +
+            "    try { o.a(x > 0 && x < 10 || x == 20 ? 1 : 2); } catch (IllegalStateException e) { o.b(); }" +
+            "  }" +
+            "}";
+
+    @Test
+    public void testMetrics() {
+        var imp = new AntlrImport();
+        imp.importSource(CharStreams.fromString(SOURCE));
+        imp.postProcess();
+        var byName = new HashMap<String, MethodMetrics>();
+        for (var metrics : imp.computeControlFlowMetrics()) {
+            byName.put(metrics.getMethod().getName(), metrics);
+        }
+        assertEquals(11, byName.size());
+
+        assertMetrics(byName, "straight", 1, 0);
+        assertMetrics(byName, "oneLoop", 2, 1);
+        assertMetrics(byName, "twoLoops", 3, 1);
+        assertMetrics(byName, "nested", 3, 2);
+        assertMetrics(byName, "nothing", 1, 0);
+        assertEquals(3, byName.get("ifElse").getCyclomaticComplexity());
+        assertEquals(3, byName.get("elseIfChain").getCyclomaticComplexity());
+        assertEquals(2, byName.get("whileLoop").getCyclomaticComplexity());
+        assertEquals(2, byName.get("doLoop").getCyclomaticComplexity());
+        //two cases, the default isn't a decision of its own
+        assertEquals(3, byName.get("threeWaySwitch").getCyclomaticComplexity());
+        //&&, ||, ?: and the catch
+        assertEquals(5, byName.get("conditions").getCyclomaticComplexity());
+        //method -> body -> a -> b -> c -> exit
+        assertEquals(5, byName.get("straight").getLongestPath());
+        assertTrue(byName.get("twoLoops").getLongestPath() > byName.get("oneLoop").getLongestPath());
+
+        var method = byName.get("nested").getMethod();
+        assertEquals(Integer.valueOf(3), method.getAttribute(ControlFlowMetrics.CYCLOMATIC_COMPLEXITY).orElseThrow());
+        assertEquals(Integer.valueOf(2), method.getAttribute(ControlFlowMetrics.MAX_NESTING).orElseThrow());
+        assertEquals(Integer.valueOf(2), method.getAttribute(GraphTranslator.DECISION_POINTS).orElseThrow());
+        assertEquals(4, method.getAttributes().size());
+    }
+
+    @Test
+    public void testMetricsSurviveSnapshot() throws Exception {
+        var imp = new AntlrImport();
+        imp.importSource(CharStreams.fromString(SOURCE));
+        imp.postProcess();
+        var file = Files.createTempFile("graph", ".snapshot");
+        try {
+            imp.writeSnapshot(file);
+            var loaded = new AntlrImport();
+            loaded.loadSnapshot(file);
+            var fresh = new HashMap<String, Integer>();
+            for (var metrics : imp.computeControlFlowMetrics()) {
+                fresh.put(metrics.getMethod().getName(), metrics.getCyclomaticComplexity());
+            }
+            var reloaded = new HashMap<String, Integer>();
+            for (var metrics : loaded.computeControlFlowMetrics()) {
+                reloaded.put(metrics.getMethod().getName(), metrics.getCyclomaticComplexity());
+            }
+            assertEquals(fresh, reloaded);
+            assertEquals(Integer.valueOf(3), reloaded.get("ifElse"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void assertMetrics(Map<String, MethodMetrics> byName, String name, int ccn, int nesting) {
+        var metrics = byName.get(name);
+        assertEquals(name, ccn, metrics.getCyclomaticComplexity());
+        assertEquals(name, nesting, metrics.getMaxNesting());
+    }
+}
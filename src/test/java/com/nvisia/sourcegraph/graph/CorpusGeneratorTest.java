@@ -0,0 +1,87 @@
+package com.nvisia.sourcegraph.graph;
+
+import com.nvisia.sourcegraph.AntlrImport;
+import com.nvisia.sourcegraph.CorpusGenerator;
+import com.nvisia.sourcegraph.antlr.Java9Lexer;
+import com.nvisia.sourcegraph.antlr.Java9Parser;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+
+public class CorpusGeneratorTest {
+    //-Dsourcegraph.scaleTest.classesPerPackage=200 or so for a graph in the 10^5..10^6 node range
+    private static final int SCALE_CLASSES = Integer.getInteger("sourcegraph.scaleTest.classesPerPackage", 4);
+
+    private static CorpusGenerator small() {
+        return new CorpusGenerator().seed(11).packageFanOut(2).packageDepth(1).classesPerPackage(3);
+    }
+
+    @Test
+    public void testSameSeedSameCorpus() {
+        var first = small().generate();
+        var second = small().generate();
+        assertEquals(first.size(), second.size());
+        for (int i=0;i<first.size();i++) {
+            assertEquals(first.get(i).getPath(), second.get(i).getPath());
+            assertEquals(first.get(i).getText(), second.get(i).getText());
+        }
+        var other = small().seed(12).generate();
+        assertNotEquals(first.get(0).getText(), other.get(0).getText());
+    }
+
+    @Test
+    public void testShape() {
+        var generator = small();
+        var files = generator.generate();
+        assertEquals(3, generator.packageCount());
+        assertEquals(9, generator.classCount());
+        assertEquals(9, files.size());
+        assertEquals("gen/Type0.java", files.get(0).getPath());
+        assertEquals("gen/p1/Type2.java", files.get(8).getPath());
+        assertTrue(files.get(8).getText().startsWith("package gen.p1;\n"));
+        assertEquals(21, new CorpusGenerator().packageFanOut(4).packageDepth(2).packageCount());
+    }
+
+    @Test
+    public void testOutputParsesWithoutErrors() {
+        for (var file : small().loopNesting(3).generate()) {
+            var parser = new Java9Parser(new CommonTokenStream(new Java9Lexer(CharStreams.fromString(file.getText()))));
+            parser.removeErrorListeners();
+            parser.compilationUnit();
+            assertEquals(file.getPath(), 0, parser.getNumberOfSyntaxErrors());
+        }
+    }
+
+    @Test
+    public void testImportResolvesEveryClass() {
+        var generator = new CorpusGenerator().seed(5).packageFanOut(3).packageDepth(1).classesPerPackage(SCALE_CLASSES)
+                .crossPackageRatio(0.5);
+        var files = generator.generate();
+        var imp = new AntlrImport();
+        for (var file : files) {
+            imp.importSource(CharStreams.fromString(file.getText(), file.getPath()));
+        }
+        var stats = imp.postProcess();
+        assertEquals(0, stats.getUnresolved());
+
+        var types = new HashSet<String>();
+        var crossPackage = 0;
+        var graph = imp.freeze();
+        for (int node=0;node<graph.nodeCount();node++) {
+            if (graph.nodeType(node) == NodeType.Type) {
+                types.add(graph.path(node));
+            }
+        }
+        for (var file : files) {
+            var name = file.getPath().replace(".java", "").replace('/', '.');
+            assertTrue(name, types.contains(name));
+            crossPackage += file.getText().contains("import gen.") ? 1 : 0;
+        }
+        assertTrue(crossPackage > 0);
+        assertTrue(graph.nodeCount() > 100 * files.size());
+    }
+}
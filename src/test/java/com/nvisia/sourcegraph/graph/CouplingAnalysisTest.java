@@ -0,0 +1,58 @@
+package com.nvisia.sourcegraph.graph;
+
+import com.nvisia.sourcegraph.analysis.CouplingAnalysis;
+import com.nvisia.sourcegraph.analysis.ModuleMap;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+public class CouplingAnalysisTest {
+
+    @Test
+    public void testPackageAndTypeLevels() {
+        var p1 = new Node("p1", "cpl.p1", NodeType.Package);
+        var p2 = new Node("p2", "cpl.p2", NodeType.Package);
+        var a = p1.addContained(new Node("A", "cpl.p1.A", NodeType.Type));
+        var b = p1.addContained(new Node("B", "cpl.p1.B", NodeType.Type));
+        var c = p2.addContained(new Node("C", "cpl.p2.C", NodeType.Type));
+        var d = p2.addContained(new Node("D", "cpl.p2.D", NodeType.Type));
+        var method = a.addContained(new Node("run", "cpl.p1.A.run", NodeType.Method));
+        a.createOutboundEdge(NodeRef.of(b), EdgeType.References);
+        method.createOutboundEdge(NodeRef.of(c), EdgeType.Calls);
+        b.createOutboundEdge(NodeRef.of(c), EdgeType.DependsOn);
+        c.createOutboundEdge(NodeRef.of(d), EdgeType.References);
+        d.createOutboundEdge(NodeRef.of(c), EdgeType.Calls);
+        //not counted: unresolved, and not a coupling edge type
+        a.createOutboundEdge(NodeRef.of("cpl.p9.Missing"), EdgeType.DependsOn);
+        a.createOutboundEdge(NodeRef.of(d), EdgeType.Executes);
+        var graph = FrozenGraph.freeze(List.of(p1, p2));
+
+        var modules = ModuleMap.of(graph, NodeType.Package);
+        assertEquals(2, modules.moduleCount());
+        assertEquals("cpl.p1", modules.moduleName(modules.moduleOf(graph.idOf(method))));
+        var report = new CouplingAnalysis().analyze(modules);
+        assertEquals(1, report.getPairs().size());
+        var pair = report.getPairs().get(0);
+        assertEquals(2.0, pair.getCrossSection(), 0.0);
+        assertEquals(2.0 / 3.0, pair.getCovarianceIndex(), 1e-12);
+        var ranking = report.getModuleRanking();
+        assertEquals("cpl.p1", ranking.get(0).getName());
+        assertEquals(2.0, ranking.get(0).getSurfaceToVolume(), 0.0);
+        assertEquals(1.0, ranking.get(1).getSurfaceToVolume(), 0.0);
+
+        var types = new CouplingAnalysis().weight(EdgeType.Calls, 3.0).analyze(graph, NodeType.Type);
+        assertEquals(4, types.getModules().moduleCount());
+        assertEquals(-1, types.getModules().moduleOf(graph.idOf(p1)));
+        assertEquals(4, types.getPairs().size());
+        //no type has inner edges, so everything is infinitely coupled and ranked by name
+        assertEquals("cpl.p1.A", types.getPairs().get(0).getFirstName());
+        assertEquals("cpl.p1.B", types.getPairs().get(0).getSecondName());
+        assertTrue(Double.isInfinite(types.getPairs().get(0).getCovarianceIndex()));
+        var cd = types.getPairs().get(3);
+        assertEquals("cpl.p2.D", cd.getSecondName());
+        assertEquals(4.0, cd.getCrossSection(), 0.0);
+        assertEquals(3.0 + 1.0 + 4.0, types.surface(types.getModules().moduleOf(graph.idOf(c))), 0.0);
+    }
+}
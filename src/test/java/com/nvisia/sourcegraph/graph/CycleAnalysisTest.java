@@ -0,0 +1,109 @@
+package com.nvisia.sourcegraph.graph;
+
+import com.nvisia.sourcegraph.analysis.Contraction;
+import com.nvisia.sourcegraph.analysis.CycleAnalysis;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CycleAnalysisTest {
+
+    @Test
+    public void testComponentsAndWitnesses() {
+        var pkg = new Node("cyc", "cyc", NodeType.Package);
+        var nodes = new ArrayList<Node>();
+        for (var name : List.of("a", "b", "c", "d", "e", "f")) {
+            var node = new Node(name, "cyc." + name, NodeType.Type);
+            pkg.createOutboundEdge(NodeRef.of(node), EdgeType.Contains);
+            nodes.add(node);
+        }
+        //a -> b -> c -> a with a shortcut a -> c, c -> d, d -> d, e -> f, and a Calls edge f -> e that isn't selected
+        link(nodes, 0, 1);
+        link(nodes, 1, 2);
+        link(nodes, 2, 0);
+        link(nodes, 0, 2);
+        link(nodes, 2, 3);
+        link(nodes, 3, 3);
+        link(nodes, 4, 5);
+        nodes.get(5).createOutboundEdge(NodeRef.of(nodes.get(4)), EdgeType.Calls);
+        nodes.get(1).createOutboundEdge(NodeRef.of("cyc.Missing"), EdgeType.DependsOn);
+        var graph = FrozenGraph.freeze(List.of(pkg));
+
+        var sccs = new CycleAnalysis(EdgeType.DependsOn).analyze(graph);
+        var abc = sccs.componentOf(graph.idOf(nodes.get(0)));
+        assertEquals(abc, sccs.componentOf(graph.idOf(nodes.get(2))));
+        assertEquals(3, sccs.size(abc));
+        assertNotEquals(sccs.componentOf(graph.idOf(nodes.get(4))), sccs.componentOf(graph.idOf(nodes.get(5))));
+        assertEquals(1, sccs.cyclicComponents().length);
+        //a -> c -> a beats a -> b -> c -> a
+        assertEquals("cyc.a -> cyc.c -> cyc.a", sccs.describeCycle(abc));
+
+        var withLoops = new CycleAnalysis(EdgeType.DependsOn).selfLoops(true).analyze(graph);
+        assertEquals(2, withLoops.cyclicComponents().length);
+        assertEquals("cyc.d -> cyc.d", withLoops.describeCycle(withLoops.componentOf(graph.idOf(nodes.get(3)))));
+
+        var both = new CycleAnalysis(EdgeType.DependsOn, EdgeType.Calls).analyze(graph);
+        assertEquals(2, both.cyclicComponents().length);
+        assertEquals(both.componentOf(graph.idOf(nodes.get(4))), both.componentOf(graph.idOf(nodes.get(5))));
+
+        //condensation goes forward only, and collapses parallel edges
+        for (int c=0;c<sccs.componentCount();c++) {
+            for (int e=sccs.condensedStart(c);e<sccs.condensedEnd(c);e++) {
+                assertTrue(sccs.condensedTarget(e) > c);
+            }
+        }
+        var d = sccs.componentOf(graph.idOf(nodes.get(3)));
+        assertEquals(1, sccs.condensedEnd(abc) - sccs.condensedStart(abc));
+        assertEquals(d, sccs.condensedTarget(sccs.condensedStart(abc)));
+    }
+
+    @Test
+    public void testDeepChainAndBigCycle() {
+        //one 300k node cycle; a recursive Tarjan would need 300k frames
+        var count = 300_000;
+        var root = new Node("deep", "deep", NodeType.Package);
+        var previous = root;
+        for (int i=0;i<count;i++) {
+            var node = new Node("n" + i, "deep.n" + i, NodeType.Method);
+            previous.createOutboundEdge(NodeRef.of(node), EdgeType.Calls);
+            previous = node;
+        }
+        previous.createOutboundEdge(NodeRef.of(root), EdgeType.Calls);
+        var graph = FrozenGraph.freeze(List.of(root));
+        var sccs = new CycleAnalysis(EdgeType.Calls).analyze(graph);
+        assertEquals(1, sccs.componentCount());
+        assertEquals(count + 1, sccs.cycle(0).length);
+        assertEquals(graph.idOf(root), sccs.cycle(0)[0]);
+    }
+
+    @Test
+    public void testPackageCycles() {
+        var p1 = new Node("p1", "pcyc.p1", NodeType.Package);
+        var p2 = new Node("p2", "pcyc.p2", NodeType.Package);
+        var p3 = new Node("p3", "pcyc.p3", NodeType.Package);
+        var a = p1.addContained(new Node("A", "pcyc.p1.A", NodeType.Type));
+        var a2 = p1.addContained(new Node("A2", "pcyc.p1.A2", NodeType.Type));
+        var b = p2.addContained(new Node("B", "pcyc.p2.B", NodeType.Type));
+        var c = p3.addContained(new Node("C", "pcyc.p3.C", NodeType.Type));
+        a.createOutboundEdge(NodeRef.of(a2), EdgeType.DependsOn);
+        a.createOutboundEdge(NodeRef.of(b), EdgeType.DependsOn);
+        b.addContained(new Node("m", "pcyc.p2.B.m", NodeType.Method)).createOutboundEdge(NodeRef.of(a2), EdgeType.Calls);
+        b.createOutboundEdge(NodeRef.of(c), EdgeType.References);
+        var graph = FrozenGraph.freeze(List.of(p1, p2, p3));
+
+        var packages = new Contraction(graph).at(NodeType.Package);
+        var sccs = new CycleAnalysis(EdgeType.DependsOn, EdgeType.References, EdgeType.Calls).analyze(packages);
+        assertTrue(sccs.hasCycles());
+        var cyclic = sccs.cyclicComponents();
+        assertEquals(1, cyclic.length);
+        assertEquals("pcyc.p1 -> pcyc.p2 -> pcyc.p1", sccs.describeCycle(cyclic[0]));
+        assertFalse(new CycleAnalysis(EdgeType.DependsOn).analyze(packages).hasCycles());
+    }
+
+    private static void link(List<Node> nodes, int from, int to) {
+        nodes.get(from).createOutboundEdge(NodeRef.of(nodes.get(to)), EdgeType.DependsOn);
+    }
+}
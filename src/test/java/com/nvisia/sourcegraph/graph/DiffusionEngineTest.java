@@ -0,0 +1,116 @@
+package com.nvisia.sourcegraph.graph;
+
+import com.nvisia.sourcegraph.spectral.DiffusionEngine;
+import com.nvisia.sourcegraph.spectral.GramSeries;
+import com.nvisia.sourcegraph.spectral.LaplacianBuilder;
+import com.nvisia.sourcegraph.spectral.SparseMatrix;
+import com.nvisia.sourcegraph.spectral.VectorBlock;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinTask;
+
+public class DiffusionEngineTest {
+
+    @Test
+    public void testMatchesRepeatedMultiply() {
+        //big enough that the engine splits the rows up
+        var n = 20_000;
+        var random = new Random(3);
+        var builder = new SparseMatrix.Builder(n, n);
+        for (int i=0;i<n;i++) {
+            for (int k=0;k<4;k++) {
+                builder.add(i, random.nextInt(n), random.nextDouble() - 0.5);
+            }
+        }
+        var m = builder.build();
+        var starts = new double[3][n];
+        for (var start : starts) {
+            for (int i=0;i<n;i++) {
+                start[i] = random.nextDouble();
+            }
+        }
+
+        var steps = new ArrayList<Integer>();
+        var series = new GramSeries();
+        var result = new DiffusionEngine(m).run(starts, 4, (step, block) -> {
+            steps.add(step);
+            series.step(step, block);
+        });
+        assertEquals(List.of(0, 1, 2, 3, 4), steps);
+
+        //the run, listener and all, stays within the threads it was given
+        var poolSizes = new ArrayList<Integer>();
+        new DiffusionEngine(m).parallelism(2).run(starts, 1, (step, block) ->
+                poolSizes.add(ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool().getParallelism() : -1));
+        assertEquals(List.of(2, 2), poolSizes);
+
+        var sequential = new DiffusionEngine(m).parallelism(1).run(starts, 4, (step, block) -> {});
+        for (int v=0;v<3;v++) {
+            var expected = starts[v];
+            for (int step=1;step<=4;step++) {
+                var x = m.multiply(expected);
+                assertEquals(dot(x, x), series.get(step, v, v), 1e-9 * dot(x, x));
+                expected = x;
+            }
+            assertArrayEquals(expected, result.vector(v), 0.0);
+            assertArrayEquals(expected, sequential.vector(v), 0.0);
+        }
+        assertEquals(dot(starts[0], starts[2]), series.get(0, 2, 0), 1e-6);
+        assertEquals(series.get(2, 0, 1), series.pair(1, 0)[2], 0.0);
+    }
+
+    @Test
+    public void testRandomWalkKeepsMass() {
+        var a = new Node("a", "diffuse.a", NodeType.Type);
+        var b = new Node("b", "diffuse.b", NodeType.Type);
+        var c = new Node("c", "diffuse.c", NodeType.Type);
+        a.createOutboundEdge(NodeRef.of(b), EdgeType.Calls);
+        b.createOutboundEdge(NodeRef.of(c), EdgeType.Calls);
+        a.createOutboundEdge(NodeRef.of(c), EdgeType.Calls);
+        var graph = FrozenGraph.freeze(List.of(a));
+        var laplacian = new LaplacianBuilder().weight(EdgeType.Calls, 1.0).build(graph);
+
+        var start = laplacian.pointMass(graph.idOf(a));
+        var result = DiffusionEngine.randomWalk(laplacian).run(new double[][] {start, laplacian.indicator(graph.idOf(b))}, 5, (step, p) -> {
+            for (int v=0;v<p.width();v++) {
+                var total = 0.0;
+                for (int row=0;row<p.length();row++) {
+                    total += p.get(row, v);
+                }
+                assertEquals(1.0, total, 1e-12);
+            }
+        });
+        var expected = start;
+        for (int step=0;step<5;step++) {
+            expected = laplacian.walk(expected);
+        }
+        assertArrayEquals(expected, result.vector(0), 1e-12);
+    }
+
+    @Test
+    public void testOversizedBlockFailsUpFront() {
+        //a million rows and one start vector per module for 2200 modules: 2.2e9 entries, past any int index
+        try {
+            new VectorBlock(1_000_000, 2_200);
+            fail("block larger than an array should be refused");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("2200000000 entries"));
+        }
+        var block = new VectorBlock(1_000, 2_000);
+        block.set(999, 1_999, 1.0);
+        assertEquals(1.0, block.get(999, 1_999), 0.0);
+    }
+
+    private static double dot(double[] a, double[] b) {
+        var sum = 0.0;
+        for (int i=0;i<a.length;i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
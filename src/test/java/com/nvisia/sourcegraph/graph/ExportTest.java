@@ -0,0 +1,223 @@
+package com.nvisia.sourcegraph.graph;
+
+import com.nvisia.sourcegraph.AntlrImport;
+import com.nvisia.sourcegraph.export.DotExporter;
+import com.nvisia.sourcegraph.export.ExportOptions;
+import com.nvisia.sourcegraph.export.GraphExporter;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+public class ExportTest {
+    private static AntlrImport imp;
+
+    @BeforeClass
+    public static void importTestSource() throws Exception {
+        imp = new AntlrImport();
+        imp.importFiles(AntlrImport.getAllJavaFiles(Path.of("src/test_source/java")), 1);
+        imp.postProcess();
+    }
+
+    @Test
+    public void testJsonLinesCounts() throws Exception {
+        var lines = export(new ExportOptions(), "graph.jsonl");
+        var edges = lines.stream().filter(l -> l.startsWith("{\"kind\":\"edge\"")).count();
+        var expectedEdges = new int[1];
+        imp.preOrderEdgeTraverse(Optional.empty(), edge -> expectedEdges[0]++);
+        assertEquals(expectedEdges[0], edges);
+        assertTrue(lines.contains("{\"kind\":\"node\",\"path\":\"com.nvisia.sourcegraph.test.simple.Greeter\","
+                + "\"name\":\"com.nvisia.sourcegraph.test.simple.Greeter\",\"type\":\"Type\"}"));
+    }
+
+    @Test
+    public void testEdgeEndsAreNodeIds() throws Exception {
+        var resolved = new AntlrImport();
+        resolved.importSource(CharStreams.fromString("package p; class Thing { }"));
+        resolved.importSource(CharStreams.fromString("package p; class Holder { Thing thing; Missing missing; }"));
+        resolved.postProcess();
+        var quoted = "\"((?:[^\"\\\\]|\\\\.)*)\"";
+
+        var jsonl = String.join("\n", export(resolved, new ExportOptions(), "graph.jsonl"));
+        var jsonIds = matches(Pattern.compile("\\{\"kind\":\"(?:node|stub)\",\"path\":" + quoted), jsonl);
+        var jsonEnds = matches(Pattern.compile("\"(?:from|to)\":" + quoted), jsonl);
+        assertTrue(jsonEnds.contains("p.Thing"));
+        assertTrue(jsonIds.containsAll(jsonEnds));
+
+        var graphml = String.join("\n", export(resolved, new ExportOptions(), "graph.graphml"));
+        var graphmlIds = matches(Pattern.compile("<node id=" + quoted), graphml);
+        var graphmlEnds = matches(Pattern.compile("(?:source|target)=" + quoted), graphml);
+        assertTrue(graphmlEnds.contains("p.Thing"));
+        assertTrue(graphmlEnds.contains("Missing"));
+        assertTrue(graphmlIds.containsAll(graphmlEnds));
+    }
+
+    private static Set<String> matches(Pattern pattern, String text) {
+        var found = new HashSet<String>();
+        var matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            found.add(matcher.group(1));
+        }
+        return found;
+    }
+
+    @Test
+    public void testGzippedGraphML() throws Exception {
+        var file = Files.createTempFile("graph", ".graphml.gz");
+        try {
+            imp.export(file, new ExportOptions());
+            String xml;
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+                xml = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            assertTrue(xml.startsWith("<?xml"));
+            assertTrue(xml.trim().endsWith("</graphml>"));
+            assertTrue(xml.contains("<data key=\"edgeType\">Contains</data>"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testGzipSuffixDoesNotLeakIntoSharedOptions() throws Exception {
+        var options = new ExportOptions();
+        var gz = Files.createTempFile("graph", ".jsonl.gz");
+        try {
+            imp.export(gz, options);
+        } finally {
+            Files.delete(gz);
+        }
+        assertFalse(options.isGzip());
+        var lines = export(options, "graph.jsonl");
+        assertTrue(lines.get(0).startsWith("{\"kind\":"));
+    }
+
+    @Test
+    public void testFiltersArePushedIntoTraversal() throws Exception {
+        var options = new ExportOptions()
+                .followEdgeTypes(EnumSet.of(EdgeType.Contains))
+                .includeNodeTypes(EnumSet.of(NodeType.Package, NodeType.Type));
+        var lines = export(options, "types.jsonl");
+        assertFalse(lines.isEmpty());
+        for (var line : lines) {
+            assertFalse(line, line.contains("\"type\":\"Method\""));
+            if (line.contains("\"kind\":\"edge\"")) {
+                assertTrue(line, line.endsWith("\"type\":\"Contains\"}"));
+            }
+        }
+    }
+
+    @Test
+    public void testDotMatchesBaselineRendering() throws Exception {
+        var out = new ByteArrayOutputStream();
+        new DotExporter(new ExportOptions().hideEdgeTypes(Set.of(EdgeType.Executes))).export(imp.getTopLevelNodes(), out);
+        var dot = out.toString(StandardCharsets.UTF_8);
+        assertEquals(baselineDOT(imp, Set.of(EdgeType.Executes)), dot);
+        assertFalse(dot.contains("[label=\"Executes\"]"));
+        assertTrue(dot.startsWith("digraph danch_o_graph {"));
+    }
+
+    @Test
+    public void testDotOfKnownSource() {
+        var small = new AntlrImport();
+        //the source name goes into anonymous node paths, so it's fixed here
+        small.importSource(CharStreams.fromString(String.join("\n",
+                "package dot.p;",
+                "import java.util.List;",
+                "public class A {",
+                "    List<String> names;",
+                "    void f() {",
+                "        int i = 0;",
+                "        names.clear();",
+                "    }",
+                "}",
+                ""), "A.java"));
+        small.postProcess();
+        var expected = String.join(System.lineSeparator(),
+            "digraph danch_o_graph {",
+            "node [label=\"Package:dot.p\"]; \"dot.p\";",
+            "node [label=\"Stub:java.util.List\"]; \"java.util.List\";",
+            "\"dot.p\"->\"java.util.List\" [label=\"DependsOn\"];",
+            "node [label=\"Type:dot.p.A\"]; \"dot.p.A\";",
+            "\"dot.p\"->\"dot.p.A\" [label=\"Contains\"];",
+            "node [label=\"Field:names\"]; \"dot.p.A:names\";",
+            "\"dot.p.A\"->\"dot.p.A:names\" [label=\"Contains\"];",
+            "node [label=\"Stub:List<String>\"]; \"List<String>\";",
+            "\"dot.p.A:names\"->\"List<String>\" [label=\"References\"];",
+            "\"dot.p.A\"->\"dot.p.A:names\" [label=\"Declares\"];",
+            "node [label=\"Method:f\"]; \"dot.p.A.f\";",
+            "\"dot.p.A\"->\"dot.p.A.f\" [label=\"Contains\"];",
+            "node [label=\"Block:<block>\"]; \"dot.p.A.f:<block>#71a4e3af@92-140\";",
+            "\"dot.p.A.f\"->\"dot.p.A.f:<block>#71a4e3af@92-140\" [label=\"Contains\"];",
+            "node [label=\"Declaration:decl\"]; \"dot.p.A.f:<block>#71a4e3af@92-140:decl#71a4e3af@102-110\";",
+            "\"dot.p.A.f:<block>#71a4e3af@92-140\"->\"dot.p.A.f:<block>#71a4e3af@92-140:decl#71a4e3af@102-110\" [label=\"Declares\"];",
+            "node [label=\"Stub:int\"]; \"int\";",
+            "\"dot.p.A.f:<block>#71a4e3af@92-140:decl#71a4e3af@102-110\"->\"int\" [label=\"References\"];",
+            "node [label=\"Variable:i\"]; \"dot.p.A.f:<block>#71a4e3af@92-140:decl#71a4e3af@102-110:i\";",
+            "\"dot.p.A.f:<block>#71a4e3af@92-140:decl#71a4e3af@102-110\"->\"dot.p.A.f:<block>#71a4e3af@92-140:decl#71a4e3af@102-110:i\" [label=\"Declares\"];",
+            "node [label=\"Statement:names.clear();\"]; \"dot.p.A.f:<block>#71a4e3af@92-140:<stmt>#71a4e3af@121-134\";",
+            "\"dot.p.A.f:<block>#71a4e3af@92-140\"->\"dot.p.A.f:<block>#71a4e3af@92-140:<stmt>#71a4e3af@121-134\" [label=\"Contains\"];",
+            "node [label=\"Expression:clear\"]; \"dot.p.A.f:<block>#71a4e3af@92-140:clear#71a4e3af@121-133\";",
+            "\"dot.p.A.f:<block>#71a4e3af@92-140:<stmt>#71a4e3af@121-134\"->\"dot.p.A.f:<block>#71a4e3af@92-140:clear#71a4e3af@121-133\" [label=\"Evaluates\"];",
+            "\"dot.p.A.f:<block>#71a4e3af@92-140\"->\"dot.p.A.f:<block>#71a4e3af@92-140:<stmt>#71a4e3af@121-134\" [label=\"Executes\"];",
+            "\"dot.p.A.f\"->\"dot.p.A.f:<block>#71a4e3af@92-140\" [label=\"Executes\"];",
+            "}",
+            "");
+        assertEquals(expected, small.toDOT(Set.of()));
+    }
+
+    /* what AntlrImport.toDOT produced before the exporters, string keyed and line by line */
+    private static String baselineDOT(AntlrImport imp, Set<EdgeType> edgeTypesToSkip) {
+        var stringWriter = new StringWriter();
+        var writer = new PrintWriter(stringWriter);
+        writer.println("digraph danch_o_graph {");
+        var visitedPaths = new HashSet<String>();
+        imp.preOrderEdgeTraverse(Optional.empty(), edge -> {
+            var from = edge.getFrom().getNode().get();
+            if (visitedPaths.add(from.getPath())) {
+                writer.println("node [label=\"" + from.getType() + ":" + from.getName() + "\"]; \"" + from.getPath() + "\";");
+            }
+            var to = edge.getTo().getNode();
+            var toPath = to.map(Node::getPath).orElse(edge.getTo().getNodePath());
+            if (visitedPaths.add(toPath)) {
+                writer.println(to.map(n -> "node [label=\"" + n.getType() + ":" + n.getName() + "\"]; \"" + toPath + "\";")
+                        .orElse("node [label=\"Stub:" + toPath + "\"]; \"" + toPath + "\";"));
+            }
+            if (!edgeTypesToSkip.contains(edge.getType())) {
+                writer.println("\"" + edge.getFrom().getNodePath() + "\"" + "->" + "\"" + edge.getTo().getNodePath() + "\"" + " [label=\"" + edge.getType() + "\"];");
+            }
+        });
+        writer.println("}");
+        writer.flush();
+        return stringWriter.toString();
+    }
+
+    private static java.util.List<String> export(ExportOptions options, String name) throws Exception {
+        return export(imp, options, name);
+    }
+
+    private static java.util.List<String> export(AntlrImport imp, ExportOptions options, String name) throws Exception {
+        var file = Files.createTempFile("graph", name);
+        try {
+            GraphExporter.forFile(file, options).export(imp.getTopLevelNodes(), file);
+            return Files.readAllLines(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.nvisia.sourcegraph.graph;
+
+import com.nvisia.sourcegraph.AntlrImport;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+
+public class FrozenGraphTest {
+
+    @Test
+    public void testViewsAnswerLikeTheOriginal() throws Exception {
+        var imp = importTestSource();
+        var frozen = imp.freeze();
+
+        //paths aren't unique on their own (a field is also declared as a variable), path + type is
+        var originals = new HashMap<String, Node>();
+        for (var root : imp.getTopLevelNodes()) {
+            root.preOrderEdgeTraverse(Optional.empty(), edge -> {
+                edge.getFrom().getNode().ifPresent(n -> originals.put(n.getType() + n.getPath(), n));
+                edge.getTo().getNode().ifPresent(n -> originals.put(n.getType() + n.getPath(), n));
+            });
+        }
+        assertEquals(originals.size(), frozen.nodeCount());
+        for (int id=0;id<frozen.nodeCount();id++) {
+            var view = frozen.node(id);
+            var original = originals.get(view.getType() + view.getPath());
+            assertNotNull(original);
+            assertEquals(original.getName(), view.getName());
+            assertEquals(original.getAttributes(), view.getAttributes());
+            assertEquals(original.getOutboundEdges().size(), view.getOutboundEdges().size());
+            for (var type : EdgeType.values()) {
+                assertEquals(original.findOutboundEdgesOfType(type).size(), view.findOutboundEdgesOfType(type).size());
+                assertEquals(original.findInboundEdgesOfType(type).size(), view.findInboundEdgesOfType(type).size());
+            }
+            for (var type : NodeType.values()) {
+                assertEquals(original.findOutboundEdgesToNodeType(type).size(), view.findOutboundEdgesToNodeType(type).size());
+            }
+        }
+        assertEquals(dumpContains(imp.getTopLevelNodes()), dumpContains(frozen.getTopLevelNodes()));
+    }
+
+    @Test
+    public void testReadFrozenFromSnapshot() throws Exception {
+        var imp = importTestSource();
+        var frozen = imp.freeze();
+        var file = Files.createTempFile("graph", ".snapshot");
+        try {
+            imp.writeSnapshot(file);
+            var loaded = GraphSnapshot.readFrozen(file);
+            assertEquals(frozen.nodeCount(), loaded.nodeCount());
+            assertEquals(frozen.edgeCount(), loaded.edgeCount());
+            for (int node=0;node<frozen.nodeCount();node++) {
+                assertEquals(frozen.path(node), loaded.path(node));
+                assertEquals(frozen.outDegree(node), loaded.outDegree(node));
+                assertEquals(frozen.inDegree(node), loaded.inDegree(node));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testViewsAreReadOnly() throws Exception {
+        var frozen = importTestSource().freeze();
+        frozen.node(0).createOutboundEdge(NodeRef.of("x"), EdgeType.DependsOn);
+    }
+
+    @Test
+    public void testAttributesAreFrozenToo() throws Exception {
+        var imp = importTestSource();
+        var method = imp.getTypeCache().get("com.nvisia.sourcegraph.test.simple.Greeter")
+                .findOutboundEdgesToNodeType(NodeType.Method).get(0).getTo().getNode().get();
+        method.setAttribute("note", "before");
+        var frozen = imp.freeze();
+        method.setAttribute("note", "after");
+        var view = frozen.node(frozen.idOf(method));
+        assertEquals("before", view.getAttribute("note").orElseThrow());
+        try {
+            view.setAttribute("note", "lost");
+            fail("attribute written to a frozen view");
+        } catch (UnsupportedOperationException e) {
+            assertEquals("before", frozen.node(frozen.idOf(method)).getAttribute("note").orElseThrow());
+        }
+    }
+
+    private static List<String> dumpContains(Collection<Node> topLevel) {
+        var lines = new ArrayList<String>();
+        for (var root : topLevel) {
+            root.preOrderTraverse(Optional.of(EdgeType.Contains), (edgeType, nodeRef, level) ->
+                    lines.add(level + edgeType.map(Enum::toString).orElse("") + nodeRef));
+        }
+        return lines;
+    }
+
+    private static AntlrImport importTestSource() throws Exception {
+        var imp = new AntlrImport();
+        imp.importFiles(AntlrImport.getAllJavaFiles(Path.of("src/test_source/java")), 1);
+        imp.postProcess();
+        return imp;
+    }
+}
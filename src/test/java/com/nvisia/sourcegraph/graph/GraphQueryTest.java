@@ -0,0 +1,118 @@
+package com.nvisia.sourcegraph.graph;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+public class GraphQueryTest {
+
+    private Node pkg, a, b, c, d, e, am, bn;
+    private FrozenGraph graph;
+
+    //q contains A..E; B.n executes A.m, C references B, D depends on C, E depends on something unresolved
+    private FrozenGraph sample() {
+        pkg = new Node("q", "q", NodeType.Package);
+        a = pkg.addContained(new Node("A", "q.A", NodeType.Type));
+        b = pkg.addContained(new Node("B", "q.B", NodeType.Type));
+        c = pkg.addContained(new Node("C", "q.C", NodeType.Type));
+        d = pkg.addContained(new Node("D", "q.D", NodeType.Type));
+        e = pkg.addContained(new Node("E", "q.E", NodeType.Type));
+        am = a.addContained(new Node("m", "q.A.m", NodeType.Method));
+        bn = b.addContained(new Node("n", "q.B.n", NodeType.Method));
+        bn.createOutboundEdge(NodeRef.of(am), EdgeType.Executes);
+        c.createOutboundEdge(NodeRef.of(b), EdgeType.References);
+        d.createOutboundEdge(NodeRef.of(c), EdgeType.DependsOn);
+        e.createOutboundEdge(NodeRef.of("q.Missing"), EdgeType.DependsOn);
+        graph = FrozenGraph.freeze(List.of(pkg));
+        return graph;
+    }
+
+    @Test
+    public void testNeighborhoods() {
+        var query = new GraphQuery(sample());
+        assertEquals(5, query.outbound(id(pkg), 1).count());
+        assertEquals(7, query.outbound(id(pkg), 2).count());
+        assertEquals(0, query.outbound(id(pkg), 0).count());
+        assertEquals(0, query.through(NodeType.Method).outbound(id(pkg), 2).count());
+        assertEquals(List.of("q.A", "q.B.n"), paths(query.inbound(id(am), 1)));
+        assertEquals(List.of("q.A", "q.B.n", "q", "q.B", "q.C", "q.D"), paths(query.inbound(id(am), 4)));
+        assertEquals(List.of("q.A", "q.B.n", "q.B", "q.C"), paths(query.through(NodeType.Type, NodeType.Method).inbound(id(am), 3)));
+        //nearest first, and only as many as asked for
+        assertEquals(List.of("q.A", "q.B"), paths(query.outbound(id(pkg), 2).limit(2)));
+    }
+
+    @Test
+    public void testReachableAndDependents() {
+        var query = new GraphQuery(sample()).following(GraphQuery.DEPENDENCIES);
+        assertEquals(List.of("q.C", "q.B"), paths(query.reachable(id(d))));
+        assertEquals(List.of("q.B.n"), paths(query.dependents(id(am))));
+        assertEquals(List.of("q.C", "q.D"), paths(query.dependents(id(b))));
+        assertEquals(List.of("q.D", "q.B.n"), paths(query.dependents(id(c), id(am))));
+        assertEquals(0, query.reachable(id(e)).count());
+        assertEquals(List.of("q.A", "q.B", "q.C", "q.D", "q.E", "q.A.m", "q.B.n"),
+                paths(new GraphQuery(graph).following(EdgeType.Contains).reachable(id(pkg))));
+    }
+
+    @Test
+    public void testImpact() {
+        var query = new GraphQuery(sample()).following(GraphQuery.DEPENDENCIES);
+        assertEquals(List.of("q.B", "q.C", "q.D"), paths(query.impactOf(id(a), NodeType.Type)));
+        assertEquals(List.of("q.B", "q.C", "q.D"), paths(query.impactOf(id(am), NodeType.Type)));
+        assertEquals(List.of("q.D"), paths(query.impactOf(id(c), NodeType.Type)));
+        assertEquals(0, query.impactOf(id(a), NodeType.Package).count());
+        //References only: nobody references A or anything in it
+        assertEquals(0, query.following(EdgeType.References).impactOf(id(a), NodeType.Type).count());
+        assertEquals(id(a), query.enclosing(id(am), NodeType.Type));
+        assertEquals(id(pkg), query.enclosing(id(am), NodeType.Package));
+        assertEquals(-1, query.enclosing(id(am), NodeType.Block));
+    }
+
+    @Test
+    public void testShortestPath() {
+        var query = new GraphQuery(sample());
+        assertEquals(List.of("q.D", "q.C", "q.B", "q.B.n", "q.A.m"), paths(IntStream.of(query.shortestPath(id(d), id(am)))));
+        assertEquals(4, query.distance(id(d), id(am)));
+        assertEquals(0, query.distance(id(d), id(d)));
+        assertEquals(0, query.following(GraphQuery.DEPENDENCIES).shortestPath(id(d), id(am)).length);
+        assertEquals(-1, query.distance(id(am), id(d)));
+    }
+
+    @Test
+    public void testImpactAlongLongChain() {
+        //T0 <- T1.m <- T2.m <- ... : a change to T0 reaches every type, through a method call per type
+        var count = 100_000;
+        var root = new Node("chain", "chain", NodeType.Package);
+        Node previous = null;
+        for (int i=0;i<count;i++) {
+            var type = root.addContained(new Node("T" + i, "chain.T" + i, NodeType.Type));
+            var method = type.addContained(new Node("m", "chain.T" + i + ".m", NodeType.Method));
+            if (previous != null) {
+                method.createOutboundEdge(NodeRef.of(previous), EdgeType.Calls);
+            }
+            previous = method;
+        }
+        var graph = FrozenGraph.freeze(List.of(root));
+        var query = new GraphQuery(graph).following(GraphQuery.DEPENDENCIES);
+        var first = graph.idOf("chain.T0");
+        assertEquals(count - 1, query.impactOf(first, NodeType.Type).count());
+        assertEquals(graph.idOf("chain.T1"), query.impactOf(first, NodeType.Type).findFirst().getAsInt());
+        assertEquals(count, query.shortestPath(graph.idOf("chain.T" + (count - 1) + ".m"), graph.idOf("chain.T0.m")).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownNode() {
+        new GraphQuery(sample()).outbound(graph.nodeCount(), 1);
+    }
+
+    private int id(Node node) {
+        return graph.idOf(node);
+    }
+
+    private List<String> paths(IntStream ids) {
+        return Arrays.asList(ids.mapToObj(graph::path).toArray(String[]::new));
+    }
+}
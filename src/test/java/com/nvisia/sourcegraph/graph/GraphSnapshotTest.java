@@ -0,0 +1,89 @@
+package com.nvisia.sourcegraph.graph;
+
+import com.nvisia.sourcegraph.AntlrImport;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+public class GraphSnapshotTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        var original = new AntlrImport();
+        original.importFiles(AntlrImport.getAllJavaFiles(Path.of("src/test_source/java")), 1);
+        original.postProcess();
+
+        var file = Files.createTempFile("graph", ".snapshot");
+        try {
+            original.writeSnapshot(file);
+            var loaded = new AntlrImport();
+            loaded.loadSnapshot(file);
+
+            var noSkips = new HashSet<EdgeType>();
+            assertEquals(original.toDOT(noSkips), loaded.toDOT(noSkips));
+            assertEquals(original.getTypeCache().keySet(), loaded.getTypeCache().keySet());
+            var greeter = loaded.getTypeCache().get("com.nvisia.sourcegraph.test.simple.Greeter");
+            assertEquals(NodeType.Type, greeter.getType());
+            assertFalse(greeter.findInboundEdgesOfType(EdgeType.References).isEmpty());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testAttributesRoundTrip() throws Exception {
+        var type = new Node("A", "snapattr.A", NodeType.Type);
+        var method = new Node("m", "snapattr.A.m", NodeType.Method);
+        type.createOutboundEdge(NodeRef.of(method), EdgeType.Contains);
+        method.setAttribute("int", 3);
+        method.setAttribute("long", 1L << 40);
+        method.setAttribute("double", 0.25);
+        method.setAttribute("string", "text");
+        method.setAttribute("boolean", true);
+
+        var file = Files.createTempFile("graph", ".snapshot");
+        try {
+            GraphSnapshot.write(file, List.of(type), Map.of());
+            var loaded = GraphSnapshot.read(file).getTopLevelNodes().get(0)
+                    .findOutboundEdgesOfType(EdgeType.Contains).get(0).getTo().getNode().get();
+            assertEquals(method.getAttributes(), loaded.getAttributes());
+            var frozen = GraphSnapshot.readFrozen(file);
+            assertEquals(method.getAttributes(), frozen.attributes(frozen.idOf("snapattr.A.m")));
+            assertTrue(frozen.attributes(frozen.idOf("snapattr.A")).isEmpty());
+
+            method.setAttribute("other", new Object());
+            try {
+                GraphSnapshot.write(file, List.of(type), Map.of());
+                fail("wrote an attribute it can't read back");
+            } catch (IllegalArgumentException expected) {
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptSnapshotIsRejected() throws Exception {
+        var original = new AntlrImport();
+        original.importFiles(AntlrImport.getAllJavaFiles(Path.of("src/test_source/java")), 1);
+        original.postProcess();
+
+        var file = Files.createTempFile("graph", ".snapshot");
+        try {
+            original.writeSnapshot(file);
+            var bytes = Files.readAllBytes(file);
+            bytes[bytes.length / 2] ^= 0x5a;
+            Files.write(file, bytes);
+            GraphSnapshot.read(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.nvisia.sourcegraph.graph;
+
+import com.nvisia.sourcegraph.IncrementalImport;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+
+public class IncrementalImportTest {
+    private static final String HOLDER =
+            "package inctest;" +
+            "class Holder {" +
+            "    Thing thing;" +
+            "}";
+    private static final String THING =
+            "package inctest;" +
+            "class Thing {" +
+            "    public void first() {" +
+            "        System.out.println(1);" +
+            "    }" +
+            "}";
+    private static final String THING_CHANGED =
+            "package inctest;" +
+            "class Thing {" +
+            "    public void first() {" +
+            "        System.out.println(1);" +
+            "    }" +
+            "    public void second() {" +
+            "        System.out.println(2);" +
+            "    }" +
+            "}";
+
+    @Test
+    public void testUnchangedFileIsSkipped() {
+        var inc = new IncrementalImport();
+        assertTrue(inc.update("Thing.java", bytes(THING)));
+        assertFalse(inc.update("Thing.java", bytes(THING)));
+        assertTrue(inc.update("Thing.java", bytes(THING_CHANGED)));
+    }
+
+    @Test
+    public void testReferenceIntoChangedFileIsRebound() {
+        var inc = new IncrementalImport();
+        inc.update("Holder.java", bytes(HOLDER));
+        inc.update("Thing.java", bytes(THING));
+
+        var field = findField(inc);
+        var oldThing = field.getTo().getNode().get();
+        assertEquals("inctest.Thing", oldThing.getPath());
+
+        inc.update("Thing.java", bytes(THING_CHANGED));
+        var newThing = field.getTo().getNode().get();
+        assertNotSame(oldThing, newThing);
+        assertSame(newThing, inc.getImport().getTypeCache().get("inctest.Thing"));
+        assertEquals(2, newThing.findOutboundEdgesToNodeType(NodeType.Method).size());
+        assertTrue(newThing.getInboundEdges().contains(field));
+
+        var packageNode = inc.getImport().getTopLevelNodes().iterator().next();
+        assertEquals(2, packageNode.findOutboundEdgesToNodeType(NodeType.Type).size());
+    }
+
+    @Test
+    public void testRemovedFileUnbindsReferences() {
+        var inc = new IncrementalImport();
+        inc.update("Holder.java", bytes(HOLDER));
+        inc.update("Thing.java", bytes(THING));
+        assertTrue(findField(inc).getTo().isResolved());
+
+        assertTrue(inc.remove("Thing.java"));
+        assertFalse(findField(inc).getTo().isResolved());
+        assertNull(inc.getImport().getTypeCache().get("inctest.Thing"));
+
+        inc.update("Thing.java", bytes(THING));
+        assertTrue(findField(inc).getTo().isResolved());
+    }
+
+    @Test
+    public void testRemovingLastFileOfPackageDropsPackage() {
+        var inc = new IncrementalImport();
+        inc.update("Holder.java", bytes(HOLDER));
+        inc.update("Lonely.java", bytes("package inctest.lonely; class Lonely { }"));
+        var imp = inc.getImport();
+        assertEquals(2, imp.getTopLevelNodes().size());
+        assertNotNull(imp.getTypeCache().get("inctest.lonely"));
+
+        assertTrue(inc.remove("Lonely.java"));
+        assertEquals(1, imp.getTopLevelNodes().size());
+        assertEquals("inctest", imp.getTopLevelNodes().iterator().next().getPath());
+        assertNull(imp.getTypeCache().get("inctest.lonely"));
+        assertNull(imp.getTypeCache().get("inctest.lonely.Lonely"));
+
+        //and it comes back with the file
+        inc.update("Lonely.java", bytes("package inctest.lonely; class Lonely { }"));
+        assertEquals(2, imp.getTopLevelNodes().size());
+        var lonely = imp.getTypeCache().get("inctest.lonely");
+        assertEquals(1, lonely.countOutboundEdgesOfType(EdgeType.Contains));
+    }
+
+    private static Edge findField(IncrementalImport inc) {
+        var holder = inc.getImport().getTypeCache().get("inctest.Holder");
+        var field = holder.findOutboundEdgesToNodeType(NodeType.Field).iterator().next().getTo().getNode().get();
+        return field.findOutboundEdgesOfType(EdgeType.References).iterator().next();
+    }
+
+    private static byte[] bytes(String source) {
+        return source.getBytes(StandardCharsets.UTF_8);
+    }
+}
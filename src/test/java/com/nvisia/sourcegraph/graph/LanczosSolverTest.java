@@ -0,0 +1,109 @@
+package com.nvisia.sourcegraph.graph;
+
+import com.nvisia.sourcegraph.spectral.LanczosSolver;
+import com.nvisia.sourcegraph.spectral.LaplacianBuilder;
+import com.nvisia.sourcegraph.spectral.SparseMatrix;
+import org.apache.commons.math3.linear.EigenDecomposition;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class LanczosSolverTest {
+
+    @Test
+    public void testAgreesWithDenseSolver() {
+        //ring with random chords, as a symmetric normalized Laplacian
+        var n = 300;
+        var random = new Random(7);
+        var adjacency = new SparseMatrix.Builder(n, n);
+        for (int i=0;i<n;i++) {
+            adjacency.add(i, (i + 1) % n, 1.0).add((i + 1) % n, i, 1.0);
+            var j = random.nextInt(n);
+            if (j != i) {
+                adjacency.add(i, j, 0.5).add(j, i, 0.5);
+            }
+        }
+        var a = adjacency.build();
+        var scale = new double[n];
+        var ones = new double[n];
+        for (int i=0;i<n;i++) {
+            scale[i] = 1.0 / Math.sqrt(a.rowSum(i));
+            ones[i] = 1.0;
+        }
+        var lsym = a.scaleRows(scale).transpose().scaleRows(scale).subtractFromDiagonal(ones);
+        var dense = new EigenDecomposition(lsym.toRealMatrix()).getRealEigenvalues();
+        Arrays.sort(dense);
+
+        var solver = new LanczosSolver().tolerance(1e-10);
+        var low = solver.smallest(lsym, 5);
+        var high = solver.largest(lsym, 3);
+        assertTrue(low.toString(), low.isConverged());
+        assertTrue(high.toString(), high.isConverged());
+        for (int i=0;i<5;i++) {
+            assertEquals(dense[i], low.value(i), 1e-8);
+            assertSmallResidual(lsym, low.value(i), low.vector(i));
+        }
+        for (int i=0;i<3;i++) {
+            assertEquals(dense[n - 1 - i], high.value(i), 1e-8);
+        }
+    }
+
+    @Test
+    public void testFiedlerVectorSplitsClusters() {
+        //two cliques joined by a single edge
+        var left = clique("fiedler.left", 6);
+        var right = clique("fiedler.right", 6);
+        left.get(0).createOutboundEdge(NodeRef.of(right.get(0)), EdgeType.DependsOn);
+        var pkg = new Node("fiedler", "fiedler", NodeType.Package);
+        for (var node : left) {
+            pkg.createOutboundEdge(NodeRef.of(node), EdgeType.Contains);
+        }
+        var graph = FrozenGraph.freeze(List.of(pkg));
+        var laplacian = new LaplacianBuilder().weight(EdgeType.DependsOn, 1.0).build(graph);
+        assertEquals(12, laplacian.size());
+
+        var spectrum = laplacian.lowSpectrum(new LanczosSolver(), 2);
+        assertTrue(spectrum.isConverged());
+        assertTrue(spectrum.value(0) > 0 && spectrum.value(0) < 0.1);
+        var fiedler = laplacian.fiedlerVector(new LanczosSolver());
+        var leftSign = Math.signum(fiedler[laplacian.rowOf(graph.idOf(left.get(3)))]);
+        for (var node : left) {
+            assertEquals(leftSign, Math.signum(fiedler[laplacian.rowOf(graph.idOf(node))]), 0.0);
+        }
+        for (var node : right) {
+            assertEquals(-leftSign, Math.signum(fiedler[laplacian.rowOf(graph.idOf(node))]), 0.0);
+        }
+        //and it is an eigenvector of L_rw
+        var lrw = laplacian.randomWalkLaplacian().multiply(fiedler);
+        for (int row=0;row<lrw.length;row++) {
+            assertEquals(spectrum.value(0) * fiedler[row], lrw[row], 1e-6);
+        }
+    }
+
+    private static List<Node> clique(String prefix, int size) {
+        var nodes = new ArrayList<Node>();
+        for (int i=0;i<size;i++) {
+            nodes.add(new Node("n" + i, prefix + ".n" + i, NodeType.Type));
+        }
+        for (int i=0;i<size;i++) {
+            for (int j=i + 1;j<size;j++) {
+                nodes.get(i).createOutboundEdge(NodeRef.of(nodes.get(j)), EdgeType.DependsOn);
+            }
+        }
+        return nodes;
+    }
+
+    private static void assertSmallResidual(SparseMatrix m, double value, double[] vector) {
+        var product = m.multiply(vector);
+        var residual = 0.0;
+        for (int i=0;i<product.length;i++) {
+            residual += (product[i] - value * vector[i]) * (product[i] - value * vector[i]);
+        }
+        assertTrue(Math.sqrt(residual) < 1e-8);
+    }
+}
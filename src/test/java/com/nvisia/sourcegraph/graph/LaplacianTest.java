@@ -0,0 +1,127 @@
+package com.nvisia.sourcegraph.graph;
+
+import com.nvisia.sourcegraph.AntlrImport;
+import com.nvisia.sourcegraph.spectral.GraphLaplacian;
+import com.nvisia.sourcegraph.spectral.LanczosSolver;
+import com.nvisia.sourcegraph.spectral.LaplacianBuilder;
+import com.nvisia.sourcegraph.spectral.SparseMatrix;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+public class LaplacianTest {
+    private static final double[][] ADJACENCY = {
+            {0.0, 1.0, 1.0, 0.0, 0.0},
+            {0.0, 0.0, 0.0, 1.0, 0.0},
+            {0.0, 0.0, 0.0, 1.0, 1.0},
+            {0.0, 0.0, 1.0, 0.0, 0.0},
+            {0.0, 0.0, 1.0, 0.0, 0.0}
+    };
+
+    @Test
+    public void testSparseBuilder() {
+        var m = new SparseMatrix.Builder(3, 4)
+                .add(2, 1, 1.0).add(0, 3, 2.0).add(0, 0, 1.0).add(2, 1, 0.5).add(1, 2, -1.0)
+                .build();
+        assertEquals(4, m.nonZeros());
+        assertEquals(1.5, m.get(2, 1), 0.0);
+        assertEquals(0.0, m.get(1, 1), 0.0);
+        assertArrayEquals(new double[] {9.0, -3.0, 3.0}, m.multiply(new double[] {1, 2, 3, 4}), 1e-12);
+        assertArrayEquals(new double[] {1.0, 1.5, -1.0, 2.0}, m.preMultiply(new double[] {1, 1, 1}), 1e-12);
+        assertEquals(m.toRealMatrix().transpose(), m.transpose().toRealMatrix());
+    }
+
+    @Test
+    public void testMatchesDenseComputation() {
+        var nodes = new Node[ADJACENCY.length];
+        for (int i=0;i<nodes.length;i++) {
+            nodes[i] = new Node("n" + i, "lap.n" + i, NodeType.Type);
+        }
+        for (int i=0;i<nodes.length;i++) {
+            for (int j=0;j<nodes.length;j++) {
+                if (ADJACENCY[i][j] != 0.0) {
+                    nodes[i].createOutboundEdge(NodeRef.of(nodes[j]), EdgeType.DependsOn);
+                }
+            }
+        }
+        //neither of these may show up in the matrices
+        var pkg = new Node("lap", "lap", NodeType.Package);
+        pkg.createOutboundEdge(NodeRef.of(nodes[0]), EdgeType.Contains);
+        nodes[1].createOutboundEdge(NodeRef.of("lap.Missing"), EdgeType.DependsOn);
+        var graph = FrozenGraph.freeze(List.of(pkg));
+
+        var laplacian = new LaplacianBuilder().weight(EdgeType.DependsOn, 1.0).symmetric(false).build(graph);
+        assertEquals(5, laplacian.size());
+        assertEquals(-1, laplacian.rowOf(graph.idOf(pkg)));
+        var dense = new double[5][5];
+        for (int i=0;i<5;i++) {
+            for (int j=0;j<5;j++) {
+                dense[i][j] = ADJACENCY[rowToExample(graph, laplacian, i)][rowToExample(graph, laplacian, j)];
+            }
+        }
+        var a = MatrixUtils.createRealMatrix(dense);
+        var degree = new double[5];
+        var inverse = new double[5];
+        for (int i=0;i<5;i++) {
+            degree[i] = a.getRowVector(i).getL1Norm();
+            inverse[i] = 1.0 / degree[i];
+        }
+        var l = MatrixUtils.createRealDiagonalMatrix(degree).subtract(a);
+        var lrw = MatrixUtils.createRealDiagonalMatrix(inverse).multiply(l);
+        assertArrayEquals(degree, laplacian.degree(), 0.0);
+        assertEquals(a, laplacian.adjacency().toRealMatrix());
+        assertEquals(l, laplacian.laplacian().toRealMatrix());
+        assertTrue(lrw.subtract(laplacian.randomWalkLaplacian().toRealMatrix()).getNorm() < 1e-12);
+
+        //a walk keeps its mass and ends up where the dense product does
+        var start = laplacian.pointMass(graph.idOf(nodes[0]));
+        var p = laplacian.walk(laplacian.walk(start));
+        var expected = MatrixUtils.createRealDiagonalMatrix(inverse).multiply(a);
+        expected = expected.multiply(expected);
+        assertArrayEquals(expected.preMultiply(start), p, 1e-12);
+        assertEquals(1.0, p[0] + p[1] + p[2] + p[3] + p[4], 1e-12);
+
+        //L_sym and its spectrum only exist for symmetric adjacency
+        assertFalse(laplacian.isSymmetric());
+        try {
+            laplacian.normalizedLaplacian();
+            fail("normalized Laplacian of directed adjacency");
+        } catch (IllegalStateException e) {
+        }
+        try {
+            laplacian.fiedlerVector(new LanczosSolver());
+            fail("Fiedler vector of directed adjacency");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    @Test
+    public void testSymmetricOnSource() throws Exception {
+        var imp = new AntlrImport();
+        imp.importFiles(AntlrImport.getAllJavaFiles(Path.of("src/test_source/java")), 1);
+        imp.postProcess();
+        var graph = imp.freeze();
+        var laplacian = new LaplacianBuilder().weight(EdgeType.References, 1.0).weight(EdgeType.DependsOn, 2.0).build(graph);
+        assertTrue(laplacian.size() > 0);
+        var l = laplacian.laplacian();
+        var ones = new double[laplacian.size()];
+        Arrays.fill(ones, 1.0);
+        //L 1 = 0 and L is symmetric
+        for (var v : l.multiply(ones)) {
+            assertEquals(0.0, v, 1e-9);
+        }
+        assertEquals(l.toRealMatrix(), l.transpose().toRealMatrix());
+        for (int row=0;row<laplacian.size();row++) {
+            assertTrue(laplacian.degree(row) > 0);
+        }
+    }
+
+    private static int rowToExample(FrozenGraph graph, GraphLaplacian laplacian, int row) {
+        return Integer.parseInt(graph.name(laplacian.nodeId(row)).substring(1));
+    }
+}
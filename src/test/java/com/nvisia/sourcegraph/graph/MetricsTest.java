@@ -0,0 +1,117 @@
+package com.nvisia.sourcegraph.graph;
+
+import com.nvisia.sourcegraph.AntlrImport;
+import com.nvisia.sourcegraph.metrics.*;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MetricsTest {
+    private static final Path TEST_SOURCE = Path.of("src/test_source/java");
+
+    @Test
+    public void testHistogramBuckets() {
+        var histogram = new MetricsRegistry().histogram("h");
+        for (long v : new long[] {0, 1, 2, 3, 1000, 1000, 1000, 5000}) {
+            histogram.record(v);
+        }
+        var snapshot = histogram.snapshot();
+        assertEquals(8, snapshot.getCount());
+        assertEquals(8006, snapshot.getSum());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(5000, snapshot.getMax());
+        assertEquals(1, snapshot.bucketCount(0));
+        assertEquals(1, snapshot.bucketCount(1));
+        assertEquals(2, snapshot.bucketCount(2));
+        assertEquals(3, snapshot.bucketCount(10));
+        //the 4th of 8 is 3, in [2, 4); the 6th is 1000, in [512, 1024)
+        assertEquals(3, snapshot.quantile(0.5));
+        assertEquals(1023, snapshot.quantile(0.75));
+        assertEquals(5000, snapshot.quantile(1));
+        assertEquals(0, snapshot.quantile(0));
+    }
+
+    @Test
+    public void testImportPhasesAndCounts() throws Exception {
+        var files = AntlrImport.getAllJavaFiles(TEST_SOURCE);
+        var completed = new ArrayList<String>();
+        var published = new ArrayList<MetricsSnapshot>();
+        var imp = new AntlrImport();
+        imp.getMetrics().addSink(new MetricsSink() {
+            @Override
+            public void phaseCompleted(Phase phase, String source, long nanos) {
+                synchronized (completed) {
+                    completed.add(phase + (source == null ? "" : ":" + Path.of(source).getFileName()));
+                }
+            }
+
+            @Override
+            public void publish(MetricsSnapshot snapshot) {
+                published.add(snapshot);
+            }
+        });
+        imp.importFiles(files, 2);
+        var stats = imp.postProcess();
+        imp.publishMetrics();
+
+        assertEquals(1, published.size());
+        var snapshot = published.get(0);
+        for (var phase : List.of(Phase.Lex, Phase.Parse, Phase.Translate)) {
+            assertEquals(files.size(), snapshot.getPhase(phase).getCount());
+            assertTrue(completed.contains(phase + ":Main.java"));
+        }
+        assertEquals(1, snapshot.getPhase(Phase.Import).getCount());
+        assertEquals(1, snapshot.getPhase(Phase.Resolve).getCount());
+        assertEquals(0, snapshot.getPhase(Phase.Export).getCount());
+        assertTrue(completed.contains("Resolve"));
+        assertTrue(snapshot.getPeakHeap().get(Phase.Import) > 0);
+        assertFalse(snapshot.getPeakHeap().containsKey(Phase.Export));
+
+        assertEquals(files.size(), snapshot.getCounter("files.parsed"));
+        assertEquals(files.size(), imp.getFilesParsed());
+        imp.setMetrics(new MetricsRegistry());
+        assertEquals(0, imp.getFilesParsed());
+        assertEquals(stats.getResolved(), snapshot.getCounter("references.resolved"));
+        assertEquals(stats.getExternal(), snapshot.getCounter("references.external"));
+
+        var graph = imp.freeze();
+        var types = 0;
+        for (int node=0;node<graph.nodeCount();node++) {
+            types += graph.nodeType(node) == NodeType.Type ? 1 : 0;
+        }
+        assertEquals(types, snapshot.getCounter("nodes.Type"));
+        assertEquals(1, snapshot.getCounter("nodes.Package"));
+        assertTrue(snapshot.getCounter("edges.Contains") > 0);
+        assertTrue(snapshot.getCounter("edges.unresolved") > 0);
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        var registry = new MetricsRegistry();
+        registry.add("nodes.\"odd\"", 3);
+        registry.histogram("h").record(100);
+        var timer = registry.startPhase(Phase.Resolve);
+        registry.increment("x");
+        timer.close();
+        var out = new ByteArrayOutputStream();
+        registry.addSink(new JsonMetricsSink(out)).publish();
+        var json = out.toString(StandardCharsets.UTF_8);
+        assertEquals(json, JsonMetricsSink.toJson(registry.snapshot()));
+        assertTrue(json, json.startsWith("{\"counters\":{\"nodes.\\\"odd\\\"\":3,\"x\":1},\"histograms\":{"));
+        assertTrue(json, json.contains("\"h\":{\"count\":1,\"sum\":100,\"min\":100,\"max\":100,\"mean\":100.0,\"p50\":100,\"p90\":100,\"p99\":100,\"buckets\":{\"127\":1}}"));
+        assertTrue(json, json.contains("\"phase.Lex\":{\"count\":0,"));
+        assertTrue(json, json.contains("\"peakHeap\":{\"Resolve\":"));
+        assertTrue(json.endsWith("}}\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPerFilePhaseCantBeStarted() {
+        new MetricsRegistry().startPhase(Phase.Parse);
+    }
+}
@@ -42,4 +42,62 @@ public class NodeTest {
     @Test
     public void compareToTest() {
     }
+
+    @Test
+    public void edgeTypeIndexTest() {
+        Node type = new Node("T", "idx.T", NodeType.Type);
+        Node method = new Node("m", "idx.T.m", NodeType.Method);
+        Node other = new Node("O", "idx.O", NodeType.Type);
+        var contains = type.createOutboundEdge(NodeRef.of(method), EdgeType.Contains);
+        var inner = type.addContained(new Node("I", "idx.T.I", NodeType.Type));
+        assertThat(inner.findInboundEdgesOfType(EdgeType.Contains).get(0).getFrom().getNode().get(), is(type));
+        type.removeOutboundEdge(type.findOutboundEdgesOfType(EdgeType.Contains).get(1));
+        type.createOutboundEdge(NodeRef.of(other), EdgeType.DependsOn);
+        type.createOutboundEdge(NodeRef.of("idx.Missing"), EdgeType.DependsOn);
+
+        var dependsOn = type.findOutboundEdgesOfType(EdgeType.DependsOn);
+        assertThat(dependsOn.size(), is(2));
+        assertThat(type.countOutboundEdgesOfType(EdgeType.Contains), is(1));
+        assertThat(type.countOutboundEdgesOfType(EdgeType.Calls), is(0));
+        assertTrue(type.findOutboundEdgesOfType(EdgeType.Calls).isEmpty());
+        assertThat(type.countOutboundEdgesToNodeType(NodeType.Unknown), is(1));
+        assertThat(method.countInboundEdgesOfType(EdgeType.Contains), is(1));
+
+        //views are live and read-only
+        type.createOutboundEdge(NodeRef.of(other), EdgeType.DependsOn);
+        assertThat(dependsOn.size(), is(3));
+        try {
+            dependsOn.clear();
+            fail("view should be read-only");
+        } catch (UnsupportedOperationException expected) {
+        }
+
+        type.removeOutboundEdge(contains);
+        assertThat(type.countOutboundEdgesOfType(EdgeType.Contains), is(0));
+        assertThat(method.countInboundEdgesOfType(EdgeType.Contains), is(0));
+
+        Node merged = new Node("T", "idx.T", NodeType.Type);
+        merged.absorb(type);
+        assertThat(merged.countOutboundEdgesOfType(EdgeType.DependsOn), is(3));
+        assertThat(type.countOutboundEdgesOfType(EdgeType.DependsOn), is(0));
+        assertThat(other.countInboundEdgesOfType(EdgeType.DependsOn), is(2));
+        //the old view follows the edges moving away
+        assertTrue(dependsOn.isEmpty());
+        assertThat(merged.findOutboundEdgesOfType(EdgeType.DependsOn).get(2).getTo().getNode().get(), is(other));
+
+        //a node that never had an edge on a side answers without building an index
+        Node leaf = new Node("l", "idx.l", NodeType.Expression);
+        assertTrue(leaf.findInboundEdgesOfType(EdgeType.Evaluates).isEmpty());
+        assertThat(leaf.countOutboundEdgesOfType(EdgeType.References), is(0));
+        leaf.clearOutboundEdges();
+
+        //and a view taken before the first edge of its type still sees it arrive
+        var references = leaf.findOutboundEdgesOfType(EdgeType.References);
+        var referencedBy = other.findInboundEdgesOfType(EdgeType.References);
+        assertTrue(references.isEmpty());
+        leaf.createOutboundEdge(NodeRef.of(other), EdgeType.References);
+        assertThat(references.size(), is(1));
+        assertThat(references.get(0).getTo().getNode().get(), is(other));
+        assertThat(referencedBy.size(), is(1));
+    }
 }
@@ -0,0 +1,82 @@
+package com.nvisia.sourcegraph.graph;
+
+import com.nvisia.sourcegraph.AntlrImport;
+import com.nvisia.sourcegraph.JavaSourceParser;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+
+public class ParallelImportTest {
+    private static final Path TEST_SOURCE = Path.of("src/test_source/java");
+
+    @Test
+    public void testSingleAndMultiThreadedImportsMatch() throws Exception {
+        var files = AntlrImport.getAllJavaFiles(TEST_SOURCE);
+
+        var serial = new AntlrImport();
+        serial.importFiles(files, 1);
+        serial.postProcess();
+
+        var parallel = new AntlrImport();
+        parallel.importFiles(files, 4);
+        parallel.postProcess();
+
+        var noSkips = new HashSet<EdgeType>();
+        assertEquals(serial.toDOT(noSkips), parallel.toDOT(noSkips));
+    }
+
+    @Test
+    public void testTwoStageParsingMatchesFullLL() throws Exception {
+        var files = AntlrImport.getAllJavaFiles(TEST_SOURCE);
+
+        var twoStage = new AntlrImport();
+        twoStage.setTwoStageParsing(true);
+        twoStage.importFiles(files, 2);
+        twoStage.postProcess();
+
+        var fullLL = new AntlrImport();
+        fullLL.importFiles(files, 2);
+        fullLL.postProcess();
+
+        var noSkips = new HashSet<EdgeType>();
+        assertEquals(fullLL.toDOT(noSkips), twoStage.toDOT(noSkips));
+        assertEquals(files.size(), twoStage.getFilesParsed());
+        //the Java9 grammar trips SLL up on qualified method invocations, so both test sources take the fallback
+        assertEquals(2, files.size());
+        assertEquals(2, twoStage.getLLFallbackCount());
+        assertEquals(0, fullLL.getLLFallbackCount());
+    }
+
+    @Test
+    public void testSLLFallsBackOnlyWhereTheGrammarNeedsLL() {
+        var parser = new JavaSourceParser();
+        parser.parse(CharStreams.fromString("class A { void f() { foo(1); a.b(2); } }"), true);
+        assertFalse(parser.lastParseNeededFallback());
+        parser.parse(CharStreams.fromString("class A { void f() { System.out.println(1); } }"), true);
+        assertTrue(parser.lastParseNeededFallback());
+        parser.parse(CharStreams.fromString("class A { void f() { int i = 0; i++; } }"), true);
+        assertTrue(parser.lastParseNeededFallback());
+        parser.parse(CharStreams.fromString("class A { void f() { System.out.println(1); } }"));
+        assertFalse(parser.lastParseNeededFallback());
+    }
+
+    @Test
+    public void testPackageSharedAcrossFilesIsMerged() throws Exception {
+        var imp = new AntlrImport();
+        imp.importFiles(AntlrImport.getAllJavaFiles(TEST_SOURCE), 2);
+        imp.postProcess();
+
+        var topLevel = imp.getTopLevelNodes();
+        assertEquals(1, topLevel.size());
+        var packageNode = topLevel.iterator().next();
+        assertEquals(NodeType.Package, packageNode.getType());
+        assertEquals(2, packageNode.findOutboundEdgesToNodeType(NodeType.Type).size());
+        for (var edge : packageNode.getOutboundEdges()) {
+            assertSame(packageNode, edge.getFrom().getNode().get());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.nvisia.sourcegraph.graph;
+
+import com.nvisia.sourcegraph.AntlrImport;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class PathTableTest {
+    private final PathTable paths = new PathTable();
+
+    @Test
+    public void testSamePathSameHandle() {
+        var type = paths.intern("pathtest.some.Type");
+        var method = paths.child(type, '.', "method");
+        assertEquals(method, paths.intern("pathtest.some.Type.method"));
+        var statement = paths.child(method, ':', "<stmt>#1f@10-20");
+        assertEquals(statement, paths.intern("pathtest.some.Type.method:<stmt>#1f@10-20"));
+        assertEquals("pathtest.some.Type.method:<stmt>#1f@10-20", paths.toPath(statement));
+        //separators inside a child segment are split the same way
+        assertEquals(paths.intern("pathtest.some.Type:x.y"), paths.child(type, ':', "x.y"));
+        assertNotEquals(paths.intern("pathtest.some.Type:method"), method);
+    }
+
+    @Test
+    public void testParentsAndSegments() {
+        var handle = paths.intern("pathtest.a.B:c");
+        assertEquals("c", paths.lastSegment(handle));
+        assertEquals(paths.intern("pathtest.a.B"), paths.parent(handle));
+        assertEquals(PathTable.NO_PARENT, paths.parent(paths.intern("pathtest")));
+    }
+
+    @Test
+    public void testLookupDoesNotIntern() {
+        paths.intern("pathtest.some");
+        var size = paths.size();
+        assertEquals(PathTable.NO_PARENT, paths.lookup("pathtest.never.Interned"));
+        assertEquals(size, paths.size());
+        assertEquals(paths.intern("pathtest.some"), paths.lookup("pathtest.some"));
+    }
+
+    @Test
+    public void testOddPaths() {
+        for (var path : new String[] { "", ".", "a..b", ":x:", "__root__", "{}" }) {
+            assertEquals(path, paths.toPath(paths.intern(path)));
+        }
+    }
+
+    @Test
+    public void testManyPaths() {
+        var handles = new int[20000];
+        for (int i=0;i<handles.length;i++) {
+            handles[i] = paths.intern("pathtest.many.T" + (i % 100) + ":m" + i);
+        }
+        for (int i=0;i<handles.length;i++) {
+            assertEquals("pathtest.many.T" + (i % 100) + ":m" + i, paths.toPath(handles[i]));
+        }
+    }
+
+    @Test
+    public void testConcurrentInterningAgrees() throws Exception {
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            var results = new ArrayList<Future<int[]>>();
+            for (int t=0;t<4;t++) {
+                Callable<int[]> task = () -> {
+                    var handles = new int[10000];
+                    for (int i=0;i<handles.length;i++) {
+                        handles[i] = paths.intern("pathtest.shared.T" + (i % 50) + ":m" + i);
+                    }
+                    return handles;
+                };
+                results.add(executor.submit(task));
+            }
+            var first = results.get(0).get();
+            for (var result : results) {
+                assertArrayEquals(first, result.get());
+            }
+            for (int i=0;i<first.length;i++) {
+                assertEquals("pathtest.shared.T" + (i % 50) + ":m" + i, paths.toPath(first[i]));
+            }
+            //handles stay dense: 1 + 1 + 50 types + one per method
+            assertEquals(2 + 50 + first.length, paths.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTablesAreScopedToTheirGraph() {
+        var other = new PathTable();
+        other.intern("pathtest.elsewhere.Only");
+        assertEquals(PathTable.NO_PARENT, paths.lookup("pathtest.elsewhere.Only"));
+
+        var imp = new AntlrImport();
+        var sizeBefore = PathTable.shared().size();
+        imp.importSource(CharStreams.fromString("package scoped.p; class A { int x; }"));
+        assertNotEquals(PathTable.NO_PARENT, imp.getPathTable().lookup("scoped.p.A"));
+        assertEquals(PathTable.NO_PARENT, PathTable.shared().lookup("scoped.p.A"));
+        assertEquals(sizeBefore, PathTable.shared().size());
+    }
+}
@@ -0,0 +1,170 @@
+package com.nvisia.sourcegraph.graph;
+
+import com.nvisia.sourcegraph.AntlrImport;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Optional;
+
+public class ReferenceResolverTest {
+    private static final String HOLDER =
+            "package restest.one;" +
+            "class Holder {" +
+            "    Thing local;" +
+            "    restest.two.Other qualified;" +
+            "    java.util.List<String> outside;" +
+            "    int primitive;" +
+            "    Missing missing;" +
+            "}";
+    private static final String THING =
+            "package restest.one;" +
+            "class Thing {" +
+            "}";
+    private static final String OTHER =
+            "package restest.two;" +
+            "class Other {" +
+            "    Thing notInThisPackage;" +
+            "}";
+
+    @Test
+    public void testResolution() {
+        var imp = new AntlrImport();
+        imp.importSource(CharStreams.fromString(HOLDER, "Holder.java"));
+        imp.importSource(CharStreams.fromString(THING, "Thing.java"));
+        imp.importSource(CharStreams.fromString(OTHER, "Other.java"));
+        var stats = imp.postProcess();
+
+        var types = imp.getTypeCache();
+        assertSame(types.get("restest.one.Thing"), fieldTarget(types.get("restest.one.Holder"), "local"));
+        assertSame(types.get("restest.two.Other"), fieldTarget(types.get("restest.one.Holder"), "qualified"));
+        assertNull(fieldTarget(types.get("restest.one.Holder"), "missing"));
+        //simple names only resolve within the referring node's own package
+        assertNull(fieldTarget(types.get("restest.two.Other"), "notInThisPackage"));
+
+        assertEquals(2, stats.getResolved());
+        assertEquals(2, stats.getExternal());
+        assertEquals(2, stats.getUnresolved());
+        assertTrue(types.get("restest.one.Thing").getInboundEdges().stream().anyMatch(e -> e.getType() == EdgeType.References));
+    }
+
+    private static final String IMPORTER =
+            "package restest.three;" +
+            "import restest.one.Thing;" +
+            "import restest.two.*;" +
+            "import static restest.one.Outer.*;" +
+            "import static restest.one.Box.Lid;" +
+            "import java.util.Map;" +
+            "import java.io.*;" +
+            "class Importer {" +
+            "    Thing single;" +
+            "    Other onDemand;" +
+            "    Inner staticOnDemand;" +
+            "    Lid staticSingle;" +
+            "    Outer.Inner qualifiedBySimpleName;" +
+            "    java.util.List<Thing> generic;" +
+            "    String javaLang;" +
+            "    Map.Entry<String, String> imported;" +
+            "    File fromOnDemand;" +
+            "}";
+    private static final String OUTER =
+            "package restest.one;" +
+            "class Outer {" +
+            "    class Inner {" +
+            "        int x;" +
+            "    }" +
+            "}";
+    private static final String BOX =
+            "package restest.one;" +
+            "class Box {" +
+            "    class Lid {" +
+            "        int x;" +
+            "    }" +
+            "}";
+
+    @Test
+    public void testImports() {
+        var imp = new AntlrImport();
+        for (var source : new String[] { HOLDER, THING, OTHER, IMPORTER, OUTER, BOX }) {
+            imp.importSource(CharStreams.fromString(source, "source" + source.hashCode()));
+        }
+        var stats = imp.postProcess();
+
+        var types = imp.getTypeCache();
+        var importer = types.get("restest.three.Importer");
+        assertSame(types.get("restest.one.Thing"), fieldTarget(importer, "single"));
+        assertSame(types.get("restest.two.Other"), fieldTarget(importer, "onDemand"));
+        assertSame(types.get("restest.one.Outer.Inner"), fieldTarget(importer, "staticOnDemand"));
+        assertSame(types.get("restest.one.Box.Lid"), fieldTarget(importer, "staticSingle"));
+        assertNull(fieldTarget(importer, "qualifiedBySimpleName"));
+        assertNull(fieldTarget(importer, "generic"));
+        assertNull(fieldTarget(importer, "javaLang"));
+
+        //Holder: 2 resolved, int and java.util.List external, Missing unresolved; Other: Thing unresolved
+        //Importer: 4 of the imports (restest.one.Thing, restest.two, the two static import types) and the 4 fields
+        //above resolve; java.util.Map, java.io and the other 5 fields are external; Inner and Lid: int is external
+        assertEquals(2 + 4 + 4, stats.getResolved());
+        assertEquals(2, stats.getUnresolved());
+        assertEquals(2 + 7 + 2, stats.getExternal());
+    }
+
+    private static final String LOCALS =
+            "package restest.four;" +
+            "import restest.one.Thing;" +
+            "class Locals {" +
+            "    void f() {" +
+            "        restest.two.Other qualified;" +
+            "        Thing imported;" +
+            "        for (Thing inLoop = null; inLoop != null; ) {" +
+            "            inLoop.toString();" +
+            "        }" +
+            "    }" +
+            "}";
+
+    @Test
+    public void testLocalDeclarations() {
+        var imp = new AntlrImport();
+        for (var source : new String[] { THING, OTHER, LOCALS }) {
+            imp.importSource(CharStreams.fromString(source, "source" + source.hashCode()));
+        }
+        imp.postProcess();
+
+        var types = imp.getTypeCache();
+        var targets = new ArrayList<Node>();
+        types.get("restest.four.Locals").preOrderEdgeTraverse(Optional.empty(), edge -> {
+            var from = edge.getFrom().getNode().get();
+            if (from.getType() == NodeType.Declaration && edge.getType() == EdgeType.References) {
+                targets.add(edge.getTo().getNode().orElse(null));
+            }
+        });
+        assertEquals(Arrays.asList(types.get("restest.two.Other"), types.get("restest.one.Thing"),
+                types.get("restest.one.Thing")), targets);
+
+        //the same through resolve(edges), which finds the scope by walking up from the declaration
+        var again = new AntlrImport();
+        for (var source : new String[] { THING, OTHER, LOCALS }) {
+            again.importSource(CharStreams.fromString(source, "source" + source.hashCode()));
+        }
+        var edges = new ArrayList<Edge>();
+        again.preOrderEdgeTraverse(Optional.empty(), edge -> {
+            if (edge.getFrom().getNode().get().getType() == NodeType.Declaration && edge.getType() == EdgeType.References) {
+                edges.add(edge);
+            }
+        });
+        assertEquals(3, edges.size());
+        assertEquals(3, again.resolveEdges(edges).getResolved());
+    }
+
+    private static Node fieldTarget(Node type, String fieldName) {
+        for (var contains : type.findOutboundEdgesToNodeType(NodeType.Field)) {
+            var field = contains.getTo().getNode().get();
+            if (field.getName().equals(fieldName)) {
+                return field.findOutboundEdgesOfType(EdgeType.References).get(0).getTo().getNode().orElse(null);
+            }
+        }
+        throw new AssertionError("no field " + fieldName);
+    }
+}
@@ -154,6 +154,47 @@ public class TranslatorTest {
     }
 
 
+    private final String REPEATED_STATEMENTS =
+            "package graphtest;" +
+                    "class Repeater {" +
+                    "    public static void featureTest() {" +
+                    "        System.out.println(1);" +
+                    "        System.out.println(1);" +
+                    "    }" +
+                    "}";
+
+    @Test
+    public void testNodePathsAreUniqueAndStable() {
+        var first = collectPaths(importString(REPEATED_STATEMENTS));
+        var second = collectPaths(importString(REPEATED_STATEMENTS));
+        assertEquals(first, second);
+
+        var statements = first.stream().filter(p -> p.contains(GraphTranslator.STATEMENT_ID_PREFIX)).collect(Collectors.toSet());
+        assertEquals(2, statements.size());
+    }
+
+    private final String SPACED_STATEMENT =
+            "package graphtest;" +
+                    "class Spaced {" +
+                    "    public static void featureTest() {" +
+                    "        System . out.println( 1, /* two */ 2 ) ;" +
+                    "    }" +
+                    "}";
+
+    @Test
+    public void testNamesIgnoreWhitespaceAndComments() {
+        var topNode = importString(SPACED_STATEMENT).getTopLevelNodes().iterator().next();
+        var statement = findFirstMatch(topNode,
+                edgeAndnodeTypesAndNameFilter(EdgeType.Executes, NodeType.Statement, "System.out.println(1,2);"));
+        assertNotNull(statement);
+    }
+
+    private static List<String> collectPaths(AntlrImport imp) {
+        var paths = new ArrayList<String>();
+        imp.preOrderTraverse(Optional.of(EdgeType.Contains), (edgeType, nodeRef, level) -> paths.add(nodeRef.getNodePath()));
+        return paths;
+    }
+
     private Edge assertContainsAndExecutes(Node parent, NodeType nodeType, String name) {
         var contains = findFirstMatch(parent, edgeAndnodeTypesAndNameFilter(EdgeType.Contains, nodeType, name));
         assertNotNull(contains);
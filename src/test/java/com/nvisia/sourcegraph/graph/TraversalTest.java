@@ -0,0 +1,97 @@
+package com.nvisia.sourcegraph.graph;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public class TraversalTest {
+
+    @Test
+    public void testVisitOrder() {
+        var a = new Node("a", "trav.a", NodeType.Package);
+        var b = new Node("b", "trav.a.b", NodeType.Type);
+        var c = new Node("c", "trav.a.b.c", NodeType.Method);
+        var d = new Node("d", "trav.a.d", NodeType.Type);
+        a.createOutboundEdge(NodeRef.of(b), EdgeType.Contains);
+        b.createOutboundEdge(NodeRef.of(c), EdgeType.Contains);
+        b.createOutboundEdge(NodeRef.of(d), EdgeType.DependsOn);
+        b.createOutboundEdge(NodeRef.of("trav.Missing"), EdgeType.Contains);
+        a.createOutboundEdge(NodeRef.of(d), EdgeType.Contains);
+        c.createOutboundEdge(NodeRef.of(a), EdgeType.Contains);
+
+        var visits = new ArrayList<String>();
+        a.preOrderTraverse(Optional.of(EdgeType.Contains), (edgeType, nodeRef, level) ->
+                visits.add(edgeType.get() + ":" + nodeRef.getNodePath() + "@" + level));
+        assertEquals(List.of(
+                "Contains:trav.a@0",
+                "Contains:trav.a.b@1",
+                "Contains:trav.a.b.c@2",
+                "DependsOn:trav.a.d@2",
+                "Contains:trav.Missing@2",
+                "Contains:trav.a.d@1"), visits);
+
+        var edges = new ArrayList<String>();
+        a.preOrderEdgeTraverse(Optional.empty(), edge -> edges.add(edge.getTo().getNodePath()));
+        assertEquals(List.of("trav.a.b", "trav.a.b.c", "trav.a", "trav.a.d", "trav.Missing", "trav.a.d"), edges);
+    }
+
+    @Test
+    public void testDeepChainDoesNotOverflow() {
+        var length = 200_000;
+        var first = new Node("s0", "trav.deep:s0", NodeType.Statement);
+        var previous = first;
+        for (int i=1;i<length;i++) {
+            var next = new Node("s" + i, "trav.deep:s" + i, NodeType.Statement);
+            previous.createOutboundEdge(NodeRef.of(next), EdgeType.Executes);
+            previous = next;
+        }
+        int[] counts = new int[2];
+        first.preOrderTraverse(EdgeType.Executes, (edgeType, nodeRef, level) -> {
+            counts[0]++;
+            counts[1] = Math.max(counts[1], level);
+        });
+        assertEquals(length, counts[0]);
+        assertEquals(length - 1, counts[1]);
+    }
+
+    @Test
+    public void testNestedTraversalFromVisitor() {
+        var a = new Node("a", "trav.nested.a", NodeType.Type);
+        var b = new Node("b", "trav.nested.b", NodeType.Type);
+        a.createOutboundEdge(NodeRef.of(b), EdgeType.Contains);
+        var inner = new int[1];
+        a.preOrderTraverse(EdgeType.Contains, (edgeType, nodeRef, level) ->
+                nodeRef.getNode().get().preOrderTraverse(EdgeType.Contains, (t, r, l) -> inner[0]++));
+        assertEquals(3, inner[0]);
+        //and the per-thread instance is usable again afterwards
+        var outer = new int[1];
+        a.preOrderTraverse(EdgeType.Contains, (edgeType, nodeRef, level) -> outer[0]++);
+        assertEquals(2, outer[0]);
+    }
+
+    @Test
+    public void testNodeKeysOfLargeHandlesDoNotOverflow() {
+        //handles this big don't need a path table this big: the traversal only looks at handles and types
+        var paths = new PathTable();
+        var a = new Node(paths, "a", 400_000_000, NodeType.Type);
+        var b = new Node(paths, "b", 400_000_001, NodeType.Method);
+        var c = new Node(paths, "c", 400_000_002, NodeType.Method);
+        assertTrue(Traversal.nodeKey(a) > Integer.MAX_VALUE);
+        assertNotEquals(Traversal.nodeKey(b), Traversal.nodeKey(c));
+        a.createOutboundEdge(NodeRef.of(b), EdgeType.Contains);
+        a.createOutboundEdge(NodeRef.of(c), EdgeType.Contains);
+        b.createOutboundEdge(NodeRef.of(c), EdgeType.Calls);
+
+        var visited = new ArrayList<String>();
+        Traversal.forCurrentThread().preOrderEdges(a, null, edge -> visited.add(edge.getTo().getNode().get().getName()));
+        assertEquals(List.of("b", "c", "c"), visited);
+        //and again, to check the overflow keys were cleared
+        visited.clear();
+        Traversal.forCurrentThread().preOrderEdges(a, null, edge -> visited.add(edge.getTo().getNode().get().getName()));
+        assertEquals(3, visited.size());
+    }
+}
@@ -0,0 +1,64 @@
+package com.nvisia.sourcegraph.graph;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Set;
+
+public class TypeIndexTest {
+
+    @Test
+    public void testQueries() {
+        var index = new TypeIndex();
+        var pkg = new Node("idx.a", "idx.a", NodeType.Package);
+        var a = type("idx.a.Thing");
+        var b = type("idx.b.Thing");
+        var other = type("idx.a.Other");
+        var nested = type("idx.a.Other.Inner");
+        index.put("idx.a", pkg);
+        for (var node : List.of(a, b, other, nested)) {
+            index.put(node.getPath(), node);
+        }
+
+        assertSame(a, index.get("idx.a.Thing"));
+        assertSame(pkg, index.get("idx.a"));
+        assertEquals(Set.of(a, other), Set.copyOf(index.typesIn("idx.a")));
+        assertEquals(List.of(nested), List.copyOf(index.typesIn("idx.a.Other")));
+        assertSame(b, index.member("idx.b", "Thing"));
+        assertEquals(List.of(a, b), index.typesNamed("Thing"));
+        //packages are only found by exact name
+        assertTrue(index.typesIn("idx").isEmpty());
+        assertTrue(index.typesNamed("a").isEmpty());
+    }
+
+    @Test
+    public void testIndexesFollowChanges() {
+        var index = new TypeIndex();
+        var first = type("idx.c.Thing");
+        var second = type("idx.c.Thing");
+        index.put("idx.c.Thing", first);
+        assertSame(first, index.putIfAbsent("idx.c.Thing", second));
+        assertEquals(List.of(first), index.typesNamed("Thing"));
+        index.put("idx.c.Thing", second);
+        assertEquals(List.of(second), index.typesNamed("Thing"));
+        assertSame(second, index.member("idx.c", "Thing"));
+
+        assertFalse(index.remove("idx.c.Thing", first));
+        assertTrue(index.remove("idx.c.Thing", second));
+        assertFalse(index.hasMembers("idx.c"));
+        assertTrue(index.typesNamed("Thing").isEmpty());
+
+        index.put("idx.d.A", type("idx.d.A"));
+        index.put("idx.d.B", type("idx.d.B"));
+        index.entrySet().removeIf(e -> e.getKey().endsWith("A"));
+        assertEquals(Set.of("idx.d.B"), index.keySet());
+        assertNull(index.member("idx.d", "A"));
+        assertNotNull(index.member("idx.d", "B"));
+    }
+
+    private static Node type(String name) {
+        return new Node(name, name, NodeType.Type);
+    }
+}